@@ -0,0 +1,107 @@
+package com.payline.payment.tsi.request;
+
+import com.payline.payment.tsi.security.Hmac;
+import com.payline.payment.tsi.security.HmacAlgorithm;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the streaming seal computation with the former one (seal message concatenated into a string,
+ * new Mac initialized and per-byte hexadecimal conversion).
+ * Run with the gc profiler to compare the allocation rates (gc.alloc.rate.norm, in bytes per operation).
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+public class SealBenchmark {
+
+    private static final String SECRET_KEY = "45f3bcf660df19f8364c222e887300fa";
+
+    private TsiGoRequest goRequest;
+    private TsiStatusCheckRequest statusCheckRequest;
+    private TsiGoRequestTemplate goRequestTemplate;
+
+    @Setup
+    public void setup(){
+        this.goRequest = new TsiGoRequest( 806, "43b3a1b952dc5c1f2fd2a46162b3aaaa", "10.5", "EUR", 806,
+                "Ticket Premium", "https://merchant.com/returnOK", "https://merchant.com/returnNOK",
+                "https://merchant.com/notification", "N", "Y", null );
+        this.statusCheckRequest = new TsiStatusCheckRequest( "43b3a1b952dc5c1f2fd2a46162b3aaaa", 806 );
+        this.goRequestTemplate = new TsiGoRequestTemplate( 806, 806, "Ticket Premium", "https://merchant.com/returnOK",
+                "https://merchant.com/returnNOK", "https://merchant.com/notification", "N", "Y",
+                new Hmac( SECRET_KEY, HmacAlgorithm.MD5 ) );
+    }
+
+    @Benchmark
+    public String goRequest_streaming(){
+        goRequest.seal( SECRET_KEY );
+        return goRequest.getMac();
+    }
+
+    @Benchmark
+    public String goRequest_legacy() throws Exception {
+        return legacyDigest( SECRET_KEY, goRequest.buildSealMessage() );
+    }
+
+    /**
+     * Go request creation, seal and body, field by field.
+     */
+    @Benchmark
+    public String goRequestBody_fieldByField(){
+        TsiGoRequest request = new TsiGoRequest( 806, "43b3a1b952dc5c1f2fd2a46162b3aaaa", "10.5", "EUR", 806,
+                "Ticket Premium", "https://merchant.com/returnOK", "https://merchant.com/returnNOK",
+                "https://merchant.com/notification", "N", "Y", null );
+        request.seal( SECRET_KEY );
+        return request.buildBody();
+    }
+
+    /**
+     * Go request creation, seal and body, from the contract template.
+     */
+    @Benchmark
+    public String goRequestBody_template(){
+        return goRequestTemplate.newRequest( "43b3a1b952dc5c1f2fd2a46162b3aaaa", "10.5", "EUR" ).buildBody();
+    }
+
+    @Benchmark
+    public String statusCheckRequest_streaming(){
+        statusCheckRequest.seal( SECRET_KEY );
+        return statusCheckRequest.getMac();
+    }
+
+    @Benchmark
+    public String statusCheckRequest_legacy() throws Exception {
+        return legacyDigest( SECRET_KEY, statusCheckRequest.buildSealMessage() );
+    }
+
+    /**
+     * The seal computation as it was done before the Mac pooling and streaming.
+     */
+    private static String legacyDigest( String key, String message ) throws GeneralSecurityException, java.io.UnsupportedEncodingException {
+        SecretKeySpec secretKey = new SecretKeySpec( key.getBytes( "UTF-8" ), "HmacMD5" );
+        Mac mac = Mac.getInstance( "HmacMD5" );
+        mac.init( secretKey );
+        byte[] bytes = mac.doFinal( message.getBytes( "UTF-8" ) );
+
+        StringBuilder hash = new StringBuilder();
+        for( int i = 0; i < bytes.length; i++ ){
+            String hex = Integer.toHexString( 0xFF & bytes[ i ] );
+            if( hex.length() == 1 ){
+                hash.append( '0' );
+            }
+            hash.append( hex );
+        }
+        return hash.toString();
+    }
+
+}
@@ -0,0 +1,58 @@
+package com.payline.payment.tsi.response;
+
+import com.payline.payment.tsi.utils.json.JsonCodecRegistry;
+
+import java.util.Arrays;
+
+/**
+ * Compares the memory footprint of the checkstatus responses, as parsed from the wire and in their compact form.
+ * Retains a large number of responses of each kind and reports the heap used per instance (after a full GC).
+ * Run it with a fixed heap size, e.g. {@code -Xms1g -Xmx1g}.
+ */
+public class StatusFootprint {
+
+    private static final int COUNT = 500_000;
+
+    public static void main( String[] args ){
+        String[] bodies = new String[ COUNT ];
+        for( int i = 0; i < COUNT; i++ ){
+            bodies[ i ] = body( i );
+        }
+
+        Object[] retained = new Object[ COUNT ];
+        long before = usedHeap();
+        for( int i = 0; i < COUNT; i++ ){
+            retained[ i ] = parse( bodies[ i ] );
+        }
+        long wire = usedHeap() - before;
+        Arrays.fill( retained, null );
+
+        before = usedHeap();
+        for( int i = 0; i < COUNT; i++ ){
+            retained[ i ] = parse( bodies[ i ] ).toCompact();
+        }
+        long compact = usedHeap() - before;
+
+        System.out.printf( "TsiStatusCheckResponse:     %d bytes per instance%n", wire / COUNT );
+        System.out.printf( "CompactStatusCheckResponse: %d bytes per instance%n", compact / COUNT );
+    }
+
+    private static TsiStatusCheckResponse parse( String body ){
+        return JsonCodecRegistry.getInstance().fromJson( body, TsiStatusCheckResponse.class );
+    }
+
+    private static String body( int i ){
+        return String.format( "{\"authId\":\"%07d\",\"tid\":\"%032x\",\"status\":\"OK\",\"ercode\":\"0\","
+                + "\"message\":\"SUCCESSFUL TRANSACTION FOUND\",\"amount\":\"%d,%02d\",\"multi\":\"f\","
+                + "\"dtime\":\"2018-08-02 10:%02d:%02d\",\"country\":\"FRA\"}", i, i, i % 500, i % 100, i / 60 % 60, i % 60 );
+    }
+
+    private static long usedHeap(){
+        Runtime runtime = Runtime.getRuntime();
+        for( int i = 0; i < 3; i++ ){
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+}
@@ -0,0 +1,133 @@
+package com.payline.payment.tsi.service;
+
+import com.payline.pmapi.bean.configuration.ReleaseInformation;
+import com.payline.pmapi.bean.configuration.parameter.AbstractParameter;
+import com.payline.pmapi.bean.configuration.parameter.impl.InputParameter;
+import com.payline.pmapi.bean.paymentform.bean.PaymentFormLogo;
+import com.payline.pmapi.bean.paymentform.bean.form.NoFieldForm;
+import com.payline.pmapi.bean.paymentform.response.configuration.impl.PaymentFormConfigurationResponseSpecific;
+import com.payline.pmapi.bean.paymentform.response.logo.impl.PaymentFormLogoResponseFile;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.ResourceBundle;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the calls Payline makes to render a checkout page (payment method name, form, logo description and logo)
+ * and a contract configuration page (parameters, name and release), with the memoized responses
+ * and with the former implementation (ResourceBundle lookups, responses and release file rebuilt on each call,
+ * logo decoded and re-encoded with ImageIO).
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+public class CheckoutPageBenchmark {
+
+    @Param( { "fr_FR", "en" } )
+    private String languageTag;
+
+    private Locale locale;
+    private ConfigurationServiceImpl configurationService;
+    private PaymentFormConfigurationServiceImpl paymentFormService;
+
+    @Setup
+    public void setup(){
+        this.locale = Locale.forLanguageTag( languageTag.replace( '_', '-' ) );
+        this.configurationService = new ConfigurationServiceImpl();
+        this.paymentFormService = new PaymentFormConfigurationServiceImpl();
+    }
+
+    @Benchmark
+    public void checkoutPage( Blackhole blackhole ){
+        blackhole.consume( configurationService.getName( locale ) );
+        blackhole.consume( paymentFormService.getPaymentFormConfiguration( locale ) );
+        blackhole.consume( paymentFormService.getPaymentFormLogo( locale ) );
+        blackhole.consume( paymentFormService.getLogo( null, locale ) );
+    }
+
+    @Benchmark
+    public void checkoutPage_former( Blackhole blackhole ) throws IOException {
+        blackhole.consume( message( "paymentMethod.name" ) );
+        blackhole.consume( PaymentFormConfigurationResponseSpecific.PaymentFormConfigurationResponseSpecificBuilder.aPaymentFormConfigurationResponseSpecific()
+                .withPaymentForm( NoFieldForm.NoFieldFormBuilder.aNoFieldForm()
+                        .withButtonText( message( "form.buttonText" ) )
+                        .withDescription( message( "form.description" ) )
+                        .withDisplayButton( true )
+                        .build() )
+                .build() );
+        blackhole.consume( PaymentFormLogoResponseFile.PaymentFormLogoResponseFileBuilder.aPaymentFormLogoResponseFile()
+                .withHeight( 28 )
+                .withWidth( 60 )
+                .withTitle( message( "formConfiguration.logo.title" ) )
+                .withAlt( message( "formConfiguration.logo.alt" ) )
+                .build() );
+        try( InputStream input = CheckoutPageBenchmark.class.getClassLoader().getResourceAsStream( "ticketpremium-logo.png" ) ){
+            BufferedImage logo = ImageIO.read( input );
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            ImageIO.write( logo, "png", baos );
+            blackhole.consume( PaymentFormLogo.PaymentFormLogoBuilder.aPaymentFormLogo()
+                    .withFile( baos.toByteArray() )
+                    .withContentType( "image/png" )
+                    .build() );
+        }
+    }
+
+    @Benchmark
+    public void configurationPage( Blackhole blackhole ){
+        blackhole.consume( configurationService.getParameters( locale ) );
+        blackhole.consume( configurationService.getName( locale ) );
+        blackhole.consume( configurationService.getReleaseInformation() );
+    }
+
+    @Benchmark
+    public void configurationPage_former( Blackhole blackhole ) throws IOException {
+        List<AbstractParameter> parameters = new ArrayList<>();
+        for( String parameter : new String[]{ "merchantId", "keyValue", "keyId", "productDescription" } ){
+            InputParameter input = new InputParameter();
+            input.setKey( parameter );
+            input.setLabel( message( "contractConfiguration." + parameter + ".label" ) );
+            input.setDescription( message( "contractConfiguration." + parameter + ".description" ) );
+            input.setRequired( true );
+            parameters.add( input );
+        }
+        blackhole.consume( parameters );
+        blackhole.consume( message( "paymentMethod.name" ) );
+
+        Properties props = new Properties();
+        try( InputStream input = CheckoutPageBenchmark.class.getClassLoader().getResourceAsStream( "release.properties" ) ){
+            props.load( input );
+        }
+        String date = props.getProperty( "release.date" );
+        blackhole.consume( ReleaseInformation.ReleaseBuilder.aRelease()
+                .withDate( date.startsWith( "@" ) ? LocalDate.of( 1900, 1, 1 ) : LocalDate.parse( date, DateTimeFormatter.ofPattern( "dd/MM/yyyy" ) ) )
+                .withVersion( props.getProperty( "release.version" ) )
+                .build() );
+    }
+
+    /**
+     * The former message lookup.
+     */
+    private String message( String key ){
+        return ResourceBundle.getBundle( "messages", locale ).getString( key );
+    }
+
+}
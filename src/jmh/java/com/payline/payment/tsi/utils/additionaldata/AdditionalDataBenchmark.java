@@ -0,0 +1,124 @@
+package com.payline.payment.tsi.utils.additionaldata;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import com.payline.payment.tsi.response.AdditionalDataCodec;
+import com.payline.payment.tsi.response.TsiStatusCheckResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Compares the ways to read the transaction additional data, over a corpus of stored data:
+ * the former full binding with a new Gson, the field extraction alone, the cached reader,
+ * and the bulk decoding of the whole corpus.
+ * The corpus mixes legacy JSON data (with various statuses, amounts and country lists) and compact data.
+ * A browsing session reads the same transactions several times: the corpus size is the number of distinct
+ * transactions in the session.
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+public class AdditionalDataBenchmark {
+
+    private static final String[] MESSAGES = { "SUCCESSFUL TRANSACTION FOUND", "NO SUCCESSFUL TRANSACTIONS FOUND WITHIN 6 MONTHS" };
+    private static final String[] COUNTRIES = { "FRA", "BEL", "FRA|BEL", "DEU|FRA|ITA" };
+
+    @Param( { "1000", "100000" } )
+    private int corpusSize;
+
+    /** Share of the corpus stored in the compact form, in percent */
+    @Param( { "0", "50" } )
+    private int compactShare;
+
+    private String[] data;
+    private String[] versions;
+    private AdditionalDataReader reader;
+    private int index;
+
+    @Setup
+    public void setup(){
+        Random random = new Random( 42 );
+        this.data = new String[ corpusSize ];
+        this.versions = new String[ corpusSize ];
+        for( int i = 0; i < corpusSize; i++ ){
+            TsiStatusCheckResponse statusCheck = new TsiStatusCheckResponse( String.format( "%07d", random.nextInt( 10000000 ) ),
+                    String.format( "%016x%016x", random.nextLong(), random.nextLong() ), "OK", "0",
+                    MESSAGES[ random.nextInt( 10 ) == 0 ? 1 : 0 ], random.nextInt( 50000 ) + "," + String.format( "%02d", random.nextInt( 100 ) ),
+                    random.nextInt( 5 ) == 0 ? "t" : "f",
+                    String.format( "2018-%02d-%02d %02d:%02d:%02d", 1 + random.nextInt( 12 ), 1 + random.nextInt( 28 ),
+                            random.nextInt( 24 ), random.nextInt( 60 ), random.nextInt( 60 ) ),
+                    COUNTRIES[ random.nextInt( COUNTRIES.length ) ] );
+            boolean compact = random.nextInt( 100 ) < compactShare;
+            this.data[ i ] = compact ? AdditionalDataCodec.encode( statusCheck ) : statusCheck.getResume();
+            this.versions[ i ] = compact ? AdditionalDataCodec.VERSION_COMPACT : AdditionalDataCodec.VERSION_JSON;
+        }
+        this.reader = new AdditionalDataReader( corpusSize );
+        this.index = 0;
+    }
+
+    @Benchmark
+    public Map<String, String> legacy(){
+        int i = this.next();
+        final Map<String, String> addData = new HashMap<>();
+        try {
+            if( AdditionalDataCodec.isCompact( data[ i ] ) ){
+                addData.put( "authId", AdditionalDataCodec.decode( data[ i ] ).getAuthId() );
+            } else {
+                final TsiStatusCheckResponse statusCheck = new Gson().fromJson( data[ i ], TsiStatusCheckResponse.class );
+                addData.put( "authId", statusCheck.getAuthId() );
+            }
+        } catch( JsonSyntaxException | IllegalArgumentException e ){
+            // ignored
+        }
+        return addData;
+    }
+
+    @Benchmark
+    public AdditionalDataView extractor(){
+        int i = this.next();
+        reader.clear();
+        return reader.view( data[ i ], versions[ i ] );
+    }
+
+    @Benchmark
+    public Map<String, String> cached(){
+        int i = this.next();
+        return reader.read( data[ i ], versions[ i ] );
+    }
+
+    /**
+     * Decodes the whole corpus as an export would (time per corpus, not per data).
+     */
+    @Benchmark
+    public long bulk_sequential(){
+        return reader.readAll( IntStream.range( 0, corpusSize ).boxed(), i -> data[ i ], i -> versions[ i ] )
+                .filter( AdditionalDataView::isValid )
+                .count();
+    }
+
+    @Benchmark
+    public long bulk_parallel(){
+        return reader.readAll( IntStream.range( 0, corpusSize ).boxed().parallel(), i -> data[ i ], i -> versions[ i ] )
+                .filter( AdditionalDataView::isValid )
+                .count();
+    }
+
+    private int next(){
+        int i = index;
+        index = i + 1 == corpusSize ? 0 : i + 1;
+        return i;
+    }
+
+}
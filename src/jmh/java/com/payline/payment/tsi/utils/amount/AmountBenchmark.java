@@ -0,0 +1,64 @@
+package com.payline.payment.tsi.utils.amount;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.math.BigInteger;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the amount formatting of the Go requests: the former double division and String.format,
+ * and the exact codec. Run with the gc profiler to compare the allocation rates.
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+public class AmountBenchmark {
+
+    @Param( { "1000", "1050", "123456789012" } )
+    private long minorUnits;
+
+    private BigInteger amount;
+    private char[] buffer;
+
+    @Setup
+    public void setup(){
+        this.amount = BigInteger.valueOf( minorUnits );
+        this.buffer = new char[ 32 ];
+    }
+
+    @Benchmark
+    public String legacy(){
+        double value = amount.doubleValue() / 100;
+        if( value == (long) value ){
+            return String.format( "%d", (long) value );
+        } else {
+            return String.format( "%s", value );
+        }
+    }
+
+    @Benchmark
+    public String codec(){
+        return AmountCodec.format( amount, AmountCodec.DEFAULT_EXPONENT );
+    }
+
+    /**
+     * Formatting into a caller's buffer, without allocation.
+     */
+    @Benchmark
+    public int codec_buffer(){
+        return AmountCodec.format( minorUnits, AmountCodec.DEFAULT_EXPONENT, buffer );
+    }
+
+    @Benchmark
+    public long parse(){
+        return AmountCodec.parse( "1234567,89", AmountCodec.DEFAULT_EXPONENT );
+    }
+
+}
@@ -0,0 +1,106 @@
+package com.payline.payment.tsi.utils.timer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.Random;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compares the scheduling of many timers on the hashed wheel and on the JDK scheduler (a heap):
+ * insertion of all the timers, then their cancellation, or their expiration (wheel only, on a simulated clock).
+ * The delays are spread over a day, like the delays between two polls of a pending transaction.
+ * Each invocation handles all the timers: compare the times per invocation.
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.SingleShotTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+public class TimerBenchmark {
+
+    private static final Runnable NOOP = () -> { };
+
+    @Param( { "1000000" } )
+    private int timers;
+
+    private long[] delays;
+    private AtomicLong now;
+    private HashedWheelTimer wheel;
+    private ScheduledThreadPoolExecutor scheduler;
+    private HashedWheelTimer.Timeout[] timeouts;
+    private ScheduledFuture<?>[] futures;
+
+    @Setup( Level.Trial )
+    public void setupDelays(){
+        Random random = new Random( 42 );
+        this.delays = new long[ timers ];
+        for( int i = 0; i < timers; i++ ){
+            delays[ i ] = TimeUnit.MINUTES.toMillis( 1 ) + (long) ( random.nextDouble() * TimeUnit.DAYS.toMillis( 1 ) );
+        }
+        this.timeouts = new HashedWheelTimer.Timeout[ timers ];
+        this.futures = new ScheduledFuture<?>[ timers ];
+    }
+
+    @Setup( Level.Invocation )
+    public void setup(){
+        this.now = new AtomicLong( 0 );
+        this.wheel = new HashedWheelTimer( 1000, 4096, now::get );
+        this.scheduler = new ScheduledThreadPoolExecutor( 1 );
+        scheduler.setRemoveOnCancelPolicy( true );
+    }
+
+    @TearDown( Level.Invocation )
+    public void tearDown(){
+        scheduler.shutdownNow();
+    }
+
+    @Benchmark
+    public int wheel_scheduleCancel(){
+        for( int i = 0; i < timers; i++ ){
+            timeouts[ i ] = wheel.schedule( NOOP, delays[ i ] );
+        }
+        for( int i = 0; i < timers; i++ ){
+            timeouts[ i ].cancel();
+        }
+        return wheel.size();
+    }
+
+    @Benchmark
+    public int jdk_scheduleCancel(){
+        for( int i = 0; i < timers; i++ ){
+            futures[ i ] = scheduler.schedule( NOOP, delays[ i ], TimeUnit.MILLISECONDS );
+        }
+        for( int i = 0; i < timers; i++ ){
+            futures[ i ].cancel( false );
+        }
+        return scheduler.getQueue().size();
+    }
+
+    /**
+     * Insertion of all the timers, then a day of ticks, one second each.
+     */
+    @Benchmark
+    public int wheel_scheduleExpire(){
+        for( int i = 0; i < timers; i++ ){
+            wheel.schedule( NOOP, delays[ i ] );
+        }
+        int expired = 0;
+        long end = TimeUnit.DAYS.toMillis( 1 ) + TimeUnit.MINUTES.toMillis( 2 );
+        while( now.get() < end ){
+            now.addAndGet( 1000 );
+            expired += wheel.advance();
+        }
+        return expired;
+    }
+
+}
@@ -12,4 +12,11 @@ public class TsiConstants {
     public static final String CONTRACT_PRODUCT_DESCRIPTION = "product_desc";
 
     public static final String REQUEST_CONTEXT_KEY_TID = "TID";
+
+    /** TSI status of a successful Go request: the contract is valid */
+    public static final int GO_STATUS_OK = 1;
+    /** TSI statuses of the contract parameters rejections: unknown key id, unknown merchant id, wrong MAC */
+    public static final int GO_STATUS_INVALID_KEY_ID = 13;
+    public static final int GO_STATUS_INVALID_MERCHANT_ID = 14;
+    public static final int GO_STATUS_INVALID_KEY_VALUE = 15;
 }
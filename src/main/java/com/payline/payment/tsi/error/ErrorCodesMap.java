@@ -1,65 +1,201 @@
 package com.payline.payment.tsi.error;
 
 import com.payline.pmapi.bean.common.FailureCause;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Properties;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * A mapping class between TSI error code (integers, described in their API documentation)
  * and the Payline failure causes.
+ *
+ * The mapping is read once from the resource {@value #RESOURCE}, which must be packaged with the plugin, then from the file given by the system property
+ * {@value #OVERRIDE_PROPERTY}, if any, whose entries take precedence. It is held in an immutable table indexed
+ * by the code; the few codes out of the table range are kept in a small map.
+ * The number of lookups of each code is counted, for diagnostics.
  */
 public class ErrorCodesMap {
 
-    private static Map<Integer, FailureCause> map;
+    static final String RESOURCE = "error-codes.properties";
+    static final String OVERRIDE_PROPERTY = "tsi.errorCodes.override";
 
-    /* This class has only static methods: no need to instantiate it */
-    private ErrorCodesMap(){
+    /** Codes from 0 to TABLE_SIZE - 1 are held in the table */
+    private static final int TABLE_SIZE = 512;
+    /** Most codes out of the table in a range */
+    private static final int MAX_SPARSE_RANGE = 1000;
+    /** Distinct codes out of the table whose lookups are counted separately */
+    private static final int MAX_SPARSE_COUNTERS = 256;
+    /** Key of the lookups of the other codes, in {@link #getHitCounts()} */
+    public static final int OTHER_CODES = Integer.MIN_VALUE;
+
+    private static final Logger logger = LogManager.getLogger( ErrorCodesMap.class );
+
+    private static final ErrorCodesMap instance = load();
+
+    private final FailureCause[] table;
+    private final Map<Integer, FailureCause> sparse;
+    private final AtomicLongArray tableHits;
+    private final ConcurrentMap<Integer, LongAdder> sparseHits = new ConcurrentHashMap<>();
+    private final LongAdder otherHits = new LongAdder();
+
+    ErrorCodesMap( Properties... mappings ){
+        FailureCause[] codes = new FailureCause[ TABLE_SIZE ];
+        Map<Integer, FailureCause> others = new HashMap<>();
+        for( Properties mapping : mappings ){
+            // In a mapping, a single code takes precedence over the range which contains it
+            for( boolean ranges : new boolean[]{ true, false } ){
+                for( String key : mapping.stringPropertyNames() ){
+                    String code = key.trim();
+                    if( ( code.indexOf( '-', 1 ) >= 0 ) == ranges ){
+                        put( codes, others, code, mapping.getProperty( key ).trim() );
+                    }
+                }
+            }
+        }
+        this.table = codes;
+        this.sparse = Collections.unmodifiableMap( others );
+        this.tableHits = new AtomicLongArray( TABLE_SIZE );
+    }
+
+    /**
+     * Get the Payline failure cause corresponding to the given TSI error code.
+     *
+     * @param tsiErrorCode The TSI error code
+     * @return The Payline failure cause
+     */
+    public static FailureCause getFailureCause( int tsiErrorCode ){
+        return instance.lookup( tsiErrorCode );
     }
 
     /**
-     * Initializes the static map.
+     * @return the number of lookups of each code since the plugin was loaded, ordered by code.
+     * The lookups of the codes which are not counted separately are under {@link #OTHER_CODES}.
      */
-    private static void initMap(){
-        map = new HashMap<>();
-        map.put( 44, FailureCause.INVALID_DATA );
-        for( int i = 2; i <= 16; i++ ){
-            map.put( i, FailureCause.INVALID_DATA );
+    public static SortedMap<Integer, Long> getHitCounts(){
+        return instance.hitCounts();
+    }
+
+    FailureCause lookup( int tsiErrorCode ){
+        FailureCause failureCause;
+        if( tsiErrorCode >= 0 && tsiErrorCode < TABLE_SIZE ){
+            tableHits.incrementAndGet( tsiErrorCode );
+            failureCause = table[ tsiErrorCode ];
+        } else {
+            this.countSparse( tsiErrorCode );
+            failureCause = sparse.get( tsiErrorCode );
         }
-        map.put( 17, FailureCause.REFUSED );
-        map.put( 101, FailureCause.PAYMENT_PARTNER_ERROR );
-        map.put( 43, FailureCause.PAYMENT_PARTNER_ERROR );
-        map.put( 111, FailureCause.INVALID_DATA );
-        map.put( 112, FailureCause.INVALID_DATA );
-        for( int i = 200; i <= 209; i++ ){
-            map.put( i, FailureCause.PAYMENT_PARTNER_ERROR );
+        return failureCause == null ? FailureCause.PARTNER_UNKNOWN_ERROR : failureCause;
+    }
+
+    SortedMap<Integer, Long> hitCounts(){
+        SortedMap<Integer, Long> counts = new TreeMap<>();
+        for( int code = 0; code < TABLE_SIZE; code++ ){
+            long hits = tableHits.get( code );
+            if( hits > 0 ){
+                counts.put( code, hits );
+            }
         }
-        for( int i = 300; i <= 304; i++ ){
-            map.put( i, FailureCause.REFUSED );
+        for( Map.Entry<Integer, LongAdder> entry : sparseHits.entrySet() ){
+            counts.put( entry.getKey(), entry.getValue().sum() );
         }
-        for( int i = 308; i <= 313; i++ ){
-            map.put( i, FailureCause.REFUSED );
+        long others = otherHits.sum();
+        if( others > 0 ){
+            counts.put( OTHER_CODES, others );
         }
-        map.put( 314, FailureCause.CANCEL );
-        map.put( 315, FailureCause.REFUSED );
-        map.put( 316, FailureCause.REFUSED );
+        return counts;
+    }
+
+    private void countSparse( int tsiErrorCode ){
+        LongAdder hits = sparseHits.get( tsiErrorCode );
+        if( hits == null ){
+            if( sparseHits.size() >= MAX_SPARSE_COUNTERS ){
+                otherHits.increment();
+                return;
+            }
+            hits = sparseHits.computeIfAbsent( tsiErrorCode, code -> new LongAdder() );
+        }
+        hits.increment();
     }
 
     /**
-     * Get the Payline failure cause corresponding to the given TSI error code.
-     *
-     * @param tsiErrorCode The TSI error code
-     * @return The Payline failure cause
+     * Adds an entry of a mapping file: "code = CAUSE" or "from-to = CAUSE". Invalid entries are logged and ignored.
      */
-    public static FailureCause getFailureCause( int tsiErrorCode ){
-        if( map == null ){
-            initMap();
+    private static void put( FailureCause[] table, Map<Integer, FailureCause> sparse, String key, String value ){
+        FailureCause failureCause;
+        int from;
+        int to;
+        try {
+            failureCause = FailureCause.valueOf( value );
+            int dash = key.indexOf( '-', 1 );
+            from = Integer.parseInt( dash < 0 ? key : key.substring( 0, dash ).trim() );
+            to = dash < 0 ? from : Integer.parseInt( key.substring( dash + 1 ).trim() );
+        } catch( IllegalArgumentException e ){
+            logger.error( "Invalid error code mapping, ignored: {} = {}", key, value );
+            return;
+        }
+        long inTable = Math.max( 0L, (long) Math.min( to, TABLE_SIZE - 1 ) - Math.max( from, 0 ) + 1 );
+        if( to < from || (long) to - from + 1 - inTable > MAX_SPARSE_RANGE ){
+            logger.error( "Invalid error code range, ignored: {} = {}", key, value );
+            return;
+        }
+        for( long code = from; code <= to; code++ ){
+            if( code >= 0 && code < TABLE_SIZE ){
+                table[ (int) code ] = failureCause;
+            } else {
+                sparse.put( (int) code, failureCause );
+            }
         }
-        FailureCause failureCause = map.get( tsiErrorCode );
-        if( failureCause == null ){
-            failureCause = FailureCause.PARTNER_UNKNOWN_ERROR;
+    }
+
+    /**
+     * Reads the mapping resource and the override file.
+     */
+    private static ErrorCodesMap load(){
+        Properties mapping = readResource( RESOURCE );
+
+        Properties override = new Properties();
+        String overridePath = System.getProperty( OVERRIDE_PROPERTY );
+        if( overridePath != null && !overridePath.isEmpty() ){
+            try( InputStream input = Files.newInputStream( Paths.get( overridePath ) ) ){
+                override.load( input );
+                logger.info( "Error codes mapping overridden by {}", overridePath );
+            } catch( IOException e ){
+                logger.error( "An error occurred reading the error codes mapping override: " + overridePath, e );
+            }
+        }
+        return new ErrorCodesMap( mapping, override );
+    }
+
+    /**
+     * Reads a mapping resource. Without it, every error would be reported as unknown: the plugin is not usable.
+     *
+     * @throws IllegalStateException if the resource is missing or can't be read
+     */
+    static Properties readResource( String name ){
+        Properties mapping = new Properties();
+        try( InputStream input = ErrorCodesMap.class.getClassLoader().getResourceAsStream( name ) ){
+            if( input == null ){
+                throw new IllegalStateException( "The error codes mapping is missing: " + name );
+            }
+            mapping.load( input );
+        } catch( IOException e ){
+            throw new IllegalStateException( "An error occurred reading the error codes mapping: " + name, e );
         }
-        return failureCause;
+        return mapping;
     }
 
 }
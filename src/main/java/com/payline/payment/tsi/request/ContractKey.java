@@ -0,0 +1,37 @@
+package com.payline.payment.tsi.request;
+
+import com.payline.payment.tsi.security.Hmac;
+import com.payline.payment.tsi.security.MacPool;
+
+/**
+ * The parts of a contract needed to seal its checkstatus requests: the key id, and the fingerprint of the secret key
+ * in the {@link MacPool}. Unlike the {@link ContractProfile}, it can be kept as long as a transaction is followed:
+ * it holds no key material. It only seals while the key is pooled, that is while the contract is in use:
+ * the key comes back to the pool when the contract profile is compiled again from its configuration.
+ */
+public final class ContractKey {
+
+    private final int keyId;
+    private final MacPool.KeyReference keyReference;
+
+    ContractKey( int keyId, MacPool.KeyReference keyReference ){
+        this.keyId = keyId;
+        this.keyReference = keyReference;
+    }
+
+    /**
+     * @return true if the key can seal a request
+     */
+    public boolean isAvailable(){
+        return keyReference.isAvailable();
+    }
+
+    int getKeyId(){
+        return keyId;
+    }
+
+    Hmac getHmac(){
+        return new Hmac( keyReference );
+    }
+
+}
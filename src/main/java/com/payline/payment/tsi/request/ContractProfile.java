@@ -0,0 +1,433 @@
+package com.payline.payment.tsi.request;
+
+import com.payline.payment.tsi.TsiConstants;
+import com.payline.payment.tsi.exception.InvalidRequestException;
+import com.payline.payment.tsi.security.Hmac;
+import com.payline.payment.tsi.security.HmacAlgorithm;
+import com.payline.payment.tsi.security.MacPool;
+import com.payline.payment.tsi.utils.Digests;
+import com.payline.pmapi.bean.payment.ContractConfiguration;
+import com.payline.pmapi.bean.payment.ContractProperty;
+
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The contract properties used to build the TSI requests, compiled once: the fields are validated,
+ * the merchant id and the key id are parsed, and the sealing key is ready to use.
+ * The Go request templates of the contract, one per environment, are kept along, as well as the last rejection
+ * of the contract by TSI: a rejected contract fails locally for a short time, instead of sending the requests
+ * bound to be rejected again. Since any change of the properties leads to another profile, it clears the rejection.
+ *
+ * The profiles are kept in a bounded LRU cache for {@value #PROFILE_TTL_MINUTES} minutes at most, indexed by a 64-bits
+ * FNV-1a fingerprint of the contract properties. The expired profiles are purged on access, and lose their sealing key. The properties of a cached profile are compared to the requested ones,
+ * so that a fingerprint collision only leads to compiling the profile again.
+ * The secret key is never stored as a string: it is compared through a salted SHA-256 hash, with a random salt drawn
+ * when the plugin is loaded, and the sealing key is referenced in the {@link MacPool}. When the key has left the pool,
+ * the profile is compiled again from the contract configuration of the caller.
+ */
+public final class ContractProfile {
+
+    static final int MAX_PROFILES = 256;
+    static final long PROFILE_TTL_MINUTES = 10;
+    private static final long PROFILE_TTL_MILLIS = TimeUnit.MINUTES.toMillis( PROFILE_TTL_MINUTES );
+    private static final int MAX_TEMPLATES_PER_PROFILE = 16;
+    private static final long REJECTION_TTL_MILLIS = TimeUnit.MINUTES.toMillis( 2 );
+    private static final Map<Long, ContractProfile> PROFILES = new LinkedHashMap<Long, ContractProfile>( 16, 0.75f, true ){
+        @Override
+        protected boolean removeEldestEntry( Map.Entry<Long, ContractProfile> eldest ){
+            return size() > MAX_PROFILES;
+        }
+    };
+    /** Time of the next purge of the expired profiles. Guarded by PROFILES. */
+    private static long nextPurgeAt;
+
+    private static final int SALT_LENGTH = 16;
+    private static final byte[] SALT = salt();
+    /** Fingerprint markers of a missing property and of a property without value, out of the char range */
+    private static final int MISSING = 0x10000;
+    private static final int NO_VALUE = 0x10001;
+
+    /** The properties, in this order: merchant id, secret key, key id, product description */
+    private static final String[] KEYS = {
+            TsiConstants.CONTRACT_MERCHANT_ID,
+            TsiConstants.CONTRACT_KEY_VALUE,
+            TsiConstants.CONTRACT_KEY_ID,
+            TsiConstants.CONTRACT_PRODUCT_DESCRIPTION
+    };
+    private static final String[] NAMES = { "merchant id", "secret key", "key id", "product description" };
+    private static final int MERCHANT_ID = 0;
+    private static final int KEY_VALUE = 1;
+    private static final int KEY_ID = 2;
+    private static final int PRODUCT_DESCRIPTION = 3;
+
+    /** Presence and value of the properties, copied since the property objects may change. No value for the secret key */
+    private final boolean[] present;
+    private final String[] values;
+    /** Salted hash of the secret key, or null if it has no value */
+    private final byte[] secretHash;
+    private final long expiresAt;
+    /** The validation error of the Go requests, or null */
+    private final String goRequestError;
+    /** The validation error of the checkstatus requests, or null */
+    private final String statusCheckError;
+    private final Integer merchantId;
+    private final Integer keyId;
+    /** The sealing key in the {@link MacPool}, or null if it has no value */
+    private final MacPool.KeyReference keyReference;
+    /** The sealing key, null if it has no value or if the profile has expired */
+    private volatile Hmac hmac;
+    private final ConcurrentMap<TemplateKey, TsiGoRequestTemplate> templates = new ConcurrentHashMap<>();
+    private volatile Rejection rejection;
+
+    private ContractProfile( ContractProperty[] properties, byte[] secretHash, long now ){
+        this.present = new boolean[ KEYS.length ];
+        this.values = new String[ KEYS.length ];
+        for( int i = 0; i < KEYS.length; i++ ){
+            present[ i ] = properties[ i ] != null;
+            values[ i ] = present[ i ] && i != KEY_VALUE ? properties[ i ].getValue() : null;
+        }
+        this.secretHash = secretHash;
+        this.expiresAt = now + PROFILE_TTL_MILLIS;
+        this.goRequestError = this.missing( MERCHANT_ID, KEY_VALUE, KEY_ID, PRODUCT_DESCRIPTION );
+        this.statusCheckError = this.missing( KEY_VALUE, KEY_ID );
+        this.merchantId = parse( values[ MERCHANT_ID ] );
+        this.keyId = parse( values[ KEY_ID ] );
+        String secretKey = present[ KEY_VALUE ] ? properties[ KEY_VALUE ].getValue() : null;
+        this.keyReference = secretKey != null ? MacPool.getInstance().reference( HmacAlgorithm.MD5, secretKey ) : null;
+        this.hmac = keyReference != null ? new Hmac( keyReference ) : null;
+    }
+
+    /**
+     * Recovers the profile of a contract, or compiles it.
+     *
+     * @param contractConfiguration The contract configuration
+     * @return the profile
+     * @throws InvalidRequestException if the contract configuration or its properties are null
+     */
+    public static ContractProfile of( ContractConfiguration contractConfiguration ) throws InvalidRequestException {
+        return of( contractConfiguration, System.currentTimeMillis() );
+    }
+
+    static ContractProfile of( ContractConfiguration contractConfiguration, long now ) throws InvalidRequestException {
+        if( contractConfiguration == null || contractConfiguration.getContractProperties() == null ){
+            throw new InvalidRequestException( "Contract configuration properties object must not be null" );
+        }
+        Map<String, ContractProperty> contractProperties = contractConfiguration.getContractProperties();
+        ContractProperty[] properties = new ContractProperty[ KEYS.length ];
+        for( int i = 0; i < KEYS.length; i++ ){
+            properties[ i ] = contractProperties.get( KEYS[ i ] );
+        }
+
+        byte[] secretHash = secretHash( properties[ KEY_VALUE ] );
+        Long fingerprint = fingerprint( properties, secretHash );
+        ContractProfile profile;
+        synchronized( PROFILES ){
+            purgeIfDue( now );
+            profile = PROFILES.get( fingerprint );
+        }
+        if( profile == null || now >= profile.expiresAt || !profile.matches( properties, secretHash )
+                || profile.keyReference != null && !profile.keyReference.isAvailable() ){
+            profile = new ContractProfile( properties, secretHash, now );
+            synchronized( PROFILES ){
+                PROFILES.put( fingerprint, profile );
+            }
+        }
+        return profile;
+    }
+
+    /**
+     * Removes the expired profiles, at most once every half TTL, so that the contracts which are no longer used
+     * do not keep their sealing key. Must be called while holding the lock on PROFILES.
+     */
+    private static void purgeIfDue( long now ){
+        if( now < nextPurgeAt ){
+            return;
+        }
+        nextPurgeAt = now + PROFILE_TTL_MILLIS / 2;
+        Iterator<ContractProfile> profiles = PROFILES.values().iterator();
+        while( profiles.hasNext() ){
+            ContractProfile profile = profiles.next();
+            if( now >= profile.expiresAt ){
+                profiles.remove();
+                profile.expire();
+            }
+        }
+    }
+
+    /**
+     * Removes every profile from the cache.
+     */
+    public static void clear(){
+        synchronized( PROFILES ){
+            PROFILES.clear();
+            nextPurgeAt = 0;
+        }
+    }
+
+    static int size(){
+        synchronized( PROFILES ){
+            return PROFILES.size();
+        }
+    }
+
+    /**
+     * Verifies that the contract holds all the properties required by the Go requests.
+     *
+     * @throws InvalidRequestException if a property is missing
+     */
+    public void checkGoRequest() throws InvalidRequestException {
+        if( goRequestError != null ){
+            throw new InvalidRequestException( goRequestError );
+        }
+    }
+
+    /**
+     * Verifies that the contract holds all the properties required by the checkstatus requests.
+     *
+     * @throws InvalidRequestException if a property is missing
+     */
+    public void checkStatusCheck() throws InvalidRequestException {
+        if( statusCheckError != null ){
+            throw new InvalidRequestException( statusCheckError );
+        }
+    }
+
+    /**
+     * @return the key id
+     * @throws InvalidRequestException if the key id is missing or is not an integer
+     */
+    public int getKeyId() throws InvalidRequestException {
+        return require( keyId, KEY_ID );
+    }
+
+    /**
+     * @return the sealing key
+     * @throws InvalidRequestException if the secret key is missing
+     */
+    public Hmac getHmac() throws InvalidRequestException {
+        Hmac current = hmac;
+        if( current == null ){
+            throw new InvalidRequestException( keyReference == null
+                    ? "Missing contract configuration property: " + NAMES[ KEY_VALUE ]
+                    : "The contract profile has expired" );
+        }
+        return current;
+    }
+
+    /**
+     * @return the key id and the fingerprint of the sealing key, to keep instead of the profile when the contract
+     * is needed later on
+     * @throws InvalidRequestException if the key id or the secret key is missing, or if the key id is not an integer
+     */
+    public ContractKey getContractKey() throws InvalidRequestException {
+        this.checkStatusCheck();
+        if( keyReference == null ){
+            throw new InvalidRequestException( "Missing contract configuration property: " + NAMES[ KEY_VALUE ] );
+        }
+        return new ContractKey( this.getKeyId(), keyReference );
+    }
+
+    /**
+     * Records the rejection of the contract by TSI.
+     *
+     * @param status The TSI status of the rejection
+     * @param message The TSI message
+     */
+    public void reject( int status, String message ){
+        this.reject( status, message, System.currentTimeMillis() );
+    }
+
+    void reject( int status, String message, long now ){
+        this.rejection = new Rejection( status, message, now + REJECTION_TTL_MILLIS );
+    }
+
+    /**
+     * @return the last rejection of the contract by TSI, or null if there is none or it has expired
+     */
+    public Rejection getRejection(){
+        return this.getRejection( System.currentTimeMillis() );
+    }
+
+    Rejection getRejection( long now ){
+        Rejection last = this.rejection;
+        return last == null || now >= last.expiresAt ? null : last;
+    }
+
+    /**
+     * Recovers the template of the Go requests of this contract, in an environment, or compiles it.
+     *
+     * @throws InvalidRequestException if a property is missing, or if the merchant id or the key id is not an integer
+     */
+    public TsiGoRequestTemplate goRequestTemplate( String urlOk, String urlNok, String urlS2s, String debitAll, String th )
+            throws InvalidRequestException {
+        this.checkGoRequest();
+        TemplateKey key = new TemplateKey( urlOk, urlNok, urlS2s, debitAll, th );
+        TsiGoRequestTemplate template = templates.get( key );
+        if( template == null ){
+            template = new TsiGoRequestTemplate( require( merchantId, MERCHANT_ID ), require( keyId, KEY_ID ),
+                    values[ PRODUCT_DESCRIPTION ], urlOk, urlNok, urlS2s, debitAll, th, this.getHmac() );
+            // A contract is used in very few environments: no need for a finer eviction
+            if( templates.size() >= MAX_TEMPLATES_PER_PROFILE ){
+                templates.clear();
+            }
+            TsiGoRequestTemplate existing = templates.putIfAbsent( key, template );
+            if( existing != null ){
+                template = existing;
+            }
+        }
+        return template;
+    }
+
+    /**
+     * Drops the sealing key of the profile, and its templates which hold it.
+     */
+    private void expire(){
+        hmac = null;
+        templates.clear();
+    }
+
+    private boolean matches( ContractProperty[] properties, byte[] secretHash ){
+        for( int i = 0; i < KEYS.length; i++ ){
+            ContractProperty property = properties[ i ];
+            if( present[ i ] != ( property != null ) ){
+                return false;
+            }
+            if( i == KEY_VALUE ){
+                if( !Arrays.equals( this.secretHash, secretHash ) ){
+                    return false;
+                }
+            } else if( property != null && !Objects.equals( values[ i ], property.getValue() ) ){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int require( Integer value, int field ) throws InvalidRequestException {
+        if( value == null ){
+            String reason = present[ field ] ? "Invalid" : "Missing";
+            throw new InvalidRequestException( reason + " contract configuration property: " + NAMES[ field ] );
+        }
+        return value;
+    }
+
+    /**
+     * @return the error message of the first missing property among the given ones, or null
+     */
+    private String missing( int... fields ){
+        for( int field : fields ){
+            if( !present[ field ] ){
+                return "Missing contract configuration property: " + NAMES[ field ];
+            }
+        }
+        return null;
+    }
+
+    private static Integer parse( String value ){
+        if( value == null ){
+            return null;
+        }
+        try {
+            return Integer.valueOf( value );
+        } catch( NumberFormatException e ){
+            return null;
+        }
+    }
+
+    /**
+     * @return the salted hash of the secret key, or null if it has no value
+     */
+    private static byte[] secretHash( ContractProperty secretKey ){
+        if( secretKey == null || secretKey.getValue() == null ){
+            return null;
+        }
+        return Digests.sha256( SALT, secretKey.getValue() );
+    }
+
+    private static byte[] salt(){
+        byte[] salt = new byte[ SALT_LENGTH ];
+        new SecureRandom().nextBytes( salt );
+        return salt;
+    }
+
+    /**
+     * 64-bits FNV-1a hash of the properties, each one preceded by a marker of its presence.
+     * The secret key is represented by its salted hash.
+     */
+    private static long fingerprint( ContractProperty[] properties, byte[] secretHash ){
+        long hash = Digests.FNV_OFFSET_BASIS;
+        for( int p = 0; p < properties.length; p++ ){
+            ContractProperty property = properties[ p ];
+            if( property == null ){
+                hash = Digests.fnv1a( hash, MISSING );
+            } else if( property.getValue() == null ){
+                hash = Digests.fnv1a( hash, NO_VALUE );
+            } else if( p == KEY_VALUE ){
+                hash = Digests.fnv1a( hash, secretHash );
+            } else {
+                String value = property.getValue();
+                hash = Digests.fnv1a( hash, value );
+                // The length delimits the value
+                hash = Digests.fnv1a( hash, value.length() );
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * A rejection of the contract by TSI.
+     */
+    public static final class Rejection {
+
+        private final int status;
+        private final String message;
+        private final long expiresAt;
+
+        private Rejection( int status, String message, long expiresAt ){
+            this.status = status;
+            this.message = message;
+            this.expiresAt = expiresAt;
+        }
+
+        public int getStatus(){
+            return status;
+        }
+
+        public String getMessage(){
+            return message;
+        }
+    }
+
+    /**
+     * The environment fields of a Go request template.
+     */
+    private static class TemplateKey {
+
+        private final String[] values;
+        private final int hashCode;
+
+        private TemplateKey( String... values ){
+            this.values = values;
+            this.hashCode = Arrays.hashCode( values );
+        }
+
+        @Override
+        public boolean equals( Object o ){
+            return o instanceof TemplateKey && Arrays.equals( values, ( (TemplateKey) o ).values );
+        }
+
+        @Override
+        public int hashCode(){
+            return hashCode;
+        }
+    }
+
+}
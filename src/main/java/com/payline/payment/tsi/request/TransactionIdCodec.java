@@ -0,0 +1,58 @@
+package com.payline.payment.tsi.request;
+
+import com.payline.payment.tsi.security.Hex;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Converts Payline transaction ids into TSI transaction ids (tid): the MD5 hash of the UTF-8 encoded id,
+ * as a 32-characters-long lowercase hexadecimal string.
+ *
+ * Each thread keeps its own MessageDigest and remembers its last conversion, so that an id hashed
+ * several times while processing the same request is only hashed once.
+ */
+public class TransactionIdCodec {
+
+    private static final ThreadLocal<State> STATE = ThreadLocal.withInitial( State::new );
+
+    /* This class has only static methods: no need to instantiate it */
+    private TransactionIdCodec(){
+    }
+
+    /**
+     * @param transactionId The Payline transaction id
+     * @return The corresponding 32-characters-long TSI transaction id
+     */
+    public static String encode( String transactionId ){
+        State state = STATE.get();
+        if( transactionId.equals( state.lastTransactionId ) ){
+            return state.lastTid;
+        }
+
+        byte[] hash = state.digest.digest( transactionId.getBytes( StandardCharsets.UTF_8 ) );
+        String tid = new String( state.chars, 0, Hex.encode( hash, hash.length, state.chars ) );
+
+        state.lastTransactionId = transactionId;
+        state.lastTid = tid;
+        return tid;
+    }
+
+    private static class State {
+
+        private final MessageDigest digest;
+        private final char[] chars = new char[ 32 ];
+        private String lastTransactionId;
+        private String lastTid;
+
+        private State(){
+            try {
+                this.digest = MessageDigest.getInstance( "MD5" );
+            } catch( NoSuchAlgorithmException e ){
+                // MD5 is mandatory for every Java platform implementation
+                throw new IllegalStateException( e );
+            }
+        }
+    }
+}
@@ -1,13 +1,19 @@
 package com.payline.payment.tsi.request;
 
+import com.google.gson.TypeAdapter;
 import com.google.gson.annotations.SerializedName;
-import com.payline.payment.tsi.TsiConstants;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
 import com.payline.payment.tsi.exception.InvalidRequestException;
-import com.payline.pmapi.bean.payment.ContractProperty;
+import com.payline.payment.tsi.security.MacWriter;
+import com.payline.payment.tsi.utils.amount.AmountCodec;
+import com.payline.payment.tsi.utils.json.JsonFields;
 import com.payline.pmapi.bean.payment.request.PaymentRequest;
 
+import java.io.IOException;
 import java.math.BigInteger;
-import java.security.NoSuchAlgorithmException;
+import java.util.Currency;
 import java.util.Map;
 
 public class TsiGoRequest extends TsiSealedJsonRequest {
@@ -48,6 +54,9 @@ public class TsiGoRequest extends TsiSealedJsonRequest {
     @SerializedName( "custom" )
     private Map<String, Object> s2sRequestParameters;
 
+    /** The template which created this request, if any: it builds the body faster */
+    private transient TsiGoRequestTemplate template;
+
     public TsiGoRequest( int merchantId, String transactionId, String amount, String currency, int keyId,
                          String productDescription, String urlOk, String urlNok, String urlS2s, String debitAll,
                          String th, Map<String, Object> s2sRequestParameters ){
@@ -65,6 +74,30 @@ public class TsiGoRequest extends TsiSealedJsonRequest {
         this.s2sRequestParameters = s2sRequestParameters;
     }
 
+    String getTransactionId(){
+        return transactionId;
+    }
+
+    String getAmount(){
+        return amount;
+    }
+
+    String getCurrency(){
+        return currency;
+    }
+
+    void setTemplate( TsiGoRequestTemplate template ){
+        this.template = template;
+    }
+
+    @Override
+    public String buildBody(){
+        if( template != null ){
+            return template.buildBody( this );
+        }
+        return super.buildBody();
+    }
+
     /**
      * Constructs the string message that will be used to calculate the request's HMAC seal.
      *
@@ -85,38 +118,142 @@ public class TsiGoRequest extends TsiSealedJsonRequest {
                 + this.th ;
     }
 
+    @Override
+    protected void writeSealMessage( MacWriter writer ){
+        writer.append( this.merchantId ).append( '|' )
+                .append( this.transactionId ).append( '|' )
+                .append( this.amount ).append( '|' )
+                .append( this.currency ).append( '|' )
+                .append( this.keyId ).append( '|' )
+                .append( this.productDescription ).append( '|' )
+                .append( this.urlOk ).append( '|' )
+                .append( this.urlNok ).append( '|' )
+                .append( this.urlS2s ).append( '|' )
+                .append( this.debitAll ).append( '|' )
+                .append( this.th );
+    }
+
+    /**
+     * Streaming JSON codec, with the same field names and order as the reflective Gson (de)serialization.
+     * Unknown fields are skipped.
+     */
+    public static class JsonAdapter extends TypeAdapter<TsiGoRequest> {
+
+        private final TypeAdapter<Map<String, Object>> customAdapter;
+
+        public JsonAdapter( TypeAdapter<Map<String, Object>> customAdapter ){
+            this.customAdapter = customAdapter;
+        }
+
+        @Override
+        public void write( JsonWriter out, TsiGoRequest request ) throws IOException {
+            if( request == null ){
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            JsonFields.write( out, "mid", request.merchantId );
+            JsonFields.write( out, "tid", request.transactionId );
+            JsonFields.write( out, "amount", request.amount );
+            JsonFields.write( out, "currency", request.currency );
+            JsonFields.write( out, "key_id", request.keyId );
+            JsonFields.write( out, "product_desc", request.productDescription );
+            JsonFields.write( out, "url_ok", request.urlOk );
+            JsonFields.write( out, "url_nok", request.urlNok );
+            JsonFields.write( out, "url_s2s", request.urlS2s );
+            JsonFields.write( out, "debit_all", request.debitAll );
+            JsonFields.write( out, "th", request.th );
+            if( request.s2sRequestParameters != null ){
+                out.name( "custom" );
+                customAdapter.write( out, request.s2sRequestParameters );
+            }
+            JsonFields.write( out, "mac", request.getMac() );
+            out.endObject();
+        }
+
+        @Override
+        public TsiGoRequest read( JsonReader in ) throws IOException {
+            if( in.peek() == JsonToken.NULL ){
+                in.nextNull();
+                return null;
+            }
+            TsiGoRequest request = new TsiGoRequest( 0, null, null, null, 0, null, null, null, null, null, null, null );
+            in.beginObject();
+            while( in.hasNext() ){
+                switch( in.nextName() ){
+                    case "mid":
+                        request.merchantId = JsonFields.readInt( in, 0 );
+                        break;
+                    case "tid":
+                        request.transactionId = JsonFields.readString( in );
+                        break;
+                    case "amount":
+                        request.amount = JsonFields.readString( in );
+                        break;
+                    case "currency":
+                        request.currency = JsonFields.readString( in );
+                        break;
+                    case "key_id":
+                        request.keyId = JsonFields.readInt( in, 0 );
+                        break;
+                    case "product_desc":
+                        request.productDescription = JsonFields.readString( in );
+                        break;
+                    case "url_ok":
+                        request.urlOk = JsonFields.readString( in );
+                        break;
+                    case "url_nok":
+                        request.urlNok = JsonFields.readString( in );
+                        break;
+                    case "url_s2s":
+                        request.urlS2s = JsonFields.readString( in );
+                        break;
+                    case "debit_all":
+                        request.debitAll = JsonFields.readString( in );
+                        break;
+                    case "th":
+                        request.th = JsonFields.readString( in );
+                        break;
+                    case "custom":
+                        request.s2sRequestParameters = customAdapter.read( in );
+                        break;
+                    case "mac":
+                        request.setMac( JsonFields.readString( in ) );
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return request;
+        }
+    }
+
     /**
      * Implements the builder pattern to instantiate {@link TsiGoRequest} from a {@link PaymentRequest} object.
      */
     public static class Builder extends TsiSealedJsonRequest.Builder {
 
-        public TsiGoRequest fromPaymentRequest( PaymentRequest paymentRequest )
-                throws InvalidRequestException, NoSuchAlgorithmException {
+        public TsiGoRequest fromPaymentRequest( PaymentRequest paymentRequest ) throws InvalidRequestException {
 
             // Check the input request for NPEs and mandatory fields
-            this.checkInputRequest( paymentRequest );
+            ContractProfile profile = this.checkAndCompile( paymentRequest );
 
-            // Instantiate the TsiGoRequest from input request
-            TsiGoRequest request = new TsiGoRequest(
-                    Integer.parseInt( paymentRequest.getContractConfiguration().getContractProperties().get( TsiConstants.CONTRACT_MERCHANT_ID ).getValue() ),
-                    this.formatTransactionId( paymentRequest.getTransactionId() ),
-                    this.formatAmount( paymentRequest.getAmount().getAmountInSmallestUnit() ),
-                    paymentRequest.getAmount().getCurrency().getCurrencyCode(),
-                    Integer.parseInt( paymentRequest.getContractConfiguration().getContractProperties().get( TsiConstants.CONTRACT_KEY_ID ).getValue() ),
-                    paymentRequest.getContractConfiguration().getContractProperties().get( TsiConstants.CONTRACT_PRODUCT_DESCRIPTION ).getValue(),
+            // Recover the constant part of the request, for this contract and environment
+            TsiGoRequestTemplate template = profile.goRequestTemplate(
                     paymentRequest.getEnvironment().getRedirectionReturnURL(),
                     paymentRequest.getEnvironment().getRedirectionCancelURL(),
                     paymentRequest.getEnvironment().getNotificationURL(),
                     "N",
-                    Boolean.FALSE.equals( paymentRequest.getEnvironment().isSandbox() ) ? "N" : "Y",
-                    null
+                    Boolean.FALSE.equals( paymentRequest.getEnvironment().isSandbox() ) ? "N" : "Y"
             );
 
-            // Seal the request with HMAC algorithm
-            String secretKey = paymentRequest.getContractConfiguration().getContractProperties().get( TsiConstants.CONTRACT_KEY_VALUE ).getValue();
-            request.seal( secretKey );
-
-            return request;
+            // Instantiate and seal the TsiGoRequest from input request
+            return template.newRequest(
+                    this.formatTransactionId( paymentRequest.getTransactionId() ),
+                    this.formatAmount( paymentRequest.getAmount().getAmountInSmallestUnit(), paymentRequest.getAmount().getCurrency() ),
+                    paymentRequest.getAmount().getCurrency().getCurrencyCode()
+            );
         }
 
         /**
@@ -126,27 +263,20 @@ public class TsiGoRequest extends TsiSealedJsonRequest {
          * @throws InvalidRequestException If recovering the field value would result in a NPE or if the value is null or empty.
          */
         protected void checkInputRequest( PaymentRequest paymentRequest ) throws InvalidRequestException {
+            this.checkAndCompile( paymentRequest );
+        }
+
+        /**
+         * Verifies that the input request contains all the required fields, and recovers the profile of its contract.
+         * The contract properties are validated once, when the profile is compiled.
+         */
+        private ContractProfile checkAndCompile( PaymentRequest paymentRequest ) throws InvalidRequestException {
             if( paymentRequest == null ){
                 throw new InvalidRequestException( "Request must not be null" );
             }
 
-            if( paymentRequest.getContractConfiguration() == null
-                    || paymentRequest.getContractConfiguration().getContractProperties() == null  ){
-                throw new InvalidRequestException( "Contract configuration properties object must not be null" );
-            }
-            Map<String, ContractProperty> contractProperties = paymentRequest.getContractConfiguration().getContractProperties();
-            if( contractProperties.get( TsiConstants.CONTRACT_MERCHANT_ID ) == null ){
-                throw new InvalidRequestException( "Missing contract configuration property: merchant id" );
-            }
-            if( contractProperties.get( TsiConstants.CONTRACT_KEY_VALUE ) == null ){
-                throw new InvalidRequestException( "Missing contract configuration property: secret key" );
-            }
-            if( contractProperties.get( TsiConstants.CONTRACT_KEY_ID ) == null ){
-                throw new InvalidRequestException( "Missing contract configuration property: key id" );
-            }
-            if( contractProperties.get( TsiConstants.CONTRACT_PRODUCT_DESCRIPTION ) == null ){
-                throw new InvalidRequestException( "Missing contract configuration property: product description" );
-            }
+            ContractProfile profile = ContractProfile.of( paymentRequest.getContractConfiguration() );
+            profile.checkGoRequest();
 
             if( paymentRequest.getTransactionId() == null || paymentRequest.getTransactionId().isEmpty() ){
                 throw new InvalidRequestException( "Transaction id is required" );
@@ -175,21 +305,28 @@ public class TsiGoRequest extends TsiSealedJsonRequest {
                     || paymentRequest.getEnvironment().getNotificationURL().isEmpty() ){
                 throw new InvalidRequestException( "Notification URL is required" );
             }
+            return profile;
         }
 
         /**
-         * Formats the input amount according to TSI Go request specifications.
+         * Formats the input amount according to TSI Go request specifications, for a currency with 2 decimals.
          *
          * @param paymentRequestAmount The input amount
          * @return A string-formatted float amount
          */
         protected String formatAmount( BigInteger paymentRequestAmount ){
-            double amount = paymentRequestAmount.doubleValue() / 100;
-            if( amount == (long)amount ){
-                return String.format( "%d", (long)amount );
-            } else {
-                return String.format( "%s", amount );
-            }
+            return AmountCodec.format( paymentRequestAmount, AmountCodec.DEFAULT_EXPONENT );
+        }
+
+        /**
+         * Formats the input amount according to TSI Go request specifications.
+         *
+         * @param paymentRequestAmount The input amount, in the currency's minor units
+         * @param currency The currency, whose ISO 4217 exponent gives the number of decimals
+         * @return A string-formatted float amount
+         */
+        protected String formatAmount( BigInteger paymentRequestAmount, Currency currency ){
+            return AmountCodec.format( paymentRequestAmount, AmountCodec.exponent( currency ) );
         }
     }
 }
@@ -0,0 +1,133 @@
+package com.payline.payment.tsi.request;
+
+import com.google.gson.stream.JsonWriter;
+import com.payline.payment.tsi.security.Hmac;
+import com.payline.payment.tsi.utils.json.JsonCodecRegistry;
+import com.payline.payment.tsi.utils.json.JsonFields;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The constant part of the Go requests of a contract, in an environment: merchant id, key id, product description,
+ * URLs, debit_all and th. The JSON fragments and the seal message segments of these fields are encoded once,
+ * then only the transaction id, the amount and the currency are spliced in for each payment.
+ * The body and the seal are identical to the ones of a request built field by field.
+ *
+ * The templates are compiled on first use, and kept along their {@link ContractProfile}.
+ */
+public class TsiGoRequestTemplate {
+
+    private final int merchantId;
+    private final int keyId;
+    private final String productDescription;
+    private final String urlOk;
+    private final String urlNok;
+    private final String urlS2s;
+    private final String debitAll;
+    private final String th;
+    private final Hmac hmac;
+
+    /** Seal message, before the transaction id: "mid|" */
+    private final byte[] sealPrefix;
+    /** Seal message, after the currency: "|key_id|product_desc|url_ok|url_nok|url_s2s|debit_all|th" */
+    private final byte[] sealSuffix;
+    /** Body, before the transaction id field */
+    private final String bodyPrefix;
+    /** Body, after the currency field, before the seal */
+    private final String bodySuffix;
+
+    TsiGoRequestTemplate( int merchantId, int keyId, String productDescription, String urlOk, String urlNok,
+                          String urlS2s, String debitAll, String th, Hmac hmac ){
+        this.merchantId = merchantId;
+        this.keyId = keyId;
+        this.productDescription = productDescription;
+        this.urlOk = urlOk;
+        this.urlNok = urlNok;
+        this.urlS2s = urlS2s;
+        this.debitAll = debitAll;
+        this.th = th;
+        this.hmac = hmac;
+
+        this.sealPrefix = ( merchantId + "|" ).getBytes( StandardCharsets.UTF_8 );
+        this.sealSuffix = ( "|" + keyId + "|" + productDescription + "|" + urlOk + "|" + urlNok + "|" + urlS2s
+                + "|" + debitAll + "|" + th ).getBytes( StandardCharsets.UTF_8 );
+
+        // Write the constant fields in the order of TsiGoRequest.JsonAdapter, around the place of the variable ones
+        StringWriter json = new StringWriter();
+        try {
+            JsonWriter out = JsonCodecRegistry.getInstance().newJsonWriter( json );
+            out.beginObject();
+            JsonFields.write( out, "mid", merchantId );
+            out.flush();
+            this.bodyPrefix = json.toString();
+            JsonFields.write( out, "key_id", keyId );
+            JsonFields.write( out, "product_desc", productDescription );
+            JsonFields.write( out, "url_ok", urlOk );
+            JsonFields.write( out, "url_nok", urlNok );
+            JsonFields.write( out, "url_s2s", urlS2s );
+            JsonFields.write( out, "debit_all", debitAll );
+            JsonFields.write( out, "th", th );
+            out.flush();
+            this.bodySuffix = json.toString().substring( bodyPrefix.length() );
+        } catch( IOException e ){
+            // Can't happen: the JSON is written to memory
+            throw new IllegalStateException( e );
+        }
+    }
+
+    /**
+     * Creates and seals the request of a payment.
+     *
+     * @param transactionId The TSI transaction id
+     * @param amount The formatted amount
+     * @param currency The ISO4217 currency code
+     * @return the sealed request
+     */
+    public TsiGoRequest newRequest( String transactionId, String amount, String currency ){
+        TsiGoRequest request = new TsiGoRequest( merchantId, transactionId, amount, currency, keyId,
+                productDescription, urlOk, urlNok, urlS2s, debitAll, th, null );
+        request.setMac( hmac.digest( writer -> writer.append( sealPrefix )
+                .append( transactionId ).append( '|' )
+                .append( amount ).append( '|' )
+                .append( currency )
+                .append( sealSuffix ) ) );
+        request.setTemplate( this );
+        return request;
+    }
+
+    /**
+     * Builds the body of a request created by this template.
+     */
+    String buildBody( TsiGoRequest request ){
+        StringBuilder body = new StringBuilder( bodyPrefix.length() + bodySuffix.length() + 128 );
+        body.append( bodyPrefix );
+        appendField( body, ",\"tid\":", request.getTransactionId() );
+        appendField( body, ",\"amount\":", request.getAmount() );
+        appendField( body, ",\"currency\":", request.getCurrency() );
+        body.append( bodySuffix );
+        appendField( body, ",\"mac\":", request.getMac() );
+        return body.append( '}' ).toString();
+    }
+
+    /**
+     * Appends a field with a JSON string value, escaped the same way as the Gson writer (HTML-safe).
+     * Null values are omitted, as Gson does.
+     */
+    private static void appendField( StringBuilder body, String name, String value ){
+        if( value == null ){
+            return;
+        }
+        body.append( name );
+        for( int i = 0; i < value.length(); i++ ){
+            char c = value.charAt( i );
+            if( c < 0x20 || c > 0x7E || c == '"' || c == '\\' || c == '<' || c == '>' || c == '&' || c == '=' || c == '\'' ){
+                body.append( JsonCodecRegistry.getInstance().toJson( value ) );
+                return;
+            }
+        }
+        body.append( '"' ).append( value ).append( '"' );
+    }
+
+}
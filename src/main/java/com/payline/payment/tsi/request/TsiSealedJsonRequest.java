@@ -1,11 +1,10 @@
 package com.payline.payment.tsi.request;
 
-import com.google.gson.Gson;
 import com.payline.payment.tsi.security.Hmac;
 import com.payline.payment.tsi.security.HmacAlgorithm;
+import com.payline.payment.tsi.security.MacWriter;
+import com.payline.payment.tsi.utils.json.JsonCodecRegistry;
 
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 
 /**
  * Abstract class for a sealed JSON request (containing a HMAC seal calculated from the request's fields)
@@ -21,7 +20,7 @@ public abstract class TsiSealedJsonRequest {
      * @return a JSON formatted string.
      */
     public String buildBody(){
-        return (new Gson()).toJson( this );
+        return JsonCodecRegistry.getInstance().toJson( this );
     }
 
     /**
@@ -31,13 +30,25 @@ public abstract class TsiSealedJsonRequest {
      */
     public abstract String buildSealMessage();
 
+    /**
+     * Writes the message that will be digested by HMAC algorithm, field by field.
+     * The written bytes must be the same as the UTF-8 encoding of {@link #buildSealMessage()}.
+     *
+     * @param writer the writer which feeds the HMAC algorithm
+     */
+    protected abstract void writeSealMessage( MacWriter writer );
+
     protected String getMac(){
         return mac;
     }
 
+    void setMac( String mac ){
+        this.mac = mac;
+    }
+
     public void seal( String secretKey ){
         Hmac hmac = new Hmac( secretKey, HmacAlgorithm.MD5 );
-        this.mac = hmac.digest( this.buildSealMessage() );
+        this.mac = hmac.digest( this::writeSealMessage );
     }
 
     public static class Builder {
@@ -48,22 +59,10 @@ public abstract class TsiSealedJsonRequest {
          *
          * @param transactionId The input transaction id
          * @return A 32-characters-long transaction id
+         * @see TransactionIdCodec
          */
-        public String formatTransactionId(String transactionId) throws NoSuchAlgorithmException {
-            // Generate the MD5 hash
-            byte[] hashBytes = MessageDigest.getInstance( "MD5" ).digest( transactionId.getBytes() );
-
-            // Convert it in a readable string
-            StringBuilder hash = new StringBuilder();
-            for( int i = 0; i < hashBytes.length; i++ ){
-                String hex = Integer.toHexString( 0xFF & hashBytes[ i ] ); // Conversion to hexa using a mask
-                if( hex.length() == 1 ){
-                    hash.append( '0' );
-                }
-                hash.append( hex );
-            }
-
-            return hash.toString();
+        public String formatTransactionId(String transactionId) {
+            return TransactionIdCodec.encode( transactionId );
         }
 
     }
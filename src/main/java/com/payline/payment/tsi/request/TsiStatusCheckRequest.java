@@ -1,12 +1,20 @@
 package com.payline.payment.tsi.request;
 
+import com.google.gson.TypeAdapter;
 import com.google.gson.annotations.SerializedName;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
 import com.payline.payment.tsi.TsiConstants;
 import com.payline.payment.tsi.exception.InvalidRequestException;
+import com.payline.payment.tsi.security.MacWriter;
+import com.payline.payment.tsi.utils.json.JsonFields;
 import com.payline.pmapi.bean.payment.ContractConfiguration;
 import com.payline.pmapi.bean.payment.request.RedirectionPaymentRequest;
 import com.payline.pmapi.bean.payment.request.TransactionStatusRequest;
 
+import java.io.IOException;
+
 public class TsiStatusCheckRequest extends TsiSealedJsonRequest {
 
     /** The transaction identifier, 32 characters long exactly */
@@ -26,21 +34,73 @@ public class TsiStatusCheckRequest extends TsiSealedJsonRequest {
         return this.transactionId + "|" + this.keyId;
     }
 
+    @Override
+    protected void writeSealMessage( MacWriter writer ){
+        writer.append( this.transactionId ).append( '|' ).append( this.keyId );
+    }
+
+    /**
+     * Streaming JSON codec, with the same field names and order as the reflective Gson (de)serialization.
+     * Unknown fields are skipped.
+     */
+    public static class JsonAdapter extends TypeAdapter<TsiStatusCheckRequest> {
+
+        @Override
+        public void write( JsonWriter out, TsiStatusCheckRequest request ) throws IOException {
+            if( request == null ){
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            JsonFields.write( out, "tid", request.transactionId );
+            JsonFields.write( out, "id", request.keyId );
+            JsonFields.write( out, "mac", request.getMac() );
+            out.endObject();
+        }
+
+        @Override
+        public TsiStatusCheckRequest read( JsonReader in ) throws IOException {
+            if( in.peek() == JsonToken.NULL ){
+                in.nextNull();
+                return null;
+            }
+            TsiStatusCheckRequest request = new TsiStatusCheckRequest( null, 0 );
+            in.beginObject();
+            while( in.hasNext() ){
+                switch( in.nextName() ){
+                    case "tid":
+                        request.transactionId = JsonFields.readString( in );
+                        break;
+                    case "id":
+                        request.keyId = JsonFields.readInt( in, 0 );
+                        break;
+                    case "mac":
+                        request.setMac( JsonFields.readString( in ) );
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return request;
+        }
+    }
+
     public static class Builder extends TsiSealedJsonRequest.Builder {
 
         public TsiStatusCheckRequest fromTransactionStatusRequest(final TransactionStatusRequest transactionStatusRequest) throws InvalidRequestException {
-            this.checkInputRequest(transactionStatusRequest.getContractConfiguration());
+            final ContractProfile profile = this.checkAndCompile(transactionStatusRequest.getContractConfiguration());
 
             final TsiStatusCheckRequest request = new TsiStatusCheckRequest(
                     transactionStatusRequest.getTransactionId(),
-                    Integer.parseInt(transactionStatusRequest.getContractConfiguration().getContractProperties().get( TsiConstants.CONTRACT_KEY_ID ).getValue())
+                    profile.getKeyId()
             );
 
-            return build(transactionStatusRequest.getContractConfiguration(), request);
+            return build(profile, request);
         }
 
         public TsiStatusCheckRequest fromRedirectionPaymentRequest(final  RedirectionPaymentRequest redirectionPaymentRequest ) throws InvalidRequestException {
-            this.checkInputRequest(redirectionPaymentRequest.getContractConfiguration());
+            final ContractProfile profile = this.checkAndCompile(redirectionPaymentRequest.getContractConfiguration());
 
             if( redirectionPaymentRequest.getRequestContext().getRequestData() == null || !redirectionPaymentRequest.getRequestContext().getRequestData().containsKey(TsiConstants.REQUEST_CONTEXT_KEY_TID) ){
                 throw new InvalidRequestException( "Redirection context (containing the tid) is required" );
@@ -48,17 +108,34 @@ public class TsiStatusCheckRequest extends TsiSealedJsonRequest {
 
             final TsiStatusCheckRequest request = new TsiStatusCheckRequest(
                     redirectionPaymentRequest.getRequestContext().getRequestData().get(TsiConstants.REQUEST_CONTEXT_KEY_TID),
-                    Integer.parseInt(redirectionPaymentRequest.getContractConfiguration().getContractProperties().get( TsiConstants.CONTRACT_KEY_ID ).getValue())
+                    profile.getKeyId()
+            );
+
+            return build(profile, request);
+        }
+
+        /**
+         * Builds the checkstatus request of a transaction, outside of any Payline request.
+         *
+         * @param contractKey The key of the contract the transaction was created with
+         * @param transactionId The TSI transaction id
+         */
+        public TsiStatusCheckRequest fromContractKey(final ContractKey contractKey, final String transactionId) {
+            final TsiStatusCheckRequest request = new TsiStatusCheckRequest(
+                    transactionId,
+                    contractKey.getKeyId()
             );
 
-            return build(redirectionPaymentRequest.getContractConfiguration(), request);
+            // Seal the request with the HMAC key of the contract
+            request.setMac(contractKey.getHmac().digest(request::writeSealMessage));
+
+            return request;
         }
 
-        private TsiStatusCheckRequest build(final ContractConfiguration contractConfiguration, final TsiStatusCheckRequest request) throws InvalidRequestException {
+        private TsiStatusCheckRequest build(final ContractProfile profile, final TsiStatusCheckRequest request) throws InvalidRequestException {
 
-            // Seal the request with HMAC algorithm
-            final String secretKey = contractConfiguration.getContractProperties().get( TsiConstants.CONTRACT_KEY_VALUE ).getValue();
-            request.seal(secretKey);
+            // Seal the request with the HMAC key of the contract
+            request.setMac(profile.getHmac().digest(request::writeSealMessage));
 
             return request;
         }
@@ -71,17 +148,17 @@ public class TsiStatusCheckRequest extends TsiSealedJsonRequest {
          */
         protected void checkInputRequest(final ContractConfiguration contractConfiguration)
                 throws InvalidRequestException {
+            this.checkAndCompile(contractConfiguration);
+        }
 
-            if( contractConfiguration == null
-                    || contractConfiguration.getContractProperties() == null  ){
-                throw new InvalidRequestException( "Contract configuration properties object must not be null" );
-            }
-            if( contractConfiguration.getContractProperties().get( TsiConstants.CONTRACT_KEY_VALUE ) == null ){
-                throw new InvalidRequestException( "Missing contract configuration property: secret key" );
-            }
-            if( contractConfiguration.getContractProperties().get( TsiConstants.CONTRACT_KEY_ID ) == null ){
-                throw new InvalidRequestException( "Missing contract configuration property: key id" );
-            }
+        /**
+         * Verifies that the contract contains all the required fields, and recovers its profile.
+         */
+        private ContractProfile checkAndCompile(final ContractConfiguration contractConfiguration)
+                throws InvalidRequestException {
+            final ContractProfile profile = ContractProfile.of(contractConfiguration);
+            profile.checkStatusCheck();
+            return profile;
         }
 
     }
@@ -0,0 +1,249 @@
+package com.payline.payment.tsi.response;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Encodes the transaction status stored as transaction additional data.
+ *
+ * Version 1 (legacy) is the JSON serialization of the {@link TsiStatusCheckResponse}.
+ * Version 2 is a compact binary form of the {@link CompactStatusCheckResponse}, Base64 (URL-safe) encoded and
+ * prefixed by {@link #PREFIX}, so that it can be recognized when the version given by the reader is not a legacy one:
+ * <pre>
+ * header (1 byte): presence flags
+ * status (1 byte): {@link TransactionStatus} ordinal, or -1
+ * flags (1 byte): error code and multi flags
+ * amount (unsigned varint, if present)
+ * dtime (zigzag varint, if present)
+ * authId, tid, message, country (varint length + UTF-8 bytes, if present; 16 raw bytes for a hexadecimal tid)
+ * </pre>
+ * The responses which can't be compacted are stored in version 1.
+ */
+public class AdditionalDataCodec {
+
+    public static final String VERSION_JSON = "1";
+    public static final String VERSION_COMPACT = "2";
+    public static final String PREFIX = "v2:";
+
+    private static final int HAS_AMOUNT = 1;
+    private static final int HAS_DTIME = 1 << 1;
+    private static final int HAS_AUTH_ID = 1 << 2;
+    private static final int HAS_TID = 1 << 3;
+    private static final int HEX_TID = 1 << 4;
+    private static final int HAS_MESSAGE = 1 << 5;
+    private static final int HAS_COUNTRY = 1 << 6;
+
+    private static final int HEX_TID_LENGTH = 32;
+    /** Header, status and flags, 2 varints, and 4 strings of typical length */
+    private static final int INITIAL_CAPACITY = 128;
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    /* This class has only static methods: no need to instantiate it */
+    private AdditionalDataCodec(){
+    }
+
+    /**
+     * @param statusCheck the transaction status
+     * @return the additional data to store: the compact form if possible, the legacy JSON otherwise
+     */
+    public static String encode( TsiStatusCheckResponse statusCheck ){
+        CompactStatusCheckResponse compact = statusCheck.toCompact();
+        if( compact == null ){
+            return statusCheck.getResume();
+        }
+        return encode( compact );
+    }
+
+    /**
+     * @param compact the transaction status
+     * @return the additional data, in version 2
+     */
+    public static String encode( CompactStatusCheckResponse compact ){
+        boolean hexTid = isHex( compact.getTid() );
+        int header = ( compact.getAmount() != CompactStatusCheckResponse.NONE ? HAS_AMOUNT : 0 )
+                | ( compact.getDtime() != CompactStatusCheckResponse.NONE ? HAS_DTIME : 0 )
+                | ( compact.getAuthId() != null ? HAS_AUTH_ID : 0 )
+                | ( compact.getTid() != null ? HAS_TID : 0 )
+                | ( hexTid ? HEX_TID : 0 )
+                | ( compact.getMessage() != null ? HAS_MESSAGE : 0 )
+                | ( compact.getCountry() != null ? HAS_COUNTRY : 0 );
+
+        Output out = new Output();
+        out.writeByte( header );
+        out.writeByte( compact.status() );
+        out.writeByte( compact.flags() );
+        if( ( header & HAS_AMOUNT ) != 0 ){
+            out.writeVarLong( compact.getAmount() );
+        }
+        if( ( header & HAS_DTIME ) != 0 ){
+            out.writeVarLong( ( compact.getDtime() << 1 ) ^ ( compact.getDtime() >> 63 ) );
+        }
+        out.writeString( compact.getAuthId() );
+        if( hexTid ){
+            out.writeHex( compact.getTid() );
+        } else {
+            out.writeString( compact.getTid() );
+        }
+        out.writeString( compact.getMessage() );
+        out.writeString( compact.getCountry() );
+
+        return PREFIX + ENCODER.encodeToString( out.toByteArray() );
+    }
+
+    /**
+     * Recognizes version 2 by its prefix only.
+     *
+     * @param data the stored additional data
+     * @return true if the data is in version 2
+     */
+    public static boolean isCompact( String data ){
+        return data != null && data.startsWith( PREFIX );
+    }
+
+    /**
+     * Recognizes version 2 by its prefix, unless the data is labelled with a legacy version (1, 1.0...): legacy data
+     * may start with the prefix. A version 2 label alone is not trusted, since data stored as JSON may be labelled
+     * with version 2, and it is then read as JSON.
+     *
+     * @param data the stored additional data
+     * @param version the version of the additional data, possibly null
+     * @return true if the data is in version 2
+     */
+    public static boolean isCompact( String data, String version ){
+        return isCompact( data ) && ( version == null || !version.startsWith( VERSION_JSON ) );
+    }
+
+    /**
+     * @param data additional data in version 2
+     * @return the transaction status
+     * @throws IllegalArgumentException if the data is not valid
+     */
+    public static CompactStatusCheckResponse decode( String data ){
+        if( !data.startsWith( PREFIX ) ){
+            throw new IllegalArgumentException( "Not compact additional data" );
+        }
+        try {
+            ByteBuffer in = ByteBuffer.wrap( DECODER.decode( data.substring( PREFIX.length() ) ) );
+            int header = in.get();
+            byte status = in.get();
+            byte flags = in.get();
+            long amount = ( header & HAS_AMOUNT ) != 0 ? readVarLong( in ) : CompactStatusCheckResponse.NONE;
+            long dtime = CompactStatusCheckResponse.NONE;
+            if( ( header & HAS_DTIME ) != 0 ){
+                long zigzag = readVarLong( in );
+                dtime = ( zigzag >>> 1 ) ^ -( zigzag & 1 );
+            }
+            String authId = ( header & HAS_AUTH_ID ) != 0 ? readString( in ) : null;
+            String tid = null;
+            if( ( header & HEX_TID ) != 0 ){
+                tid = readHex( in );
+            } else if( ( header & HAS_TID ) != 0 ){
+                tid = readString( in );
+            }
+            String message = ( header & HAS_MESSAGE ) != 0 ? readString( in ) : null;
+            String country = ( header & HAS_COUNTRY ) != 0 ? readString( in ) : null;
+            if( in.hasRemaining() ){
+                throw new IllegalArgumentException( "Unexpected trailing bytes in additional data" );
+            }
+            return CompactStatusCheckResponse.restore( authId, tid, message, country, amount, dtime, status, flags );
+        } catch( BufferUnderflowException e ){
+            throw new IllegalArgumentException( "Truncated additional data", e );
+        }
+    }
+
+    private static boolean isHex( String value ){
+        if( value == null || value.length() != HEX_TID_LENGTH ){
+            return false;
+        }
+        for( int i = 0; i < HEX_TID_LENGTH; i++ ){
+            char c = value.charAt( i );
+            if( !( c >= '0' && c <= '9' ) && !( c >= 'a' && c <= 'f' ) ){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long readVarLong( ByteBuffer in ){
+        long value = 0;
+        for( int shift = 0; shift < 64; shift += 7 ){
+            byte b = in.get();
+            value |= (long) ( b & 0x7F ) << shift;
+            if( b >= 0 ){
+                return value;
+            }
+        }
+        throw new IllegalArgumentException( "Malformed varint in additional data" );
+    }
+
+    private static String readString( ByteBuffer in ){
+        long length = readVarLong( in );
+        if( length < 0 || length > in.remaining() ){
+            throw new IllegalArgumentException( "Invalid string length in additional data" );
+        }
+        String value = new String( in.array(), in.position(), (int) length, StandardCharsets.UTF_8 );
+        in.position( in.position() + (int) length );
+        return value;
+    }
+
+    private static String readHex( ByteBuffer in ){
+        char[] chars = new char[ HEX_TID_LENGTH ];
+        for( int i = 0; i < HEX_TID_LENGTH; i += 2 ){
+            int b = in.get() & 0xFF;
+            chars[ i ] = Character.forDigit( b >> 4, 16 );
+            chars[ i + 1 ] = Character.forDigit( b & 0xF, 16 );
+        }
+        return new String( chars );
+    }
+
+    /**
+     * Growable byte buffer.
+     */
+    private static class Output {
+
+        private byte[] bytes = new byte[ INITIAL_CAPACITY ];
+        private int size;
+
+        private void writeByte( int b ){
+            if( size == bytes.length ){
+                bytes = Arrays.copyOf( bytes, 2 * bytes.length );
+            }
+            bytes[ size++ ] = (byte) b;
+        }
+
+        private void writeVarLong( long value ){
+            while( ( value & ~0x7FL ) != 0 ){
+                this.writeByte( (int) ( value & 0x7F ) | 0x80 );
+                value >>>= 7;
+            }
+            this.writeByte( (int) value );
+        }
+
+        private void writeString( String value ){
+            if( value == null ){
+                return;
+            }
+            byte[] utf8 = value.getBytes( StandardCharsets.UTF_8 );
+            this.writeVarLong( utf8.length );
+            for( byte b : utf8 ){
+                this.writeByte( b );
+            }
+        }
+
+        private void writeHex( String value ){
+            for( int i = 0; i < HEX_TID_LENGTH; i += 2 ){
+                this.writeByte( Character.digit( value.charAt( i ), 16 ) << 4 | Character.digit( value.charAt( i + 1 ), 16 ) );
+            }
+        }
+
+        private byte[] toByteArray(){
+            return Arrays.copyOf( bytes, size );
+        }
+    }
+
+}
@@ -0,0 +1,279 @@
+package com.payline.payment.tsi.response;
+
+import com.payline.payment.tsi.utils.amount.AmountCodec;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.format.ResolverStyle;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Compact, immutable form of a {@link TsiStatusCheckResponse}, for the caches which keep a lot of them.
+ * The status and the flags are packed into bytes, the amount is kept in minor units, the timestamp in epoch seconds,
+ * and the message and country list are shared between instances.
+ * The wire form of each field is rebuilt on demand, and is identical to the original one.
+ *
+ * The fields are parsed, and the message and country list shared, once, when the response is compacted: unlike
+ * a lazy parsing from the wire form, it lets the wire strings go, which is what makes the instances small, and the
+ * responses which can't be restored identically are detected before being cached.
+ * Only the responses whose fields have the documented formats can be compacted: see {@link #of(TsiStatusCheckResponse)}.
+ */
+public final class CompactStatusCheckResponse {
+
+    /** Value of the amount and timestamp fields when they are missing */
+    public static final long NONE = Long.MIN_VALUE;
+
+    private static final DateTimeFormatter DTIME_FORMAT = DateTimeFormatter.ofPattern( "uuuu-MM-dd HH:mm:ss" )
+            .withResolverStyle( ResolverStyle.STRICT );
+    private static final TransactionStatus[] STATUSES = TransactionStatus.values();
+
+    /** Values of the 2-bit flags */
+    private static final int FLAG_NULL = 0;
+    private static final int FLAG_FALSE = 1;
+    private static final int FLAG_TRUE = 2;
+    private static final int ERROR_SHIFT = 0;
+    private static final int MULTI_SHIFT = 2;
+
+    /** Number of decimals of the amounts returned by checkstatus */
+    private static final int AMOUNT_EXPONENT = 2;
+    private static final int MAX_SHARED_VALUES = 1024;
+    private static final ConcurrentMap<String, String> SHARED_VALUES = new ConcurrentHashMap<>();
+
+    private final String authId;
+    private final String tid;
+    private final String message;
+    private final String country;
+    private final long amount;
+    private final long dtime;
+    /** {@link TransactionStatus} ordinal, or -1 if missing */
+    private final byte status;
+    /** Error code and multi flags, 2 bits each */
+    private final byte flags;
+
+    private CompactStatusCheckResponse( String authId, String tid, String message, String country,
+                                        long amount, long dtime, byte status, byte flags ){
+        this.authId = authId;
+        this.tid = tid;
+        this.message = message;
+        this.country = country;
+        this.amount = amount;
+        this.dtime = dtime;
+        this.status = status;
+        this.flags = flags;
+    }
+
+    /**
+     * Compacts a checkstatus response, parsing all its fields.
+     *
+     * @param response the response to compact
+     * @return the compact response, or null if a field doesn't have the expected format
+     * (it couldn't be restored identically)
+     */
+    public static CompactStatusCheckResponse of( TsiStatusCheckResponse response ){
+        if( response == null ){
+            return null;
+        }
+        TransactionStatus transactionStatus = TransactionStatus.fromValue( response.getStatus() );
+        int errorFlag = parseFlag( response.getErCode(), "0", "1" );
+        int multiFlag = parseFlag( response.getMulti(), "f", "t" );
+        long amount = parseAmount( response.getAmount() );
+        long dtime = parseDtime( response.getDtime() );
+        if( ( transactionStatus == null && response.getStatus() != null )
+                || errorFlag < 0 || multiFlag < 0
+                || ( amount == NONE && response.getAmount() != null )
+                || ( dtime == NONE && response.getDtime() != null ) ){
+            return null;
+        }
+
+        return new CompactStatusCheckResponse( response.getAuthId(), response.getTid(), share( response.getMessage() ),
+                share( response.getCountry() ), amount, dtime,
+                (byte) ( transactionStatus == null ? -1 : transactionStatus.ordinal() ),
+                (byte) ( errorFlag << ERROR_SHIFT | multiFlag << MULTI_SHIFT ) );
+    }
+
+    /**
+     * Rebuilds a compact response from its stored values (see {@link AdditionalDataCodec}).
+     *
+     * @throws IllegalArgumentException if the status or the flags are not valid
+     */
+    static CompactStatusCheckResponse restore( String authId, String tid, String message, String country,
+                                               long amount, long dtime, byte status, byte flags ){
+        if( status < -1 || status >= STATUSES.length
+                || ( flags & ~0xF ) != 0 || ( flags & 3 ) == 3 || ( ( flags >> MULTI_SHIFT ) & 3 ) == 3
+                || ( amount < 0 && amount != NONE ) ){
+            throw new IllegalArgumentException( "Invalid compact status check response" );
+        }
+        return new CompactStatusCheckResponse( authId, tid, share( message ), share( country ), amount, dtime, status, flags );
+    }
+
+    /**
+     * @return the response, with the fields in their wire form
+     */
+    public TsiStatusCheckResponse toResponse(){
+        TransactionStatus transactionStatus = this.getStatus();
+        return new TsiStatusCheckResponse( authId, tid, transactionStatus == null ? null : transactionStatus.name(),
+                formatFlag( this.flag( ERROR_SHIFT ), "0", "1" ), message, formatAmount( amount ),
+                formatFlag( this.flag( MULTI_SHIFT ), "f", "t" ), formatDtime( dtime ), country );
+    }
+
+    public String getAuthId(){
+        return authId;
+    }
+
+    public String getTid(){
+        return tid;
+    }
+
+    /**
+     * @return the transaction status, or null if it is missing
+     */
+    public TransactionStatus getStatus(){
+        return status < 0 ? null : STATUSES[ status ];
+    }
+
+    public boolean isError(){
+        return this.flag( ERROR_SHIFT ) == FLAG_TRUE;
+    }
+
+    public String getMessage(){
+        return message;
+    }
+
+    /**
+     * @return the transaction amount in minor units (cents), or {@link #NONE} if it is missing
+     */
+    public long getAmount(){
+        return amount;
+    }
+
+    public boolean isMulti(){
+        return this.flag( MULTI_SHIFT ) == FLAG_TRUE;
+    }
+
+    /**
+     * @return the transaction timestamp in seconds since the epoch (the TSI local time being read as UTC),
+     * or {@link #NONE} if it is missing
+     */
+    public long getDtime(){
+        return dtime;
+    }
+
+    /**
+     * @return the ISO3 countries of the vouchers, separated by a pipe
+     */
+    public String getCountry(){
+        return country;
+    }
+
+    byte status(){
+        return status;
+    }
+
+    byte flags(){
+        return flags;
+    }
+
+    private int flag( int shift ){
+        return ( flags >> shift ) & 3;
+    }
+
+    /**
+     * @return the flag value, or -1 if the value is neither null nor one of the expected ones
+     */
+    private static int parseFlag( String value, String falseValue, String trueValue ){
+        if( value == null ){
+            return FLAG_NULL;
+        }
+        if( falseValue.equals( value ) ){
+            return FLAG_FALSE;
+        }
+        if( trueValue.equals( value ) ){
+            return FLAG_TRUE;
+        }
+        return -1;
+    }
+
+    private static String formatFlag( int flag, String falseValue, String trueValue ){
+        switch( flag ){
+            case FLAG_FALSE:
+                return falseValue;
+            case FLAG_TRUE:
+                return trueValue;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Parses an amount with the format "XX,XX", without leading zero.
+     *
+     * @return the amount in minor units, or {@link #NONE} if it is missing or doesn't have the expected format
+     */
+    static long parseAmount( String value ){
+        if( value == null ){
+            return NONE;
+        }
+        // Canonical form only: it must be restored identically
+        int comma = value.length() - 3;
+        if( comma < 1 || value.charAt( comma ) != ',' || ( comma > 1 && value.charAt( 0 ) == '0' ) || value.charAt( 0 ) == '-' ){
+            return NONE;
+        }
+        try {
+            return AmountCodec.parse( value, AMOUNT_EXPONENT );
+        } catch( NumberFormatException e ){
+            return NONE;
+        }
+    }
+
+    static String formatAmount( long amount ){
+        if( amount == NONE ){
+            return null;
+        }
+        long cents = amount % 100;
+        return ( amount / 100 ) + ( cents < 10 ? ",0" : "," ) + cents;
+    }
+
+    /**
+     * @return the timestamp in epoch seconds, or {@link #NONE} if it is missing or doesn't have the expected format
+     */
+    static long parseDtime( String value ){
+        if( value == null ){
+            return NONE;
+        }
+        try {
+            return LocalDateTime.parse( value, DTIME_FORMAT ).toEpochSecond( ZoneOffset.UTC );
+        } catch( DateTimeParseException e ){
+            return NONE;
+        }
+    }
+
+    static String formatDtime( long dtime ){
+        if( dtime == NONE ){
+            return null;
+        }
+        return LocalDateTime.ofEpochSecond( dtime, 0, ZoneOffset.UTC ).format( DTIME_FORMAT );
+    }
+
+    /**
+     * The messages and country lists take few distinct values: the instances share them.
+     * The number of shared values is bounded, the other ones are kept as they are.
+     */
+    private static String share( String value ){
+        if( value == null ){
+            return null;
+        }
+        String shared = SHARED_VALUES.get( value );
+        if( shared != null ){
+            return shared;
+        }
+        if( SHARED_VALUES.size() >= MAX_SHARED_VALUES ){
+            return value;
+        }
+        shared = SHARED_VALUES.putIfAbsent( value, value );
+        return shared == null ? value : shared;
+    }
+
+}
@@ -0,0 +1,32 @@
+package com.payline.payment.tsi.response;
+
+/**
+ * Transaction status returned by the TSI checkstatus service.
+ */
+public enum TransactionStatus {
+
+    OK,
+    NOK,
+    ER;
+
+    /**
+     * @param value the status, as returned by TSI
+     * @return the matching status, or null if the value is null or unknown
+     */
+    public static TransactionStatus fromValue( String value ){
+        if( value == null ){
+            return null;
+        }
+        switch( value ){
+            case "OK":
+                return OK;
+            case "NOK":
+                return NOK;
+            case "ER":
+                return ER;
+            default:
+                return null;
+        }
+    }
+
+}
@@ -1,7 +1,14 @@
 package com.payline.payment.tsi.response;
 
-import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
 import com.google.gson.annotations.SerializedName;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.payline.payment.tsi.utils.json.JsonCodecRegistry;
+import com.payline.payment.tsi.utils.json.JsonFields;
+
+import java.io.IOException;
 
 public class TsiGoResponse {
 
@@ -42,14 +49,67 @@ public class TsiGoResponse {
         return keyId;
     }
 
+    /**
+     * Streaming JSON codec, with the same field names as the reflective Gson deserialization. Unknown fields are skipped.
+     */
+    public static class JsonAdapter extends TypeAdapter<TsiGoResponse> {
+
+        @Override
+        public void write( JsonWriter out, TsiGoResponse response ) throws IOException {
+            if( response == null ){
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            JsonFields.write( out, "status", response.status );
+            JsonFields.write( out, "message", response.message );
+            JsonFields.write( out, "url", response.url );
+            JsonFields.write( out, "tid", response.tid );
+            JsonFields.write( out, "keyid", response.keyId );
+            out.endObject();
+        }
+
+        @Override
+        public TsiGoResponse read( JsonReader in ) throws IOException {
+            if( in.peek() == JsonToken.NULL ){
+                in.nextNull();
+                return null;
+            }
+            TsiGoResponse response = new TsiGoResponse( 0, null );
+            in.beginObject();
+            while( in.hasNext() ){
+                switch( in.nextName() ){
+                    case "status":
+                        response.status = JsonFields.readInt( in, response.status );
+                        break;
+                    case "message":
+                        response.message = JsonFields.readString( in );
+                        break;
+                    case "url":
+                        response.url = JsonFields.readString( in );
+                        break;
+                    case "tid":
+                        response.tid = JsonFields.readString( in );
+                        break;
+                    case "keyid":
+                        response.keyId = JsonFields.readString( in );
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return response;
+        }
+    }
+
     /**
      * Implements the builder pattern to instantiate {@link TsiGoResponse} from a JSON string content.
      */
     public static class Builder {
 
         public TsiGoResponse fromJson( String jsonContent ){
-            Gson gson = new Gson();
-            return gson.fromJson( jsonContent, TsiGoResponse.class );
+            return JsonCodecRegistry.getInstance().fromJson( jsonContent, TsiGoResponse.class );
         }
 
     }
@@ -0,0 +1,101 @@
+package com.payline.payment.tsi.response;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import com.payline.payment.tsi.security.MacWriter;
+import com.payline.payment.tsi.utils.json.JsonCodecRegistry;
+import com.payline.payment.tsi.utils.json.JsonFields;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Server-to-server notification sent by TSI to the url_s2s of the Go request, once the payment is completed.
+ * It carries the same fields as a checkstatus response, sealed with the contract's secret key.
+ */
+public class TsiNotification extends TsiStatusCheckResponse {
+
+    /** The HMAC seal of the notification (generated from the other fields) */
+    private String mac;
+
+    public TsiNotification( String authId, String tid, String status, String erCode, String message,
+                            String amount, String multi, String dtime, String country, String mac ){
+        super( authId, tid, status, erCode, message, amount, multi, dtime, country );
+        this.mac = mac;
+    }
+
+    public String getMac(){
+        return mac;
+    }
+
+    /**
+     * @return the transaction status carried by the notification, without its seal
+     */
+    public TsiStatusCheckResponse toStatusCheckResponse(){
+        return new TsiStatusCheckResponse( this.getAuthId(), this.getTid(), this.getStatus(), this.getErCode(),
+                this.getMessage(), this.getAmount(), this.getMulti(), this.getDtime(), this.getCountry() );
+    }
+
+    /**
+     * Writes the message digested by TSI to calculate the notification's seal: the fields, in the order
+     * of the checkstatus response, separated by pipes.
+     *
+     * @param writer the writer which feeds the HMAC algorithm
+     */
+    public void writeSealMessage( MacWriter writer ){
+        writer.append( this.getAuthId() ).append( '|' )
+                .append( this.getTid() ).append( '|' )
+                .append( this.getStatus() ).append( '|' )
+                .append( this.getErCode() ).append( '|' )
+                .append( this.getMessage() ).append( '|' )
+                .append( this.getAmount() ).append( '|' )
+                .append( this.getMulti() ).append( '|' )
+                .append( this.getDtime() ).append( '|' )
+                .append( this.getCountry() );
+    }
+
+    /**
+     * Streaming JSON codec: the checkstatus response fields, plus the seal.
+     */
+    public static class JsonAdapter extends TsiStatusCheckResponse.JsonAdapter {
+
+        private static final String[] NOTIFICATION_FIELDS = Arrays.copyOf( FIELDS, FIELDS.length + 1 );
+        static {
+            NOTIFICATION_FIELDS[ FIELDS.length ] = "mac";
+        }
+
+        @Override
+        public void write( JsonWriter out, TsiStatusCheckResponse response ) throws IOException {
+            if( response == null ){
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            JsonFields.write( out, "mac", ((TsiNotification) response).mac );
+            writeFields( out, response );
+            out.endObject();
+        }
+
+        @Override
+        public TsiNotification read( JsonReader in ) throws IOException {
+            String[] values = readFields( in, NOTIFICATION_FIELDS );
+            if( values == null ){
+                return null;
+            }
+            return new TsiNotification( values[0], values[1], values[2], values[3], values[4],
+                    values[5], values[6], values[7], values[8], values[9] );
+        }
+    }
+
+    /**
+     * Implements the builder pattern to instantiate {@link TsiNotification} from a JSON string content.
+     */
+    public static class Builder {
+
+        public TsiNotification fromJson( String jsonContent ){
+            return JsonCodecRegistry.getInstance().fromJson( jsonContent, TsiNotification.class );
+        }
+
+    }
+}
@@ -1,11 +1,20 @@
 package com.payline.payment.tsi.response;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
 import com.google.gson.annotations.SerializedName;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.payline.payment.tsi.utils.json.JsonCodecRegistry;
+import com.payline.payment.tsi.utils.json.JsonFields;
+
+import java.io.IOException;
 
 public class TsiStatusCheckResponse {
 
+    /** Message of a transaction which has not been paid and can't be anymore */
+    public static final String EXPIRED_MESSAGE = "NO SUCCESSFUL TRANSACTIONS FOUND WITHIN 6 MONTHS";
+
     /** Authorization id */
     private String authId;
     /** Transaction identifier */
@@ -56,7 +65,38 @@ public class TsiStatusCheckResponse {
     }
 
     public boolean isError(){
-        return this.erCode == "1";
+        return "1".equals( this.erCode );
+    }
+
+    /**
+     * @return the transaction status, parsed on demand, or null if it is missing or unknown
+     */
+    public TransactionStatus getTransactionStatus(){
+        return TransactionStatus.fromValue( this.status );
+    }
+
+    /**
+     * @return true if the transaction is a success
+     */
+    public boolean isSuccess(){
+        return this.getTransactionStatus() == TransactionStatus.OK && !this.isError();
+    }
+
+    /**
+     * @return true if the transaction has expired without being paid
+     */
+    public boolean isExpired(){
+        return EXPIRED_MESSAGE.equals( this.message );
+    }
+
+    /**
+     * An expiration is not terminal: TSI may report it before the end of the 6 months window, while the transaction
+     * can still be paid. Only the caller knowing the creation date of the transaction can tell it is final.
+     *
+     * @return true if the status of the transaction can't change anymore: success
+     */
+    public boolean isTerminal(){
+        return this.isSuccess();
     }
 
     public String getMessage() {
@@ -79,8 +119,94 @@ public class TsiStatusCheckResponse {
         return country;
     }
 
+    /**
+     * @return the compact form of this response, or null if a field doesn't have the expected format
+     */
+    public CompactStatusCheckResponse toCompact(){
+        return CompactStatusCheckResponse.of( this );
+    }
+
     public String getResume(){
-        return new GsonBuilder().create().toJson(this);
+        return JsonCodecRegistry.getInstance().toJson(this);
+    }
+
+    /**
+     * Streaming JSON codec, with the same field names and order as the reflective Gson (de)serialization.
+     * Unknown fields are skipped.
+     */
+    public static class JsonAdapter extends TypeAdapter<TsiStatusCheckResponse> {
+
+        /** The JSON field names, in the order of the constructor arguments */
+        protected static final String[] FIELDS = { "authId", "tid", "status", "ercode", "message", "amount", "multi", "dtime", "country" };
+
+        @Override
+        public void write( JsonWriter out, TsiStatusCheckResponse response ) throws IOException {
+            if( response == null ){
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            writeFields( out, response );
+            out.endObject();
+        }
+
+        @Override
+        public TsiStatusCheckResponse read( JsonReader in ) throws IOException {
+            String[] values = readFields( in, FIELDS );
+            if( values == null ){
+                return null;
+            }
+            return new TsiStatusCheckResponse( values[0], values[1], values[2], values[3], values[4],
+                    values[5], values[6], values[7], values[8] );
+        }
+
+        protected static void writeFields( JsonWriter out, TsiStatusCheckResponse response ) throws IOException {
+            JsonFields.write( out, "authId", response.authId );
+            JsonFields.write( out, "tid", response.tid );
+            JsonFields.write( out, "status", response.status );
+            JsonFields.write( out, "ercode", response.erCode );
+            JsonFields.write( out, "message", response.message );
+            JsonFields.write( out, "amount", response.amount );
+            JsonFields.write( out, "multi", response.multi );
+            JsonFields.write( out, "dtime", response.dtime );
+            JsonFields.write( out, "country", response.country );
+        }
+
+        /**
+         * Reads the string values of a JSON object.
+         *
+         * @param in the reader
+         * @param names the names of the fields to read
+         * @return the values, in the order of the names, or null if the JSON value is null
+         */
+        protected static String[] readFields( JsonReader in, String[] names ) throws IOException {
+            if( in.peek() == JsonToken.NULL ){
+                in.nextNull();
+                return null;
+            }
+            String[] values = new String[ names.length ];
+            in.beginObject();
+            while( in.hasNext() ){
+                String name = in.nextName();
+                int index = indexOf( names, name );
+                if( index >= 0 ){
+                    values[ index ] = JsonFields.readString( in );
+                } else {
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+            return values;
+        }
+
+        private static int indexOf( String[] names, String name ){
+            for( int i = 0; i < names.length; i++ ){
+                if( names[ i ].equals( name ) ){
+                    return i;
+                }
+            }
+            return -1;
+        }
     }
 
     /**
@@ -89,8 +215,7 @@ public class TsiStatusCheckResponse {
     public static class Builder {
 
         public TsiStatusCheckResponse fromJson( String jsonContent ){
-            Gson gson = new Gson();
-            return gson.fromJson( jsonContent, TsiStatusCheckResponse.class );
+            return JsonCodecRegistry.getInstance().fromJson( jsonContent, TsiStatusCheckResponse.class );
         }
 
     }
@@ -0,0 +1,40 @@
+package com.payline.payment.tsi.security;
+
+/**
+ * Lowercase hexadecimal encoding, using a lookup table.
+ */
+public class Hex {
+
+    private static final char[] DIGITS = "0123456789abcdef".toCharArray();
+
+    /* This class has only static methods: no need to instantiate it */
+    private Hex(){
+    }
+
+    /**
+     * Writes the hexadecimal representation of the given bytes into the destination array.
+     *
+     * @param bytes The bytes to encode
+     * @param length The number of bytes to encode, from the start of the array
+     * @param destination The destination array, at least twice as long as length
+     * @return The number of characters written
+     */
+    public static int encode( byte[] bytes, int length, char[] destination ){
+        for( int i = 0; i < length; i++ ){
+            destination[ 2 * i ] = DIGITS[ (bytes[ i ] >> 4) & 0x0F ];
+            destination[ 2 * i + 1 ] = DIGITS[ bytes[ i ] & 0x0F ];
+        }
+        return 2 * length;
+    }
+
+    /**
+     * @param bytes The bytes to encode
+     * @return The hexadecimal representation of the bytes
+     */
+    public static String encode( byte[] bytes ){
+        char[] chars = new char[ 2 * bytes.length ];
+        encode( bytes, bytes.length, chars );
+        return new String( chars );
+    }
+
+}
@@ -4,54 +4,101 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
-import java.io.UnsupportedEncodingException;
-import java.security.InvalidKeyException;
-import java.security.NoSuchAlgorithmException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Locale;
 
 /**
  * Digests a Hmac seal with the given algorithm, using javax.crypto classes.
+ * The initialized {@link Mac} instances are recovered from the {@link MacPool}.
  * @see Mac
  */
 public class Hmac {
 
     private static final Logger logger = LogManager.getLogger( Hmac.class );
 
-    private String algorithm;
-    private String key;
+    /** One reusable writer per thread, holding the encoding and output buffers */
+    private static final ThreadLocal<MacWriter> WRITER = ThreadLocal.withInitial( MacWriter::new );
 
+    private HmacAlgorithm algorithm;
+    /** The key, until it is pooled on first use */
+    private volatile String key;
+    /** The key in the {@link MacPool} */
+    private volatile MacPool.KeyReference reference;
+
+    /**
+     * Digests with a key given as a string: the string is dropped once the key is pooled, on first use,
+     * so that the instance can only be used as long as the key stays in the {@link MacPool}: for a single request.
+     *
+     * @param key The secret key
+     * @param algorithm The HMAC algorithm
+     */
     public Hmac( String key, HmacAlgorithm algorithm ){
-        this.algorithm = algorithm.toString();
+        this.algorithm = algorithm;
         this.key = key;
     }
 
+    /**
+     * Digests with a referenced key, as long as it stays in the {@link MacPool}.
+     *
+     * @param reference The key, referenced in the {@link MacPool}
+     */
+    public Hmac( MacPool.KeyReference reference ){
+        this.reference = reference;
+    }
+
     public String digest( String message ){
-        String seal = null;
+        return this.digest( writer -> writer.append( message ) );
+    }
 
-        try {
-            // Init Mac instance
-            SecretKeySpec secretKey = new SecretKeySpec( this.key.getBytes("UTF-8"), this.algorithm );
-            Mac mac = Mac.getInstance( this.algorithm );
-            mac.init( secretKey );
+    /**
+     * Digests a message written field by field, without building the intermediate string.
+     *
+     * @param message The message to digest
+     * @return The seal, as a lowercase hexadecimal string. Null if an error occurred.
+     */
+    public String digest( SealMessage message ){
+        String seal = null;
 
+        try( MacPool.PooledMac pooledMac = this.borrow() ) {
             // Process the message and finishes MAC operation
-            byte[] bytes = mac.doFinal( message.getBytes( "UTF-8" ) );
-
-            // Convert result to a readable string
-            StringBuilder hash = new StringBuilder();
-            for( int i = 0; i < bytes.length; i++ ){
-                String hex = Integer.toHexString( 0xFF & bytes[ i ] ); // Conversion to hexa using a mask
-                if( hex.length() == 1 ){
-                    hash.append( '0' );
-                }
-                hash.append( hex );
-            }
-            seal = hash.toString();
-
-        } catch( InvalidKeyException | UnsupportedEncodingException | NoSuchAlgorithmException e ){
+            MacWriter writer = WRITER.get().reset( pooledMac.getMac() );
+            message.writeTo( writer );
+            seal = writer.finish();
+
+        } catch( GeneralSecurityException e ){
             logger.error( "An unexpected error occured during the HMAC seal digest : " + e.getMessage(), e );
         }
 
         return seal;
     }
+
+    private MacPool.PooledMac borrow() throws GeneralSecurityException {
+        String keyString = this.key;
+        if( keyString == null ){
+            return this.reference.borrow();
+        }
+        MacPool.PooledMac pooledMac = MacPool.getInstance().borrow( this.algorithm, keyString );
+        // The reference is set before the key is dropped, for the other threads
+        this.reference = pooledMac.reference();
+        this.key = null;
+        return pooledMac;
+    }
+
+    /**
+     * Checks a seal received from the partner against the digest of the message, in constant time.
+     *
+     * @param message The sealed message
+     * @param seal The received seal, as a hexadecimal string
+     * @return true if the seal matches the message, false otherwise
+     */
+    public boolean verify( SealMessage message, String seal ){
+        String expected = this.digest( message );
+        if( expected == null || seal == null ){
+            return false;
+        }
+        return MessageDigest.isEqual( expected.getBytes( StandardCharsets.US_ASCII ),
+                seal.toLowerCase( Locale.ROOT ).getBytes( StandardCharsets.US_ASCII ) );
+    }
 }
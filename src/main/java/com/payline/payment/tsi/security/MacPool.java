@@ -0,0 +1,335 @@
+package com.payline.payment.tsi.security;
+
+import com.payline.payment.tsi.utils.Digests;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Pool of initialized {@link Mac} instances, grouped by (algorithm, secret key fingerprint).
+ * Avoids the provider lookup and the key initialization on every seal computation.
+ *
+ * The secret keys are never stored as strings: only a SHA-256 fingerprint is used as cache key,
+ * and the {@link SecretKeySpec} is dropped along with its pooled Mac instances once the entry expires.
+ * A {@link KeyReference} designates an entry by its fingerprint only: once the entry has expired,
+ * the key must be provided again, from the contract configuration it comes from.
+ */
+public class MacPool {
+
+    /** Maximum number of (algorithm, key) entries kept at the same time */
+    private static final int DEFAULT_MAX_ENTRIES = 64;
+    /** Maximum number of idle Mac instances kept for each entry */
+    private static final int DEFAULT_MAX_IDLE_PER_ENTRY = 8;
+    /** Time to live of an entry, from its creation */
+    private static final long DEFAULT_TTL_MILLIS = TimeUnit.MINUTES.toMillis( 10 );
+
+    private final Map<Fingerprint, Entry> entries = new ConcurrentHashMap<>();
+    private final int maxEntries;
+    private final int maxIdlePerEntry;
+    private final long ttlMillis;
+    private final LongSupplier clock;
+    /** Time of the next purge of the expired entries */
+    private final AtomicLong nextPurgeAt = new AtomicLong();
+
+    MacPool( int maxEntries, int maxIdlePerEntry, long ttlMillis, LongSupplier clock ){
+        this.maxEntries = maxEntries;
+        this.maxIdlePerEntry = maxIdlePerEntry;
+        this.ttlMillis = ttlMillis;
+        this.clock = clock;
+    }
+
+    /**
+     * Holder
+     */
+    private static class SingletonHolder {
+        private static final MacPool INSTANCE = new MacPool( DEFAULT_MAX_ENTRIES, DEFAULT_MAX_IDLE_PER_ENTRY,
+                DEFAULT_TTL_MILLIS, System::currentTimeMillis );
+    }
+
+    /**
+     * @return the singleton instance
+     */
+    public static MacPool getInstance(){
+        return SingletonHolder.INSTANCE;
+    }
+
+    /**
+     * Borrows an initialized Mac instance for the given algorithm and key.
+     * The returned object must be closed (ideally through a try-with-resources statement) to give the Mac back to the pool.
+     *
+     * @param algorithm The HMAC algorithm
+     * @param key The secret key
+     * @return A ready-to-use Mac, wrapped in a {@link PooledMac}
+     * @throws GeneralSecurityException If the algorithm is not available or the key is invalid
+     */
+    public PooledMac borrow( HmacAlgorithm algorithm, String key ) throws GeneralSecurityException {
+        long now = clock.getAsLong();
+        this.purgeIfDue( now );
+        return this.borrow( this.getOrAddEntry( algorithm, key, now ) );
+    }
+
+    /**
+     * Borrows an initialized Mac instance for a referenced key.
+     *
+     * @throws KeyException If the entry of the key has expired: the key must be provided again
+     */
+    PooledMac borrow( KeyReference reference ) throws GeneralSecurityException {
+        long now = clock.getAsLong();
+        this.purgeIfDue( now );
+        Entry entry = this.getEntry( reference.fingerprint, now );
+        if( entry == null ){
+            throw new KeyException( "The key is no longer pooled: it must be provided again" );
+        }
+        return this.borrow( entry );
+    }
+
+    /**
+     * Pools a key, then references it by its fingerprint. The reference can be kept without holding the key,
+     * but only gives Mac instances while the entry of the key is valid, see {@link KeyReference#isAvailable()}.
+     *
+     * @param algorithm The HMAC algorithm
+     * @param key The secret key
+     * @return the reference
+     */
+    public KeyReference reference( HmacAlgorithm algorithm, String key ){
+        long now = clock.getAsLong();
+        this.purgeIfDue( now );
+        return new KeyReference( this, this.getOrAddEntry( algorithm, key, now ).fingerprint );
+    }
+
+    private PooledMac borrow( Entry entry ) throws GeneralSecurityException {
+        Mac mac = entry.idle.poll();
+        if( mac != null ){
+            entry.idleCount.decrementAndGet();
+        } else {
+            mac = Mac.getInstance( entry.algorithm.toString() );
+            mac.init( entry.secretKey );
+        }
+        return new PooledMac( this, entry, mac );
+    }
+
+    /**
+     * Removes every entry from the pool.
+     */
+    public void clear(){
+        entries.clear();
+    }
+
+    int size(){
+        return entries.size();
+    }
+
+    /**
+     * Gives the Mac back to the pool, if its entry is still valid and not full.
+     */
+    void release( Entry entry, Mac mac ){
+        mac.reset();
+        long now = clock.getAsLong();
+        this.purgeIfDue( now );
+        if( !entry.isExpired( now )
+                && entries.get( entry.fingerprint ) == entry
+                && entry.idleCount.get() < maxIdlePerEntry ){
+            entry.idleCount.incrementAndGet();
+            entry.idle.offer( mac );
+        }
+    }
+
+    private Entry getOrAddEntry( HmacAlgorithm algorithm, String key, long now ){
+        Fingerprint fingerprint = Fingerprint.of( algorithm, key );
+        Entry entry = this.getEntry( fingerprint, now );
+        if( entry == null ){
+            byte[] keyBytes = key.getBytes( StandardCharsets.UTF_8 );
+            SecretKeySpec secretKey = new SecretKeySpec( keyBytes, algorithm.toString() );
+            // SecretKeySpec keeps its own copy of the key
+            Arrays.fill( keyBytes, (byte) 0 );
+            entry = this.addEntry( algorithm, fingerprint, secretKey, now );
+        }
+        return entry;
+    }
+
+    /**
+     * @return the valid entry of a key, or null if there is none
+     */
+    private Entry getEntry( Fingerprint fingerprint, long now ){
+        Entry entry = entries.get( fingerprint );
+        if( entry != null && !entry.isExpired( now ) ){
+            return entry;
+        }
+        if( entry != null ){
+            entries.remove( fingerprint, entry );
+        }
+        return null;
+    }
+
+    private Entry addEntry( HmacAlgorithm algorithm, Fingerprint fingerprint, SecretKeySpec secretKey, long now ){
+        Entry created = new Entry( algorithm, fingerprint, secretKey, now + ttlMillis );
+        Entry existing = entries.putIfAbsent( fingerprint, created );
+        if( existing != null && !existing.isExpired( now ) ){
+            return existing;
+        }
+        if( existing != null ){
+            entries.put( fingerprint, created );
+        }
+        this.evict( now );
+        return created;
+    }
+
+    /**
+     * Removes the expired entries, at most once every half TTL, so that the keys of a contract which is no longer used
+     * do not stay in memory until another key is added.
+     */
+    private void purgeIfDue( long now ){
+        long next = nextPurgeAt.get();
+        if( now >= next && nextPurgeAt.compareAndSet( next, now + ttlMillis / 2 ) ){
+            entries.values().removeIf( e -> e.isExpired( now ) );
+        }
+    }
+
+    /**
+     * Removes the expired entries then, if the pool is still too big, the entries closest to their expiration.
+     */
+    private void evict( long now ){
+        entries.values().removeIf( e -> e.isExpired( now ) );
+        while( entries.size() > maxEntries ){
+            Entry oldest = null;
+            for( Entry e : entries.values() ){
+                if( oldest == null || e.expiresAt < oldest.expiresAt ){
+                    oldest = e;
+                }
+            }
+            if( oldest == null ){
+                return;
+            }
+            entries.remove( oldest.fingerprint, oldest );
+        }
+    }
+
+    /**
+     * A borrowed Mac instance. Closing it gives the Mac back to the pool.
+     */
+    public static class PooledMac implements AutoCloseable {
+
+        private final MacPool pool;
+        private final Entry entry;
+        private final Mac mac;
+        private boolean released;
+
+        private PooledMac( MacPool pool, Entry entry, Mac mac ){
+            this.pool = pool;
+            this.entry = entry;
+            this.mac = mac;
+        }
+
+        public Mac getMac(){
+            return mac;
+        }
+
+        /**
+         * @return a reference to the key of the Mac, without the key
+         */
+        public KeyReference reference(){
+            return new KeyReference( pool, entry.fingerprint );
+        }
+
+        @Override
+        public void close(){
+            if( !released ){
+                released = true;
+                pool.release( entry, mac );
+            }
+        }
+    }
+
+    /**
+     * A key of the pool, designated by its fingerprint only: it holds no key material, and gives Mac instances
+     * as long as the entry of the key is valid. The key is not held beyond the TTL of its entry.
+     */
+    public static final class KeyReference {
+
+        private final MacPool pool;
+        private final Fingerprint fingerprint;
+
+        private KeyReference( MacPool pool, Fingerprint fingerprint ){
+            this.pool = pool;
+            this.fingerprint = fingerprint;
+        }
+
+        /**
+         * @return true if the key is still pooled
+         */
+        public boolean isAvailable(){
+            return pool.getEntry( fingerprint, pool.clock.getAsLong() ) != null;
+        }
+
+        /**
+         * @return A ready-to-use Mac, to close once used
+         * @throws KeyException If the key is no longer pooled: it must be provided again
+         * @throws GeneralSecurityException If the algorithm is not available
+         */
+        public PooledMac borrow() throws GeneralSecurityException {
+            return pool.borrow( this );
+        }
+    }
+
+    static class Entry {
+
+        private final HmacAlgorithm algorithm;
+        private final Fingerprint fingerprint;
+        private final SecretKeySpec secretKey;
+        private final long expiresAt;
+        private final Queue<Mac> idle = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger idleCount = new AtomicInteger();
+
+        private Entry( HmacAlgorithm algorithm, Fingerprint fingerprint, SecretKeySpec secretKey, long expiresAt ){
+            this.algorithm = algorithm;
+            this.fingerprint = fingerprint;
+            this.secretKey = secretKey;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired( long now ){
+            return now >= expiresAt;
+        }
+    }
+
+    /**
+     * SHA-256 fingerprint of an (algorithm, key) couple.
+     */
+    static final class Fingerprint {
+
+        private final byte[] hash;
+        private final int hashCode;
+
+        private Fingerprint( byte[] hash ){
+            this.hash = hash;
+            this.hashCode = Arrays.hashCode( hash );
+        }
+
+        static Fingerprint of( HmacAlgorithm algorithm, String key ){
+            // The algorithm name is delimited by a 0 byte
+            return new Fingerprint( Digests.sha256( ( algorithm + "\0" ).getBytes( StandardCharsets.UTF_8 ), key ) );
+        }
+
+        @Override
+        public boolean equals( Object o ){
+            return o instanceof Fingerprint && Arrays.equals( hash, ((Fingerprint) o).hash );
+        }
+
+        @Override
+        public int hashCode(){
+            return hashCode;
+        }
+    }
+}
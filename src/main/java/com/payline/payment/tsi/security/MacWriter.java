@@ -0,0 +1,164 @@
+package com.payline.payment.tsi.security;
+
+import javax.crypto.Mac;
+import javax.crypto.ShortBufferException;
+
+/**
+ * Feeds a seal message directly into a {@link Mac}, without building the intermediate string.
+ * The characters are UTF-8 encoded into a reusable buffer, which gives the same bytes as {@code String.getBytes( UTF_8 )}.
+ *
+ * An instance is not thread-safe: {@link Hmac} keeps one per thread.
+ */
+public final class MacWriter {
+
+    private static final int BUFFER_SIZE = 512;
+    /** The longest supported MAC is HmacSHA512 (64 bytes) */
+    private static final int MAX_MAC_LENGTH = 64;
+    private static final String NULL = "null";
+
+    private final byte[] buffer = new byte[ BUFFER_SIZE ];
+    private final byte[] digits = new byte[ 11 ];
+    private final byte[] macBytes = new byte[ MAX_MAC_LENGTH ];
+    private final char[] hexChars = new char[ 2 * MAX_MAC_LENGTH ];
+
+    private Mac mac;
+    private int position;
+
+    MacWriter(){
+    }
+
+    /**
+     * Attaches the writer to a Mac, ready to receive a new message.
+     */
+    MacWriter reset( Mac mac ){
+        this.mac = mac;
+        this.position = 0;
+        return this;
+    }
+
+    /**
+     * Appends a string, written as "null" if it is null (like a string concatenation would do).
+     *
+     * @param s the string to append
+     * @return this writer
+     */
+    public MacWriter append( String s ){
+        if( s == null ){
+            s = NULL;
+        }
+        int length = s.length();
+        for( int i = 0; i < length; i++ ){
+            char c = s.charAt( i );
+            if( c < 0x80 ){
+                this.ensureCapacity( 1 );
+                buffer[ position++ ] = (byte) c;
+            } else if( c < 0x800 ){
+                this.ensureCapacity( 2 );
+                buffer[ position++ ] = (byte) (0xC0 | (c >> 6));
+                buffer[ position++ ] = (byte) (0x80 | (c & 0x3F));
+            } else if( Character.isHighSurrogate( c ) && i + 1 < length && Character.isLowSurrogate( s.charAt( i + 1 ) ) ){
+                int codePoint = Character.toCodePoint( c, s.charAt( ++i ) );
+                this.ensureCapacity( 4 );
+                buffer[ position++ ] = (byte) (0xF0 | (codePoint >> 18));
+                buffer[ position++ ] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                buffer[ position++ ] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                buffer[ position++ ] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if( Character.isSurrogate( c ) ){
+                // Unpaired surrogate: replaced, as the JDK UTF-8 encoder does
+                this.ensureCapacity( 1 );
+                buffer[ position++ ] = (byte) '?';
+            } else {
+                this.ensureCapacity( 3 );
+                buffer[ position++ ] = (byte) (0xE0 | (c >> 12));
+                buffer[ position++ ] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buffer[ position++ ] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Appends the decimal representation of an integer.
+     *
+     * @param value the integer to append
+     * @return this writer
+     */
+    public MacWriter append( int value ){
+        if( value == Integer.MIN_VALUE ){
+            return this.append( "-2147483648" );
+        }
+        this.ensureCapacity( digits.length );
+        if( value < 0 ){
+            buffer[ position++ ] = (byte) '-';
+            value = -value;
+        }
+        int start = digits.length;
+        do {
+            digits[ --start ] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while( value != 0 );
+        int count = digits.length - start;
+        System.arraycopy( digits, start, buffer, position, count );
+        position += count;
+        return this;
+    }
+
+    /**
+     * Appends an ASCII character (a field separator, for example).
+     *
+     * @param c the character to append
+     * @return this writer
+     */
+    public MacWriter append( char c ){
+        if( c >= 0x80 ){
+            return this.append( String.valueOf( c ) );
+        }
+        this.ensureCapacity( 1 );
+        buffer[ position++ ] = (byte) c;
+        return this;
+    }
+
+    /**
+     * Appends bytes which are already UTF-8 encoded (the constant parts of a message, for example).
+     *
+     * @param utf8 the bytes to append
+     * @return this writer
+     */
+    public MacWriter append( byte[] utf8 ){
+        if( position + utf8.length > buffer.length ){
+            this.flush();
+            mac.update( utf8 );
+        } else {
+            System.arraycopy( utf8, 0, buffer, position, utf8.length );
+            position += utf8.length;
+        }
+        return this;
+    }
+
+    /**
+     * Finishes the MAC operation.
+     *
+     * @return the MAC, as a lowercase hexadecimal string
+     */
+    String finish() throws ShortBufferException {
+        this.flush();
+        int length = mac.getMacLength();
+        mac.doFinal( macBytes, 0 );
+        int chars = Hex.encode( macBytes, length, hexChars );
+        this.mac = null;
+        return new String( hexChars, 0, chars );
+    }
+
+    private void ensureCapacity( int length ){
+        if( position + length > buffer.length ){
+            this.flush();
+        }
+    }
+
+    private void flush(){
+        if( position > 0 ){
+            mac.update( buffer, 0, position );
+            position = 0;
+        }
+    }
+}
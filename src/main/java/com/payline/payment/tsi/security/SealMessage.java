@@ -0,0 +1,11 @@
+package com.payline.payment.tsi.security;
+
+/**
+ * A message to seal, written field by field into a {@link MacWriter}.
+ */
+@FunctionalInterface
+public interface SealMessage {
+
+    void writeTo( MacWriter writer );
+
+}
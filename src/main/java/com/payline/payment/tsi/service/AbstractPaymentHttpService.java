@@ -16,7 +16,6 @@ import org.apache.logging.log4j.Logger;
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.security.GeneralSecurityException;
-import java.security.NoSuchAlgorithmException;
 
 /**
  * This abstract service handles the common issues encountered when sending, receiving and processing a {@link PaymentRequest} (or subclass)
@@ -66,6 +65,19 @@ public abstract class AbstractPaymentHttpService<T extends PaymentRequest> {
      */
     public abstract PaymentResponse processResponse( StringResponse response, final String tid) throws IOException;
 
+    /**
+     * Process the response from the HTTP call, knowing the input request.
+     * By default, it only delegates to {@link #processResponse(StringResponse, String)}.
+     *
+     * @param paymentRequest The input request provided by Payline
+     * @param response The {@link StringResponse} from the HTTP call, which HTTP code is 200 and which body is not null.
+     * @return The {@link PaymentResponse}
+     * @throws IOException Can be thrown while reading the response body
+     */
+    protected PaymentResponse processResponse( T paymentRequest, StringResponse response, final String tid ) throws IOException {
+        return this.processResponse( response, tid );
+    }
+
     /**
      * Process a {@link PaymentRequest} (or subclass), handling all the generic error cases
      *
@@ -86,7 +98,7 @@ public abstract class AbstractPaymentHttpService<T extends PaymentRequest> {
 
             if( response != null && response.getCode() == 200 && response.getContent() != null ){
                 // Mandate the child class to process the request when it's OK (which is specific to each implementation)
-                return this.processResponse( response, tid);
+                return this.processResponse( paymentRequest, response, tid );
             }
             else if( response != null && response.getCode() != 200 && response.getContent() != null ){
                 logger.error( "An HTTP error occurred while sending the request: " + response.getContent() );
@@ -5,9 +5,13 @@ import com.payline.payment.tsi.request.TsiGoRequest;
 import com.payline.payment.tsi.response.TsiGoResponse;
 import com.payline.payment.tsi.utils.config.ConfigEnvironment;
 import com.payline.payment.tsi.utils.config.ConfigProperties;
+import com.payline.payment.tsi.utils.config.EnvironmentConfig;
 import com.payline.payment.tsi.utils.http.JsonHttpClient;
 import com.payline.payment.tsi.utils.http.StringResponse;
 import com.payline.payment.tsi.utils.i18n.I18nService;
+import com.payline.payment.tsi.utils.i18n.LocalizedCache;
+import com.payline.payment.tsi.utils.validation.BulkContractValidator;
+import com.payline.payment.tsi.utils.validation.ContractValidationCache;
 import com.payline.pmapi.bean.configuration.ReleaseInformation;
 import com.payline.pmapi.bean.configuration.parameter.AbstractParameter;
 import com.payline.pmapi.bean.configuration.parameter.impl.InputParameter;
@@ -19,6 +23,7 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
@@ -28,6 +33,9 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
 
 public class ConfigurationServiceImpl implements ConfigurationService {
 
@@ -36,8 +44,19 @@ public class ConfigurationServiceImpl implements ConfigurationService {
     /** The release date format */
     private static final String RELEASE_DATE_FORMAT = "dd/MM/yyyy";
 
+    /** Default bounds of a bulk validation */
+    static final int BULK_PARALLELISM = 8;
+    static final double BULK_MAX_PER_SECOND = 10;
+
+    private static final AtomicLong VALIDATION_SEQUENCE = new AtomicLong();
+
+    private static final LocalizedCache<ParameterMessages> PARAMETER_MESSAGES = new LocalizedCache<>( ParameterMessages::new );
+    private static final LocalizedCache<String> NAMES =
+            new LocalizedCache<>( locale -> I18nService.getInstance().getMessage( "paymentMethod.name", locale ) );
+
     private I18nService i18n = I18nService.getInstance();
     private JsonHttpClient httpClient =  JsonHttpClient.getInstance();
+    private ContractValidationCache validationCache = ContractValidationCache.getInstance();
 
     public ConfigurationServiceImpl() {
         super();
@@ -46,13 +65,15 @@ public class ConfigurationServiceImpl implements ConfigurationService {
 
     @Override
     public List<AbstractParameter> getParameters(Locale locale ){
+        // The parameters are mutable: they are built for each call, from the messages resolved once per locale
+        ParameterMessages messages = PARAMETER_MESSAGES.get( locale );
         List<AbstractParameter> parameters = new ArrayList<>();
 
         // Merchant ID
         final InputParameter merchantId = new InputParameter();
         merchantId.setKey( TsiConstants.CONTRACT_MERCHANT_ID );
-        merchantId.setLabel( i18n.getMessage( "contractConfiguration.merchantId.label", locale ) );
-        merchantId.setDescription( i18n.getMessage( "contractConfiguration.merchantId.description", locale ) );
+        merchantId.setLabel( messages.merchantIdLabel );
+        merchantId.setDescription( messages.merchantIdDescription );
         merchantId.setRequired( true );
 
         parameters.add( merchantId );
@@ -60,8 +81,8 @@ public class ConfigurationServiceImpl implements ConfigurationService {
         // Key value
         final PasswordParameter keyValue = new PasswordParameter();
         keyValue.setKey( TsiConstants.CONTRACT_KEY_VALUE );
-        keyValue.setLabel( i18n.getMessage( "contractConfiguration.keyValue.label", locale ) );
-        keyValue.setDescription( i18n.getMessage( "contractConfiguration.keyValue.description", locale ) );
+        keyValue.setLabel( messages.keyValueLabel );
+        keyValue.setDescription( messages.keyValueDescription );
         keyValue.setRequired( true );
 
         parameters.add( keyValue );
@@ -69,8 +90,8 @@ public class ConfigurationServiceImpl implements ConfigurationService {
         // Key ID
         final InputParameter keyId = new InputParameter();
         keyId.setKey( TsiConstants.CONTRACT_KEY_ID );
-        keyId.setLabel( i18n.getMessage( "contractConfiguration.keyId.label", locale ) );
-        keyId.setDescription( i18n.getMessage( "contractConfiguration.keyId.description", locale ) );
+        keyId.setLabel( messages.keyIdLabel );
+        keyId.setDescription( messages.keyIdDescription );
         keyId.setRequired( true );
 
         parameters.add( keyId );
@@ -81,8 +102,8 @@ public class ConfigurationServiceImpl implements ConfigurationService {
         elements.put( "Ticket Premium", "Ticket Premium" );
         productDescription.setList( elements );
         productDescription.setKey( TsiConstants.CONTRACT_PRODUCT_DESCRIPTION );
-        productDescription.setLabel( i18n.getMessage( "contractConfiguration.productDescription.label", locale ) );
-        productDescription.setDescription( i18n.getMessage( "contractConfiguration.productDescription.description", locale ) );
+        productDescription.setLabel( messages.productDescriptionLabel );
+        productDescription.setDescription( messages.productDescriptionDescription );
         productDescription.setRequired( true );
 
         parameters.add( productDescription );
@@ -116,11 +137,82 @@ public class ConfigurationServiceImpl implements ConfigurationService {
         String secretKey = accountInfo.get( TsiConstants.CONTRACT_KEY_VALUE );
         String productDescription = accountInfo.get( TsiConstants.CONTRACT_PRODUCT_DESCRIPTION );
 
-        // Initialize a fake transaction request to test the validity of the contract parameters
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern( "000000000000000000yyyyMMddHHmmss" );
+        // The outcome of a recent validation of the same parameters is reused
+        Integer status = validationCache.get( merchantId, keyId, secretKey );
+        if( status == null ){
+            try {
+                final TsiGoResponse tsiGoResponse = this.sendValidationRequest( merchantId, keyId, secretKey, productDescription );
+                status = tsiGoResponse.getStatus();
+                if( status != TsiConstants.GO_STATUS_OK && status != TsiConstants.GO_STATUS_INVALID_KEY_ID
+                        && status != TsiConstants.GO_STATUS_INVALID_MERCHANT_ID && status != TsiConstants.GO_STATUS_INVALID_KEY_VALUE ){
+                    throw new Exception( "TSI server response is: [" + tsiGoResponse.getStatus() + "] " + tsiGoResponse.getMessage() );
+                }
+                validationCache.put( merchantId, keyId, secretKey, status );
+            }
+            catch( Exception e ){
+                logger.error( "An error occurred sending the validation request to the TSI server: " + e.getMessage() );
+                errors.put( TsiConstants.CONTRACT_MERCHANT_ID, i18n.getMessage( "contractConfiguration.validation.error.unexpected", locale ) );
+                errors.put( TsiConstants.CONTRACT_KEY_ID, i18n.getMessage( "contractConfiguration.validation.error.unexpected", locale ) );
+                errors.put( TsiConstants.CONTRACT_KEY_VALUE, i18n.getMessage( "contractConfiguration.validation.error.unexpected", locale ) );
+                return errors;
+            }
+        }
+
+        if( status == TsiConstants.GO_STATUS_INVALID_MERCHANT_ID ){
+            errors.put( TsiConstants.CONTRACT_MERCHANT_ID, i18n.getMessage( "contractConfiguration.validation.error.merchantId", locale ) );
+        }
+        else if( status == TsiConstants.GO_STATUS_INVALID_KEY_ID ){
+            errors.put( TsiConstants.CONTRACT_KEY_ID, i18n.getMessage( "contractConfiguration.validation.error.keyId", locale ) );
+        }
+        else if( status == TsiConstants.GO_STATUS_INVALID_KEY_VALUE ){
+            errors.put( TsiConstants.CONTRACT_KEY_VALUE, i18n.getMessage( "contractConfiguration.validation.error.keyValue", locale ) );
+        }
+
+        return errors;
+    }
+
+    /**
+     * Validates many contracts concurrently, with the default bounds: {@value #BULK_PARALLELISM} validations
+     * in progress at most, {@value #BULK_MAX_PER_SECOND} started per second at most.
+     *
+     * @see #checkAll(Map, Set, int, double)
+     */
+    public Stream<BulkContractValidator.Result> checkAll( Map<String, ContractParametersCheckRequest> checkRequests,
+                                                          Set<String> alreadyValidated ){
+        return this.checkAll( checkRequests, alreadyValidated, BULK_PARALLELISM, BULK_MAX_PER_SECOND );
+    }
+
+    /**
+     * Validates many contracts concurrently (during a merchant portfolio migration, for example), as {@link #check}
+     * does for a single one. The results are streamed as the validations complete; the stream must be closed
+     * if it is not fully consumed.
+     * To resume an interrupted bulk validation, give the ids of the contracts whose results have already been received.
+     *
+     * @param checkRequests the check requests, by contract id
+     * @param alreadyValidated the ids of the contracts to skip, possibly null
+     * @param parallelism the maximum number of validations in progress
+     * @param maxPerSecond the maximum number of validations started per second, 0 for no limit
+     * @return the results, with the id of their contract
+     */
+    public Stream<BulkContractValidator.Result> checkAll( Map<String, ContractParametersCheckRequest> checkRequests,
+                                                          Set<String> alreadyValidated, int parallelism, double maxPerSecond ){
+        return new BulkContractValidator<>( this::check, parallelism, maxPerSecond ).validateAll( checkRequests, alreadyValidated );
+    }
+
+    /**
+     * Sends a fake transaction request to test the validity of the contract parameters.
+     *
+     * @return the TSI response
+     * @throws Exception if no correct response could be read from the TSI server
+     */
+    private TsiGoResponse sendValidationRequest( String merchantId, String keyId, String secretKey, String productDescription ) throws Exception {
+        // The sequence number keeps the transaction ids of concurrent validations distinct
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern( "yyyyMMddHHmmss" );
+        String transactionId = String.format( "%018d", VALIDATION_SEQUENCE.incrementAndGet() % 1_000_000_000_000_000_000L )
+                + LocalDateTime.now().format( formatter );
         TsiGoRequest request = new TsiGoRequest(
                 Integer.parseInt( merchantId ),
-                LocalDateTime.now().format( formatter ),
+                transactionId,
                 "0.01",
                 "EUR",
                 Integer.parseInt( keyId ),
@@ -135,50 +227,39 @@ public class ConfigurationServiceImpl implements ConfigurationService {
         request.seal( secretKey );
 
         // Send the validation request
-        String scheme = ConfigProperties.get( "tsi.scheme", ConfigEnvironment.TEST );
-        String host = ConfigProperties.get( "tsi.host", ConfigEnvironment.TEST );
-        String path = ConfigProperties.get( "tsi.go.path", ConfigEnvironment.TEST );
-        try {
-            final StringResponse response = httpClient.doPost( scheme, host, path, request.buildBody() );
-
-            if( response != null && response.getCode() == 200 && response.getContent() != null ){
-                final TsiGoResponse tsiGoResponse = (new TsiGoResponse.Builder()).fromJson(response.getContent());
-                if( tsiGoResponse.getStatus() == 14 ){
-                    errors.put( TsiConstants.CONTRACT_MERCHANT_ID, i18n.getMessage( "contractConfiguration.validation.error.merchantId", locale ) );
-                }
-                else if( tsiGoResponse.getStatus() == 13 ){
-                    errors.put( TsiConstants.CONTRACT_KEY_ID, i18n.getMessage( "contractConfiguration.validation.error.keyId", locale ) );
-                }
-                else if( tsiGoResponse.getStatus() == 15 ){
-                    errors.put( TsiConstants.CONTRACT_KEY_VALUE, i18n.getMessage( "contractConfiguration.validation.error.keyValue", locale ) );
-                }
-                else if( tsiGoResponse.getStatus() != 1 ){
-                    throw new Exception( "TSI server response is: [" + tsiGoResponse.getStatus() + "] " + tsiGoResponse.getMessage() );
-                }
-            }
-            else {
-                String message = "Can't read a correct response from TSI server.";
-                if( response != null ){
-                    message += " HTTP status: " + response == null? response: response.getCode();
-                }
-                throw new Exception( message );
+        EnvironmentConfig config = ConfigProperties.getSnapshot().getEnvironment( ConfigEnvironment.TEST );
+        final StringResponse response = httpClient.doPost( config.getScheme(), config.getHost(), config.getGoPath(), request.buildBody() );
+
+        if( response == null || response.getCode() != 200 || response.getContent() == null ){
+            String message = "Can't read a correct response from TSI server.";
+            if( response != null ){
+                message += " HTTP status: " + response.getCode();
             }
+            throw new Exception( message );
         }
-        catch( Exception e ){
-            logger.error( "An error occurred sending the validation request to the TSI server: " + e.getMessage() );
-            errors.put( TsiConstants.CONTRACT_MERCHANT_ID, i18n.getMessage( "contractConfiguration.validation.error.unexpected", locale ) );
-            errors.put( TsiConstants.CONTRACT_KEY_ID, i18n.getMessage( "contractConfiguration.validation.error.unexpected", locale ) );
-            errors.put( TsiConstants.CONTRACT_KEY_VALUE, i18n.getMessage( "contractConfiguration.validation.error.unexpected", locale ) );
-        }
-
-        return errors;
+        return (new TsiGoResponse.Builder()).fromJson( response.getContent() );
     }
 
     @Override
     public ReleaseInformation getReleaseInformation(){
+        return ReleaseHolder.release;
+    }
+
+    @Override
+    public String getName( Locale locale ){
+        return NAMES.get( locale );
+    }
+
+    /**
+     * Reads the release information from the release.properties file.
+     */
+    private static ReleaseInformation readReleaseInformation(){
         Properties props = new Properties();
-        try {
-            props.load( ConfigurationServiceImpl.class.getClassLoader().getResourceAsStream( "release.properties" ) );
+        try( InputStream input = ConfigurationServiceImpl.class.getClassLoader().getResourceAsStream( "release.properties" ) ){
+            if( input == null ){
+                throw new IOException( "release.properties not found" );
+            }
+            props.load( input );
         } catch( IOException e ){
             logger.error("An error occurred reading the file: release.properties" );
             props.setProperty( "release.version", "unknown" );
@@ -192,9 +273,38 @@ public class ConfigurationServiceImpl implements ConfigurationService {
                 .build();
     }
 
-    @Override
-    public String getName( Locale locale ){
-        return i18n.getMessage( "paymentMethod.name", locale );
+    /**
+     * Holder of the release information, read on first use: it doesn't change while the plugin is loaded.
+     */
+    private static class ReleaseHolder {
+        private static final ReleaseInformation release = readReleaseInformation();
+    }
+
+    /**
+     * The translated labels and descriptions of the contract parameters, for a locale.
+     */
+    private static final class ParameterMessages {
+
+        private final String merchantIdLabel;
+        private final String merchantIdDescription;
+        private final String keyValueLabel;
+        private final String keyValueDescription;
+        private final String keyIdLabel;
+        private final String keyIdDescription;
+        private final String productDescriptionLabel;
+        private final String productDescriptionDescription;
+
+        private ParameterMessages( Locale locale ){
+            I18nService i18n = I18nService.getInstance();
+            this.merchantIdLabel = i18n.getMessage( "contractConfiguration.merchantId.label", locale );
+            this.merchantIdDescription = i18n.getMessage( "contractConfiguration.merchantId.description", locale );
+            this.keyValueLabel = i18n.getMessage( "contractConfiguration.keyValue.label", locale );
+            this.keyValueDescription = i18n.getMessage( "contractConfiguration.keyValue.description", locale );
+            this.keyIdLabel = i18n.getMessage( "contractConfiguration.keyId.label", locale );
+            this.keyIdDescription = i18n.getMessage( "contractConfiguration.keyId.description", locale );
+            this.productDescriptionLabel = i18n.getMessage( "contractConfiguration.productDescription.label", locale );
+            this.productDescriptionDescription = i18n.getMessage( "contractConfiguration.productDescription.description", locale );
+        }
     }
 
     /**
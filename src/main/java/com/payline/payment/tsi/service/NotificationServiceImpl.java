@@ -1,18 +1,67 @@
 package com.payline.payment.tsi.service;
 
+import com.google.gson.JsonParseException;
+import com.payline.payment.tsi.TsiConstants;
+import com.payline.payment.tsi.response.TsiNotification;
+import com.payline.payment.tsi.response.TsiStatusCheckResponse;
+import com.payline.payment.tsi.security.Hmac;
+import com.payline.payment.tsi.security.HmacAlgorithm;
+import com.payline.payment.tsi.utils.config.ConfigEnvironment;
+import com.payline.payment.tsi.utils.journal.TransactionJournal;
+import com.payline.payment.tsi.utils.status.TransactionStatusStore;
 import com.payline.pmapi.bean.notification.request.NotificationRequest;
 import com.payline.pmapi.bean.notification.response.NotificationResponse;
 import com.payline.pmapi.bean.notification.response.impl.IgnoreNotificationResponse;
+import com.payline.pmapi.bean.notification.response.impl.PaymentResponseByNotificationResponse;
+import com.payline.pmapi.bean.payment.ContractProperty;
 import com.payline.pmapi.bean.payment.request.NotifyTransactionStatusRequest;
 import com.payline.pmapi.service.NotificationService;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 
 public class NotificationServiceImpl implements NotificationService {
 
+    private static final Logger logger = LogManager.getLogger( NotificationServiceImpl.class );
+
+    /** The body expected by TSI to acknowledge a notification */
+    private static final String ACKNOWLEDGEMENT = "ACC=OK";
+
+    private TsiNotification.Builder notificationBuilder = new TsiNotification.Builder();
+    private PaymentWithRedirectionServiceImpl redirectionService = new PaymentWithRedirectionServiceImpl();
+    private TransactionStatusStore statusStore = TransactionStatusStore.getInstance();
+    private TransactionJournal journal = TransactionJournal.getInstance();
+
     @Override
     public NotificationResponse parse( NotificationRequest notificationRequest ){
-        return IgnoreNotificationResponse.IgnoreNotificationResponseBuilder.aIgnoreNotificationResponseBuilder()
-                .withHttpBody("ACC=OK")
-                .withHttpStatus(200)
+        final TsiNotification notification = this.readNotification( notificationRequest );
+        if( notification == null || notification.getTid() == null ){
+            return ignore();
+        }
+
+        // Verify the seal before trusting the content
+        final String secretKey = this.getSecretKey( notificationRequest );
+        if( secretKey == null || !new Hmac( secretKey, HmacAlgorithm.MD5 ).verify( notification::writeSealMessage, notification.getMac() ) ){
+            logger.warn( "TSI notification ignored: invalid seal, tid: {}", notification.getTid() );
+            return ignore();
+        }
+        logger.info( "TSI notification received, tid: {}, status: {} ({})", notification.getTid(), notification.getStatus(), notification.getErCode() );
+
+        // A terminal status won't change anymore: keep it to answer the customer return locally
+        final TsiStatusCheckResponse status = notification.toStatusCheckResponse();
+        final ConfigEnvironment env = PaymentWithRedirectionServiceImpl.getConfigEnvironment( notificationRequest.getEnvironment() );
+        statusStore.put( env, status.getTid(), status );
+        journal.statusReceived( env, status.getTid(), status );
+
+        return PaymentResponseByNotificationResponse.PaymentResponseByNotificationResponseBuilder.aPaymentResponseByNotificationResponseBuilder()
+                .withPaymentResponse( redirectionService.processStatusCheck( status, status.getTid() ) )
+                .withTransactionCorrelationId( notification.getTid() )
+                .withHttpBody( ACKNOWLEDGEMENT )
+                .withHttpStatus( 200 )
                 .build();
     }
 
@@ -20,4 +69,44 @@ public class NotificationServiceImpl implements NotificationService {
     public void notifyTransactionStatus( NotifyTransactionStatusRequest notifyTransactionStatusRequest ){
         // Nothing to do.
     }
+
+    private static NotificationResponse ignore(){
+        return IgnoreNotificationResponse.IgnoreNotificationResponseBuilder.aIgnoreNotificationResponseBuilder()
+                .withHttpBody( ACKNOWLEDGEMENT )
+                .withHttpStatus( 200 )
+                .build();
+    }
+
+    /**
+     * Reads and parses the notification body.
+     *
+     * @return The notification, or null if the body is missing or can't be parsed
+     */
+    private TsiNotification readNotification( NotificationRequest notificationRequest ){
+        if( notificationRequest == null || notificationRequest.getContent() == null ){
+            return null;
+        }
+        try( InputStream content = notificationRequest.getContent() ){
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            byte[] buffer = new byte[ 1024 ];
+            int read;
+            while( (read = content.read( buffer )) != -1 ){
+                body.write( buffer, 0, read );
+            }
+            return notificationBuilder.fromJson( new String( body.toByteArray(), StandardCharsets.UTF_8 ) );
+        }
+        catch( IOException | JsonParseException e ){
+            logger.error( "Unable to read the TSI notification", e );
+            return null;
+        }
+    }
+
+    private String getSecretKey( NotificationRequest notificationRequest ){
+        if( notificationRequest.getContractConfiguration() == null
+                || notificationRequest.getContractConfiguration().getContractProperties() == null ){
+            return null;
+        }
+        final ContractProperty secretKey = notificationRequest.getContractConfiguration().getContractProperties().get( TsiConstants.CONTRACT_KEY_VALUE );
+        return secretKey == null ? null : secretKey.getValue();
+    }
 }
@@ -1,6 +1,7 @@
 package com.payline.payment.tsi.service;
 
 import com.payline.payment.tsi.utils.i18n.I18nService;
+import com.payline.payment.tsi.utils.i18n.LocalizedCache;
 import com.payline.pmapi.bean.paymentform.bean.PaymentFormLogo;
 import com.payline.pmapi.bean.paymentform.bean.form.NoFieldForm;
 import com.payline.pmapi.bean.paymentform.request.PaymentFormConfigurationRequest;
@@ -13,65 +14,111 @@ import com.payline.pmapi.service.PaymentFormConfigurationService;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import javax.imageio.ImageIO;
-import java.awt.image.BufferedImage;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Arrays;
 import java.util.Locale;
 
 public class PaymentFormConfigurationServiceImpl implements PaymentFormConfigurationService {
 
     private static final Logger LOGGER = LogManager.getLogger(PaymentFormConfigurationServiceImpl.class);
 
+    private static final String LOGO_FILENAME = "ticketpremium-logo.png";
     private static final String LOGO_CONTENT_TYPE = "image/png";
     private static final int LOGO_HEIGHT = 28;
     private static final int LOGO_WIDTH = 60;
 
-    private I18nService i18n = I18nService.getInstance();
+    /** The responses are immutable: they are built once per locale */
+    private static final LocalizedCache<PaymentFormConfigurationResponse> FORM_CONFIGURATIONS =
+            new LocalizedCache<>( PaymentFormConfigurationServiceImpl::buildPaymentFormConfiguration );
+    private static final LocalizedCache<PaymentFormLogoResponse> FORM_LOGOS =
+            new LocalizedCache<>( PaymentFormConfigurationServiceImpl::buildPaymentFormLogo );
+
+    /** The content of the logo file, loaded once */
+    private static volatile byte[] logoFile;
 
     @Override
     public PaymentFormConfigurationResponse getPaymentFormConfiguration(PaymentFormConfigurationRequest paymentFormConfigurationRequest) {
+        return this.getPaymentFormConfiguration(paymentFormConfigurationRequest.getLocale());
+    }
+
+    @Override
+    public PaymentFormLogoResponse getPaymentFormLogo(PaymentFormLogoRequest paymentFormLogoRequest) {
+        return this.getPaymentFormLogo(paymentFormLogoRequest.getLocale());
+    }
+
+    /**
+     * @see #getPaymentFormConfiguration(PaymentFormConfigurationRequest)
+     */
+    PaymentFormConfigurationResponse getPaymentFormConfiguration(final Locale locale) {
+        return FORM_CONFIGURATIONS.get(locale);
+    }
+
+    /**
+     * @see #getPaymentFormLogo(PaymentFormLogoRequest)
+     */
+    PaymentFormLogoResponse getPaymentFormLogo(final Locale locale) {
+        return FORM_LOGOS.get(locale);
+    }
+
+    private static PaymentFormConfigurationResponse buildPaymentFormConfiguration(final Locale locale) {
+        I18nService i18n = I18nService.getInstance();
+
         return PaymentFormConfigurationResponseSpecific.PaymentFormConfigurationResponseSpecificBuilder.aPaymentFormConfigurationResponseSpecific()
                 .withPaymentForm(NoFieldForm.NoFieldFormBuilder.aNoFieldForm()
-                        .withButtonText(i18n.getMessage("form.buttonText", paymentFormConfigurationRequest.getLocale()))
-                        .withDescription(i18n.getMessage("form.description", paymentFormConfigurationRequest.getLocale()))
+                        .withButtonText(i18n.getMessage("form.buttonText", locale))
+                        .withDescription(i18n.getMessage("form.description", locale))
                         .withDisplayButton(true)
                         .build())
                 .build();
     }
 
-    @Override
-    public PaymentFormLogoResponse getPaymentFormLogo(PaymentFormLogoRequest paymentFormLogoRequest) {
+    private static PaymentFormLogoResponse buildPaymentFormLogo(final Locale locale) {
         I18nService i18n = I18nService.getInstance();
 
         return PaymentFormLogoResponseFile.PaymentFormLogoResponseFileBuilder.aPaymentFormLogoResponseFile()
                 .withHeight(LOGO_HEIGHT)
                 .withWidth(LOGO_WIDTH)
-                .withTitle(i18n.getMessage("formConfiguration.logo.title", paymentFormLogoRequest.getLocale()))
-                .withAlt(i18n.getMessage("formConfiguration.logo.alt", paymentFormLogoRequest.getLocale()))
+                .withTitle(i18n.getMessage("formConfiguration.logo.title", locale))
+                .withAlt(i18n.getMessage("formConfiguration.logo.alt", locale))
                 .build();
     }
 
     @Override
     public PaymentFormLogo getLogo(final String paymentMethodIdentifier, final Locale locale) {
-        try {
-            // Read logo file
-            InputStream input = PaymentFormConfigurationServiceImpl.class.getClassLoader().getResourceAsStream("ticketpremium-logo.png");
-            BufferedImage logo = ImageIO.read(input);
-
-            // Recover byte array from image
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            ImageIO.write(logo, "png", baos);
-
-            return PaymentFormLogo.PaymentFormLogoBuilder.aPaymentFormLogo()
-                    .withFile(baos.toByteArray())
-                    .withContentType(LOGO_CONTENT_TYPE)
-                    .build();
-        } catch (IOException e) {
-            LOGGER.error("Unable to load the logo", e);
-            throw new RuntimeException(e);
+        // The file is served as is: it is already a PNG image. The array is copied, as the caller may modify it.
+        final byte[] file = logoFile();
+        return PaymentFormLogo.PaymentFormLogoBuilder.aPaymentFormLogo()
+                .withFile(Arrays.copyOf(file, file.length))
+                .withContentType(LOGO_CONTENT_TYPE)
+                .build();
+    }
+
+    /**
+     * @return the content of the logo file, read on first use
+     */
+    private static byte[] logoFile() {
+        byte[] file = logoFile;
+        if (file == null) {
+            try (InputStream input = PaymentFormConfigurationServiceImpl.class.getClassLoader().getResourceAsStream(LOGO_FILENAME)) {
+                if (input == null) {
+                    throw new IOException(LOGO_FILENAME + " not found");
+                }
+                final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+                final byte[] buffer = new byte[4096];
+                int read;
+                while ((read = input.read(buffer)) != -1) {
+                    baos.write(buffer, 0, read);
+                }
+                file = baos.toByteArray();
+                logoFile = file;
+            } catch (IOException e) {
+                LOGGER.error("Unable to load the logo", e);
+                throw new RuntimeException(e);
+            }
         }
+        return file;
     }
 
-}
\ No newline at end of file
+}
@@ -4,11 +4,16 @@ import com.payline.payment.tsi.TsiConstants;
 import com.payline.payment.tsi.error.ErrorCodesMap;
 import com.payline.payment.tsi.exception.ExternalCommunicationException;
 import com.payline.payment.tsi.exception.InvalidRequestException;
+import com.payline.payment.tsi.request.ContractProfile;
 import com.payline.payment.tsi.request.TsiGoRequest;
 import com.payline.payment.tsi.response.TsiGoResponse;
 import com.payline.payment.tsi.utils.config.ConfigEnvironment;
 import com.payline.payment.tsi.utils.config.ConfigProperties;
+import com.payline.payment.tsi.utils.config.EnvironmentConfig;
 import com.payline.payment.tsi.utils.http.StringResponse;
+import com.payline.payment.tsi.utils.journal.TransactionJournal;
+import com.payline.payment.tsi.utils.status.PendingTransactionPoller;
+import com.payline.pmapi.bean.common.FailureCause;
 import com.payline.pmapi.bean.payment.RequestContext;
 import com.payline.pmapi.bean.payment.request.PaymentRequest;
 import com.payline.pmapi.bean.payment.response.PaymentResponse;
@@ -29,14 +34,28 @@ public class PaymentServiceImpl extends AbstractPaymentHttpService<PaymentReques
     private static final Logger logger = LogManager.getLogger( PaymentServiceImpl.class );
 
     private TsiGoRequest.Builder requestBuilder;
+    private TransactionJournal journal;
+    private PendingTransactionPoller poller;
 
     public PaymentServiceImpl() {
         super();
         this.requestBuilder = new TsiGoRequest.Builder();
+        this.journal = TransactionJournal.getInstance();
+        this.poller = PendingTransactionPoller.getInstance();
     }
 
     @Override
     public PaymentResponse paymentRequest( PaymentRequest paymentRequest ) {
+        // A contract recently rejected by TSI fails locally, without sending a request bound to be rejected again
+        final ContractProfile.Rejection rejection = this.getRejection( paymentRequest );
+        if( rejection != null ){
+            String tid = null;
+            if( paymentRequest.getTransactionId() != null ){
+                tid = requestBuilder.formatTransactionId( paymentRequest.getTransactionId() );
+            }
+            logger.warn( "Contract recently rejected by TSI, request not sent: {} ({}), tid: {}", rejection.getMessage(), rejection.getStatus(), tid );
+            return buildPaymentResponseFailure( rejection.getMessage(), FailureCause.INVALID_DATA, tid );
+        }
         return processRequest( paymentRequest );
     }
 
@@ -47,17 +66,46 @@ public class PaymentServiceImpl extends AbstractPaymentHttpService<PaymentReques
 
         // Send Go request
         ConfigEnvironment env = Boolean.FALSE.equals( paymentRequest.getEnvironment().isSandbox() ) ? ConfigEnvironment.PROD : ConfigEnvironment.TEST;
-        String scheme = ConfigProperties.get( "tsi.scheme", env );
-        String host = ConfigProperties.get( "tsi.host", env );
-        String path = ConfigProperties.get( "tsi.go.path", env );
-        return getHttpClient().doPost( scheme, host, path, tsiGoRequest.buildBody() );
+        EnvironmentConfig config = ConfigProperties.getSnapshot().getEnvironment( env );
+        return getHttpClient().doPost( config.getScheme(), config.getHost(), config.getGoPath(), tsiGoRequest.buildBody() );
     }
 
     @Override
     public PaymentResponse processResponse(final StringResponse response, final String tid) throws IOException {
+        // Parse response
+        return this.toPaymentResponse( (new TsiGoResponse.Builder()).fromJson(response.getContent()), tid );
+    }
+
+    @Override
+    protected PaymentResponse processResponse( final PaymentRequest paymentRequest, final StringResponse response, final String tid ) throws IOException {
         // Parse response
         final TsiGoResponse tsiGoResponse = (new TsiGoResponse.Builder()).fromJson(response.getContent());
 
+        final int status = tsiGoResponse.getStatus();
+        try {
+            // Keep the rejection of the contract parameters, to fail the next requests locally
+            if( status == TsiConstants.GO_STATUS_INVALID_KEY_ID
+                    || status == TsiConstants.GO_STATUS_INVALID_MERCHANT_ID
+                    || status == TsiConstants.GO_STATUS_INVALID_KEY_VALUE ){
+                ContractProfile.of( paymentRequest.getContractConfiguration() ).reject( status, tsiGoResponse.getMessage() );
+            }
+
+            // Record the creation of the transaction in the local journal, and poll its status until it is terminal
+            if( status == TsiConstants.GO_STATUS_OK ){
+                final ConfigEnvironment env = PaymentWithRedirectionServiceImpl.getConfigEnvironment( paymentRequest.getEnvironment() );
+                journal.created( env, tsiGoResponse.getTid() );
+                if( poller.isEnabled() ){
+                    poller.track( env, tsiGoResponse.getTid(), ContractProfile.of( paymentRequest.getContractConfiguration() ).getContractKey() );
+                }
+            }
+        } catch( InvalidRequestException e ){
+            // Can't happen: the request has been built from this contract
+            logger.warn( "The contract profile could not be recovered", e );
+        }
+        return this.toPaymentResponse( tsiGoResponse, tid );
+    }
+
+    private PaymentResponse toPaymentResponse( final TsiGoResponse tsiGoResponse, final String tid ) throws IOException {
         // If status == 1, proceed with the redirection
         if( tsiGoResponse.getStatus() == 1 ){
             final String redirectUrl = tsiGoResponse.getUrl();
@@ -82,4 +130,19 @@ public class PaymentServiceImpl extends AbstractPaymentHttpService<PaymentReques
             return buildPaymentResponseFailure( tsiGoResponse.getMessage(), ErrorCodesMap.getFailureCause( tsiGoResponse.getStatus()), tid);
         }
     }
+
+    /**
+     * @return the last rejection of the contract of the request by TSI, if it has not expired
+     */
+    private ContractProfile.Rejection getRejection( PaymentRequest paymentRequest ){
+        if( paymentRequest == null ){
+            return null;
+        }
+        try {
+            return ContractProfile.of( paymentRequest.getContractConfiguration() ).getRejection();
+        } catch( InvalidRequestException e ){
+            // The invalid request is rejected by the request builder
+            return null;
+        }
+    }
 }
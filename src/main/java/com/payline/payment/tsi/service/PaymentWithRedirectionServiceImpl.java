@@ -1,12 +1,20 @@
 package com.payline.payment.tsi.service;
 
+import com.payline.payment.tsi.TsiConstants;
 import com.payline.payment.tsi.exception.ExternalCommunicationException;
 import com.payline.payment.tsi.exception.InvalidRequestException;
+import com.payline.payment.tsi.request.ContractProfile;
+import com.payline.payment.tsi.request.TsiSealedJsonRequest;
 import com.payline.payment.tsi.request.TsiStatusCheckRequest;
+import com.payline.payment.tsi.response.AdditionalDataCodec;
 import com.payline.payment.tsi.response.TsiStatusCheckResponse;
 import com.payline.payment.tsi.utils.config.ConfigEnvironment;
 import com.payline.payment.tsi.utils.config.ConfigProperties;
+import com.payline.payment.tsi.utils.config.EnvironmentConfig;
 import com.payline.payment.tsi.utils.http.StringResponse;
+import com.payline.payment.tsi.utils.journal.TransactionJournal;
+import com.payline.payment.tsi.utils.status.PendingTransactionPoller;
+import com.payline.payment.tsi.utils.status.TransactionStatusStore;
 import com.payline.pmapi.bean.common.FailureCause;
 import com.payline.pmapi.bean.common.Message;
 import com.payline.pmapi.bean.payment.Environment;
@@ -27,14 +35,26 @@ public class PaymentWithRedirectionServiceImpl extends AbstractPaymentHttpServic
     private static final Logger logger = LogManager.getLogger( PaymentWithRedirectionServiceImpl.class );
 
     private TsiStatusCheckRequest.Builder requestBuilder;
+    private TransactionStatusStore statusStore;
+    private TransactionJournal journal;
+    private PendingTransactionPoller poller;
 
     public PaymentWithRedirectionServiceImpl() {
         super();
         this.requestBuilder = new TsiStatusCheckRequest.Builder();
+        this.statusStore = TransactionStatusStore.getInstance();
+        this.journal = TransactionJournal.getInstance();
+        this.poller = PendingTransactionPoller.getInstance();
     }
 
     @Override
     public PaymentResponse finalizeRedirectionPayment( RedirectionPaymentRequest redirectionPaymentRequest ) {
+        // A verified notification or a previous checkstatus may already have given the final status: no need to call TSI
+        final TsiStatusCheckResponse knownStatus = statusStore.get( getConfigEnvironment( redirectionPaymentRequest ), getContextTid( redirectionPaymentRequest ) );
+        if( knownStatus != null ){
+            logger.info("TSI transaction status already known, tid: {}", knownStatus.getTid());
+            return processStatusCheck(knownStatus, knownStatus.getTid());
+        }
         return processRequest(redirectionPaymentRequest);
     }
 
@@ -52,16 +72,52 @@ public class PaymentWithRedirectionServiceImpl extends AbstractPaymentHttpServic
         // Parse response
         final TsiStatusCheckResponse statusCheck = (new TsiStatusCheckResponse.Builder()).fromJson(response.getContent());
 
+        return processStatusCheck(statusCheck, tid);
+    }
+
+    @Override
+    protected PaymentResponse processResponse(final RedirectionPaymentRequest redirectionPaymentRequest, final StringResponse response, final String tid) throws IOException {
+        // Parse response
+        final TsiStatusCheckResponse statusCheck = (new TsiStatusCheckResponse.Builder()).fromJson(response.getContent());
+
+        // Keep a terminal status, for the next calls on this transaction
+        final ConfigEnvironment env = getConfigEnvironment(redirectionPaymentRequest);
+        final String contextTid = getContextTid(redirectionPaymentRequest);
+        statusStore.put(env, contextTid, statusCheck);
+        journal.statusReceived(env, contextTid, statusCheck);
+
+        // The payment is being processed: poll it soon. The customer may come back to another node than the one
+        // which created the transaction: it is tracked here too, so that it is polled if this node is its owner
+        if( !statusCheck.isTerminal() && poller.isEnabled() ){
+            try {
+                poller.customerReturned(env, contextTid, ContractProfile.of(redirectionPaymentRequest.getContractConfiguration()).getContractKey());
+            } catch (InvalidRequestException e) {
+                // Can't happen: the request has been built from this contract
+                logger.warn("The contract profile could not be recovered", e);
+            }
+        }
+
+        return processStatusCheck(statusCheck, tid);
+    }
+
+    /**
+     * Maps a transaction status, received from checkstatus or from a notification, to a {@link PaymentResponse}.
+     *
+     * @param statusCheck The transaction status
+     * @param tid The TSI transaction id
+     * @return The corresponding {@link PaymentResponse}
+     */
+    public PaymentResponse processStatusCheck(final TsiStatusCheckResponse statusCheck, final String tid) {
         // Status = "OK" and no error : transaction is a success
-        if( "OK".equals( statusCheck.getStatus() ) && !statusCheck.isError() ){
+        if( statusCheck.isSuccess() ){
             return PaymentResponseSuccess.PaymentResponseSuccessBuilder.aPaymentResponseSuccess()
                     .withMessage( new Message( Message.MessageType.SUCCESS, statusCheck.getMessage() ) )
                     .withStatusCode( statusCheck.getErCode() )
                     .withPartnerTransactionId( statusCheck.getTid() )
                     .withTransactionDetails( new EmptyTransactionDetails() )
-                    .withTransactionAdditionalData( statusCheck.getResume() )
+                    .withTransactionAdditionalData( AdditionalDataCodec.encode( statusCheck ) )
                     .build();
-        } else if ("NO SUCCESSFUL TRANSACTIONS FOUND WITHIN 6 MONTHS".equals(statusCheck.getMessage())) {
+        } else if (statusCheck.isExpired()) {
             logger.info("TSI Status Check request returned something equals to an expiration: {} ({})", statusCheck.getMessage(), statusCheck.getErCode());
             return buildPaymentResponseFailure( statusCheck.getMessage(), FailureCause.SESSION_EXPIRED, tid);
         } else { // no valid transaction was found or an error occurred
@@ -72,11 +128,28 @@ public class PaymentWithRedirectionServiceImpl extends AbstractPaymentHttpServic
 
     @Override
     public PaymentResponse handleSessionExpired(final TransactionStatusRequest transactionStatusRequest) {
-        final String tid = transactionStatusRequest.getTransactionId();
+        // The status is known by its TSI tid, like the one the customer comes back with
+        final String tid = getTid(transactionStatusRequest);
+        final ConfigEnvironment env = getConfigEnvironment(transactionStatusRequest.getEnvironment());
+        final TsiStatusCheckResponse knownStatus = statusStore.get(env, tid);
+        if( knownStatus != null ){
+            logger.info("TSI transaction status already known, tid: {}", tid);
+            return processStatusCheck(knownStatus, tid);
+        }
+        // The journal keeps the terminal statuses beyond the store TTL, and across restarts
+        final TsiStatusCheckResponse journalStatus = journal.getTerminalStatus(env, tid);
+        if( journalStatus != null ){
+            logger.info("TSI transaction status found in the journal, tid: {}", tid);
+            statusStore.put(env, tid, journalStatus);
+            return processStatusCheck(journalStatus, tid);
+        }
         try {
             final TsiStatusCheckRequest statusCheckRequest = requestBuilder.fromTransactionStatusRequest(transactionStatusRequest);
             final StringResponse response = postCheckstatus(transactionStatusRequest.getEnvironment(), statusCheckRequest.buildBody());
-            return processResponse(response, tid);
+            final TsiStatusCheckResponse statusCheck = (new TsiStatusCheckResponse.Builder()).fromJson(response.getContent());
+            statusStore.put(env, tid, statusCheck);
+            journal.statusReceived(env, tid, statusCheck);
+            return processStatusCheck(statusCheck, tid);
         } catch (InvalidRequestException e) {
             logger.error( "TSI handleSessionExpired, the TransactionStatusRequest is invalid", e);
             return buildPaymentResponseFailure(DEFAULT_ERROR_CODE, FailureCause.INVALID_DATA, tid);
@@ -89,6 +162,47 @@ public class PaymentWithRedirectionServiceImpl extends AbstractPaymentHttpServic
         }
     }
 
+    /**
+     * @param statusCheck The transaction status
+     * @return true if the transaction is a success, which is a terminal status
+     */
+    public static boolean isSuccess(final TsiStatusCheckResponse statusCheck) {
+        return statusCheck.isSuccess();
+    }
+
+    /**
+     * @return the TSI environment of the request, or null if it has no environment
+     */
+    static ConfigEnvironment getConfigEnvironment(final Environment environment) {
+        if( environment == null ){
+            return null;
+        }
+        return Boolean.FALSE.equals(environment.isSandbox()) ? ConfigEnvironment.PROD : ConfigEnvironment.TEST;
+    }
+
+    private static ConfigEnvironment getConfigEnvironment(final RedirectionPaymentRequest redirectionPaymentRequest) {
+        return redirectionPaymentRequest == null ? null : getConfigEnvironment(redirectionPaymentRequest.getEnvironment());
+    }
+
+    /**
+     * Recovers the TSI transaction id from the redirection context, if any.
+     */
+    private static String getContextTid(final RedirectionPaymentRequest redirectionPaymentRequest) {
+        if( redirectionPaymentRequest == null || redirectionPaymentRequest.getRequestContext() == null
+                || redirectionPaymentRequest.getRequestContext().getRequestData() == null ){
+            return null;
+        }
+        return redirectionPaymentRequest.getRequestContext().getRequestData().get(TsiConstants.REQUEST_CONTEXT_KEY_TID);
+    }
+
+    /**
+     * Recovers the TSI transaction id from the Payline transaction id, as it was built for the Go request.
+     */
+    private static String getTid(final TransactionStatusRequest transactionStatusRequest) {
+        final String transactionId = transactionStatusRequest.getTransactionId();
+        return transactionId == null ? null : new TsiSealedJsonRequest.Builder().formatTransactionId(transactionId);
+    }
+
     /**
      * Call StatusCheck to recover transaction info
      *
@@ -98,9 +212,7 @@ public class PaymentWithRedirectionServiceImpl extends AbstractPaymentHttpServic
     private StringResponse postCheckstatus(final Environment environment, final String body) throws IOException, URISyntaxException, ExternalCommunicationException {
         final ConfigEnvironment env = Boolean.FALSE.equals(environment.isSandbox()) ? ConfigEnvironment.PROD : ConfigEnvironment.TEST;
 
-        final String scheme = ConfigProperties.get("tsi.scheme", env);
-        final String host = ConfigProperties.get("tsi.host", env);
-        final String path = ConfigProperties.get("tsi.statusCheck.path", env);
-        return getHttpClient().doPost(scheme, host, path, body);
+        final EnvironmentConfig config = ConfigProperties.getSnapshot().getEnvironment(env);
+        return getHttpClient().doPost(config.getScheme(), config.getHost(), config.getStatusCheckPath(), body);
     }
 }
@@ -1,29 +1,35 @@
 package com.payline.payment.tsi.service;
 
-import com.google.gson.JsonSyntaxException;
-import com.payline.payment.tsi.response.TsiStatusCheckResponse;
+import com.payline.payment.tsi.utils.additionaldata.AdditionalDataReader;
+import com.payline.payment.tsi.utils.additionaldata.AdditionalDataView;
 import com.payline.pmapi.service.TransactionManagerService;
-import org.apache.logging.log4j.LogManager;
-import org.apache.logging.log4j.Logger;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 public class TransactionManagerServiceImpl implements TransactionManagerService {
 
-    private static final Logger LOGGER = LogManager.getLogger( TransactionManagerServiceImpl.class );
+    private AdditionalDataReader additionalDataReader = AdditionalDataReader.getInstance();
 
     @Override
     public Map<String, String> readAdditionalData(final String data, final String version) {
-        final Map<String, String> addData = new HashMap<>();
-        if (null != data) {
-            try {
-                final TsiStatusCheckResponse statusCheck = new TsiStatusCheckResponse.Builder().fromJson(data);
-                addData.put("authId", statusCheck.getAuthId());
-            } catch(JsonSyntaxException e) {
-                LOGGER.error("Additional data syntax incorrect [{}]", data, e);
-            }
-        }
-        return addData;
+        // Compact form (version 2) or legacy JSON
+        return additionalDataReader.read(data, version);
+    }
+
+    /**
+     * Bulk variant of {@link #readAdditionalData(String, String)}, for the back-office exports:
+     * the additional data of the rows is decoded lazily, in parallel if the rows stream is parallel.
+     *
+     * @param rows the rows holding the additional data
+     * @param data gives the stored additional data of a row
+     * @param version gives the version of the additional data of a row
+     * @param <T> the type of the rows
+     * @return the exposed fields of each row, in the order of the rows
+     */
+    public <T> Stream<AdditionalDataView> readAllAdditionalData(final Stream<T> rows, final Function<? super T, String> data,
+                                                                final Function<? super T, String> version) {
+        return additionalDataReader.readAll(rows, data, version);
     }
 }
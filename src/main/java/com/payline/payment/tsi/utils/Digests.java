@@ -0,0 +1,89 @@
+package com.payline.payment.tsi.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * The hashes used as cache keys: SHA-256 for the secret keys, with a MessageDigest kept by each thread,
+ * and the 64-bits FNV-1a hash for the other values.
+ */
+public class Digests {
+
+    /** Initial value of a 64-bits FNV-1a hash */
+    public static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial( () -> {
+        try {
+            return MessageDigest.getInstance( "SHA-256" );
+        } catch( NoSuchAlgorithmException e ){
+            // SHA-256 is mandatory for every Java platform implementation
+            throw new IllegalStateException( e );
+        }
+    });
+
+    /* This class has only static methods: no need to instantiate it */
+    private Digests(){
+    }
+
+    /**
+     * SHA-256 hash of a prefix followed by the UTF-8 encoding of a secret. The encoded secret is wiped once hashed.
+     *
+     * @param prefix The bytes hashed first: a salt, or the context of the secret
+     * @param secret The secret
+     * @return The 32 bytes of the hash
+     */
+    public static byte[] sha256( byte[] prefix, String secret ){
+        MessageDigest digest = SHA_256.get();
+        digest.reset();
+        digest.update( prefix );
+        byte[] secretBytes = secret.getBytes( StandardCharsets.UTF_8 );
+        byte[] hash = digest.digest( secretBytes );
+        Arrays.fill( secretBytes, (byte) 0 );
+        return hash;
+    }
+
+    /**
+     * @param hash The hash so far, starting from {@link #FNV_OFFSET_BASIS}
+     * @param value The value to add, a char or an unsigned byte usually
+     * @return The 64-bits FNV-1a hash including the value
+     */
+    public static long fnv1a( long hash, int value ){
+        return ( hash ^ value ) * FNV_PRIME;
+    }
+
+    /**
+     * @param hash The hash so far, starting from {@link #FNV_OFFSET_BASIS}
+     * @param chars The characters to add
+     * @return The 64-bits FNV-1a hash including the characters
+     */
+    public static long fnv1a( long hash, CharSequence chars ){
+        for( int i = 0; i < chars.length(); i++ ){
+            hash = ( hash ^ chars.charAt( i ) ) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    /**
+     * @param hash The hash so far, starting from {@link #FNV_OFFSET_BASIS}
+     * @param bytes The bytes to add, as unsigned values
+     * @return The 64-bits FNV-1a hash including the bytes
+     */
+    public static long fnv1a( long hash, byte[] bytes ){
+        for( byte b : bytes ){
+            hash = ( hash ^ ( b & 0xFF ) ) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    /**
+     * @param chars The characters to hash
+     * @return The 64-bits FNV-1a hash of the characters
+     */
+    public static long fnv1a( CharSequence chars ){
+        return fnv1a( FNV_OFFSET_BASIS, chars );
+    }
+
+}
@@ -0,0 +1,271 @@
+package com.payline.payment.tsi.utils.additionaldata;
+
+import com.google.gson.JsonSyntaxException;
+import com.payline.payment.tsi.response.AdditionalDataCodec;
+import com.payline.payment.tsi.utils.Digests;
+import com.payline.payment.tsi.utils.json.JsonKeyExtractor;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Reads the fields exposed from the transaction additional data (see {@link AdditionalDataCodec}).
+ * Only the exposed fields are extracted from the legacy JSON, and the results are kept in a bounded cache,
+ * keyed by a hash of the data content: the same transactions are read again and again when the merchants
+ * browse their transaction lists.
+ *
+ * For the exports, {@link #readAll(Stream, Function, Function)} decodes a whole stream of data, without the cache.
+ */
+public class AdditionalDataReader {
+
+    public static final String AUTH_ID = "authId";
+
+    private static final Logger LOGGER = LogManager.getLogger( AdditionalDataReader.class );
+
+    private static final String[] KEYS = { AUTH_ID };
+    private static final int DEFAULT_MAX_SIZE = 10000;
+    /** Number of elements handed to another worker when an iterator is split */
+    private static final int BATCH_SIZE = 1024;
+
+    private static final ThreadLocal<JsonKeyExtractor> EXTRACTOR = ThreadLocal.withInitial( () -> new JsonKeyExtractor( KEYS ) );
+
+    private final Map<Long, CachedData> cache;
+
+    AdditionalDataReader( int maxSize ){
+        this.cache = new LinkedHashMap<Long, CachedData>( 16, 0.75f, true ){
+            @Override
+            protected boolean removeEldestEntry( Map.Entry<Long, CachedData> eldest ){
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Holder
+     */
+    private static class SingletonHolder {
+        private static final AdditionalDataReader INSTANCE = new AdditionalDataReader( DEFAULT_MAX_SIZE );
+    }
+
+    /**
+     * @return the singleton instance
+     */
+    public static AdditionalDataReader getInstance(){
+        return SingletonHolder.INSTANCE;
+    }
+
+    /**
+     * @param data the stored additional data
+     * @param version the version of the additional data, see {@link AdditionalDataCodec#isCompact(String, String)}
+     * @return the exposed fields, or an empty map if the data is null or invalid
+     */
+    public Map<String, String> read( String data, String version ){
+        return this.view( data, version ).toMap();
+    }
+
+    /**
+     * @param data the stored additional data
+     * @param version the version of the additional data, see {@link AdditionalDataCodec#isCompact(String, String)}
+     * @return the exposed fields
+     */
+    public AdditionalDataView view( String data, String version ){
+        if( data == null ){
+            return AdditionalDataView.EMPTY;
+        }
+        final boolean compact = AdditionalDataCodec.isCompact( data, version );
+        final Long key = hash( data, compact );
+        CachedData cached;
+        synchronized( this ){
+            cached = cache.get( key );
+        }
+        // The key is a 64-bits hash: the entry is checked against the data it was decoded from
+        if( cached != null && cached.compact == compact && cached.source.equals( data ) ){
+            return cached.view;
+        }
+
+        final AdditionalDataView view = decode( data, compact, EXTRACTOR.get() );
+        synchronized( this ){
+            cache.put( key, new CachedData( data, compact, view ) );
+        }
+        return view;
+    }
+
+    /**
+     * Decodes the additional data of many transactions, lazily, as the returned stream is consumed.
+     * The results don't go through the cache. The stream is parallel if the rows stream is: each worker then
+     * decodes its own part of the rows, with its own parser state.
+     *
+     * @param rows the rows holding the additional data
+     * @param data gives the stored additional data of a row
+     * @param version gives the version of the additional data of a row, see {@link AdditionalDataCodec#isCompact(String, String)}
+     * @param <T> the type of the rows
+     * @return the exposed fields of each row, in the order of the rows
+     */
+    public <T> Stream<AdditionalDataView> readAll( Stream<T> rows, Function<? super T, String> data,
+                                                   Function<? super T, String> version ){
+        return StreamSupport.stream( new DecodingSpliterator<>( rows.spliterator(), data, version ), rows.isParallel() )
+                .onClose( rows::close );
+    }
+
+    /**
+     * Same as {@link #readAll(Stream, Function, Function)}, from an iterator. When the stream is parallel,
+     * the rows are handed to the other workers by batches of fixed size.
+     *
+     * @param rows the rows holding the additional data
+     * @param data gives the stored additional data of a row
+     * @param version gives the version of the additional data of a row, see {@link AdditionalDataCodec#isCompact(String, String)}
+     * @param parallel true to decode the rows in parallel
+     * @param <T> the type of the rows
+     * @return the exposed fields of each row, in the order of the rows
+     */
+    public <T> Stream<AdditionalDataView> readAll( Iterator<T> rows, Function<? super T, String> data,
+                                                   Function<? super T, String> version, boolean parallel ){
+        return StreamSupport.stream( new DecodingSpliterator<>( new BatchSpliterator<>( rows ), data, version ), parallel );
+    }
+
+    synchronized void clear(){
+        cache.clear();
+    }
+
+    synchronized int size(){
+        return cache.size();
+    }
+
+    private static AdditionalDataView decode( String data, String version, JsonKeyExtractor extractor ){
+        if( data == null ){
+            return AdditionalDataView.EMPTY;
+        }
+        return decode( data, AdditionalDataCodec.isCompact( data, version ), extractor );
+    }
+
+    private static AdditionalDataView decode( String data, boolean compact, JsonKeyExtractor extractor ){
+        if( compact ){
+            try {
+                return new AdditionalDataView( true, AdditionalDataCodec.decode( data ).getAuthId() );
+            } catch( IllegalArgumentException e ){
+                // Unlabelled legacy data which happens to start with the prefix
+                LOGGER.debug( "Additional data not compact, read as JSON [{}]", data, e );
+            }
+        }
+        try {
+            return new AdditionalDataView( true, extractor.extract( data )[ 0 ] );
+        } catch( JsonSyntaxException | IllegalArgumentException e ){
+            LOGGER.error( "Additional data syntax incorrect [{}]", data, e );
+            return AdditionalDataView.EMPTY;
+        }
+    }
+
+    /**
+     * 64-bits FNV-1a hash of the content and of its format.
+     */
+    private static long hash( String data, boolean compact ){
+        long hash = Digests.fnv1a( data );
+        return compact ? ~hash : hash;
+    }
+
+    private static class CachedData {
+
+        private final String source;
+        private final boolean compact;
+        private final AdditionalDataView view;
+
+        private CachedData( String source, boolean compact, AdditionalDataView view ){
+            this.source = source;
+            this.compact = compact;
+            this.view = view;
+        }
+    }
+
+    /**
+     * Decodes the rows of a source spliterator. Each split gets its own extractor.
+     */
+    private static class DecodingSpliterator<T> implements Spliterator<AdditionalDataView> {
+
+        private final Spliterator<T> source;
+        private final Function<? super T, String> data;
+        private final Function<? super T, String> version;
+        private final JsonKeyExtractor extractor = new JsonKeyExtractor( KEYS );
+
+        private DecodingSpliterator( Spliterator<T> source, Function<? super T, String> data, Function<? super T, String> version ){
+            this.source = source;
+            this.data = data;
+            this.version = version;
+        }
+
+        @Override
+        public boolean tryAdvance( Consumer<? super AdditionalDataView> action ){
+            return source.tryAdvance( row -> action.accept( this.decodeRow( row ) ) );
+        }
+
+        @Override
+        public void forEachRemaining( Consumer<? super AdditionalDataView> action ){
+            source.forEachRemaining( row -> action.accept( this.decodeRow( row ) ) );
+        }
+
+        private AdditionalDataView decodeRow( T row ){
+            return decode( data.apply( row ), version.apply( row ), extractor );
+        }
+
+        @Override
+        public Spliterator<AdditionalDataView> trySplit(){
+            Spliterator<T> split = source.trySplit();
+            return split == null ? null : new DecodingSpliterator<>( split, data, version );
+        }
+
+        @Override
+        public long estimateSize(){
+            return source.estimateSize();
+        }
+
+        @Override
+        public int characteristics(){
+            return ( source.characteristics() & ( ORDERED | SIZED | SUBSIZED ) ) | NONNULL;
+        }
+    }
+
+    /**
+     * Spliterator over an iterator, which splits by batches of {@link #BATCH_SIZE} elements
+     * (the JDK one makes the batches grow, up to millions of elements).
+     */
+    private static class BatchSpliterator<T> extends Spliterators.AbstractSpliterator<T> {
+
+        private final Iterator<T> iterator;
+
+        private BatchSpliterator( Iterator<T> iterator ){
+            super( Long.MAX_VALUE, ORDERED );
+            this.iterator = iterator;
+        }
+
+        @Override
+        public boolean tryAdvance( Consumer<? super T> action ){
+            if( !iterator.hasNext() ){
+                return false;
+            }
+            action.accept( iterator.next() );
+            return true;
+        }
+
+        @Override
+        public Spliterator<T> trySplit(){
+            if( !iterator.hasNext() ){
+                return null;
+            }
+            Object[] batch = new Object[ BATCH_SIZE ];
+            int size = 0;
+            while( size < BATCH_SIZE && iterator.hasNext() ){
+                batch[ size++ ] = iterator.next();
+            }
+            return Spliterators.spliterator( batch, 0, size, ORDERED );
+        }
+    }
+
+}
@@ -0,0 +1,44 @@
+package com.payline.payment.tsi.utils.additionaldata;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The fields exposed from the additional data of a transaction, as decoded by {@link AdditionalDataReader}.
+ */
+public final class AdditionalDataView {
+
+    /** View of null or invalid data */
+    static final AdditionalDataView EMPTY = new AdditionalDataView( false, null );
+
+    private final boolean valid;
+    private final String authId;
+
+    AdditionalDataView( boolean valid, String authId ){
+        this.valid = valid;
+        this.authId = authId;
+    }
+
+    /**
+     * @return false if the data was null or invalid
+     */
+    public boolean isValid(){
+        return valid;
+    }
+
+    public String getAuthId(){
+        return authId;
+    }
+
+    /**
+     * @return the fields, as returned by readAdditionalData: empty if the data was null or invalid
+     */
+    public Map<String, String> toMap(){
+        final Map<String, String> addData = new HashMap<>();
+        if( valid ){
+            addData.put( AdditionalDataReader.AUTH_ID, authId );
+        }
+        return addData;
+    }
+
+}
@@ -0,0 +1,185 @@
+package com.payline.payment.tsi.utils.amount;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Currency;
+
+/**
+ * Converts amounts between minor units (cents, for most currencies) and their TSI text forms, exactly:
+ * no floating-point arithmetic is involved.
+ * <ul>
+ *     <li>Go requests take "a float without useless zeros", with a dot: 1, 1.1, 1.02</li>
+ *     <li>checkstatus responses give the amount with a comma: 1,10</li>
+ * </ul>
+ * The number of decimals is the ISO 4217 exponent of the currency (0 for JPY, 2 for EUR, 3 for KWD...).
+ */
+public class AmountCodec {
+
+    /** Exponent used when the currency has none (pseudo-currencies) */
+    public static final int DEFAULT_EXPONENT = 2;
+
+    /** Longest formatted long: sign, 19 digits, separator and leading zero */
+    private static final int MAX_LENGTH = 22;
+    private static final int MAX_EXPONENT = 18;
+    private static final long[] POWERS_OF_TEN = new long[ MAX_EXPONENT + 1 ];
+    static {
+        POWERS_OF_TEN[ 0 ] = 1;
+        for( int i = 1; i <= MAX_EXPONENT; i++ ){
+            POWERS_OF_TEN[ i ] = POWERS_OF_TEN[ i - 1 ] * 10;
+        }
+    }
+
+    private static final ThreadLocal<char[]> BUFFER = ThreadLocal.withInitial( () -> new char[ MAX_LENGTH ] );
+
+    /* This class has only static methods: no need to instantiate it */
+    private AmountCodec(){
+    }
+
+    /**
+     * @param currency the currency, possibly null
+     * @return the ISO 4217 exponent of the currency, or {@link #DEFAULT_EXPONENT} if it has none
+     */
+    public static int exponent( Currency currency ){
+        int digits = currency == null ? -1 : currency.getDefaultFractionDigits();
+        return digits < 0 ? DEFAULT_EXPONENT : digits;
+    }
+
+    /**
+     * Formats an amount for a Go request: decimal dot, no useless zero.
+     *
+     * @param minorUnits the amount, in minor units
+     * @param exponent the number of minor units digits
+     * @return the formatted amount
+     */
+    public static String format( BigInteger minorUnits, int exponent ){
+        if( minorUnits.bitLength() < Long.SIZE && exponent <= MAX_EXPONENT ){
+            return format( minorUnits.longValue(), exponent );
+        }
+        BigDecimal amount = new BigDecimal( minorUnits, exponent ).stripTrailingZeros();
+        return amount.scale() < 0 ? amount.setScale( 0 ).toPlainString() : amount.toPlainString();
+    }
+
+    /**
+     * @see #format(BigInteger, int)
+     */
+    public static String format( long minorUnits, int exponent ){
+        char[] buffer = BUFFER.get();
+        int start = format( minorUnits, exponent, buffer );
+        return new String( buffer, start, buffer.length - start );
+    }
+
+    /**
+     * Formats an amount for a Go request at the end of a buffer, without allocation.
+     *
+     * @param minorUnits the amount, in minor units
+     * @param exponent the number of minor units digits, 18 at most
+     * @param dest the buffer, 22 characters long at least
+     * @return the index of the first character of the formatted amount, which ends at the end of the buffer
+     */
+    public static int format( long minorUnits, int exponent, char[] dest ){
+        if( exponent < 0 || exponent > MAX_EXPONENT ){
+            throw new IllegalArgumentException( "Unsupported currency exponent: " + exponent );
+        }
+        boolean negative = minorUnits < 0;
+        // Works on the negative value, which doesn't overflow for Long.MIN_VALUE
+        long value = negative ? minorUnits : -minorUnits;
+        int position = dest.length;
+
+        // Decimal part, without its trailing zeros
+        boolean significant = false;
+        for( int i = 0; i < exponent; i++ ){
+            int digit = (int) -( value % 10 );
+            value /= 10;
+            if( digit != 0 || significant ){
+                dest[ --position ] = (char) ( '0' + digit );
+                significant = true;
+            }
+        }
+        if( significant ){
+            dest[ --position ] = '.';
+        }
+
+        // Integer part
+        do {
+            dest[ --position ] = (char) ( '0' - value % 10 );
+            value /= 10;
+        } while( value != 0 );
+
+        if( negative ){
+            dest[ --position ] = '-';
+        }
+        return position;
+    }
+
+    /**
+     * Parses an amount from a checkstatus response ("XX,XX"). A dot is accepted as a separator as well,
+     * and the decimal part may be shorter than the exponent, or missing.
+     *
+     * @param amount the amount
+     * @param exponent the number of minor units digits
+     * @return the amount in minor units
+     * @throws NumberFormatException if the amount is not valid, has more decimals than the exponent, or overflows
+     */
+    public static long parse( String amount, int exponent ){
+        if( amount == null || amount.isEmpty() ){
+            throw new NumberFormatException( "Empty amount" );
+        }
+        if( exponent < 0 || exponent > MAX_EXPONENT ){
+            throw new NumberFormatException( "Unsupported currency exponent: " + exponent );
+        }
+        int length = amount.length();
+        boolean negative = amount.charAt( 0 ) == '-';
+        int i = negative ? 1 : 0;
+        int integerDigits = 0;
+        int decimals = 0;
+        boolean separator = false;
+        // Accumulates the negative value, whose range is wider
+        long value = 0;
+        for( ; i < length; i++ ){
+            char c = amount.charAt( i );
+            if( c == ',' || c == '.' ){
+                if( separator || integerDigits == 0 ){
+                    throw invalid( amount );
+                }
+                separator = true;
+                continue;
+            }
+            if( c < '0' || c > '9' ){
+                throw invalid( amount );
+            }
+            if( separator ){
+                if( ++decimals > exponent ){
+                    throw new NumberFormatException( "Too many decimals for the currency: " + amount );
+                }
+            } else {
+                integerDigits++;
+            }
+            value = appendDigit( value, c - '0', amount );
+        }
+        if( integerDigits == 0 || ( separator && decimals == 0 ) ){
+            throw invalid( amount );
+        }
+        for( ; decimals < exponent; decimals++ ){
+            value = appendDigit( value, 0, amount );
+        }
+        if( !negative ){
+            if( value == Long.MIN_VALUE ){
+                throw new NumberFormatException( "Amount out of range: " + amount );
+            }
+            return -value;
+        }
+        return value;
+    }
+
+    private static long appendDigit( long value, int digit, String amount ){
+        if( value < ( Long.MIN_VALUE + digit ) / 10 ){
+            throw new NumberFormatException( "Amount out of range: " + amount );
+        }
+        return value * 10 - digit;
+    }
+
+    private static NumberFormatException invalid( String amount ){
+        return new NumberFormatException( "Invalid amount: " + amount );
+    }
+
+}
@@ -0,0 +1,104 @@
+package com.payline.payment.tsi.utils.cluster;
+
+import com.payline.payment.tsi.utils.Digests;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Consistent-hash ring: assigns each key (a TSI transaction id) to exactly one member (a plugin node).
+ * Each member is placed on the ring at several points (virtual nodes), for an even share of the keys;
+ * a key belongs to the member of the first point at or after its hash, going around the ring.
+ * When a member joins or leaves, only the keys of its share move: about 1/n of them, with n members.
+ *
+ * The ring is immutable. It only depends on the set of members: every node builds the same ring from the same members,
+ * whatever their order.
+ */
+public final class ConsistentHashRing {
+
+    public static final int DEFAULT_VIRTUAL_NODES = 128;
+
+    private final List<String> members;
+    /** The points of the ring, sorted */
+    private final long[] points;
+    /** The member of each point */
+    private final String[] owners;
+
+    /**
+     * @param members The members (duplicates are ignored)
+     * @param virtualNodes The number of points of each member on the ring
+     */
+    public ConsistentHashRing( Collection<String> members, int virtualNodes ){
+        if( virtualNodes < 1 ){
+            throw new IllegalArgumentException( "The number of virtual nodes must be at least 1" );
+        }
+        this.members = Collections.unmodifiableList( new ArrayList<>( new TreeSet<>( members ) ) );
+
+        int count = this.members.size() * virtualNodes;
+        long[] hashes = new long[ count ];
+        Integer[] order = new Integer[ count ];
+        for( int m = 0; m < this.members.size(); m++ ){
+            for( int v = 0; v < virtualNodes; v++ ){
+                int index = m * virtualNodes + v;
+                hashes[ index ] = hash( this.members.get( m ) + '#' + v );
+                order[ index ] = index;
+            }
+        }
+        // On a collision, the members are sorted: the order stays the same on every node
+        Arrays.sort( order, Comparator.<Integer>comparingLong( i -> hashes[ i ] ).thenComparingInt( i -> i ) );
+        this.points = new long[ count ];
+        this.owners = new String[ count ];
+        for( int i = 0; i < count; i++ ){
+            points[ i ] = hashes[ order[ i ] ];
+            owners[ i ] = this.members.get( order[ i ] / virtualNodes );
+        }
+    }
+
+    /**
+     * @return the members, sorted
+     */
+    public List<String> getMembers(){
+        return members;
+    }
+
+    /**
+     * @param key A key
+     * @return the member the key belongs to, or null if the ring has no member
+     */
+    public String ownerOf( String key ){
+        if( points.length == 0 ){
+            return null;
+        }
+        int index = Arrays.binarySearch( points, hash( key ) );
+        if( index < 0 ){
+            index = -index - 1;
+        } else {
+            // Several points may share the hash: take the first one
+            while( index > 0 && points[ index - 1 ] == points[ index ] ){
+                index--;
+            }
+        }
+        return owners[ index == points.length ? 0 : index ];
+    }
+
+    /**
+     * 64-bits FNV-1a hash of the characters, mixed to spread the close keys (like the successive virtual nodes of a member)
+     * over the whole ring.
+     */
+    static long hash( String key ){
+        long hash = Digests.fnv1a( key );
+        // Finalizer of MurmurHash3
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+}
@@ -0,0 +1,81 @@
+package com.payline.payment.tsi.utils.cluster;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * The members listed in a local file, one node id per line (empty lines and lines starting with '#' are ignored).
+ * It stands in for a membership service: the file is maintained by the deployment, and checked for changes
+ * every {@value #CHECK_INTERVAL_SECONDS} seconds at most. If it can't be read, the last members read are kept.
+ */
+public class FileMembershipProvider implements MembershipProvider {
+
+    static final long CHECK_INTERVAL_SECONDS = 10;
+
+    private static final Logger logger = LogManager.getLogger( FileMembershipProvider.class );
+
+    private final Path file;
+    private final LongSupplier nanoClock;
+
+    private volatile List<String> members = Collections.emptyList();
+    private volatile long nextCheck;
+    /** Modification time and size of the file when it was last read. Guarded by this. */
+    private long lastModified = -1;
+    private long size = -1;
+
+    public FileMembershipProvider( Path file ){
+        this( file, System::nanoTime );
+    }
+
+    FileMembershipProvider( Path file, LongSupplier nanoClock ){
+        this.file = file;
+        this.nanoClock = nanoClock;
+        this.refresh();
+    }
+
+    @Override
+    public List<String> getMembers(){
+        if( nanoClock.getAsLong() - nextCheck >= 0 ){
+            this.refresh();
+        }
+        return members;
+    }
+
+    /**
+     * Reads the file again if it has changed since it was last read.
+     */
+    synchronized void refresh(){
+        nextCheck = nanoClock.getAsLong() + TimeUnit.SECONDS.toNanos( CHECK_INTERVAL_SECONDS );
+        try {
+            BasicFileAttributes attributes = Files.readAttributes( file, BasicFileAttributes.class );
+            if( attributes.lastModifiedTime().toMillis() == lastModified && attributes.size() == size ){
+                return;
+            }
+            List<String> read = new ArrayList<>();
+            for( String line : Files.readAllLines( file, StandardCharsets.UTF_8 ) ){
+                String id = line.trim();
+                if( !id.isEmpty() && !id.startsWith( "#" ) ){
+                    read.add( id );
+                }
+            }
+            lastModified = attributes.lastModifiedTime().toMillis();
+            size = attributes.size();
+            members = Collections.unmodifiableList( read );
+            logger.info( "Cluster members read from {}: {}", file, read );
+        } catch( IOException e ){
+            logger.error( "The cluster members file could not be read, the current members are kept: " + file, e );
+        }
+    }
+
+}
@@ -0,0 +1,18 @@
+package com.payline.payment.tsi.utils.cluster;
+
+import java.util.List;
+
+/**
+ * Provides the current members of the cluster of plugin nodes, by node id.
+ * It is called on each ownership check: an implementation must answer from memory, and return the same list instance
+ * as long as the membership doesn't change.
+ */
+@FunctionalInterface
+public interface MembershipProvider {
+
+    /**
+     * @return the ids of the nodes of the cluster, possibly empty
+     */
+    List<String> getMembers();
+
+}
@@ -0,0 +1,129 @@
+package com.payline.payment.tsi.utils.cluster;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Decides which plugin node polls or reconciles a TSI transaction in the background, so that a partner call
+ * is not repeated by every node: a transaction belongs to one node of the cluster, by consistent hashing of its tid.
+ * Every node, including the one which created a transaction, only polls the transactions it owns: a transaction
+ * moves to another node only when the membership changes.
+ *
+ * The local node id is given by the system property {@value #NODE_PROPERTY}, and the members of the cluster either by
+ * the system property {@value #MEMBERS_PROPERTY} (ids separated by commas) or by the file whose path is given by
+ * {@value #MEMBERS_FILE_PROPERTY}, see {@link FileMembershipProvider}. Without a node id or members, the node is alone:
+ * it owns every transaction. A node which is not a member owns none.
+ */
+public class PollingOwnership {
+
+    static final String NODE_PROPERTY = "tsi.cluster.node";
+    static final String MEMBERS_PROPERTY = "tsi.cluster.members";
+    static final String MEMBERS_FILE_PROPERTY = "tsi.cluster.membersFile";
+
+    private static final Logger logger = LogManager.getLogger( PollingOwnership.class );
+
+    private final String localNode;
+    private final MembershipProvider provider;
+    private final int virtualNodes;
+
+    /** The ring of the last members provided */
+    private volatile Ring ring;
+
+    /**
+     * @param localNode The id of the local node, null if the node is alone
+     * @param provider The members of the cluster, null if the node is alone
+     * @param virtualNodes The number of points of each member on the ring
+     */
+    public PollingOwnership( String localNode, MembershipProvider provider, int virtualNodes ){
+        this.localNode = localNode;
+        this.provider = localNode == null ? null : provider;
+        this.virtualNodes = virtualNodes;
+    }
+
+    /**
+     * Holder
+     */
+    private static class SingletonHolder {
+        private static final PollingOwnership INSTANCE = create();
+    }
+
+    /**
+     * @return the singleton instance
+     */
+    public static PollingOwnership getInstance(){
+        return SingletonHolder.INSTANCE;
+    }
+
+    private static PollingOwnership create(){
+        String node = System.getProperty( NODE_PROPERTY );
+        String members = System.getProperty( MEMBERS_PROPERTY );
+        String membersFile = System.getProperty( MEMBERS_FILE_PROPERTY );
+        MembershipProvider provider = null;
+        if( membersFile != null && !membersFile.isEmpty() ){
+            provider = new FileMembershipProvider( Paths.get( membersFile ) );
+        } else if( members != null && !members.isEmpty() ){
+            provider = StaticMembershipProvider.parse( members );
+        }
+        if( node == null || node.isEmpty() || provider == null ){
+            return new PollingOwnership( null, null, ConsistentHashRing.DEFAULT_VIRTUAL_NODES );
+        }
+        logger.info( "Background polls partitioned across the cluster, local node: {}", node );
+        return new PollingOwnership( node, provider, ConsistentHashRing.DEFAULT_VIRTUAL_NODES );
+    }
+
+    /**
+     * @param tid The TSI transaction id
+     * @return true if the local node polls the transaction
+     */
+    public boolean isOwner( String tid ){
+        return provider == null || localNode.equals( this.getRing().ring.ownerOf( tid ) );
+    }
+
+    /**
+     * @param tid The TSI transaction id
+     * @return the id of the node which polls the transaction, or null if the node is alone or the cluster has no member
+     */
+    public String ownerOf( String tid ){
+        return provider == null ? null : this.getRing().ring.ownerOf( tid );
+    }
+
+    /**
+     * @return the ring of the current members, built again if they have changed
+     */
+    private Ring getRing(){
+        List<String> members = provider.getMembers();
+        Ring current = ring;
+        if( current != null && current.members == members ){
+            return current;
+        }
+        Ring updated = new Ring( members, new ConsistentHashRing( members, virtualNodes ) );
+        if( current == null || !current.ring.getMembers().equals( updated.ring.getMembers() ) ){
+            if( !updated.ring.getMembers().contains( localNode ) ){
+                logger.warn( "The local node {} is not a member of the cluster {}: it polls no transaction", localNode,
+                        updated.ring.getMembers() );
+            } else {
+                logger.info( "Cluster members: {}", updated.ring.getMembers() );
+            }
+        }
+        ring = updated;
+        return updated;
+    }
+
+    /**
+     * A ring, with the list of members it was built from.
+     */
+    private static final class Ring {
+
+        private final List<String> members;
+        private final ConsistentHashRing ring;
+
+        private Ring( List<String> members, ConsistentHashRing ring ){
+            this.members = members;
+            this.ring = ring;
+        }
+    }
+
+}
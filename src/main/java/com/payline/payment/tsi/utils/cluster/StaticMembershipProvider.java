@@ -0,0 +1,36 @@
+package com.payline.payment.tsi.utils.cluster;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A fixed list of members, for instance given by a system property.
+ */
+public class StaticMembershipProvider implements MembershipProvider {
+
+    private final List<String> members;
+
+    public StaticMembershipProvider( List<String> members ){
+        this.members = Collections.unmodifiableList( new ArrayList<>( members ) );
+    }
+
+    /**
+     * @param members The ids of the members, separated by commas
+     */
+    public static StaticMembershipProvider parse( String members ){
+        List<String> ids = new ArrayList<>();
+        for( String id : members.split( "," ) ){
+            if( !id.trim().isEmpty() ){
+                ids.add( id.trim() );
+            }
+        }
+        return new StaticMembershipProvider( ids );
+    }
+
+    @Override
+    public List<String> getMembers(){
+        return members;
+    }
+
+}
@@ -3,24 +3,63 @@ package com.payline.payment.tsi.utils.config;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
 
 /**
  * Utility class which reads and provides config properties.
+ *
+ * The configuration is held in an immutable {@link ConfigSnapshot}, published through a volatile reference.
+ * The properties of the classpath file can be overridden by an external file, whose path is given by the system property
+ * {@value #OVERRIDE_PROPERTY}. This file is checked for changes every {@value #CHECK_INTERVAL_SECONDS} seconds at most:
+ * when it changes, a new snapshot is built and validated, then swapped in at once. If it is not valid, the current
+ * snapshot is kept, so that a reader never sees a partially updated configuration. If the classpath file itself is not
+ * valid, the last valid snapshot is kept, or else only the valid environments are configured.
  */
 public class ConfigProperties {
 
     private static final String FILENAME = "config.properties";
+    static final String OVERRIDE_PROPERTY = "tsi.config.override";
+    static final long CHECK_INTERVAL_SECONDS = 10;
 
     private static final Logger logger = LogManager.getLogger( ConfigProperties.class );
 
-    private static Properties properties;
+    private static final Properties defaults = readProperties();
+    private static final Object lock = new Object();
+
+    private static volatile ConfigSnapshot snapshot;
+    private static volatile long nextCheck;
+    /** Modification time and size of the override file, when the current snapshot was loaded */
+    private static FileVersion overrideVersion;
+    private static volatile Path overridePath;
+    private static volatile LongSupplier clock = System::nanoTime;
+
+    static {
+        String override = System.getProperty( OVERRIDE_PROPERTY );
+        init( override == null || override.isEmpty() ? null : Paths.get( override ), System::nanoTime );
+    }
 
     /* This class has only static methods: no need to instantiate it */
     private ConfigProperties() {
     }
 
+    /**
+     * @return the current configuration, reloaded first if the override file has changed
+     */
+    public static ConfigSnapshot getSnapshot(){
+        if( overridePath != null && clock.getAsLong() - nextCheck >= 0 ){
+            refresh();
+        }
+        return snapshot;
+    }
+
     /**
      * Get a config property by its name.
      * Warning, if the property is environment-dependent, use {@link ConfigProperties#get(String, ConfigEnvironment)} instead.
@@ -29,11 +68,7 @@ public class ConfigProperties {
      * @return The property value. Can be null if the property has not been found.
      */
     public static String get( String key ){
-        if( properties == null ){
-            readProperties();
-        }
-        return properties.getProperty( key );
-        // TODO: if null, backup to a code-based default configuration ? (to avoid runtime exception)
+        return getSnapshot().get( key );
     }
 
     /**
@@ -52,18 +87,126 @@ public class ConfigProperties {
     }
 
     /**
-     * Reads the properties file and stores the result.
+     * Loads the configuration, with an override file (possibly null), then checks this file with the given clock.
+     * The configuration of the classpath alone is used if the override file is not valid.
+     */
+    static void init( Path override, LongSupplier nanoClock ){
+        synchronized( lock ){
+            overridePath = override;
+            clock = nanoClock;
+            overrideVersion = FileVersion.of( override );
+            ConfigSnapshot loaded = null;
+            if( override != null ){
+                try {
+                    loaded = load( override );
+                } catch( IOException | IllegalArgumentException e ){
+                    logger.error( "The configuration override file {} is not valid, it is ignored", override, e );
+                }
+            }
+            if( loaded == null ){
+                try {
+                    loaded = ConfigSnapshot.of( defaults );
+                } catch( IllegalArgumentException e ){
+                    logger.error( "The configuration properties file is not valid", e );
+                    loaded = snapshot != null ? snapshot : ConfigSnapshot.partial( defaults );
+                }
+            }
+            snapshot = loaded;
+            nextCheck = clock.getAsLong() + TimeUnit.SECONDS.toNanos( CHECK_INTERVAL_SECONDS );
+        }
+    }
+
+    /**
+     * Reloads the configuration if the override file has changed since the last load.
+     *
+     * @return true if a new snapshot has been published
      */
-    private static void readProperties(){
-        properties = new Properties();
+    static boolean refresh(){
+        synchronized( lock ){
+            nextCheck = clock.getAsLong() + TimeUnit.SECONDS.toNanos( CHECK_INTERVAL_SECONDS );
+            FileVersion version = FileVersion.of( overridePath );
+            if( version == null || version.equals( overrideVersion ) ){
+                return false;
+            }
+            overrideVersion = version;
+            try {
+                snapshot = load( overridePath );
+                logger.info( "Configuration reloaded from {}", overridePath );
+                return true;
+            } catch( IOException | IllegalArgumentException e ){
+                logger.error( "The configuration override file {} is not valid, the current configuration is kept", overridePath, e );
+                return false;
+            }
+        }
+    }
 
-        try {
-            InputStream inputStream = ConfigProperties.class.getClassLoader().getResourceAsStream( FILENAME );
+    /**
+     * Builds a snapshot from the classpath properties, overridden by the content of a file.
+     */
+    private static ConfigSnapshot load( Path override ) throws IOException {
+        Properties properties = new Properties();
+        properties.putAll( defaults );
+        try( InputStream inputStream = Files.newInputStream( override ) ){
+            properties.load( inputStream );
+        }
+        return ConfigSnapshot.of( properties );
+    }
+
+    /**
+     * Reads the properties file.
+     */
+    private static Properties readProperties(){
+        Properties properties = new Properties();
+
+        try( InputStream inputStream = ConfigProperties.class.getClassLoader().getResourceAsStream( FILENAME ) ){
             properties.load( inputStream );
         }
         catch( Exception e ){
             logger.error("An error occurred reading the configuration properties file");
-            // TODO: backup to a code-based default configuration ? (to avoid runtime exception)
+        }
+        return properties;
+    }
+
+    /**
+     * The modification time and size of a file, to detect its changes.
+     */
+    private static class FileVersion {
+
+        private final long lastModified;
+        private final long size;
+
+        private FileVersion( long lastModified, long size ){
+            this.lastModified = lastModified;
+            this.size = size;
+        }
+
+        /**
+         * @return the version of the file, or null if there is no file
+         */
+        private static FileVersion of( Path path ){
+            if( path == null ){
+                return null;
+            }
+            try {
+                BasicFileAttributes attributes = Files.readAttributes( path, BasicFileAttributes.class );
+                return new FileVersion( attributes.lastModifiedTime().toMillis(), attributes.size() );
+            } catch( IOException e ){
+                return null;
+            }
+        }
+
+        @Override
+        public boolean equals( Object o ){
+            if( !( o instanceof FileVersion ) ){
+                return false;
+            }
+            FileVersion other = (FileVersion) o;
+            return lastModified == other.lastModified && size == other.size;
+        }
+
+        @Override
+        public int hashCode(){
+            return Long.hashCode( lastModified ) * 31 + Long.hashCode( size );
         }
     }
 
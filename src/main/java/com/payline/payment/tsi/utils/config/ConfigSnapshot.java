@@ -0,0 +1,110 @@
+package com.payline.payment.tsi.utils.config;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * An immutable, validated state of the configuration: the raw properties, and the typed settings of each environment.
+ * A snapshot is never modified: a reload builds a new one (see {@link ConfigProperties}).
+ */
+public final class ConfigSnapshot {
+
+    private final Map<String, String> properties;
+    private final Map<ConfigEnvironment, EnvironmentConfig> environments;
+
+    private ConfigSnapshot( Map<String, String> properties, Map<ConfigEnvironment, EnvironmentConfig> environments ){
+        this.properties = properties;
+        this.environments = environments;
+    }
+
+    /**
+     * Builds and validates a snapshot.
+     *
+     * @param properties the configuration properties
+     * @return the snapshot
+     * @throws IllegalArgumentException if the properties are not valid, with all the errors found
+     */
+    static ConfigSnapshot of( Properties properties ){
+        return build( properties, true );
+    }
+
+    /**
+     * Builds a snapshot without failing: the environments whose settings are not valid are left out.
+     * Only used when no valid configuration is available at all.
+     *
+     * @param properties the configuration properties
+     * @return the snapshot
+     */
+    static ConfigSnapshot partial( Properties properties ){
+        return build( properties, false );
+    }
+
+    private static ConfigSnapshot build( Properties properties, boolean strict ){
+        Map<String, String> values = new HashMap<>();
+        for( String name : properties.stringPropertyNames() ){
+            values.put( name, properties.getProperty( name ).trim() );
+        }
+
+        List<String> errors = new ArrayList<>();
+        Map<ConfigEnvironment, EnvironmentConfig> environments = new EnumMap<>( ConfigEnvironment.class );
+        for( ConfigEnvironment environment : ConfigEnvironment.values() ){
+            EnvironmentConfig config = EnvironmentConfig.read( values, environment, errors );
+            if( config != null ){
+                environments.put( environment, config );
+            }
+        }
+        if( strict && !errors.isEmpty() ){
+            throw new IllegalArgumentException( "Invalid configuration: " + String.join( ", ", errors ) );
+        }
+
+        return new ConfigSnapshot( Collections.unmodifiableMap( values ), Collections.unmodifiableMap( environments ) );
+    }
+
+    /**
+     * @param key The name of the property to recover
+     * @return The property value. Can be null if the property has not been found.
+     */
+    public String get( String key ){
+        return properties.get( key );
+    }
+
+    /**
+     * @param environment The runtime environment
+     * @return true if the settings of the environment are valid (always the case, unless the snapshot is partial)
+     */
+    public boolean hasEnvironment( ConfigEnvironment environment ){
+        return environments.containsKey( environment );
+    }
+
+    /**
+     * @param environment The runtime environment
+     * @return the settings of the environment
+     * @throws IllegalStateException if the settings of the environment are not valid
+     */
+    public EnvironmentConfig getEnvironment( ConfigEnvironment environment ){
+        EnvironmentConfig config = environments.get( environment );
+        if( config == null ){
+            throw new IllegalStateException( "The configuration of the environment " + environment + " is not valid" );
+        }
+        return config;
+    }
+
+    /**
+     * @param host a TSI host
+     * @return the settings of the environment of this host, or null if it is not a configured host
+     */
+    public EnvironmentConfig forHost( String host ){
+        for( EnvironmentConfig environment : environments.values() ){
+            if( environment.getHost().equals( host ) ){
+                return environment;
+            }
+        }
+        return null;
+    }
+
+}
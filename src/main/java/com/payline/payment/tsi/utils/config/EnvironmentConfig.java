@@ -0,0 +1,153 @@
+package com.payline.payment.tsi.utils.config;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The validated settings of a {@link ConfigEnvironment}: TSI endpoints, HTTP timeouts and connection pool size.
+ * Instances are immutable.
+ */
+public final class EnvironmentConfig {
+
+    public static final int DEFAULT_CONNECT_TIMEOUT = 5000;
+    public static final int DEFAULT_CONNECTION_REQUEST_TIMEOUT = 10000;
+    public static final int DEFAULT_SOCKET_TIMEOUT = 10000;
+    public static final int DEFAULT_MAX_CONNECTIONS = 20;
+
+    private final String scheme;
+    private final String host;
+    private final String goPath;
+    private final String statusCheckPath;
+    private final int connectTimeout;
+    private final int connectionRequestTimeout;
+    private final int socketTimeout;
+    private final int maxConnections;
+
+    private EnvironmentConfig( String scheme, String host, String goPath, String statusCheckPath, int connectTimeout,
+                               int connectionRequestTimeout, int socketTimeout, int maxConnections ){
+        this.scheme = scheme;
+        this.host = host;
+        this.goPath = goPath;
+        this.statusCheckPath = statusCheckPath;
+        this.connectTimeout = connectTimeout;
+        this.connectionRequestTimeout = connectionRequestTimeout;
+        this.socketTimeout = socketTimeout;
+        this.maxConnections = maxConnections;
+    }
+
+    /**
+     * Reads and validates the settings of an environment: the endpoint properties are required,
+     * the timeouts (in milliseconds) and the pool size are optional but must be positive.
+     *
+     * @param properties all the properties
+     * @param environment the environment
+     * @param errors receives the validation errors
+     * @return the settings, or null if they are not valid
+     */
+    static EnvironmentConfig read( Map<String, String> properties, ConfigEnvironment environment, List<String> errors ){
+        Reader reader = new Reader( properties, environment.getPrefix() + ".", errors );
+        EnvironmentConfig config = new EnvironmentConfig(
+                reader.required( "tsi.scheme" ),
+                reader.required( "tsi.host" ),
+                reader.required( "tsi.go.path" ),
+                reader.required( "tsi.statusCheck.path" ),
+                reader.positive( "tsi.http.connectTimeout", DEFAULT_CONNECT_TIMEOUT ),
+                reader.positive( "tsi.http.connectionRequestTimeout", DEFAULT_CONNECTION_REQUEST_TIMEOUT ),
+                reader.positive( "tsi.http.socketTimeout", DEFAULT_SOCKET_TIMEOUT ),
+                reader.positive( "tsi.http.maxConnections", DEFAULT_MAX_CONNECTIONS )
+        );
+        return reader.valid ? config : null;
+    }
+
+    public String getScheme(){
+        return scheme;
+    }
+
+    public String getHost(){
+        return host;
+    }
+
+    public String getGoPath(){
+        return goPath;
+    }
+
+    public String getStatusCheckPath(){
+        return statusCheckPath;
+    }
+
+    /**
+     * @return the timeout to establish a connection, in milliseconds
+     */
+    public int getConnectTimeout(){
+        return connectTimeout;
+    }
+
+    /**
+     * @return the timeout to obtain a connection from the pool, in milliseconds
+     */
+    public int getConnectionRequestTimeout(){
+        return connectionRequestTimeout;
+    }
+
+    /**
+     * @return the timeout waiting for data, in milliseconds
+     */
+    public int getSocketTimeout(){
+        return socketTimeout;
+    }
+
+    /**
+     * @return the maximum number of pooled connections to the host
+     */
+    public int getMaxConnections(){
+        return maxConnections;
+    }
+
+    /**
+     * Reads the properties of an environment, recording the errors.
+     */
+    private static class Reader {
+
+        private final Map<String, String> properties;
+        private final String prefix;
+        private final List<String> errors;
+        private boolean valid = true;
+
+        private Reader( Map<String, String> properties, String prefix, List<String> errors ){
+            this.properties = properties;
+            this.prefix = prefix;
+            this.errors = errors;
+        }
+
+        private String required( String key ){
+            String value = properties.get( prefix + key );
+            if( value == null || value.isEmpty() ){
+                this.error( "missing property " + prefix + key );
+            }
+            return value;
+        }
+
+        private int positive( String key, int defaultValue ){
+            String value = properties.get( prefix + key );
+            if( value == null || value.isEmpty() ){
+                return defaultValue;
+            }
+            try {
+                int parsed = Integer.parseInt( value );
+                if( parsed > 0 ){
+                    return parsed;
+                }
+            } catch( NumberFormatException e ){
+                // reported below
+            }
+            this.error( "property " + prefix + key + " must be a positive integer: " + value );
+            return defaultValue;
+        }
+
+        private void error( String message ){
+            errors.add( message );
+            valid = false;
+        }
+    }
+
+}
@@ -1,16 +1,29 @@
 package com.payline.payment.tsi.utils.http;
 
 import com.payline.payment.tsi.exception.ExternalCommunicationException;
+import com.payline.payment.tsi.utils.config.ConfigEnvironment;
+import com.payline.payment.tsi.utils.config.ConfigProperties;
+import com.payline.payment.tsi.utils.config.ConfigSnapshot;
+import com.payline.payment.tsi.utils.config.EnvironmentConfig;
 import org.apache.http.HttpHeaders;
+import org.apache.http.HttpHost;
 import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.utils.URIBuilder;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.UnsupportedSchemeException;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
 import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.BasicCredentialsProvider;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.DefaultSchemePortResolver;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.util.EntityUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -31,6 +44,12 @@ public abstract class HttpClient {
     protected CloseableHttpClient client;
 
     private static final Logger LOGGER = LogManager.getLogger(HttpClient.class);
+    /** Connections per route of the client built from the system properties, when no environment is configured */
+    private static final int DEFAULT_MAX_PER_ROUTE = 5;
+
+    private final PoolingHttpClientConnectionManager connectionManager;
+    /** The configuration whose pool settings are applied to the connection manager. Written while holding the lock. */
+    private volatile ConfigSnapshot appliedSnapshot;
 
     /**
      *  Instantiate a HTTP client.
@@ -38,18 +57,73 @@ public abstract class HttpClient {
     public HttpClient() {
 
         final RequestConfig requestConfig = RequestConfig.custom()
-            .setConnectTimeout(5000)
-            .setConnectionRequestTimeout(10000)
-            .setSocketTimeout(10000).build();
+            .setConnectTimeout(EnvironmentConfig.DEFAULT_CONNECT_TIMEOUT)
+            .setConnectionRequestTimeout(EnvironmentConfig.DEFAULT_CONNECTION_REQUEST_TIMEOUT)
+            .setSocketTimeout(EnvironmentConfig.DEFAULT_SOCKET_TIMEOUT).build();
+
+        // The SSL socket factory of the builder is ignored when a connection manager is given: it is registered here
+        final Registry<ConnectionSocketFactory> socketFactories = RegistryBuilder.<ConnectionSocketFactory>create()
+                .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                .register("https", new SSLConnectionSocketFactory(HttpsURLConnection.getDefaultSSLSocketFactory(), SSLConnectionSocketFactory.getDefaultHostnameVerifier()))
+                .build();
+        this.connectionManager = new PoolingHttpClientConnectionManager(socketFactories);
+        this.applyPoolSettings(ConfigProperties.getSnapshot());
 
         final HttpClientBuilder builder = HttpClientBuilder.create();
         builder.useSystemProperties()
+                .setConnectionManager(connectionManager)
                 .setDefaultRequestConfig(requestConfig)
-                .setDefaultCredentialsProvider(new BasicCredentialsProvider())
-                .setSSLSocketFactory(new SSLConnectionSocketFactory(HttpsURLConnection.getDefaultSSLSocketFactory(), SSLConnectionSocketFactory.getDefaultHostnameVerifier()));
+                .setDefaultCredentialsProvider(new BasicCredentialsProvider());
         this.client = builder.build();
     }
 
+    /**
+     * Sizes the connection pool of each TSI host, if the configuration has changed since the last call.
+     * The requests only take the lock when it has changed.
+     */
+    private void applyPoolSettings(final ConfigSnapshot snapshot) {
+        if (snapshot == appliedSnapshot) {
+            return;
+        }
+        synchronized (this) {
+            if (snapshot != appliedSnapshot) {
+                this.resizePool(snapshot);
+                appliedSnapshot = snapshot;
+            }
+        }
+    }
+
+    /**
+     * Applies the pool settings of the configuration to the connection manager. Must be called while holding the lock.
+     */
+    private void resizePool(final ConfigSnapshot snapshot) {
+        int total = 0;
+        int maxPerRoute = 0;
+        for (ConfigEnvironment environment : ConfigEnvironment.values()) {
+            if (!snapshot.hasEnvironment(environment)) {
+                continue;
+            }
+            final EnvironmentConfig config = snapshot.getEnvironment(environment);
+            final HttpHost target = new HttpHost(config.getHost(), -1, config.getScheme());
+            int port;
+            try {
+                port = DefaultSchemePortResolver.INSTANCE.resolve(target);
+            } catch (UnsupportedSchemeException e) {
+                port = -1;
+            }
+            final HttpHost resolved = new HttpHost(config.getHost(), port, config.getScheme());
+            connectionManager.setMaxPerRoute(new HttpRoute(resolved, null, "https".equalsIgnoreCase(config.getScheme())), config.getMaxConnections());
+            total += config.getMaxConnections();
+            maxPerRoute = Math.max(maxPerRoute, config.getMaxConnections());
+        }
+        // The other routes (a proxy, a host resolved otherwise) get the largest configured limit, not the pool default of 2
+        if (maxPerRoute == 0) {
+            maxPerRoute = DEFAULT_MAX_PER_ROUTE;
+        }
+        connectionManager.setDefaultMaxPerRoute(maxPerRoute);
+        connectionManager.setMaxTotal(Math.max(total, maxPerRoute));
+    }
+
     /**
      * Send a POST request.
      *
@@ -72,6 +146,15 @@ public abstract class HttpClient {
                 .build();
 
         final HttpPost httpPostRequest = new HttpPost(uri);
+        final ConfigSnapshot snapshot = ConfigProperties.getSnapshot();
+        this.applyPoolSettings(snapshot);
+        final EnvironmentConfig config = snapshot.forHost(host);
+        if (config != null) {
+            httpPostRequest.setConfig(RequestConfig.custom()
+                    .setConnectTimeout(config.getConnectTimeout())
+                    .setConnectionRequestTimeout(config.getConnectionRequestTimeout())
+                    .setSocketTimeout(config.getSocketTimeout()).build());
+        }
         httpPostRequest.setEntity(new StringEntity(body));
         httpPostRequest.setHeader(HttpHeaders.CONTENT_TYPE, contentType);
 
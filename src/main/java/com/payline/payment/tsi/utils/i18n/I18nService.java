@@ -3,21 +3,60 @@ package com.payline.payment.tsi.utils.i18n;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
-import java.util.MissingResourceException;
-import java.util.ResourceBundle;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
 
+/**
+ * Provides the translated messages.
+ *
+ * The messages of a locale are resolved once, the same way as {@link java.util.ResourceBundle} does
+ * (messages_fr_FR, then messages_fr, then messages; the default locale if the locale has no messages file),
+ * into a flat immutable table: a lookup is then a single hash probe.
+ * The files which don't exist are remembered as such, and a missing key is logged once a minute at most.
+ */
 public class I18nService {
 
     private static final Logger logger = LogManager.getLogger( I18nService.class );
 
     private static final String RESOURCE_BUNDLE_BASE_NAME = "messages";
+    private static final int MAX_LOCALES = 256;
+    private static final int MAX_MISSING_KEYS = 1024;
+    private static final long MISSING_KEY_LOG_INTERVAL = TimeUnit.MINUTES.toNanos( 1 );
+    /** Marks a messages file which doesn't exist */
+    private static final Map<String, String> NO_FILE = Collections.emptyMap();
+
+    /** The messages of each file, by suffix ("", "_fr", "_fr_FR"...) */
+    private final ConcurrentMap<String, Map<String, String>> files = new ConcurrentHashMap<>();
+    /** The resolved messages of each locale */
+    private final ConcurrentMap<Locale, Map<String, String>> tables = new ConcurrentHashMap<>();
+    /** The time a missing key has been logged, by locale and key */
+    private final ConcurrentMap<String, Long> missingKeys = new ConcurrentHashMap<>();
+    private final LongSupplier clock;
 
     /**
      * Private constructor
      */
     private I18nService(){
         Locale.setDefault( new Locale( "en" ) );
+        this.clock = System::nanoTime;
+    }
+
+    /**
+     * Constructor for tests, with a clock for the missing keys logging.
+     */
+    I18nService( LongSupplier clock ){
+        this.clock = clock;
     }
 
     /**
@@ -38,13 +77,110 @@ public class I18nService {
     }
 
     public String getMessage( final String key, final Locale locale ){
-        ResourceBundle messages = ResourceBundle.getBundle( RESOURCE_BUNDLE_BASE_NAME, locale );
-        try {
-            return messages.getString( key );
+        String message = this.table( locale ).get( key );
+        if( message == null ){
+            this.logMissingKey( key, locale );
+            return "???" + locale + "." + key + "???";
+        }
+        return message;
+    }
+
+    /**
+     * @return the resolved messages of a locale
+     */
+    Map<String, String> table( Locale locale ){
+        Map<String, String> table = tables.get( locale );
+        if( table == null ){
+            table = this.resolve( locale );
+            if( tables.size() < MAX_LOCALES ){
+                tables.putIfAbsent( locale, table );
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Merges the messages files of a locale, from the most generic to the most specific.
+     */
+    private Map<String, String> resolve( Locale locale ){
+        List<String> suffixes = candidateSuffixes( locale );
+        boolean found = false;
+        for( String suffix : suffixes ){
+            found |= this.file( suffix ) != NO_FILE;
+        }
+        Locale defaultLocale = Locale.getDefault();
+        if( !found && !locale.equals( defaultLocale ) ){
+            // Same fallback as ResourceBundle: the default locale, then the base file
+            return this.table( defaultLocale );
+        }
+
+        Map<String, String> messages = new HashMap<>( this.file( "" ) );
+        for( int i = suffixes.size() - 1; i >= 0; i-- ){
+            messages.putAll( this.file( suffixes.get( i ) ) );
         }
-        catch( MissingResourceException e ){
+        return Collections.unmodifiableMap( messages );
+    }
+
+    /**
+     * @return the suffixes of the specific messages files of a locale, the most specific first
+     */
+    private static List<String> candidateSuffixes( Locale locale ){
+        List<String> suffixes = new ArrayList<>( 3 );
+        String language = locale.getLanguage();
+        String country = locale.getCountry();
+        String variant = locale.getVariant();
+        if( !variant.isEmpty() ){
+            suffixes.add( "_" + language + "_" + country + "_" + variant );
+        }
+        if( !country.isEmpty() ){
+            suffixes.add( "_" + language + "_" + country );
+        }
+        if( !language.isEmpty() ){
+            suffixes.add( "_" + language );
+        }
+        return suffixes;
+    }
+
+    /**
+     * @return the messages of a file, or {@link #NO_FILE} if it doesn't exist
+     */
+    private Map<String, String> file( String suffix ){
+        return files.computeIfAbsent( suffix, s -> {
+            String name = RESOURCE_BUNDLE_BASE_NAME + s + ".properties";
+            try( InputStream inputStream = I18nService.class.getClassLoader().getResourceAsStream( name ) ){
+                if( inputStream == null ){
+                    return NO_FILE;
+                }
+                Properties properties = new Properties();
+                properties.load( inputStream );
+                Map<String, String> messages = new HashMap<>();
+                for( String key : properties.stringPropertyNames() ){
+                    messages.put( key, properties.getProperty( key ) );
+                }
+                return messages;
+            } catch( IOException e ){
+                logger.error( "An error occurred reading the messages file " + name, e );
+                return NO_FILE;
+            }
+        } );
+    }
+
+    /**
+     * Logs a missing key, unless it has been logged less than a minute ago.
+     */
+    private void logMissingKey( String key, Locale locale ){
+        String id = locale + "." + key;
+        long now = clock.getAsLong();
+        Long last = missingKeys.get( id );
+        if( last != null && now - last < MISSING_KEY_LOG_INTERVAL ){
+            return;
+        }
+        if( missingKeys.size() >= MAX_MISSING_KEYS ){
+            missingKeys.clear();
+        }
+        boolean logged = last == null ? missingKeys.putIfAbsent( id, now ) == null : missingKeys.replace( id, last, now );
+        if( logged ){
             logger.error( "Trying to get a message with a key that does not exist: " + key + " (language: " + locale.getLanguage() + ")" );
-            return "???" + locale + "." + key + "???";
         }
     }
 
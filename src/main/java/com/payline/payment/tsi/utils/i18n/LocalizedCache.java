@@ -0,0 +1,50 @@
+package com.payline.payment.tsi.utils.i18n;
+
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * Memoizes a value which depends on the locale only (a translated label, a form...).
+ * The values must be immutable, or copied by the caller before they are handed out.
+ *
+ * @param <T> the type of the values
+ */
+public class LocalizedCache<T> {
+
+    private static final int MAX_LOCALES = 256;
+
+    private final Function<Locale, T> factory;
+    private final ConcurrentMap<Locale, T> values = new ConcurrentHashMap<>();
+
+    /**
+     * @param factory builds the value of a locale
+     */
+    public LocalizedCache( Function<Locale, T> factory ){
+        this.factory = factory;
+    }
+
+    /**
+     * @param locale the locale
+     * @return the value of the locale, built on first use
+     */
+    public T get( Locale locale ){
+        if( locale == null ){
+            return factory.apply( null );
+        }
+        T value = values.get( locale );
+        if( value == null ){
+            value = factory.apply( locale );
+            // Beyond the limit, the values of the unusual locales are built each time
+            if( values.size() < MAX_LOCALES ){
+                T existing = values.putIfAbsent( locale, value );
+                if( existing != null ){
+                    value = existing;
+                }
+            }
+        }
+        return value;
+    }
+
+}
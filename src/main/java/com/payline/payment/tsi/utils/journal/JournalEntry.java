@@ -0,0 +1,166 @@
+package com.payline.payment.tsi.utils.journal;
+
+import com.payline.payment.tsi.response.TsiStatusCheckResponse;
+import com.payline.payment.tsi.utils.config.ConfigEnvironment;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * What the journal knows about a transaction: when it was created, when its status was last updated,
+ * and its last known status. Entries are immutable: each update of a transaction replaces its entry.
+ *
+ * An entry is also the record written to the journal segments:
+ * state (1 byte), creation time (8), update time (8), environment (1), tid length (2), tid (UTF-8),
+ * status length (4, -1 when there is none), status (the JSON of the checkstatus response, UTF-8).
+ */
+public final class JournalEntry {
+
+    /**
+     * State of a transaction, as known locally.
+     */
+    public enum State {
+        /** The Go request succeeded: the customer has been redirected to TSI */
+        CREATED,
+        /** A status has been received, which may still change */
+        PENDING,
+        /** The transaction is a success */
+        SUCCESS,
+        /** The transaction has expired without being paid. TSI may report it early: a later success replaces it */
+        EXPIRED;
+
+        /**
+         * @return true if the status of the transaction can't change anymore: only a success is final
+         */
+        public boolean isTerminal(){
+            return this == SUCCESS;
+        }
+    }
+
+    private static final State[] STATES = State.values();
+    private static final ConfigEnvironment[] ENVIRONMENTS = ConfigEnvironment.values();
+    /** Fixed part of a record: state, times, environment, tid length, status length */
+    private static final int FIXED_LENGTH = 1 + 8 + 8 + 1 + 2 + 4;
+
+    private final ConfigEnvironment environment;
+    private final String tid;
+    private final State state;
+    private final long createdAt;
+    private final long updatedAt;
+    /** The JSON of the last checkstatus response, parsed on demand */
+    private final String status;
+
+    JournalEntry( ConfigEnvironment environment, String tid, State state, long createdAt, long updatedAt, String status ){
+        this.environment = environment;
+        this.tid = tid;
+        this.state = state;
+        this.createdAt = createdAt;
+        this.updatedAt = updatedAt;
+        this.status = status;
+    }
+
+    /**
+     * @param status A checkstatus response
+     * @return the state matching the response
+     */
+    static State stateOf( TsiStatusCheckResponse status ){
+        if( status.isSuccess() ){
+            return State.SUCCESS;
+        }
+        return status.isExpired() ? State.EXPIRED : State.PENDING;
+    }
+
+    public ConfigEnvironment getEnvironment(){
+        return environment;
+    }
+
+    public String getTid(){
+        return tid;
+    }
+
+    public State getState(){
+        return state;
+    }
+
+    /**
+     * @return the creation time of the transaction (epoch millis), or 0 if the journal hasn't seen its creation
+     */
+    public long getCreatedAt(){
+        return createdAt;
+    }
+
+    /**
+     * @return the time of the last update of the transaction (epoch millis)
+     */
+    public long getUpdatedAt(){
+        return updatedAt;
+    }
+
+    /**
+     * @return the last checkstatus response received for the transaction, or null if there is none
+     */
+    public TsiStatusCheckResponse getStatus(){
+        return status == null ? null : new TsiStatusCheckResponse.Builder().fromJson( status );
+    }
+
+    String getStatusJson(){
+        return status;
+    }
+
+    /**
+     * @return the record of this entry
+     */
+    byte[] toRecord(){
+        byte[] tidBytes = tid.getBytes( StandardCharsets.UTF_8 );
+        byte[] statusBytes = status == null ? null : status.getBytes( StandardCharsets.UTF_8 );
+        ByteBuffer buffer = ByteBuffer.allocate( FIXED_LENGTH + tidBytes.length + ( statusBytes == null ? 0 : statusBytes.length ) );
+        buffer.put( (byte) state.ordinal() );
+        buffer.putLong( createdAt );
+        buffer.putLong( updatedAt );
+        buffer.put( (byte) environment.ordinal() );
+        buffer.putShort( (short) tidBytes.length );
+        buffer.put( tidBytes );
+        if( statusBytes == null ){
+            buffer.putInt( -1 );
+        } else {
+            buffer.putInt( statusBytes.length );
+            buffer.put( statusBytes );
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Reads a record.
+     *
+     * @param buffer The source, positioned at the start of the record, limited to its end
+     * @return the entry, or null if the record is malformed
+     */
+    static JournalEntry read( ByteBuffer buffer ){
+        if( buffer.remaining() < FIXED_LENGTH ){
+            return null;
+        }
+        int stateIndex = buffer.get();
+        long createdAt = buffer.getLong();
+        long updatedAt = buffer.getLong();
+        int environmentIndex = buffer.get();
+        int tidLength = buffer.getShort() & 0xFFFF;
+        if( stateIndex < 0 || stateIndex >= STATES.length || environmentIndex < 0 || environmentIndex >= ENVIRONMENTS.length
+                || buffer.remaining() < tidLength + 4 ){
+            return null;
+        }
+        String tid = readString( buffer, tidLength );
+        int statusLength = buffer.getInt();
+        if( statusLength > buffer.remaining() ){
+            return null;
+        }
+        String status = statusLength < 0 ? null : readString( buffer, statusLength );
+        return new JournalEntry( ENVIRONMENTS[ environmentIndex ], tid, STATES[ stateIndex ], createdAt, updatedAt, status );
+    }
+
+    private static String readString( ByteBuffer buffer, int length ){
+        byte[] bytes = new byte[ length ];
+        buffer.get( bytes );
+        return new String( bytes, StandardCharsets.UTF_8 );
+    }
+
+}
@@ -0,0 +1,166 @@
+package com.payline.payment.tsi.utils.journal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * A file of the journal, memory-mapped, to which the records are appended.
+ * Each record is framed as: body length (4 bytes), CRC32 of the body (4 bytes), body.
+ * The file is zero-filled beyond the last record: a null length marks the end of the segment.
+ * A record whose checksum doesn't match (interrupted write) ends the segment as well.
+ */
+final class JournalSegment {
+
+    static final String PREFIX = "journal-";
+    static final String SUFFIX = ".log";
+    private static final int HEADER_LENGTH = 8;
+
+    private final long sequence;
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final CRC32 crc = new CRC32();
+
+    private JournalSegment( long sequence, Path path, FileChannel channel, MappedByteBuffer buffer ){
+        this.sequence = sequence;
+        this.path = path;
+        this.channel = channel;
+        this.buffer = buffer;
+    }
+
+    /**
+     * Opens a segment, creating its file if it doesn't exist yet.
+     * The write position is at the start of the segment: call {@link #replay(Consumer)} to move it after the existing records.
+     *
+     * @param directory The journal directory
+     * @param sequence The sequence number of the segment
+     * @param size The size of a new segment, in bytes. An existing segment keeps its own size, if it is bigger.
+     */
+    static JournalSegment open( Path directory, long sequence, int size ) throws IOException {
+        Path path = directory.resolve( fileName( sequence ) );
+        FileChannel channel = FileChannel.open( path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE );
+        try {
+            long mappedSize = Math.max( size, channel.size() );
+            return new JournalSegment( sequence, path, channel, channel.map( FileChannel.MapMode.READ_WRITE, 0, mappedSize ) );
+        } catch( IOException | RuntimeException e ){
+            channel.close();
+            throw e;
+        }
+    }
+
+    static String fileName( long sequence ){
+        return PREFIX + String.format( "%016d", sequence ) + SUFFIX;
+    }
+
+    /**
+     * @param fileName A file name
+     * @return the sequence number of the segment, or -1 if the file is not a journal segment
+     */
+    static long sequenceOf( String fileName ){
+        if( !fileName.startsWith( PREFIX ) || !fileName.endsWith( SUFFIX ) ){
+            return -1;
+        }
+        try {
+            return Long.parseLong( fileName.substring( PREFIX.length(), fileName.length() - SUFFIX.length() ) );
+        } catch( NumberFormatException e ){
+            return -1;
+        }
+    }
+
+    long getSequence(){
+        return sequence;
+    }
+
+    /**
+     * Reads the valid records from the start of the segment, and moves the write position after the last one.
+     *
+     * @param consumer Receives the entries, in the order they were written
+     * @return the number of records read
+     */
+    int replay( Consumer<JournalEntry> consumer ){
+        ByteBuffer reader = buffer.duplicate();
+        reader.clear();
+        int count = 0;
+        while( reader.remaining() >= HEADER_LENGTH ){
+            int start = reader.position();
+            int length = reader.getInt();
+            int checksum = reader.getInt();
+            if( length <= 0 || length > reader.remaining() ){
+                reader.position( start );
+                break;
+            }
+            ByteBuffer body = reader.slice();
+            body.limit( length );
+            crc.reset();
+            crc.update( body.duplicate() );
+            JournalEntry entry = (int) crc.getValue() == checksum ? JournalEntry.read( body ) : null;
+            if( entry == null ){
+                reader.position( start );
+                break;
+            }
+            consumer.accept( entry );
+            count++;
+            reader.position( start + HEADER_LENGTH + length );
+        }
+        buffer.position( reader.position() );
+        return count;
+    }
+
+    /**
+     * Appends a record, if there is room left.
+     *
+     * @param record The body of the record
+     * @return false if the segment is full
+     */
+    boolean append( byte[] record ){
+        if( buffer.remaining() < HEADER_LENGTH + record.length ){
+            return false;
+        }
+        crc.reset();
+        crc.update( record, 0, record.length );
+        int start = buffer.position();
+        // Write the length last: an interrupted write leaves a null length, which ends the segment
+        buffer.position( start + 4 );
+        buffer.putInt( (int) crc.getValue() );
+        buffer.put( record );
+        buffer.putInt( start, record.length );
+        return true;
+    }
+
+    /**
+     * @return true if no record has been written to the segment
+     */
+    boolean isEmpty(){
+        return buffer.position() == 0;
+    }
+
+    /**
+     * Flushes the written records to the storage device.
+     */
+    void force(){
+        buffer.force();
+    }
+
+    /**
+     * Closes the file. The mapping is released when the buffer is garbage collected.
+     */
+    void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Closes, then deletes the file.
+     */
+    void delete() throws IOException {
+        this.close();
+        Files.deleteIfExists( path );
+    }
+
+}
@@ -0,0 +1,385 @@
+package com.payline.payment.tsi.utils.journal;
+
+import com.payline.payment.tsi.response.TsiStatusCheckResponse;
+import com.payline.payment.tsi.utils.config.ConfigEnvironment;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Local, append-only journal of the TSI transactions: their creation (successful Go request)
+ * and the transitions of their status (checkstatus responses and notifications), by environment and tid.
+ * It gives a local answer about the transactions already known, without calling TSI.
+ *
+ * The records are appended to memory-mapped segment files of fixed size, in the directory given by the system property
+ * {@value #DIRECTORY_PROPERTY}. The journal is disabled if the property is not set, or if the directory can't be used.
+ * A single process writes to a directory: it holds a lock on the file {@value #LOCK_FILE} while the journal is open,
+ * and the journal of another process is disabled.
+ * An in-memory index holds the last entry of each transaction: it is rebuilt at startup by reading the segments in order.
+ * When there are too many segments, the journal is compacted: the last entry of each transaction updated within
+ * the retention period is written to new segments, then the former segments are deleted.
+ *
+ * The records are written to the page cache and reach the disk as the operating system flushes it:
+ * an unclean shutdown of the host may lose the last ones, which only costs calls to TSI.
+ */
+public class TransactionJournal {
+
+    static final String DIRECTORY_PROPERTY = "tsi.journal.dir";
+    static final String LOCK_FILE = "journal.lock";
+
+    private static final int DEFAULT_SEGMENT_SIZE = 8 * 1024 * 1024;
+    private static final int DEFAULT_MAX_SEGMENTS = 4;
+    private static final long DEFAULT_RETENTION_MILLIS = TimeUnit.DAYS.toMillis( 30 );
+    private static final int MAX_TID_LENGTH = 256;
+
+    private static final Logger logger = LogManager.getLogger( TransactionJournal.class );
+
+    private final Path directory;
+    private final int segmentSize;
+    private final int maxSegments;
+    private final long retentionMillis;
+    private final LongSupplier clock;
+
+    private final Map<Key, JournalEntry> index = new ConcurrentHashMap<>();
+    /** The segments, oldest first. The last one is the one written to. Guarded by this. */
+    private final List<JournalSegment> segments = new ArrayList<>();
+    /** Number of segments written by the last compaction. Guarded by this. */
+    private int compactedSegments;
+    /** The lock of the directory, held while the journal is open. Guarded by this. */
+    private FileChannel lockChannel;
+    private FileLock lock;
+    private volatile boolean enabled;
+
+    TransactionJournal( Path directory, int segmentSize, int maxSegments, long retentionMillis, LongSupplier clock ){
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxSegments = maxSegments;
+        this.retentionMillis = retentionMillis;
+        this.clock = clock;
+        if( directory != null ){
+            try {
+                this.open();
+                this.enabled = true;
+            } catch( IOException | RuntimeException e ){
+                logger.error( "The transaction journal could not be opened, it is disabled: " + directory, e );
+                this.closeSegments();
+            }
+        }
+    }
+
+    /**
+     * Holder
+     */
+    private static class SingletonHolder {
+        private static final TransactionJournal INSTANCE = create();
+    }
+
+    /**
+     * @return the singleton instance
+     */
+    public static TransactionJournal getInstance(){
+        return SingletonHolder.INSTANCE;
+    }
+
+    private static TransactionJournal create(){
+        String path = System.getProperty( DIRECTORY_PROPERTY );
+        Path directory = path == null || path.isEmpty() ? null : Paths.get( path );
+        return new TransactionJournal( directory, DEFAULT_SEGMENT_SIZE, DEFAULT_MAX_SEGMENTS, DEFAULT_RETENTION_MILLIS,
+                System::currentTimeMillis );
+    }
+
+    /**
+     * @return true if the journal records the transactions
+     */
+    public boolean isEnabled(){
+        return enabled;
+    }
+
+    /**
+     * Records the creation of a transaction. A transaction already known keeps its status.
+     *
+     * @param environment The TSI environment
+     * @param tid The TSI transaction id
+     */
+    public void created( ConfigEnvironment environment, String tid ){
+        if( !this.accepts( environment, tid ) ){
+            return;
+        }
+        synchronized( this ){
+            long now = clock.getAsLong();
+            JournalEntry known = index.get( new Key( environment, tid ) );
+            JournalEntry entry = known == null
+                    ? new JournalEntry( environment, tid, JournalEntry.State.CREATED, now, now, null )
+                    : new JournalEntry( environment, tid, known.getState(), now, now, known.getStatusJson() );
+            this.write( entry );
+        }
+    }
+
+    /**
+     * Records the status of a transaction, if it changed. The status of a successful transaction is never changed,
+     * while an expiry is replaced by any later status.
+     *
+     * @param environment The TSI environment
+     * @param tid The TSI transaction id
+     * @param status The checkstatus response or the notification
+     */
+    public void statusReceived( ConfigEnvironment environment, String tid, TsiStatusCheckResponse status ){
+        if( status == null || !this.accepts( environment, tid ) ){
+            return;
+        }
+        JournalEntry.State state = JournalEntry.stateOf( status );
+        String json = status.getResume();
+        synchronized( this ){
+            JournalEntry known = index.get( new Key( environment, tid ) );
+            if( known != null && ( known.getState().isTerminal()
+                    || known.getState() == state && json.equals( known.getStatusJson() ) ) ){
+                return;
+            }
+            long now = clock.getAsLong();
+            this.write( new JournalEntry( environment, tid, state, known == null ? 0 : known.getCreatedAt(), now, json ) );
+        }
+    }
+
+    /**
+     * @param environment The TSI environment
+     * @param tid The TSI transaction id
+     * @return what the journal knows about the transaction, or null if it is unknown
+     */
+    public JournalEntry get( ConfigEnvironment environment, String tid ){
+        if( environment == null || tid == null ){
+            return null;
+        }
+        return index.get( new Key( environment, tid ) );
+    }
+
+    /**
+     * @param environment The TSI environment
+     * @param tid The TSI transaction id
+     * @return the status of the transaction if it is a success, null otherwise
+     */
+    public TsiStatusCheckResponse getTerminalStatus( ConfigEnvironment environment, String tid ){
+        JournalEntry entry = this.get( environment, tid );
+        return entry == null || !entry.getState().isTerminal() ? null : entry.getStatus();
+    }
+
+    /**
+     * @return the number of transactions known
+     */
+    public int size(){
+        return index.size();
+    }
+
+    synchronized int segmentCount(){
+        return segments.size();
+    }
+
+    /**
+     * Flushes the segments and closes them. The journal is disabled.
+     */
+    synchronized void close(){
+        enabled = false;
+        for( JournalSegment segment : segments ){
+            segment.force();
+        }
+        this.closeSegments();
+    }
+
+    private boolean accepts( ConfigEnvironment environment, String tid ){
+        return enabled && environment != null && tid != null && !tid.isEmpty() && tid.length() <= MAX_TID_LENGTH;
+    }
+
+    /**
+     * Locks the directory, reads the existing segments to rebuild the index, and opens the segment to write to.
+     */
+    private void open() throws IOException {
+        Files.createDirectories( directory );
+        this.lock();
+        List<Long> sequences = new ArrayList<>();
+        try( DirectoryStream<Path> files = Files.newDirectoryStream( directory, JournalSegment.PREFIX + "*" + JournalSegment.SUFFIX ) ){
+            for( Path file : files ){
+                long sequence = JournalSegment.sequenceOf( file.getFileName().toString() );
+                if( sequence >= 0 ){
+                    sequences.add( sequence );
+                }
+            }
+        }
+        Collections.sort( sequences );
+
+        long start = System.nanoTime();
+        int records = 0;
+        for( long sequence : sequences ){
+            JournalSegment segment = JournalSegment.open( directory, sequence, segmentSize );
+            segments.add( segment );
+            records += segment.replay( entry -> index.put( new Key( entry.getEnvironment(), entry.getTid() ), entry ) );
+        }
+        if( segments.isEmpty() ){
+            segments.add( JournalSegment.open( directory, 0, segmentSize ) );
+        }
+        this.dropExpired( clock.getAsLong() );
+        logger.info( "Transaction journal opened: {} segments, {} records, {} transactions, in {} ms", segments.size(), records,
+                index.size(), TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - start ) );
+    }
+
+    /**
+     * Appends the entry to the journal, then updates the index. Must be called while holding the lock.
+     */
+    private void write( JournalEntry entry ){
+        try {
+            this.append( entry.toRecord() );
+            index.put( new Key( entry.getEnvironment(), entry.getTid() ), entry );
+        } catch( IOException | RuntimeException e ){
+            logger.error( "The transaction journal could not be written, it is disabled", e );
+            enabled = false;
+        }
+    }
+
+    private void append( byte[] record ) throws IOException {
+        JournalSegment current = segments.get( segments.size() - 1 );
+        if( current.append( record ) ){
+            return;
+        }
+        if( current.isEmpty() ){
+            throw new IOException( "Journal record bigger than a segment: " + record.length + " bytes" );
+        }
+        // Roll to a new segment, compacting the journal first if there are too many
+        if( segments.size() >= Math.max( maxSegments, 2 * compactedSegments ) ){
+            this.compact();
+        }
+        current = JournalSegment.open( directory, segments.get( segments.size() - 1 ).getSequence() + 1, segmentSize );
+        segments.add( current );
+        if( !current.append( record ) ){
+            throw new IOException( "Journal record bigger than a segment: " + record.length + " bytes" );
+        }
+    }
+
+    /**
+     * Writes the entries of the transactions updated within the retention period to new segments,
+     * then deletes the former segments.
+     */
+    private void compact() throws IOException {
+        long start = System.nanoTime();
+        this.dropExpired( clock.getAsLong() );
+
+        List<JournalSegment> former = new ArrayList<>( segments );
+        long sequence = former.get( former.size() - 1 ).getSequence() + 1;
+        List<JournalSegment> compacted = new ArrayList<>();
+        JournalSegment current = JournalSegment.open( directory, sequence, segmentSize );
+        compacted.add( current );
+        for( JournalEntry entry : index.values() ){
+            byte[] record = entry.toRecord();
+            if( !current.append( record ) ){
+                current = JournalSegment.open( directory, ++sequence, segmentSize );
+                compacted.add( current );
+                current.append( record );
+            }
+        }
+        for( JournalSegment segment : compacted ){
+            segment.force();
+        }
+
+        // The compacted segments are complete: the former ones can go
+        segments.clear();
+        segments.addAll( compacted );
+        compactedSegments = compacted.size();
+        for( JournalSegment segment : former ){
+            try {
+                segment.delete();
+            } catch( IOException e ){
+                logger.warn( "A compacted journal segment could not be deleted: " + JournalSegment.fileName( segment.getSequence() ), e );
+            }
+        }
+        logger.info( "Transaction journal compacted: {} segments into {}, {} transactions, in {} ms", former.size(),
+                compacted.size(), index.size(), TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - start ) );
+    }
+
+    private void dropExpired( long now ){
+        Iterator<JournalEntry> entries = index.values().iterator();
+        while( entries.hasNext() ){
+            if( now - entries.next().getUpdatedAt() >= retentionMillis ){
+                entries.remove();
+            }
+        }
+    }
+
+    /**
+     * Takes the lock of the directory, which fails if another process holds it.
+     */
+    private void lock() throws IOException {
+        lockChannel = FileChannel.open( directory.resolve( LOCK_FILE ), StandardOpenOption.CREATE, StandardOpenOption.WRITE );
+        try {
+            lock = lockChannel.tryLock();
+        } catch( OverlappingFileLockException e ){
+            lock = null;
+        }
+        if( lock == null ){
+            throw new IOException( "The journal directory is locked by another process" );
+        }
+    }
+
+    private void closeSegments(){
+        for( JournalSegment segment : segments ){
+            try {
+                segment.close();
+            } catch( IOException e ){
+                logger.warn( "A journal segment could not be closed", e );
+            }
+        }
+        segments.clear();
+        if( lockChannel != null ){
+            try {
+                // Closing the channel releases the lock
+                lockChannel.close();
+            } catch( IOException e ){
+                logger.warn( "The journal lock could not be released", e );
+            }
+            lockChannel = null;
+            lock = null;
+        }
+    }
+
+    /**
+     * Environment and tid.
+     */
+    private static final class Key {
+
+        private final ConfigEnvironment environment;
+        private final String tid;
+
+        private Key( ConfigEnvironment environment, String tid ){
+            this.environment = environment;
+            this.tid = tid;
+        }
+
+        @Override
+        public boolean equals( Object o ){
+            if( !( o instanceof Key ) ){
+                return false;
+            }
+            Key other = (Key) o;
+            return environment == other.environment && tid.equals( other.tid );
+        }
+
+        @Override
+        public int hashCode(){
+            return 31 * environment.ordinal() + tid.hashCode();
+        }
+    }
+
+}
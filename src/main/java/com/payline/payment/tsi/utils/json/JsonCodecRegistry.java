@@ -0,0 +1,70 @@
+package com.payline.payment.tsi.utils.json;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonWriter;
+import com.payline.payment.tsi.request.TsiGoRequest;
+import com.payline.payment.tsi.request.TsiStatusCheckRequest;
+import com.payline.payment.tsi.response.TsiGoResponse;
+import com.payline.payment.tsi.response.TsiNotification;
+import com.payline.payment.tsi.response.TsiStatusCheckResponse;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+
+/**
+ * Shared JSON codecs for the TSI requests and responses.
+ * Each bean is (de)serialized by its own streaming {@link TypeAdapter}, without reflection,
+ * and the underlying {@link Gson} instance is built once and is thread-safe.
+ */
+public class JsonCodecRegistry {
+
+    private final Gson gson;
+
+    private JsonCodecRegistry(){
+        // Only used for the free-form "custom" parameters of the Go request
+        TypeAdapter<Map<String, Object>> mapAdapter = new Gson().getAdapter( new TypeToken<Map<String, Object>>(){} );
+
+        this.gson = new GsonBuilder()
+                .registerTypeAdapter( TsiGoRequest.class, new TsiGoRequest.JsonAdapter( mapAdapter ) )
+                .registerTypeAdapter( TsiStatusCheckRequest.class, new TsiStatusCheckRequest.JsonAdapter() )
+                .registerTypeAdapter( TsiGoResponse.class, new TsiGoResponse.JsonAdapter() )
+                .registerTypeAdapter( TsiStatusCheckResponse.class, new TsiStatusCheckResponse.JsonAdapter() )
+                .registerTypeAdapter( TsiNotification.class, new TsiNotification.JsonAdapter() )
+                .create();
+    }
+
+    /**
+     * Holder
+     */
+    private static class SingletonHolder {
+        private static final JsonCodecRegistry INSTANCE = new JsonCodecRegistry();
+    }
+
+    /**
+     * @return the singleton instance
+     */
+    public static JsonCodecRegistry getInstance(){
+        return SingletonHolder.INSTANCE;
+    }
+
+    public String toJson( Object bean ){
+        return gson.toJson( bean );
+    }
+
+    public <T> T fromJson( String json, Class<T> beanClass ) throws JsonSyntaxException {
+        return gson.fromJson( json, beanClass );
+    }
+
+    /**
+     * @return a writer escaping and omitting the null values the same way as {@link #toJson(Object)}
+     */
+    public JsonWriter newJsonWriter( Writer writer ) throws IOException {
+        return gson.newJsonWriter( writer );
+    }
+
+}
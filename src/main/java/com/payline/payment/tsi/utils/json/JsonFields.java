@@ -0,0 +1,60 @@
+package com.payline.payment.tsi.utils.json;
+
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * Field-level helpers for the streaming codecs, reproducing the default Gson behaviour:
+ * null fields are omitted on write, and primitive fields keep their default value when read as null.
+ */
+public class JsonFields {
+
+    /* This class has only static methods: no need to instantiate it */
+    private JsonFields(){
+    }
+
+    public static void write( JsonWriter out, String name, String value ) throws IOException {
+        if( value != null ){
+            out.name( name ).value( value );
+        }
+    }
+
+    public static void write( JsonWriter out, String name, int value ) throws IOException {
+        out.name( name ).value( value );
+    }
+
+    /**
+     * Reads a string value, accepting numbers and booleans as Gson does.
+     */
+    public static String readString( JsonReader in ) throws IOException {
+        JsonToken token = in.peek();
+        if( token == JsonToken.NULL ){
+            in.nextNull();
+            return null;
+        }
+        if( token == JsonToken.BOOLEAN ){
+            return Boolean.toString( in.nextBoolean() );
+        }
+        return in.nextString();
+    }
+
+    /**
+     * Reads an int value, or returns the default value if it is null.
+     */
+    public static int readInt( JsonReader in, int defaultValue ) throws IOException {
+        if( in.peek() == JsonToken.NULL ){
+            in.nextNull();
+            return defaultValue;
+        }
+        try {
+            return in.nextInt();
+        } catch( NumberFormatException e ){
+            throw new JsonSyntaxException( e );
+        }
+    }
+
+}
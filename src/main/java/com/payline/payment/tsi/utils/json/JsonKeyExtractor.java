@@ -0,0 +1,94 @@
+package com.payline.payment.tsi.utils.json;
+
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+
+/**
+ * Extracts some fields of a JSON object without binding the whole object.
+ * The reading stops as soon as all the requested fields are found: the rest of the content is not read, nor validated.
+ *
+ * An instance reuses its buffers from one extraction to the next: it is not thread-safe.
+ */
+public class JsonKeyExtractor {
+
+    private final String[] keys;
+    private final String[] values;
+    private final boolean[] found;
+
+    /**
+     * @param keys the names of the top-level fields to extract
+     */
+    public JsonKeyExtractor( String... keys ){
+        this.keys = keys.clone();
+        this.values = new String[ keys.length ];
+        this.found = new boolean[ keys.length ];
+    }
+
+    /**
+     * @param json a JSON object
+     * @param keys the names of the top-level fields to extract
+     * @return the values of the fields, in the order of the keys (null for the missing ones)
+     * @throws JsonSyntaxException if the content is not a JSON object, or if a requested value is not a primitive
+     */
+    public static String[] extract( String json, String... keys ) throws JsonSyntaxException {
+        return new JsonKeyExtractor( keys ).extract( json ).clone();
+    }
+
+    /**
+     * @param json a JSON object
+     * @return the values of the fields, in the order of the keys (null for the missing ones).
+     * The array is reused by the next extraction.
+     * @throws JsonSyntaxException if the content is not a JSON object, or if a requested value is not a primitive
+     */
+    public String[] extract( String json ) throws JsonSyntaxException {
+        Arrays.fill( values, null );
+        Arrays.fill( found, false );
+        JsonReader in = new JsonReader( new StringReader( json ) );
+        // Same leniency as Gson.fromJson
+        in.setLenient( true );
+        try {
+            JsonToken token;
+            try {
+                token = in.peek();
+            } catch( EOFException e ){
+                // Empty document
+                return values;
+            }
+            if( token == JsonToken.NULL ){
+                return values;
+            }
+
+            int remaining = keys.length;
+            in.beginObject();
+            while( remaining > 0 && in.hasNext() ){
+                int index = indexOf( keys, in.nextName() );
+                if( index >= 0 && !found[ index ] ){
+                    values[ index ] = JsonFields.readString( in );
+                    found[ index ] = true;
+                    remaining--;
+                } else {
+                    in.skipValue();
+                }
+            }
+            return values;
+        } catch( IOException | IllegalStateException e ){
+            throw new JsonSyntaxException( e );
+        }
+    }
+
+    private static int indexOf( String[] keys, String name ){
+        for( int i = 0; i < keys.length; i++ ){
+            if( keys[ i ].equals( name ) ){
+                return i;
+            }
+        }
+        return -1;
+    }
+
+}
@@ -0,0 +1,447 @@
+package com.payline.payment.tsi.utils.status;
+
+import com.payline.payment.tsi.request.ContractKey;
+import com.payline.payment.tsi.request.TsiStatusCheckRequest;
+import com.payline.payment.tsi.response.TsiStatusCheckResponse;
+import com.payline.payment.tsi.utils.cluster.PollingOwnership;
+import com.payline.payment.tsi.utils.config.ConfigEnvironment;
+import com.payline.payment.tsi.utils.config.ConfigProperties;
+import com.payline.payment.tsi.utils.config.EnvironmentConfig;
+import com.payline.payment.tsi.utils.http.JsonHttpClient;
+import com.payline.payment.tsi.utils.http.StringResponse;
+import com.payline.payment.tsi.utils.journal.TransactionJournal;
+import com.payline.payment.tsi.utils.timer.HashedWheelTimer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * Polls the status of the transactions created by the plugin, in the background, until it is terminal.
+ * Without it, a transaction whose customer never comes back from the TSI payment page is only resolved
+ * when Payline calls {@code handleSessionExpired}, at an arbitrary time.
+ *
+ * The first poll happens shortly after the creation of the transaction, then the delay between two polls doubles,
+ * up to a day. A transaction is dropped when it is a success, or after 6 months: TSI only looks for
+ * transactions within that period, so an expiry it reports earlier is not final and the polls go on.
+ * The number of polls in progress and the rate of polls are limited.
+ * The statuses received are recorded in the {@link TransactionStatusStore} and the {@link TransactionJournal},
+ * so that the later calls are answered locally.
+ * The next polls are scheduled on a {@link HashedWheelTimer}, which keeps the scheduling cost constant
+ * whatever the number of transactions tracked. When the customer comes back from the TSI payment page,
+ * the next poll of the transaction is rescheduled shortly after, see {@link #customerReturned}.
+ * When the plugin runs on several nodes, a transaction is only polled by the node which owns it
+ * (see {@link PollingOwnership}), whether it created the transaction or saw its customer come back.
+ * A node keeps tracking the transactions it doesn't own, without polling them: it takes them over if the membership
+ * changes and makes it their owner. A transaction whose owner never saw it is not polled in the background:
+ * its status comes from the notification or {@code handleSessionExpired}.
+ *
+ * A transaction tracked holds the key id of its contract and the fingerprint of its secret key, never the key itself:
+ * the key is resolved from the {@link com.payline.payment.tsi.security.MacPool} on each poll, where it stays while
+ * the contract is in use. When it can't be resolved, the poll is postponed.
+ * The transactions tracked are held in memory only: the key of their contract is never written to disk, so they
+ * are not tracked again after a restart. Their status is then recovered by the customer return, the notification,
+ * or {@code handleSessionExpired}. The poller stops with the JVM, see {@link #shutdown()}.
+ *
+ * The poller is disabled unless the system property {@value #ENABLED_PROPERTY} is true.
+ */
+public class PendingTransactionPoller {
+
+    static final String ENABLED_PROPERTY = "tsi.poller.enabled";
+
+    static final long FIRST_DELAY_MILLIS = TimeUnit.MINUTES.toMillis( 1 );
+    static final long MAX_DELAY_MILLIS = TimeUnit.DAYS.toMillis( 1 );
+    static final long HORIZON_MILLIS = TimeUnit.DAYS.toMillis( 183 );
+
+    private static final int DEFAULT_MAX_TRACKED = 10000;
+    private static final int DEFAULT_MAX_IN_FLIGHT = 4;
+    private static final double DEFAULT_MAX_PER_SECOND = 5;
+    private static final long TICK_MILLIS = 1000;
+    /** A turn of the wheel lasts about an hour: the later polls stay in their bucket for several turns */
+    private static final int WHEEL_SIZE = 4096;
+
+    private static final Logger logger = LogManager.getLogger( PendingTransactionPoller.class );
+
+    /**
+     * Recovers the status of a transaction from TSI.
+     */
+    @FunctionalInterface
+    interface StatusChecker {
+        TsiStatusCheckResponse check( ConfigEnvironment environment, String tid, ContractKey contractKey ) throws Exception;
+    }
+
+    private final boolean enabled;
+    private final StatusChecker checker;
+    private final Executor executor;
+    private final int maxInFlight;
+    private final double maxPerMilli;
+    private final int maxTracked;
+    private final LongSupplier clock;
+    private final TransactionStatusStore statusStore;
+    private final TransactionJournal journal;
+
+    /** The transactions tracked, including the ones being polled. Guarded by this. */
+    private final Map<TransactionStatusStore.Key, Pending> tracked = new HashMap<>();
+    /** The next polls of the transactions */
+    private final HashedWheelTimer timer;
+    private final PollingOwnership ownership;
+    /** The transactions whose poll is due, waiting for the limits to allow it. Guarded by this. */
+    private final Queue<Pending> due = new ArrayDeque<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    /** Polls allowed by the rate limit (unless it is 0), refilled as time passes. Guarded by this. */
+    private double tokens;
+    private long refilledAt;
+    /** The thread which advances the timer, null if there is none */
+    private volatile ScheduledExecutorService scheduler;
+    private volatile boolean stopped;
+
+    PendingTransactionPoller( boolean enabled, StatusChecker checker, Executor executor, int maxInFlight, double maxPerSecond,
+                              int maxTracked, LongSupplier clock, TransactionStatusStore statusStore, TransactionJournal journal ){
+        this( enabled, checker, executor, maxInFlight, maxPerSecond, maxTracked, clock, statusStore, journal,
+                new HashedWheelTimer( TICK_MILLIS, WHEEL_SIZE, clock ), PollingOwnership.getInstance() );
+    }
+
+    PendingTransactionPoller( boolean enabled, StatusChecker checker, Executor executor, int maxInFlight, double maxPerSecond,
+                              int maxTracked, LongSupplier clock, TransactionStatusStore statusStore, TransactionJournal journal,
+                              HashedWheelTimer timer, PollingOwnership ownership ){
+        this.enabled = enabled;
+        this.checker = checker;
+        this.executor = executor;
+        this.maxInFlight = maxInFlight;
+        this.maxPerMilli = maxPerSecond / 1000;
+        this.maxTracked = maxTracked;
+        this.clock = clock;
+        this.statusStore = statusStore;
+        this.journal = journal;
+        this.timer = timer;
+        this.ownership = ownership;
+        this.tokens = this.burst();
+        this.refilledAt = clock.getAsLong();
+    }
+
+    /**
+     * Holder
+     */
+    private static class SingletonHolder {
+        private static final PendingTransactionPoller INSTANCE = create();
+    }
+
+    /**
+     * @return the singleton instance
+     */
+    public static PendingTransactionPoller getInstance(){
+        return SingletonHolder.INSTANCE;
+    }
+
+    private static PendingTransactionPoller create(){
+        boolean enabled = Boolean.getBoolean( ENABLED_PROPERTY );
+        Executor workers = enabled
+                ? Executors.newFixedThreadPool( DEFAULT_MAX_IN_FLIGHT, new PollerThreadFactory( "tsi-status-poller-" ) )
+                : Runnable::run;
+        PendingTransactionPoller poller = new PendingTransactionPoller( enabled, PendingTransactionPoller::checkStatus, workers,
+                DEFAULT_MAX_IN_FLIGHT, DEFAULT_MAX_PER_SECOND, DEFAULT_MAX_TRACKED, System::currentTimeMillis,
+                TransactionStatusStore.getInstance(), TransactionJournal.getInstance() );
+        if( enabled ){
+            ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+                    new PollerThreadFactory( "tsi-status-poller-scheduler-" ) );
+            scheduler.scheduleWithFixedDelay( poller::tick, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS );
+            poller.scheduler = scheduler;
+            Runtime.getRuntime().addShutdownHook( new Thread( poller::shutdown, "tsi-status-poller-shutdown" ) );
+        }
+        return poller;
+    }
+
+    /**
+     * Stops the poller: the polls in progress are interrupted, and the transactions tracked are dropped.
+     * The transactions tracked afterwards are ignored.
+     */
+    public void shutdown(){
+        stopped = true;
+        ScheduledExecutorService current = scheduler;
+        if( current != null ){
+            current.shutdownNow();
+        }
+        if( executor instanceof ExecutorService ){
+            ( (ExecutorService) executor ).shutdownNow();
+        }
+        synchronized( this ){
+            for( Pending pending : tracked.values() ){
+                if( pending.timeout != null ){
+                    pending.timeout.cancel();
+                }
+            }
+            tracked.clear();
+            due.clear();
+        }
+    }
+
+    /**
+     * @return true if the transactions are polled
+     */
+    public boolean isEnabled(){
+        return enabled;
+    }
+
+    /**
+     * Starts tracking a transaction, which has just been created.
+     * It is only polled while this node owns it. A transaction already tracked is ignored.
+     *
+     * @param environment The TSI environment
+     * @param tid The TSI transaction id
+     * @param contractKey The key id and key fingerprint of the contract the transaction was created with
+     */
+    public void track( ConfigEnvironment environment, String tid, ContractKey contractKey ){
+        if( !enabled || stopped || environment == null || tid == null || contractKey == null ){
+            return;
+        }
+        synchronized( this ){
+            TransactionStatusStore.Key key = new TransactionStatusStore.Key( environment, tid );
+            if( tracked.containsKey( key ) ){
+                return;
+            }
+            if( tracked.size() >= maxTracked ){
+                logger.warn( "Too many pending TSI transactions, not polled: {}", tid );
+                return;
+            }
+            long now = clock.getAsLong();
+            Pending pending = new Pending( key, contractKey, now );
+            tracked.put( key, pending );
+            this.scheduleNext( pending, now );
+        }
+    }
+
+    /**
+     * Brings the next poll of a transaction forward, when its customer comes back from the TSI payment page:
+     * its payment is being processed, so its status is likely to change soon. Its next poll is rescheduled on the timer
+     * after the first delay, and the delay between two polls doubles again from there.
+     * A transaction not tracked yet starts being tracked.
+     *
+     * @param environment The TSI environment
+     * @param tid The TSI transaction id
+     * @param contractKey The key id and key fingerprint of the contract the transaction was created with
+     */
+    public void customerReturned( ConfigEnvironment environment, String tid, ContractKey contractKey ){
+        if( !enabled || stopped || environment == null || tid == null ){
+            return;
+        }
+        synchronized( this ){
+            Pending pending = tracked.get( new TransactionStatusStore.Key( environment, tid ) );
+            if( pending == null ){
+                this.track( environment, tid, contractKey );
+                return;
+            }
+            pending.backoff = 0;
+            // A poll due or in progress schedules the next one when it completes
+            if( pending.timeout != null && pending.timeout.cancel() ){
+                this.scheduleNext( pending, clock.getAsLong() );
+            }
+        }
+    }
+
+    /**
+     * @return the number of transactions tracked
+     */
+    public synchronized int size(){
+        return tracked.size();
+    }
+
+    /**
+     * @return the time of the next poll of the transaction (epoch millis), or -1 if it is not waiting for one
+     */
+    synchronized long getNextPoll( ConfigEnvironment environment, String tid ){
+        Pending pending = tracked.get( new TransactionStatusStore.Key( environment, tid ) );
+        return pending == null || pending.timeout == null || pending.timeout.isExpired() ? -1 : pending.nextPollAt;
+    }
+
+    /**
+     * @param attempts The number of polls already done
+     * @return the delay before the next poll
+     */
+    static long delay( int attempts ){
+        return attempts >= 20 ? MAX_DELAY_MILLIS : Math.min( MAX_DELAY_MILLIS, FIRST_DELAY_MILLIS << attempts );
+    }
+
+    private void tick(){
+        try {
+            this.pollDue();
+        } catch( RuntimeException e ){
+            // An exception would cancel the next ticks
+            logger.error( "An unexpected error occurred polling the pending TSI transactions", e );
+        }
+    }
+
+    /**
+     * Advances the timer, then starts the polls which are due, within the limits of polls in progress and of rate.
+     *
+     * @return the number of polls started
+     */
+    int pollDue(){
+        timer.advance();
+        List<Pending> started = new ArrayList<>();
+        synchronized( this ){
+            long now = clock.getAsLong();
+            tokens = Math.min( this.burst(), tokens + ( now - refilledAt ) * maxPerMilli );
+            refilledAt = now;
+            while( !due.isEmpty() && ( maxPerMilli == 0 || tokens >= 1 ) && inFlight.get() < maxInFlight ){
+                Pending pending = due.poll();
+                if( !ownership.isOwner( pending.key.tid ) ){
+                    // Polled by its owner, kept in case the membership changes
+                    this.completed( pending, null );
+                    continue;
+                }
+                started.add( pending );
+                tokens--;
+                inFlight.incrementAndGet();
+            }
+        }
+        for( Pending pending : started ){
+            try {
+                executor.execute( () -> this.poll( pending ) );
+            } catch( RejectedExecutionException e ){
+                inFlight.decrementAndGet();
+                this.completed( pending, null );
+            }
+        }
+        return started.size();
+    }
+
+    /**
+     * Schedules the next poll of a transaction. Must be called while holding the lock.
+     */
+    private void scheduleNext( Pending pending, long now ){
+        long delay = delay( pending.backoff );
+        pending.nextPollAt = now + delay;
+        pending.timeout = timer.schedule( () -> this.onDue( pending ), delay );
+    }
+
+    private synchronized void onDue( Pending pending ){
+        due.add( pending );
+    }
+
+    private void poll( Pending pending ){
+        ConfigEnvironment environment = pending.key.environment;
+        String tid = pending.key.tid;
+        TsiStatusCheckResponse status = null;
+        try {
+            // A notification or the customer return may already have given the final status
+            status = statusStore.get( environment, tid );
+            if( status == null ){
+                status = journal.getTerminalStatus( environment, tid );
+            }
+            if( status == null && !pending.contractKey.isAvailable() ){
+                // The contract is not in use: its key is no longer pooled
+                logger.debug( "The key of the pending TSI transaction is not available, poll postponed: {}", tid );
+            } else if( status == null ){
+                status = checker.check( environment, tid, pending.contractKey );
+                // Recorded like the statuses received by the services: the store and the journal never hold an expiry as final
+                statusStore.put( environment, tid, status );
+                journal.statusReceived( environment, tid, status );
+            }
+        } catch( Exception e ){
+            logger.warn( "The status of the pending TSI transaction could not be polled: " + tid, e );
+        } finally {
+            inFlight.decrementAndGet();
+        }
+        this.completed( pending, status );
+    }
+
+    /**
+     * Drops the transaction if it is a success or if it is too old, schedules its next poll otherwise.
+     */
+    private synchronized void completed( Pending pending, TsiStatusCheckResponse status ){
+        if( stopped ){
+            return;
+        }
+        long now = clock.getAsLong();
+        if( status != null && ( status.isTerminal() || status.isExpired() && this.isBeyondHorizon( pending, now ) ) ){
+            logger.info( "Pending TSI transaction resolved after {} polls, tid: {}, status: {} ({})", pending.attempts + 1,
+                    pending.key.tid, status.getMessage(), status.getErCode() );
+            tracked.remove( pending.key );
+        } else if( this.isBeyondHorizon( pending, now ) ){
+            tracked.remove( pending.key );
+        } else {
+            pending.attempts++;
+            pending.backoff++;
+            this.scheduleNext( pending, now );
+        }
+    }
+
+    /**
+     * @return true if TSI doesn't look for the transaction anymore: its expiry is final
+     */
+    private boolean isBeyondHorizon( Pending pending, long now ){
+        return now - pending.createdAt >= HORIZON_MILLIS;
+    }
+
+    private double burst(){
+        return Math.max( 1, maxPerMilli * 1000 );
+    }
+
+    private static TsiStatusCheckResponse checkStatus( ConfigEnvironment environment, String tid, ContractKey contractKey ) throws Exception {
+        final TsiStatusCheckRequest request = new TsiStatusCheckRequest.Builder().fromContractKey( contractKey, tid );
+        final EnvironmentConfig config = ConfigProperties.getSnapshot().getEnvironment( environment );
+        final StringResponse response = JsonHttpClient.getInstance().doPost( config.getScheme(), config.getHost(),
+                config.getStatusCheckPath(), request.buildBody() );
+        if( response == null || response.getCode() != 200 || response.getContent() == null ){
+            throw new IOException( "Unexpected checkstatus response: " + ( response == null ? null : response.getCode() ) );
+        }
+        return new TsiStatusCheckResponse.Builder().fromJson( response.getContent() );
+    }
+
+    /**
+     * A transaction tracked.
+     */
+    private static final class Pending {
+
+        private final TransactionStatusStore.Key key;
+        private final ContractKey contractKey;
+        private final long createdAt;
+        private int attempts;
+        /** The polls since the delay has been reset, see {@link #customerReturned} */
+        private int backoff;
+        private long nextPollAt;
+        private HashedWheelTimer.Timeout timeout;
+
+        private Pending( TransactionStatusStore.Key key, ContractKey contractKey, long createdAt ){
+            this.key = key;
+            this.contractKey = contractKey;
+            this.createdAt = createdAt;
+        }
+    }
+
+    /**
+     * Daemon threads, so that the poller doesn't prevent the JVM from stopping.
+     */
+    private static class PollerThreadFactory implements ThreadFactory {
+
+        private final String prefix;
+        private final AtomicInteger threadNumber = new AtomicInteger();
+
+        private PollerThreadFactory( String prefix ){
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread( Runnable runnable ){
+            Thread thread = new Thread( runnable, prefix + threadNumber.incrementAndGet() );
+            thread.setDaemon( true );
+            return thread;
+        }
+    }
+
+}
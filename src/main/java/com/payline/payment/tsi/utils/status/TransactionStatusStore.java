@@ -0,0 +1,253 @@
+package com.payline.payment.tsi.utils.status;
+
+import com.payline.payment.tsi.response.CompactStatusCheckResponse;
+import com.payline.payment.tsi.response.TsiStatusCheckResponse;
+import com.payline.payment.tsi.utils.config.ConfigEnvironment;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded local store of the terminal transaction statuses already known, by environment and TSI transaction id (tid).
+ * It allows to answer without calling the partner when the status can't change anymore: a success
+ * (see {@link TsiStatusCheckResponse#isTerminal()}). The other statuses are never stored.
+ * The least recently used entries are evicted when the store is full, and the entries expire after a fixed TTL.
+ * The statuses are kept in their compact form when possible.
+ * The lookups and evictions are counted, see {@link #getStats()}: the statistics are logged by the lookups,
+ * at most once an hour.
+ */
+public class TransactionStatusStore {
+
+    private static final int DEFAULT_MAX_SIZE = 10000;
+    private static final long DEFAULT_TTL_MILLIS = TimeUnit.HOURS.toMillis( 1 );
+    private static final long STATS_LOG_INTERVAL_MILLIS = TimeUnit.HOURS.toMillis( 1 );
+
+    private static final Logger logger = LogManager.getLogger( TransactionStatusStore.class );
+
+    private final Map<Key, StatusEntry> entries;
+    private final long ttlMillis;
+    private final LongSupplier clock;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long expirations;
+    /** Time of the next log of the statistics */
+    private long nextStatsLogAt;
+
+    TransactionStatusStore( int maxSize, long ttlMillis, LongSupplier clock ){
+        this.ttlMillis = ttlMillis;
+        this.clock = clock;
+        this.nextStatsLogAt = clock.getAsLong() + STATS_LOG_INTERVAL_MILLIS;
+        this.entries = new LinkedHashMap<Key, StatusEntry>( 16, 0.75f, true ){
+            @Override
+            protected boolean removeEldestEntry( Map.Entry<Key, StatusEntry> eldest ){
+                if( size() > maxSize ){
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Holder
+     */
+    private static class SingletonHolder {
+        private static final TransactionStatusStore INSTANCE = new TransactionStatusStore( DEFAULT_MAX_SIZE,
+                DEFAULT_TTL_MILLIS, System::currentTimeMillis );
+    }
+
+    /**
+     * @return the singleton instance
+     */
+    public static TransactionStatusStore getInstance(){
+        return SingletonHolder.INSTANCE;
+    }
+
+    /**
+     * Records the status of a transaction, if it is terminal.
+     *
+     * @param environment The TSI environment
+     * @param tid The TSI transaction id
+     * @param status The transaction status
+     */
+    public synchronized void put( ConfigEnvironment environment, String tid, TsiStatusCheckResponse status ){
+        if( environment == null || tid == null || status == null || !status.isTerminal() ){
+            return;
+        }
+        CompactStatusCheckResponse compact = status.toCompact();
+        entries.put( new Key( environment, tid ), compact != null
+                ? new StatusEntry( null, compact, clock.getAsLong() + ttlMillis )
+                : new StatusEntry( status, null, clock.getAsLong() + ttlMillis ) );
+    }
+
+    /**
+     * @param environment The TSI environment
+     * @param tid The TSI transaction id
+     * @return The terminal status of the transaction, or null if it is unknown or expired.
+     */
+    public synchronized TsiStatusCheckResponse get( ConfigEnvironment environment, String tid ){
+        if( environment == null || tid == null ){
+            return null;
+        }
+        long now = clock.getAsLong();
+        this.logStatsIfDue( now );
+        Key key = new Key( environment, tid );
+        StatusEntry entry = entries.get( key );
+        if( entry == null ){
+            misses++;
+            return null;
+        }
+        if( now >= entry.expiresAt ){
+            entries.remove( key );
+            expirations++;
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.status != null ? entry.status : entry.compact.toResponse();
+    }
+
+    public synchronized void remove( ConfigEnvironment environment, String tid ){
+        if( environment != null && tid != null ){
+            entries.remove( new Key( environment, tid ) );
+        }
+    }
+
+    /**
+     * Removes every entry. The statistics are kept.
+     */
+    public synchronized void clear(){
+        entries.clear();
+    }
+
+    public synchronized int size(){
+        return entries.size();
+    }
+
+    /**
+     * @return the statistics of the store since it was created
+     */
+    public synchronized Stats getStats(){
+        return new Stats( hits, misses, evictions, expirations, entries.size() );
+    }
+
+    /**
+     * Logs the statistics, if the last log is old enough. Must be called while holding the lock.
+     */
+    private void logStatsIfDue( long now ){
+        if( now >= nextStatsLogAt ){
+            nextStatsLogAt = now + STATS_LOG_INTERVAL_MILLIS;
+            logger.info( "TSI transaction status store: {}", this.getStats() );
+        }
+    }
+
+    /**
+     * Statistics of the store.
+     */
+    public static final class Stats {
+
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final long expirations;
+        private final int size;
+
+        private Stats( long hits, long misses, long evictions, long expirations, int size ){
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.expirations = expirations;
+            this.size = size;
+        }
+
+        /**
+         * @return the number of lookups which found a status
+         */
+        public long getHits(){
+            return hits;
+        }
+
+        /**
+         * @return the number of lookups which found no status, or an expired one
+         */
+        public long getMisses(){
+            return misses;
+        }
+
+        /**
+         * @return the number of entries evicted because the store was full
+         */
+        public long getEvictions(){
+            return evictions;
+        }
+
+        /**
+         * @return the number of expired entries removed by a lookup
+         */
+        public long getExpirations(){
+            return expirations;
+        }
+
+        /**
+         * @return the number of entries in the store
+         */
+        public int getSize(){
+            return size;
+        }
+
+        @Override
+        public String toString(){
+            return "hits=" + hits + ", misses=" + misses + ", evictions=" + evictions
+                    + ", expirations=" + expirations + ", size=" + size;
+        }
+    }
+
+    /**
+     * Environment and tid.
+     */
+    static final class Key {
+
+        final ConfigEnvironment environment;
+        final String tid;
+
+        Key( ConfigEnvironment environment, String tid ){
+            this.environment = environment;
+            this.tid = tid;
+        }
+
+        @Override
+        public boolean equals( Object o ){
+            if( !( o instanceof Key ) ){
+                return false;
+            }
+            Key other = (Key) o;
+            return environment == other.environment && tid.equals( other.tid );
+        }
+
+        @Override
+        public int hashCode(){
+            return 31 * environment.ordinal() + tid.hashCode();
+        }
+    }
+
+    private static class StatusEntry {
+
+        /** The status, if it couldn't be compacted */
+        private final TsiStatusCheckResponse status;
+        private final CompactStatusCheckResponse compact;
+        private final long expiresAt;
+
+        private StatusEntry( TsiStatusCheckResponse status, CompactStatusCheckResponse compact, long expiresAt ){
+            this.status = status;
+            this.compact = compact;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package com.payline.payment.tsi.utils.timer;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongSupplier;
+
+/**
+ * Hashed timing wheel: schedules a large number of timers with O(1) insertion and cancellation,
+ * at the price of a precision of one tick.
+ *
+ * Time is divided into ticks of fixed length, and the timers are hashed by their deadline tick into the buckets
+ * of a circular wheel: each bucket is an intrusive doubly-linked list. Advancing the wheel visits the buckets
+ * of the ticks elapsed, and expires the timers whose deadline is reached; the timers due in a later turn of the wheel
+ * stay in their bucket. A timer never expires before its deadline, and at most one tick after it, once the wheel
+ * is advanced.
+ *
+ * The wheel has no thread of its own: its owner calls {@link #advance()} periodically, typically once per tick.
+ * The tasks of the expired timers are run by the thread advancing the wheel, outside of the lock of the wheel:
+ * they may schedule or cancel timers. They should be short, as they delay the next ones.
+ */
+public class HashedWheelTimer {
+
+    private static final Logger logger = LogManager.getLogger( HashedWheelTimer.class );
+
+    private final long tickMillis;
+    private final Timeout[] wheel;
+    private final int mask;
+    private final LongSupplier clock;
+    private final long startTime;
+
+    /** The next tick to visit. Guarded by this. */
+    private long currentTick;
+    private int size;
+
+    /**
+     * @param tickMillis The length of a tick, in milliseconds
+     * @param wheelSize The number of buckets of the wheel, rounded up to a power of 2
+     * @param clock The time source, in milliseconds
+     */
+    public HashedWheelTimer( long tickMillis, int wheelSize, LongSupplier clock ){
+        if( tickMillis < 1 ){
+            throw new IllegalArgumentException( "The tick must be at least 1 ms" );
+        }
+        if( wheelSize < 1 || wheelSize > 1 << 30 ){
+            throw new IllegalArgumentException( "The wheel size must be between 1 and 2^30" );
+        }
+        int buckets = Integer.highestOneBit( wheelSize );
+        if( buckets < wheelSize ){
+            buckets <<= 1;
+        }
+        this.tickMillis = tickMillis;
+        this.wheel = new Timeout[ buckets ];
+        this.mask = buckets - 1;
+        this.clock = clock;
+        this.startTime = clock.getAsLong();
+    }
+
+    /**
+     * Schedules a task.
+     *
+     * @param task The task to run
+     * @param delayMillis The delay before running it, in milliseconds
+     * @return the timer, to cancel it
+     */
+    public Timeout schedule( Runnable task, long delayMillis ){
+        if( task == null ){
+            throw new IllegalArgumentException( "The task must not be null" );
+        }
+        long elapsed = clock.getAsLong() + Math.max( 0, delayMillis ) - startTime;
+        // Round up: a timer never expires before its deadline
+        long deadlineTick = ( elapsed + tickMillis - 1 ) / tickMillis;
+        Timeout timeout = new Timeout( this, task );
+        synchronized( this ){
+            timeout.deadlineTick = Math.max( deadlineTick, currentTick );
+            this.link( timeout );
+        }
+        return timeout;
+    }
+
+    /**
+     * Expires the timers whose deadline is reached, and runs their tasks.
+     * If more than a turn of the wheel has elapsed since the last call, the timers expired are not run in deadline order.
+     *
+     * @return the number of tasks run
+     */
+    public int advance(){
+        List<Timeout> expired = new ArrayList<>();
+        synchronized( this ){
+            long targetTick = ( clock.getAsLong() - startTime ) / tickMillis;
+            if( size == 0 ){
+                currentTick = Math.max( currentTick, targetTick + 1 );
+            } else if( targetTick - currentTick >= wheel.length ){
+                // A turn or more: visit each bucket once
+                for( int bucket = 0; bucket < wheel.length; bucket++ ){
+                    this.expire( bucket, targetTick, expired );
+                }
+                currentTick = targetTick + 1;
+            } else {
+                for( ; currentTick <= targetTick; currentTick++ ){
+                    this.expire( (int) ( currentTick & mask ), currentTick, expired );
+                }
+            }
+        }
+        for( Timeout timeout : expired ){
+            try {
+                timeout.task.run();
+            } catch( RuntimeException e ){
+                logger.error( "A timer task failed", e );
+            }
+        }
+        return expired.size();
+    }
+
+    /**
+     * @return the number of timers scheduled, neither expired nor cancelled
+     */
+    public synchronized int size(){
+        return size;
+    }
+
+    /**
+     * @return the length of a tick, in milliseconds
+     */
+    public long getTickMillis(){
+        return tickMillis;
+    }
+
+    /**
+     * @return the number of buckets of the wheel
+     */
+    public int getWheelSize(){
+        return wheel.length;
+    }
+
+    private synchronized boolean cancel( Timeout timeout ){
+        if( timeout.state != Timeout.PENDING ){
+            return false;
+        }
+        this.unlink( timeout );
+        timeout.state = Timeout.CANCELLED;
+        return true;
+    }
+
+    /**
+     * Moves the timers of the bucket whose deadline tick is reached to the expired ones.
+     */
+    private void expire( int bucket, long tick, List<Timeout> expired ){
+        Timeout timeout = wheel[ bucket ];
+        while( timeout != null ){
+            Timeout next = timeout.next;
+            if( timeout.deadlineTick <= tick ){
+                this.unlink( timeout );
+                timeout.state = Timeout.EXPIRED;
+                expired.add( timeout );
+            }
+            timeout = next;
+        }
+    }
+
+    private void link( Timeout timeout ){
+        int bucket = (int) ( timeout.deadlineTick & mask );
+        Timeout head = wheel[ bucket ];
+        timeout.next = head;
+        if( head != null ){
+            head.prev = timeout;
+        }
+        wheel[ bucket ] = timeout;
+        size++;
+    }
+
+    private void unlink( Timeout timeout ){
+        if( timeout.prev != null ){
+            timeout.prev.next = timeout.next;
+        } else {
+            wheel[ (int) ( timeout.deadlineTick & mask ) ] = timeout.next;
+        }
+        if( timeout.next != null ){
+            timeout.next.prev = timeout.prev;
+        }
+        timeout.prev = null;
+        timeout.next = null;
+        size--;
+    }
+
+    /**
+     * A timer, scheduled on a {@link HashedWheelTimer}.
+     */
+    public static final class Timeout {
+
+        private static final int PENDING = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+
+        private final HashedWheelTimer timer;
+        private final Runnable task;
+        /** The fields below are guarded by the timer */
+        private long deadlineTick;
+        private Timeout prev;
+        private Timeout next;
+        private int state = PENDING;
+
+        private Timeout( HashedWheelTimer timer, Runnable task ){
+            this.timer = timer;
+            this.task = task;
+        }
+
+        /**
+         * Cancels the timer, if it has not expired yet.
+         *
+         * @return true if the timer has been cancelled by this call
+         */
+        public boolean cancel(){
+            return timer.cancel( this );
+        }
+
+        public boolean isCancelled(){
+            synchronized( timer ){
+                return state == CANCELLED;
+            }
+        }
+
+        public boolean isExpired(){
+            synchronized( timer ){
+                return state == EXPIRED;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,254 @@
+package com.payline.payment.tsi.utils.validation;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Validates many contracts concurrently, with a bounded number of validations in progress
+ * and a maximum rate of validations started per second (each one is a round trip to the TSI server).
+ *
+ * The results are streamed in the order the validations complete. Each one carries the id of its contract,
+ * so that a caller can record the contracts already validated and skip them if the bulk validation is interrupted
+ * and started again.
+ *
+ * @param <T> the type of the validation requests
+ */
+public class BulkContractValidator<T> {
+
+    private static final Logger logger = LogManager.getLogger( BulkContractValidator.class );
+    private static final AtomicInteger POOL_NUMBER = new AtomicInteger();
+    private static final long POLL_TIMEOUT_MILLIS = 500;
+
+    private final Function<T, Map<String, String>> check;
+    private final int parallelism;
+    /** Minimum delay between two validation starts, in nanoseconds (0 for no rate limit) */
+    private final long intervalNanos;
+
+    /**
+     * @param check validates a contract, and returns the errors by contract parameter (empty if the contract is valid)
+     * @param parallelism the maximum number of validations in progress
+     * @param maxPerSecond the maximum number of validations started per second, 0 for no limit
+     */
+    public BulkContractValidator( Function<T, Map<String, String>> check, int parallelism, double maxPerSecond ){
+        if( parallelism < 1 ){
+            throw new IllegalArgumentException( "The parallelism must be at least 1" );
+        }
+        if( maxPerSecond < 0 ){
+            throw new IllegalArgumentException( "The rate limit can't be negative" );
+        }
+        this.check = check;
+        this.parallelism = parallelism;
+        this.intervalNanos = maxPerSecond == 0 ? 0 : (long) ( TimeUnit.SECONDS.toNanos( 1 ) / maxPerSecond );
+    }
+
+    /**
+     * Starts the validation of contracts.
+     * The stream must be closed if it is not fully consumed: it stops the validations which are not started yet.
+     * If the consuming thread is interrupted, the validations are stopped and the stream ends.
+     *
+     * @param contracts the validation requests, by contract id
+     * @param alreadyValidated the ids of the contracts to skip (validated by a previous run), possibly null
+     * @return the results, as they complete
+     */
+    public Stream<Result> validateAll( Map<String, T> contracts, Set<String> alreadyValidated ){
+        Set<String> skipped = alreadyValidated == null ? Collections.emptySet() : alreadyValidated;
+        ExecutorService executor = Executors.newFixedThreadPool( parallelism, new ValidationThreadFactory() );
+        CompletionService<Result> completion = new ExecutorCompletionService<>( executor );
+        RateLimiter rateLimiter = new RateLimiter( intervalNanos );
+
+        int submitted = 0;
+        for( Map.Entry<String, T> contract : contracts.entrySet() ){
+            if( !skipped.contains( contract.getKey() ) ){
+                String id = contract.getKey();
+                T request = contract.getValue();
+                completion.submit( () -> this.validate( id, request, rateLimiter ) );
+                submitted++;
+            }
+        }
+        executor.shutdown();
+
+        // Not sized: a terminal operation like count() must still wait for the validations
+        Iterator<Result> results = new ResultIterator( completion, submitted, executor );
+        return StreamSupport.stream( Spliterators.spliteratorUnknownSize( results, Spliterator.NONNULL ), false )
+                .onClose( executor::shutdownNow );
+    }
+
+    private Result validate( String id, T request, RateLimiter rateLimiter ) throws InterruptedException {
+        rateLimiter.acquire();
+        try {
+            return new Result( id, check.apply( request ), null );
+        } catch( RuntimeException e ){
+            logger.error( "An error occurred validating the contract " + id, e );
+            return new Result( id, null, e );
+        }
+    }
+
+    /**
+     * The result of the validation of a contract.
+     */
+    public static final class Result {
+
+        private final String id;
+        private final Map<String, String> errors;
+        private final RuntimeException failure;
+
+        Result( String id, Map<String, String> errors, RuntimeException failure ){
+            this.id = id;
+            this.errors = errors == null ? null : Collections.unmodifiableMap( errors );
+            this.failure = failure;
+        }
+
+        /**
+         * @return the id of the contract
+         */
+        public String getId(){
+            return id;
+        }
+
+        /**
+         * @return the errors by contract parameter (empty if the contract is valid), or null if the validation failed
+         */
+        public Map<String, String> getErrors(){
+            return errors;
+        }
+
+        /**
+         * @return the error which interrupted the validation, or null
+         */
+        public RuntimeException getFailure(){
+            return failure;
+        }
+
+        /**
+         * @return true if the contract has been validated without error
+         */
+        public boolean isValid(){
+            return errors != null && errors.isEmpty();
+        }
+    }
+
+    /**
+     * Takes the results as they complete.
+     */
+    private static class ResultIterator implements Iterator<Result> {
+
+        private final CompletionService<Result> completion;
+        private final ExecutorService executor;
+        private int remaining;
+        private Result next;
+
+        private ResultIterator( CompletionService<Result> completion, int remaining, ExecutorService executor ){
+            this.completion = completion;
+            this.remaining = remaining;
+            this.executor = executor;
+        }
+
+        @Override
+        public boolean hasNext(){
+            if( next != null ){
+                return true;
+            }
+            if( remaining == 0 ){
+                return false;
+            }
+            try {
+                Future<Result> done = completion.poll( POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS );
+                // The pending validations are dropped when the stream is closed: then stop once the running ones are over
+                while( done == null && !executor.isTerminated() ){
+                    done = completion.poll( POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS );
+                }
+                if( done == null ){
+                    done = completion.poll();
+                }
+                if( done != null ){
+                    next = done.get();
+                    remaining--;
+                    return true;
+                }
+            } catch( InterruptedException e ){
+                Thread.currentThread().interrupt();
+            } catch( ExecutionException e ){
+                // Only an interruption of the rate limiter can fail a validation task
+                logger.warn( "Bulk contract validation interrupted" );
+            }
+            executor.shutdownNow();
+            remaining = 0;
+            return false;
+        }
+
+        @Override
+        public Result next(){
+            if( !this.hasNext() ){
+                throw new NoSuchElementException();
+            }
+            Result result = next;
+            next = null;
+            return result;
+        }
+    }
+
+    /**
+     * Spaces the validation starts evenly.
+     */
+    private static class RateLimiter {
+
+        private final long intervalNanos;
+        private long nextSlot = System.nanoTime();
+
+        private RateLimiter( long intervalNanos ){
+            this.intervalNanos = intervalNanos;
+        }
+
+        private void acquire() throws InterruptedException {
+            if( intervalNanos == 0 ){
+                return;
+            }
+            long slot;
+            synchronized( this ){
+                slot = Math.max( System.nanoTime(), nextSlot );
+                nextSlot = slot + intervalNanos;
+            }
+            long wait = slot - System.nanoTime();
+            if( wait > 0 ){
+                TimeUnit.NANOSECONDS.sleep( wait );
+            }
+        }
+    }
+
+    /**
+     * Daemon threads, so that an abandoned bulk validation doesn't prevent the JVM from stopping.
+     */
+    private static class ValidationThreadFactory implements ThreadFactory {
+
+        private final int poolNumber = POOL_NUMBER.incrementAndGet();
+        private final AtomicInteger threadNumber = new AtomicInteger();
+
+        @Override
+        public Thread newThread( Runnable runnable ){
+            Thread thread = new Thread( runnable, "tsi-contract-validation-" + poolNumber + "-" + threadNumber.incrementAndGet() );
+            thread.setDaemon( true );
+            return thread;
+        }
+    }
+
+}
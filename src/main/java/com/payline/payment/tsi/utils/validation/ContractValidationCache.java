@@ -0,0 +1,165 @@
+package com.payline.payment.tsi.utils.validation;
+
+import com.payline.payment.tsi.TsiConstants;
+import com.payline.payment.tsi.utils.Digests;
+
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded local cache of the contract validation outcomes: the TSI status returned to the fake transaction request
+ * sent to validate a (merchant id, key id, secret key) triple.
+ * It avoids sending the same validation request again when the contract screen is refreshed.
+ *
+ * Only definitive outcomes are cached: a success (status 1) and the rejections of the contract parameters
+ * (status 13, 14, 15), each with its own TTL. Any other outcome (transient failure) is never cached.
+ * The secret keys are never stored: only a salted SHA-256 hash is part of the cache key, with a random salt drawn
+ * for each instance.
+ */
+public class ContractValidationCache {
+
+    private static final int DEFAULT_MAX_SIZE = 1000;
+    private static final long DEFAULT_SUCCESS_TTL_MILLIS = TimeUnit.MINUTES.toMillis( 15 );
+    private static final long DEFAULT_REJECTION_TTL_MILLIS = TimeUnit.MINUTES.toMillis( 2 );
+    private static final int SALT_LENGTH = 16;
+
+    private final Map<Key, Outcome> entries;
+    private final long successTtlMillis;
+    private final long rejectionTtlMillis;
+    private final LongSupplier clock;
+    private final byte[] salt = new byte[ SALT_LENGTH ];
+
+    ContractValidationCache( int maxSize, long successTtlMillis, long rejectionTtlMillis, LongSupplier clock ){
+        this.successTtlMillis = successTtlMillis;
+        this.rejectionTtlMillis = rejectionTtlMillis;
+        this.clock = clock;
+        this.entries = new LinkedHashMap<Key, Outcome>( 16, 0.75f, true ){
+            @Override
+            protected boolean removeEldestEntry( Map.Entry<Key, Outcome> eldest ){
+                return size() > maxSize;
+            }
+        };
+        new SecureRandom().nextBytes( salt );
+    }
+
+    /**
+     * Holder
+     */
+    private static class SingletonHolder {
+        private static final ContractValidationCache INSTANCE = new ContractValidationCache( DEFAULT_MAX_SIZE,
+                DEFAULT_SUCCESS_TTL_MILLIS, DEFAULT_REJECTION_TTL_MILLIS, System::currentTimeMillis );
+    }
+
+    /**
+     * @return the singleton instance
+     */
+    public static ContractValidationCache getInstance(){
+        return SingletonHolder.INSTANCE;
+    }
+
+    /**
+     * Records the outcome of a contract validation. Transient outcomes are ignored.
+     *
+     * @param merchantId The merchant id
+     * @param keyId The key id
+     * @param secretKey The secret key
+     * @param status The TSI status returned to the validation request
+     */
+    public void put( String merchantId, String keyId, String secretKey, int status ){
+        long ttl;
+        if( status == TsiConstants.GO_STATUS_OK ){
+            ttl = successTtlMillis;
+        } else if( status == TsiConstants.GO_STATUS_INVALID_KEY_ID || status == TsiConstants.GO_STATUS_INVALID_MERCHANT_ID
+                || status == TsiConstants.GO_STATUS_INVALID_KEY_VALUE ){
+            ttl = rejectionTtlMillis;
+        } else {
+            return;
+        }
+        Key key = this.key( merchantId, keyId, secretKey );
+        synchronized( this ){
+            entries.put( key, new Outcome( status, clock.getAsLong() + ttl ) );
+        }
+    }
+
+    /**
+     * @param merchantId The merchant id
+     * @param keyId The key id
+     * @param secretKey The secret key
+     * @return The TSI status of the last validation of these parameters, or null if it is unknown or expired.
+     */
+    public Integer get( String merchantId, String keyId, String secretKey ){
+        Key key = this.key( merchantId, keyId, secretKey );
+        synchronized( this ){
+            Outcome outcome = entries.get( key );
+            if( outcome == null ){
+                return null;
+            }
+            if( clock.getAsLong() >= outcome.expiresAt ){
+                entries.remove( key );
+                return null;
+            }
+            return outcome.status;
+        }
+    }
+
+    public synchronized void clear(){
+        entries.clear();
+    }
+
+    public synchronized int size(){
+        return entries.size();
+    }
+
+    private Key key( String merchantId, String keyId, String secretKey ){
+        return new Key( merchantId, keyId, Digests.sha256( salt, String.valueOf( secretKey ) ) );
+    }
+
+    /**
+     * Merchant id, key id and salted hash of the secret key.
+     */
+    private static final class Key {
+
+        private final String merchantId;
+        private final String keyId;
+        private final byte[] secretHash;
+        private final int hashCode;
+
+        private Key( String merchantId, String keyId, byte[] secretHash ){
+            this.merchantId = merchantId;
+            this.keyId = keyId;
+            this.secretHash = secretHash;
+            this.hashCode = 31 * Objects.hash( merchantId, keyId ) + Arrays.hashCode( secretHash );
+        }
+
+        @Override
+        public boolean equals( Object o ){
+            if( !( o instanceof Key ) ){
+                return false;
+            }
+            Key other = (Key) o;
+            return hashCode == other.hashCode && Objects.equals( merchantId, other.merchantId )
+                    && Objects.equals( keyId, other.keyId ) && Arrays.equals( secretHash, other.secretHash );
+        }
+
+        @Override
+        public int hashCode(){
+            return hashCode;
+        }
+    }
+
+    private static class Outcome {
+
+        private final int status;
+        private final long expiresAt;
+
+        private Outcome( int status, long expiresAt ){
+            this.status = status;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -4,6 +4,9 @@ import com.payline.pmapi.bean.common.FailureCause;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.Properties;
+import java.util.SortedMap;
+
 /**
  * Test some randomly chosen error codes. The purpose is not to test all the codes but
  * to ensure that the {@link ErrorCodesMap} class works as expected.
@@ -40,4 +43,69 @@ public class ErrorCodesMapTest {
         Assert.assertEquals( FailureCause.PARTNER_UNKNOWN_ERROR, ErrorCodesMap.getFailureCause( 666 ) );
     }
 
+    @Test( expected = IllegalStateException.class )
+    public void testReadResource_missing(){
+        // when: the mapping resource is missing, then: an exception is thrown
+        ErrorCodesMap.readResource( "missing-error-codes.properties" );
+    }
+
+    @Test
+    public void testOverride(){
+        // given: a mapping, and an override which remaps a known code, a new code and a range
+        Properties mapping = new Properties();
+        mapping.setProperty( "2-16", "INVALID_DATA" );
+        mapping.setProperty( "17", "REFUSED" );
+        Properties override = new Properties();
+        override.setProperty( "17", "PAYMENT_PARTNER_ERROR" );
+        override.setProperty( "4000", "CANCEL" );
+        override.setProperty( "10-12", "REFUSED" );
+        override.setProperty( "11", "CANCEL" );
+
+        // when: building the map
+        ErrorCodesMap map = new ErrorCodesMap( mapping, override );
+
+        // then: the override entries take precedence, and a code takes precedence over a range
+        Assert.assertEquals( FailureCause.INVALID_DATA, map.lookup( 2 ) );
+        Assert.assertEquals( FailureCause.PAYMENT_PARTNER_ERROR, map.lookup( 17 ) );
+        Assert.assertEquals( FailureCause.CANCEL, map.lookup( 4000 ) );
+        Assert.assertEquals( FailureCause.REFUSED, map.lookup( 10 ) );
+        Assert.assertEquals( FailureCause.CANCEL, map.lookup( 11 ) );
+        Assert.assertEquals( FailureCause.PARTNER_UNKNOWN_ERROR, map.lookup( -1 ) );
+    }
+
+    @Test
+    public void testOverride_invalidEntries(){
+        // given: a mapping with invalid entries
+        Properties mapping = new Properties();
+        mapping.setProperty( "17", "NOT_A_CAUSE" );
+        mapping.setProperty( "abc", "REFUSED" );
+        mapping.setProperty( "20-10", "REFUSED" );
+        mapping.setProperty( "1000-999999", "REFUSED" );
+        mapping.setProperty( "18", "REFUSED" );
+
+        // when: building the map, then: the invalid entries are ignored
+        ErrorCodesMap map = new ErrorCodesMap( mapping );
+        Assert.assertEquals( FailureCause.PARTNER_UNKNOWN_ERROR, map.lookup( 17 ) );
+        Assert.assertEquals( FailureCause.PARTNER_UNKNOWN_ERROR, map.lookup( 15 ) );
+        Assert.assertEquals( FailureCause.PARTNER_UNKNOWN_ERROR, map.lookup( 5000 ) );
+        Assert.assertEquals( FailureCause.REFUSED, map.lookup( 18 ) );
+    }
+
+    @Test
+    public void testHitCounts(){
+        // given: a map
+        ErrorCodesMap map = new ErrorCodesMap( new Properties() );
+
+        // when: looking up some codes
+        map.lookup( 17 );
+        map.lookup( 17 );
+        map.lookup( 4000 );
+
+        // then: the lookups are counted per code
+        SortedMap<Integer, Long> counts = map.hitCounts();
+        Assert.assertEquals( 2, counts.size() );
+        Assert.assertEquals( Long.valueOf( 2 ), counts.get( 17 ) );
+        Assert.assertEquals( Long.valueOf( 1 ), counts.get( 4000 ) );
+    }
+
 }
@@ -0,0 +1,229 @@
+package com.payline.payment.tsi.request;
+
+import com.payline.payment.tsi.TsiConstants;
+import com.payline.payment.tsi.exception.InvalidRequestException;
+import com.payline.payment.tsi.security.MacPool;
+import com.payline.pmapi.bean.payment.ContractConfiguration;
+import com.payline.pmapi.bean.payment.ContractProperty;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+public class ContractProfileTest {
+
+    private static final String SECRET_KEY = "45f3bcf660df19f8364c222e887300fa";
+
+    @Before
+    public void setup(){
+        ContractProfile.clear();
+    }
+
+    @Test
+    public void testOf_cached() throws InvalidRequestException {
+        // when: recovering the profile of the same contract properties twice, in distinct configurations
+        ContractProfile first = ContractProfile.of( contract( "806", "806", "Ticket", SECRET_KEY ) );
+        ContractProfile second = ContractProfile.of( contract( "806", "806", "Ticket", SECRET_KEY ) );
+        ContractProfile other = ContractProfile.of( contract( "806", "806", "Ticket", "another secret" ) );
+
+        // then: it is compiled once, and another secret key leads to another profile
+        Assert.assertSame( first, second );
+        Assert.assertNotSame( first, other );
+        Assert.assertEquals( 2, ContractProfile.size() );
+    }
+
+    @Test
+    public void testOf_expired() throws InvalidRequestException {
+        // given: a cached profile
+        ContractProfile first = ContractProfile.of( contract( "806", "806", "Ticket", SECRET_KEY ), 0 );
+
+        // when: its TTL is over, then: it is compiled again
+        long ttl = TimeUnit.MINUTES.toMillis( ContractProfile.PROFILE_TTL_MINUTES );
+        Assert.assertSame( first, ContractProfile.of( contract( "806", "806", "Ticket", SECRET_KEY ), ttl - 1 ) );
+        Assert.assertNotSame( first, ContractProfile.of( contract( "806", "806", "Ticket", SECRET_KEY ), ttl ) );
+    }
+
+    @Test
+    public void testOf_expiredPurged() throws InvalidRequestException {
+        // given: a cached profile, no longer used
+        ContractProfile unused = ContractProfile.of( contract( "806", "806", "Ticket", SECRET_KEY ), 0 );
+
+        // when: another profile is recovered after its TTL
+        long ttl = TimeUnit.MINUTES.toMillis( ContractProfile.PROFILE_TTL_MINUTES );
+        ContractProfile.of( contract( "807", "806", "Ticket", SECRET_KEY ), ttl );
+
+        // then: the expired profile is dropped, along with its sealing key
+        Assert.assertEquals( 1, ContractProfile.size() );
+        try {
+            unused.getHmac();
+            Assert.fail( "An expired profile should not keep its sealing key" );
+        } catch( InvalidRequestException e ){
+            Assert.assertEquals( "The contract profile has expired", e.getMessage() );
+        }
+    }
+
+    @Test
+    public void testOf_keyNoLongerPooled() throws InvalidRequestException {
+        // given: a cached profile
+        ContractProfile first = ContractProfile.of( contract( "806", "806", "Ticket", SECRET_KEY ) );
+
+        // when: its sealing key leaves the pool, then: it is compiled again from the contract configuration
+        MacPool.getInstance().clear();
+        ContractProfile second = ContractProfile.of( contract( "806", "806", "Ticket", SECRET_KEY ) );
+        Assert.assertNotSame( first, second );
+        TsiStatusCheckRequest expected = new TsiStatusCheckRequest( "43b3a1b952dc5c1f2fd2a46162b3aaaa", 806 );
+        expected.seal( SECRET_KEY );
+        Assert.assertEquals( expected.getMac(),
+                new TsiStatusCheckRequest.Builder().fromContractKey( second.getContractKey(), "43b3a1b952dc5c1f2fd2a46162b3aaaa" ).getMac() );
+    }
+
+    @Test
+    public void testOf_leastRecentlyUsedEvicted() throws InvalidRequestException {
+        // given: a full cache, whose first profile is used again
+        ContractProfile first = ContractProfile.of( contract( "0", "806", "Ticket", SECRET_KEY ), 0 );
+        ContractProfile second = ContractProfile.of( contract( "1", "806", "Ticket", SECRET_KEY ), 0 );
+        for( int i = 2; i < ContractProfile.MAX_PROFILES; i++ ){
+            ContractProfile.of( contract( String.valueOf( i ), "806", "Ticket", SECRET_KEY ), 0 );
+        }
+        ContractProfile.of( contract( "0", "806", "Ticket", SECRET_KEY ), 0 );
+
+        // when: another profile is added
+        ContractProfile.of( contract( "other", "806", "Ticket", SECRET_KEY ), 0 );
+
+        // then: the least recently used profile is evicted, not the first one
+        Assert.assertEquals( ContractProfile.MAX_PROFILES, ContractProfile.size() );
+        Assert.assertSame( first, ContractProfile.of( contract( "0", "806", "Ticket", SECRET_KEY ), 0 ) );
+        Assert.assertNotSame( second, ContractProfile.of( contract( "1", "806", "Ticket", SECRET_KEY ), 0 ) );
+    }
+
+    @Test
+    public void testGetContractKey() throws InvalidRequestException {
+        // given: the key of a contract
+        ContractKey contractKey = ContractProfile.of( contract( "806", "806", "Ticket", SECRET_KEY ) ).getContractKey();
+
+        // when: sealing a checkstatus request with it
+        TsiStatusCheckRequest request = new TsiStatusCheckRequest.Builder().fromContractKey( contractKey, "43b3a1b952dc5c1f2fd2a46162b3aaaa" );
+
+        // then: the seal is the one computed with the secret key
+        TsiStatusCheckRequest expected = new TsiStatusCheckRequest( "43b3a1b952dc5c1f2fd2a46162b3aaaa", 806 );
+        expected.seal( SECRET_KEY );
+        Assert.assertEquals( expected.getMac(), request.getMac() );
+    }
+
+    @Test
+    public void testOf_missingAndEmptyValues() throws InvalidRequestException {
+        // given: a contract without product description, and the same one with an empty description
+        Map<String, ContractProperty> properties = properties( "806", "806", "", SECRET_KEY );
+        ContractProfile empty = ContractProfile.of( new ContractConfiguration( "TSI", properties ) );
+        properties.remove( TsiConstants.CONTRACT_PRODUCT_DESCRIPTION );
+        ContractProfile missing = ContractProfile.of( new ContractConfiguration( "TSI", properties ) );
+
+        // then: they have distinct profiles, and only the missing description is rejected
+        Assert.assertNotSame( empty, missing );
+        empty.checkGoRequest();
+        try {
+            missing.checkGoRequest();
+            Assert.fail( "The missing product description should be rejected" );
+        } catch( InvalidRequestException e ){
+            Assert.assertEquals( "Missing contract configuration property: product description", e.getMessage() );
+        }
+        missing.checkStatusCheck();
+    }
+
+    @Test( expected = InvalidRequestException.class )
+    public void testOf_nullProperties() throws InvalidRequestException {
+        // when: the contract configuration has no properties, then: an exception is thrown
+        ContractProfile.of( new ContractConfiguration( "TSI", null ) );
+    }
+
+    @Test
+    public void testGetKeyId() throws InvalidRequestException {
+        // when: recovering the key id of a contract, then: it is parsed
+        Assert.assertEquals( 12, ContractProfile.of( contract( "806", "12", "Ticket", SECRET_KEY ) ).getKeyId() );
+    }
+
+    @Test( expected = InvalidRequestException.class )
+    public void testGetKeyId_invalid() throws InvalidRequestException {
+        // given: a key id which is not an integer
+        ContractProfile profile = ContractProfile.of( contract( "806", "abc", "Ticket", SECRET_KEY ) );
+
+        // when: recovering the key id, then: an exception is thrown
+        profile.getKeyId();
+    }
+
+    @Test
+    public void testGoRequestTemplate() throws InvalidRequestException {
+        // given: the profile of a contract
+        ContractProfile profile = ContractProfile.of( contract( "806", "806", "Ticket Premium", SECRET_KEY ) );
+
+        // when: recovering its template for an environment twice, and for another one
+        TsiGoRequestTemplate first = profile.goRequestTemplate( "ok", "nok", "s2s", "N", "Y" );
+        TsiGoRequestTemplate second = profile.goRequestTemplate( "ok", "nok", "s2s", "N", "Y" );
+        TsiGoRequestTemplate other = profile.goRequestTemplate( "ok", "nok", "s2s", "N", "N" );
+
+        // then: the template is compiled once by environment
+        Assert.assertSame( first, second );
+        Assert.assertNotSame( first, other );
+
+        // then: the requests are the same as the ones built field by field
+        TsiGoRequest fromTemplate = first.newRequest( "43b3a1b952dc5c1f2fd2a46162b3aaaa", "10.5", "EUR" );
+        TsiGoRequest expected = new TsiGoRequest( 806, "43b3a1b952dc5c1f2fd2a46162b3aaaa", "10.5", "EUR", 806,
+                "Ticket Premium", "ok", "nok", "s2s", "N", "Y", null );
+        expected.seal( SECRET_KEY );
+        Assert.assertEquals( expected.getMac(), fromTemplate.getMac() );
+        Assert.assertEquals( expected.buildBody(), fromTemplate.buildBody() );
+    }
+
+    @Test
+    public void testGoRequestTemplate_invalidMerchantId() throws InvalidRequestException {
+        // given: a merchant id which is not an integer
+        ContractProfile profile = ContractProfile.of( contract( "abc", "806", "Ticket", SECRET_KEY ) );
+
+        // when: recovering a template, then: the merchant id is rejected
+        try {
+            profile.goRequestTemplate( "ok", "nok", "s2s", "N", "Y" );
+            Assert.fail( "The invalid merchant id should be rejected" );
+        } catch( InvalidRequestException e ){
+            Assert.assertEquals( "Invalid contract configuration property: merchant id", e.getMessage() );
+        }
+    }
+
+    @Test
+    public void testReject() throws InvalidRequestException {
+        // given: a contract rejected by TSI
+        ContractProfile profile = ContractProfile.of( contract( "806", "806", "Ticket", SECRET_KEY ) );
+        profile.reject( 14, "UNKNOWN MID", 1000 );
+
+        // then: the rejection is kept for a while, then expires
+        Assert.assertEquals( 14, profile.getRejection( 1000 ).getStatus() );
+        Assert.assertEquals( "UNKNOWN MID", profile.getRejection( 1000 + 119999 ).getMessage() );
+        Assert.assertNull( profile.getRejection( 1000 + 120000 ) );
+    }
+
+    @Test
+    public void testReject_contractChanged() throws InvalidRequestException {
+        // given: a contract rejected by TSI
+        ContractProfile.of( contract( "806", "806", "Ticket", SECRET_KEY ) ).reject( 15, "WRONG HMAC" );
+
+        // when: its secret key is changed, then: the new contract is not rejected
+        Assert.assertNull( ContractProfile.of( contract( "806", "806", "Ticket", "new secret" ) ).getRejection() );
+        Assert.assertNotNull( ContractProfile.of( contract( "806", "806", "Ticket", SECRET_KEY ) ).getRejection() );
+    }
+
+    private static ContractConfiguration contract( String merchantId, String keyId, String productDescription, String secretKey ){
+        return new ContractConfiguration( "TSI", properties( merchantId, keyId, productDescription, secretKey ) );
+    }
+
+    private static Map<String, ContractProperty> properties( String merchantId, String keyId, String productDescription, String secretKey ){
+        Map<String, ContractProperty> properties = new HashMap<>();
+        properties.put( TsiConstants.CONTRACT_MERCHANT_ID, new ContractProperty( merchantId ) );
+        properties.put( TsiConstants.CONTRACT_KEY_ID, new ContractProperty( keyId ) );
+        properties.put( TsiConstants.CONTRACT_PRODUCT_DESCRIPTION, new ContractProperty( productDescription ) );
+        properties.put( TsiConstants.CONTRACT_KEY_VALUE, new ContractProperty( secretKey ) );
+        return properties;
+    }
+
+}
@@ -0,0 +1,38 @@
+package com.payline.payment.tsi.request;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TransactionIdCodecTest {
+
+    @Test
+    public void testEncode(){
+        // when: encoding a transaction id, then: result is its MD5 hash
+        Assert.assertEquals( "e807f1fcf82d132f9bb018ca6738a19f", TransactionIdCodec.encode( "1234567890" ) );
+    }
+
+    @Test
+    public void testEncode_utf8(){
+        // when: encoding a transaction id with non-ASCII characters, then: result is the MD5 hash of its UTF-8 bytes
+        Assert.assertEquals( "8df83342f6d82a2fb7fdd94bfc2da6bc", TransactionIdCodec.encode( "Cr\u00E8me" ) );
+    }
+
+    @Test
+    public void testEncode_memoized(){
+        // given: a transaction id already encoded
+        String first = TransactionIdCodec.encode( "TSI4567890123456" );
+
+        // when: encoding it again, then: the same instance is returned
+        Assert.assertSame( first, TransactionIdCodec.encode( "TSI4567890123456" ) );
+    }
+
+    @Test
+    public void testEncode_alternating(){
+        // when: encoding different ids one after the other, then: each result matches its own id
+        String first = TransactionIdCodec.encode( "1234567890" );
+        String second = TransactionIdCodec.encode( "0987654321" );
+        Assert.assertNotEquals( first, second );
+        Assert.assertEquals( first, TransactionIdCodec.encode( "1234567890" ) );
+    }
+
+}
@@ -0,0 +1,60 @@
+package com.payline.payment.tsi.request;
+
+import com.payline.payment.tsi.security.Hmac;
+import com.payline.payment.tsi.security.HmacAlgorithm;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TsiGoRequestTemplateTest {
+
+    private static final String SECRET_KEY = "45f3bcf660df19f8364c222e887300fa";
+
+    @Test
+    public void testNewRequest_sameAsFieldByField(){
+        // given: the constant values of a contract
+        String[] contract = { "806", "806", "Ticket Premium", "https://merchant.com/returnOK",
+                "https://merchant.com/returnNOK", "https://merchant.com/notification", "N", "Y" };
+
+        // when: creating requests from its template, then: body and seal are the same as the ones of requests built field by field
+        assertSameRequest( contract, "43b3a1b952dc5c1f2fd2a46162b3aaaa", "10.5", "EUR" );
+        assertSameRequest( contract, "0123456789abcdef0123456789abcdef", "1000", "USD" );
+    }
+
+    @Test
+    public void testNewRequest_escapedValues(){
+        // given: constant values which need to be escaped, or are not ASCII
+        String[] contract = { "806", "806", "Ticket \"Premium\" \u00e9t\u00e9 <3 & 'co'",
+                "https://merchant.com/return?status=OK&lang=fr", "https://merchant.com/returnNOK\t",
+                "https://merchant.com/notification\\", "N", "N" };
+
+        // when: creating requests with variable values which need to be escaped as well
+        // then: body and seal are the same as the ones of requests built field by field
+        assertSameRequest( contract, "43b3a1b952dc5c1f2fd2a46162b3aaaa", "10.5", "E<R" );
+        assertSameRequest( contract, "43b3a1b952dc5c1f2fd2a46162b3aaaa", "10.5", "\u20ac" );
+    }
+
+    @Test
+    public void testNewRequest_missingValues(){
+        // given: missing constant values
+        String[] contract = { "806", "806", null, null, null, null, "N", "Y" };
+
+        // when: creating a request with missing variable values
+        // then: body and seal are the same as the ones of requests built field by field
+        assertSameRequest( contract, "43b3a1b952dc5c1f2fd2a46162b3aaaa", null, "EUR" );
+    }
+
+    private static void assertSameRequest( String[] contract, String tid, String amount, String currency ){
+        TsiGoRequest fromTemplate = new TsiGoRequestTemplate( Integer.parseInt( contract[0] ), Integer.parseInt( contract[1] ),
+                contract[2], contract[3], contract[4], contract[5], contract[6], contract[7],
+                new Hmac( SECRET_KEY, HmacAlgorithm.MD5 ) ).newRequest( tid, amount, currency );
+
+        TsiGoRequest expected = new TsiGoRequest( Integer.parseInt( contract[0] ), tid, amount, currency,
+                Integer.parseInt( contract[1] ), contract[2], contract[3], contract[4], contract[5], contract[6], contract[7], null );
+        expected.seal( SECRET_KEY );
+
+        Assert.assertEquals( expected.getMac(), fromTemplate.getMac() );
+        Assert.assertEquals( expected.buildBody(), fromTemplate.buildBody() );
+        Assert.assertEquals( expected.buildSealMessage(), fromTemplate.buildSealMessage() );
+    }
+
+}
@@ -2,13 +2,15 @@ package com.payline.payment.tsi.request;
 
 import com.payline.payment.tsi.exception.InvalidRequestException;
 import com.payline.payment.tsi.request.mock.TsiPaymentRequestMock;
+import com.payline.payment.tsi.security.Hmac;
+import com.payline.payment.tsi.security.HmacAlgorithm;
 import com.payline.pmapi.bean.payment.request.PaymentRequest;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.math.BigInteger;
-import java.security.NoSuchAlgorithmException;
+import java.util.Currency;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -55,6 +57,20 @@ public class TsiGoRequestTest {
         Assert.assertEquals( exampleMessage, sealMessage );
     }
 
+    @Test
+    public void testSeal(){
+        // given: a request with non-ASCII characters and a null field
+        TsiGoRequest request = new TsiGoRequest( 430, "43b3a1b952dc5c1f2fd2a46162b3aaaa", "20.5", "EUR", -1,
+                "Cr\u00E8me br\u00FBl\u00E9e \u00E0 10\u20AC", "http://boutique.com/returnOK.php", null, "http://boutique.com/returnS2S.php",
+                "N", "Y", null );
+
+        // when: sealing the request
+        request.seal( "secret" );
+
+        // then: the seal is the digest of the seal message
+        Assert.assertEquals( new Hmac( "secret", HmacAlgorithm.MD5 ).digest( request.buildSealMessage() ), request.getMac() );
+    }
+
     @Test
     public void testBuilder_checkInputRequest_ok() throws InvalidRequestException {
         // given: a valid PaymentRequest
@@ -71,7 +87,7 @@ public class TsiGoRequestTest {
 
 
     @Test
-    public void testBuilder_fromPaymentRequest() throws InvalidRequestException, NoSuchAlgorithmException {
+    public void testBuilder_fromPaymentRequest() throws InvalidRequestException {
         // given: a valid PaymentRequest
         PaymentRequest paymentRequest = (new TsiPaymentRequestMock()).mock();
 
@@ -110,6 +126,21 @@ public class TsiGoRequestTest {
         Assert.assertEquals( "1.1", this.builder.formatAmount( amount ) );
     }
 
+    @Test
+    public void testBuilder_formatAmount_largeAmount(){
+        // given: a large cents amount
+        BigInteger amount = BigInteger.valueOf( 123456789012L );
+
+        // when: formatting the amount, then: result is exact and not in scientific notation
+        Assert.assertEquals( "1234567890.12", this.builder.formatAmount( amount ) );
+    }
+
+    @Test
+    public void testBuilder_formatAmount_currencyExponent(){
+        // when: formatting an amount in a currency without decimals, then: result has no separator
+        Assert.assertEquals( "150", this.builder.formatAmount( BigInteger.valueOf( 150 ), Currency.getInstance( "JPY" ) ) );
+    }
+
     public static TsiGoRequest sample(){
         return new TsiGoRequest(
                 123,
@@ -4,8 +4,6 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
-import java.security.NoSuchAlgorithmException;
-
 public class TsiSealedJsonRequestTest {
 
     private TsiSealedJsonRequest.Builder builder;
@@ -16,7 +14,7 @@ public class TsiSealedJsonRequestTest {
     }
 
     @Test
-    public void testBuilder_formatTransactionId_shorter() throws NoSuchAlgorithmException {
+    public void testBuilder_formatTransactionId_shorter() {
         // given: a transaction id shorter than 32 characters
         String transactionId = "TSI4567890123456";
 
@@ -29,7 +27,7 @@ public class TsiSealedJsonRequestTest {
     }
 
     @Test
-    public void testBuilder_formatTransactionId_rightLength() throws NoSuchAlgorithmException {
+    public void testBuilder_formatTransactionId_rightLength() {
         // given: a transaction id 32 characters long
         String transactionId = "TSI45678901234567890123456789012";
 
@@ -42,7 +40,7 @@ public class TsiSealedJsonRequestTest {
     }
 
     @Test
-    public void testBuilder_formatTransactionId_longer() throws NoSuchAlgorithmException {
+    public void testBuilder_formatTransactionId_longer() {
         // given: a transaction id longer than 32 characters
         String transactionId = "TSI45678901234567890123456789012345678901234567890";
 
@@ -2,13 +2,13 @@ package com.payline.payment.tsi.request;
 
 import com.payline.payment.tsi.exception.InvalidRequestException;
 import com.payline.payment.tsi.request.mock.TsiRedirectionPaymentRequestMock;
+import com.payline.payment.tsi.security.Hmac;
+import com.payline.payment.tsi.security.HmacAlgorithm;
 import com.payline.pmapi.bean.payment.request.RedirectionPaymentRequest;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
-import java.security.NoSuchAlgorithmException;
-
 public class TsiStatusCheckRequestTest {
 
     private TsiStatusCheckRequest.Builder builder;
@@ -38,6 +38,18 @@ public class TsiStatusCheckRequestTest {
         Assert.assertEquals( exampleMessage, sealMessage );
     }
 
+    @Test
+    public void testSeal(){
+        // given: the example request
+        TsiStatusCheckRequest request = new TsiStatusCheckRequest( "43b3a1b952dc5c1f2fd2a46162b3cbee", 441 );
+
+        // when: sealing the request
+        request.seal( "secret" );
+
+        // then: the seal is the digest of the seal message
+        Assert.assertEquals( new Hmac( "secret", HmacAlgorithm.MD5 ).digest( request.buildSealMessage() ), request.getMac() );
+    }
+
     @Test
     public void testBuilder_checkInputRequest_ok() throws InvalidRequestException {
         // given: a valid RedirectionPaymentRequest
@@ -0,0 +1,62 @@
+package com.payline.payment.tsi.response;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AdditionalDataCodecTest {
+
+    @Test
+    public void testEncode_compact(){
+        // given: a successful transaction status
+        TsiStatusCheckResponse statusCheck = new TsiStatusCheckResponse( "9289145", "9bc267fba6ccad33fc46a9b74411ad2b",
+                "OK", "0", "SUCCESSFUL TRANSACTION FOUND", "0,01", "f", "2018-09-06 14:24:14", "FRA" );
+
+        // when: encoding then decoding it
+        String data = AdditionalDataCodec.encode( statusCheck );
+        CompactStatusCheckResponse decoded = AdditionalDataCodec.decode( data );
+
+        // then: the data is in version 2, smaller than the JSON, and all the fields are restored
+        Assert.assertTrue( AdditionalDataCodec.isCompact( data ) );
+        Assert.assertTrue( data.length() < statusCheck.getResume().length() / 2 );
+        Assert.assertEquals( statusCheck.getResume(), decoded.toResponse().getResume() );
+    }
+
+    @Test
+    public void testEncode_missingFields(){
+        // given: a status with missing fields and a non hexadecimal tid
+        TsiStatusCheckResponse statusCheck = new TsiStatusCheckResponse( null, "123456789012345678901234567890AB",
+                "ER", "1", "Caf\u00e9", null, null, null, null );
+
+        // when: encoding then decoding it
+        CompactStatusCheckResponse decoded = AdditionalDataCodec.decode( AdditionalDataCodec.encode( statusCheck ) );
+
+        // then: all the fields are restored
+        Assert.assertEquals( statusCheck.getResume(), decoded.toResponse().getResume() );
+    }
+
+    @Test
+    public void testEncode_notCompactable(){
+        // given: a status which can't be compacted
+        TsiStatusCheckResponse statusCheck = new TsiStatusCheckResponse( "9289145", "9bc267fba6ccad33fc46a9b74411ad2b",
+                "OK", "0", "SUCCESSFUL TRANSACTION FOUND", "0.01", "f", "2018-09-06 14:24:14", "FRA" );
+
+        // when: encoding it, then: the legacy JSON is returned
+        String data = AdditionalDataCodec.encode( statusCheck );
+        Assert.assertFalse( AdditionalDataCodec.isCompact( data ) );
+        Assert.assertEquals( statusCheck.getResume(), data );
+    }
+
+    @Test
+    public void testDecode_invalid(){
+        // when: decoding invalid data, then: an IllegalArgumentException is thrown
+        for( String data : new String[]{ "{\"authId\":\"1\"}", "v2:", "v2:AAAAAA", "v2:!!!", "v2:CQAAAQ" } ){
+            try {
+                AdditionalDataCodec.decode( data );
+                Assert.fail( "Decoding should have failed: " + data );
+            } catch( IllegalArgumentException e ){
+                // expected
+            }
+        }
+    }
+
+}
@@ -0,0 +1,85 @@
+package com.payline.payment.tsi.response;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CompactStatusCheckResponseTest {
+
+    @Test
+    public void testOf_full(){
+        // given: a full checkstatus response
+        TsiStatusCheckResponse response = new TsiStatusCheckResponse( "1234567", "123456789012345678901234567890AB",
+                "OK", "0", "SUCCESSFUL TRANSACTION FOUND", "12,34", "t", "2018-08-02 10:37:22", "FRA|BEL" );
+
+        // when: compacting it
+        CompactStatusCheckResponse compact = CompactStatusCheckResponse.of( response );
+
+        // then: typed values are correct, and the wire form is restored identically
+        Assert.assertNotNull( compact );
+        Assert.assertEquals( TransactionStatus.OK, compact.getStatus() );
+        Assert.assertFalse( compact.isError() );
+        Assert.assertTrue( compact.isMulti() );
+        Assert.assertEquals( 1234L, compact.getAmount() );
+        Assert.assertEquals( 1533206242L, compact.getDtime() );
+        Assert.assertEquals( response.getResume(), compact.toResponse().getResume() );
+    }
+
+    @Test
+    public void testOf_missingFields(){
+        // given: a response with missing fields
+        TsiStatusCheckResponse response = new TsiStatusCheckResponse( null, "123456789012345678901234567890AB",
+                null, "1", "ERROR", null, null, null, null );
+
+        // when: compacting it
+        CompactStatusCheckResponse compact = CompactStatusCheckResponse.of( response );
+
+        // then: missing values are kept as missing
+        Assert.assertNotNull( compact );
+        Assert.assertNull( compact.getStatus() );
+        Assert.assertTrue( compact.isError() );
+        Assert.assertFalse( compact.isMulti() );
+        Assert.assertEquals( CompactStatusCheckResponse.NONE, compact.getAmount() );
+        Assert.assertEquals( CompactStatusCheckResponse.NONE, compact.getDtime() );
+        Assert.assertEquals( response.getResume(), compact.toResponse().getResume() );
+    }
+
+    @Test
+    public void testOf_unexpectedFormat(){
+        // when: a field doesn't have the expected format, then: the response is not compacted
+        Assert.assertNull( compact( "UNKNOWN", "0", "12,34", "f", "2018-08-02 10:37:22" ) );
+        Assert.assertNull( compact( "OK", "2", "12,34", "f", "2018-08-02 10:37:22" ) );
+        Assert.assertNull( compact( "OK", "0", "12,3", "f", "2018-08-02 10:37:22" ) );
+        Assert.assertNull( compact( "OK", "0", "012,34", "f", "2018-08-02 10:37:22" ) );
+        Assert.assertNull( compact( "OK", "0", "12.34", "f", "2018-08-02 10:37:22" ) );
+        Assert.assertNull( compact( "OK", "0", "12,34", "y", "2018-08-02 10:37:22" ) );
+        Assert.assertNull( compact( "OK", "0", "12,34", "f", "2018-02-30 10:37:22" ) );
+        Assert.assertNull( compact( "OK", "0", "12,34", "f", "2018-08-02T10:37:22" ) );
+    }
+
+    @Test
+    public void testAmount(){
+        // when: parsing then formatting amounts, then: the values are restored identically
+        for( String amount : new String[]{ "0,00", "0,05", "1,10", "99999,99", "92233720368547758,07" } ){
+            Assert.assertEquals( amount, CompactStatusCheckResponse.formatAmount( CompactStatusCheckResponse.parseAmount( amount ) ) );
+        }
+        // when: the amount overflows, then: it is rejected
+        Assert.assertEquals( CompactStatusCheckResponse.NONE, CompactStatusCheckResponse.parseAmount( "92233720368547758,08" ) );
+    }
+
+    @Test
+    public void testShared(){
+        // given: two responses with equal but distinct message and country values
+        CompactStatusCheckResponse first = compact( "OK", "0", "12,34", "f", "2018-08-02 10:37:22" );
+        CompactStatusCheckResponse second = compact( "OK", "0", "12,34", "f", "2018-08-02 10:37:22" );
+
+        // then: the compact forms share them
+        Assert.assertSame( first.getMessage(), second.getMessage() );
+        Assert.assertSame( first.getCountry(), second.getCountry() );
+    }
+
+    private static CompactStatusCheckResponse compact( String status, String erCode, String amount, String multi, String dtime ){
+        return CompactStatusCheckResponse.of( new TsiStatusCheckResponse( "1234567", "123456789012345678901234567890AB",
+                status, erCode, new String( "SUCCESSFUL TRANSACTION FOUND" ), amount, multi, dtime, new String( "FRA" ) ) );
+    }
+
+}
@@ -46,6 +46,34 @@ public class TsiStatusCheckResponseTest {
         Assert.assertEquals( country, response.getCountry() );
     }
 
+    @Test
+    public void testIsError(){
+        // given: responses parsed from a body, the error code being a distinct string instance
+        TsiStatusCheckResponse error = builder.fromJson( mockJson( null, null, "ER", "1", null, null, null, null, null ) );
+        TsiStatusCheckResponse success = builder.fromJson( mockJson( null, null, "OK", "0", null, null, null, null, null ) );
+
+        // then: the error code is compared by value
+        Assert.assertTrue( error.isError() );
+        Assert.assertEquals( TransactionStatus.ER, error.getTransactionStatus() );
+        Assert.assertFalse( success.isError() );
+        Assert.assertEquals( TransactionStatus.OK, success.getTransactionStatus() );
+    }
+
+    @Test
+    public void testIsTerminal(){
+        // given: a success, an expiration, a transaction not paid yet and an error
+        TsiStatusCheckResponse success = builder.fromJson( mockJson( null, null, "OK", "0", "SUCCESSFUL TRANSACTION FOUND", null, null, null, null ) );
+        TsiStatusCheckResponse expired = builder.fromJson( mockJson( null, null, "NOK", "1", TsiStatusCheckResponse.EXPIRED_MESSAGE, null, null, null, null ) );
+        TsiStatusCheckResponse pending = builder.fromJson( mockJson( null, null, "NOK", "1", "NO SUCCESSFUL TRANSACTION FOUND", null, null, null, null ) );
+        TsiStatusCheckResponse error = builder.fromJson( mockJson( null, null, "OK", "1", "MISSING MAC", null, null, null, null ) );
+
+        // then: only the success is terminal, an expiration may be reported early
+        Assert.assertTrue( success.isTerminal() );
+        Assert.assertFalse( expired.isTerminal() );
+        Assert.assertFalse( pending.isTerminal() );
+        Assert.assertFalse( error.isTerminal() );
+    }
+
     public static String mockJson( String authId, String tid, String status, String erCode, String message,
                                    String amount, String multi, String dtime, String country ){
         List<String> fields = new ArrayList<>();
@@ -3,6 +3,11 @@ package com.payline.payment.tsi.security;
 import org.junit.Assert;
 import org.junit.Test;
 
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+
 public class HmacTest {
 
     /**
@@ -33,4 +38,53 @@ public class HmacTest {
         Assert.assertEquals( result, hmac.digest( message ) );
     }
 
+    @Test
+    public void testSeal_sameAsJdkEncoding() throws GeneralSecurityException {
+        // given: messages containing multi-bytes characters, a surrogate pair and an unpaired surrogate
+        String key = "secret";
+        String[] messages = { "", "430|Produit de test|N|Y", "Cr\u00E8me br\u00FBl\u00E9e \u00E0 10\u20AC", "emoji \uD83D\uDE00 end", "broken \uD800 surrogate" };
+
+        for( String message : messages ){
+            // when: digesting the message, then: the result is the same as the plain JDK digest
+            Assert.assertEquals( message, reference( key, message ), new Hmac( key, HmacAlgorithm.MD5 ).digest( message ) );
+        }
+    }
+
+    @Test
+    public void testSeal_sealMessage(){
+        // given: a message written field by field
+        Hmac hmac = new Hmac( "secret", HmacAlgorithm.MD5 );
+        String nullField = null;
+
+        // when: digesting it, then: the result is the same as the one of the equivalent string
+        Assert.assertEquals( hmac.digest( "-2147483648|0|430|null|Cr\u00E8me" ),
+                hmac.digest( writer -> writer.append( Integer.MIN_VALUE ).append( '|' ).append( 0 ).append( '|' )
+                        .append( 430 ).append( '|' ).append( nullField ).append( '|' ).append( "Cr\u00E8me" ) ) );
+    }
+
+    @Test
+    public void testSeal_longMessage() throws GeneralSecurityException {
+        // given: a message longer than the writer buffer
+        StringBuilder message = new StringBuilder();
+        for( int i = 0; i < 300; i++ ){
+            message.append( "\u00E9" );
+        }
+
+        // when: digesting the message, then: the result is the same as the plain JDK digest
+        Assert.assertEquals( reference( "key", message.toString() ), new Hmac( "key", HmacAlgorithm.MD5 ).digest( message.toString() ) );
+    }
+
+    /**
+     * Digests the message with the JDK classes only.
+     */
+    private static String reference( String key, String message ) throws GeneralSecurityException {
+        Mac mac = Mac.getInstance( "HmacMD5" );
+        mac.init( new SecretKeySpec( key.getBytes( StandardCharsets.UTF_8 ), "HmacMD5" ) );
+        StringBuilder hash = new StringBuilder();
+        for( byte b : mac.doFinal( message.getBytes( StandardCharsets.UTF_8 ) ) ){
+            hash.append( String.format( "%02x", b ) );
+        }
+        return hash.toString();
+    }
+
 }
@@ -0,0 +1,144 @@
+package com.payline.payment.tsi.security;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.crypto.Mac;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyException;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class MacPoolTest {
+
+    private AtomicLong now;
+    private MacPool pool;
+
+    @Before
+    public void setup(){
+        this.now = new AtomicLong( 0 );
+        this.pool = new MacPool( 2, 1, 1000, now::get );
+    }
+
+    @Test
+    public void testBorrow_digest() throws GeneralSecurityException {
+        // given: the RFC2104 example
+        try( MacPool.PooledMac pooledMac = pool.borrow( HmacAlgorithm.MD5, "Jefe" ) ){
+            // when: digesting the message
+            byte[] bytes = pooledMac.getMac().doFinal( "what do ya want for nothing?".getBytes( StandardCharsets.UTF_8 ) );
+
+            // then: the first bytes are the expected ones
+            Assert.assertEquals( 16, bytes.length );
+            Assert.assertEquals( (byte) 0x75, bytes[0] );
+            Assert.assertEquals( (byte) 0x0c, bytes[1] );
+        }
+    }
+
+    @Test
+    public void testBorrow_reused() throws GeneralSecurityException {
+        // given: a Mac borrowed and released
+        Mac first;
+        try( MacPool.PooledMac pooledMac = pool.borrow( HmacAlgorithm.MD5, "key" ) ){
+            first = pooledMac.getMac();
+        }
+
+        // when: borrowing a Mac for the same algorithm and key
+        try( MacPool.PooledMac pooledMac = pool.borrow( HmacAlgorithm.MD5, "key" ) ){
+            // then: the same instance is returned
+            Assert.assertSame( first, pooledMac.getMac() );
+        }
+    }
+
+    @Test
+    public void testBorrow_otherKey() throws GeneralSecurityException {
+        // given: a Mac borrowed and released
+        Mac first;
+        try( MacPool.PooledMac pooledMac = pool.borrow( HmacAlgorithm.MD5, "key" ) ){
+            first = pooledMac.getMac();
+        }
+
+        // when: borrowing a Mac for another key, then: another instance is returned
+        try( MacPool.PooledMac pooledMac = pool.borrow( HmacAlgorithm.MD5, "other" ) ){
+            Assert.assertNotSame( first, pooledMac.getMac() );
+        }
+    }
+
+    @Test
+    public void testBorrow_expired() throws GeneralSecurityException {
+        // given: a Mac borrowed and released
+        Mac first;
+        try( MacPool.PooledMac pooledMac = pool.borrow( HmacAlgorithm.MD5, "key" ) ){
+            first = pooledMac.getMac();
+        }
+
+        // when: the TTL is over
+        now.set( 1000 );
+
+        // then: a new instance is returned
+        try( MacPool.PooledMac pooledMac = pool.borrow( HmacAlgorithm.MD5, "key" ) ){
+            Assert.assertNotSame( first, pooledMac.getMac() );
+        }
+    }
+
+    @Test
+    public void testBorrow_purgesExpired() throws GeneralSecurityException {
+        // given: an entry which is no longer used
+        try( MacPool.PooledMac pooledMac = pool.borrow( HmacAlgorithm.MD5, "unused" ) ){
+            Assert.assertNotNull( pooledMac.getMac() );
+        }
+
+        // when: another key, already pooled, is borrowed after the TTL
+        now.set( 500 );
+        try( MacPool.PooledMac pooledMac = pool.borrow( HmacAlgorithm.MD5, "key" ) ){
+            Assert.assertNotNull( pooledMac.getMac() );
+        }
+        now.set( 1200 );
+        try( MacPool.PooledMac pooledMac = pool.borrow( HmacAlgorithm.MD5, "key" ) ){
+            Assert.assertNotNull( pooledMac.getMac() );
+        }
+
+        // then: the unused entry has been dropped
+        Assert.assertEquals( 1, pool.size() );
+    }
+
+    @Test
+    public void testReference() throws GeneralSecurityException {
+        // given: a reference to a key, and a Mac borrowed through the key string
+        MacPool.KeyReference reference = pool.reference( HmacAlgorithm.MD5, "key" );
+        Mac first;
+        try( MacPool.PooledMac pooledMac = pool.borrow( HmacAlgorithm.MD5, "key" ) ){
+            first = pooledMac.getMac();
+            Assert.assertTrue( pooledMac.reference().isAvailable() );
+        }
+
+        // when: borrowing through the reference, then: the same pooled instance is returned
+        Assert.assertTrue( reference.isAvailable() );
+        try( MacPool.PooledMac pooledMac = reference.borrow() ){
+            Assert.assertSame( first, pooledMac.getMac() );
+        }
+
+        // when: the entry has expired, then: the reference gives no Mac, the key must be provided again
+        now.set( 1000 );
+        Assert.assertFalse( reference.isAvailable() );
+        try( MacPool.PooledMac pooledMac = reference.borrow() ){
+            Assert.fail( "An expired key should not be borrowed" );
+        } catch( KeyException e ){
+            Assert.assertEquals( 0, pool.size() );
+        }
+    }
+
+    @Test
+    public void testBorrow_bounded() throws GeneralSecurityException {
+        // when: borrowing Macs for more keys than the pool can hold
+        for( String key : new String[]{ "key1", "key2", "key3" } ){
+            try( MacPool.PooledMac pooledMac = pool.borrow( HmacAlgorithm.MD5, key ) ){
+                Assert.assertNotNull( pooledMac.getMac() );
+            }
+        }
+
+        // then: the pool size does not exceed its maximum
+        Assert.assertEquals( 2, pool.size() );
+    }
+
+}
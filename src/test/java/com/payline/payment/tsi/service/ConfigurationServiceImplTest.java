@@ -6,6 +6,8 @@ import com.payline.payment.tsi.response.TsiGoResponseTest;
 import com.payline.payment.tsi.utils.http.JsonHttpClient;
 import com.payline.payment.tsi.utils.http.ResponseMocker;
 import com.payline.payment.tsi.utils.http.StringResponse;
+import com.payline.payment.tsi.utils.validation.BulkContractValidator;
+import com.payline.payment.tsi.utils.validation.ContractValidationCache;
 import com.payline.pmapi.bean.configuration.ReleaseInformation;
 import com.payline.pmapi.bean.configuration.parameter.AbstractParameter;
 import com.payline.pmapi.bean.configuration.request.ContractParametersCheckRequest;
@@ -25,8 +27,13 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.mockito.Mockito.anyString;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith( MockitoJUnitRunner.class )
@@ -48,6 +55,9 @@ public class ConfigurationServiceImplTest {
         parameters.put( TsiConstants.CONTRACT_KEY_VALUE, "secret" );
         parameters.put( TsiConstants.CONTRACT_KEY_ID, "123" );
         parameters.put( TsiConstants.CONTRACT_PRODUCT_DESCRIPTION, "Ticket Premium" );
+
+        // Validation outcomes must not be shared between tests
+        ContractValidationCache.getInstance().clear();
     }
 
     @Test
@@ -59,6 +69,17 @@ public class ConfigurationServiceImplTest {
         Assert.assertEquals( 4, parameters.size() );
     }
 
+    @Test
+    public void testGetParameters_notShared(){
+        // when: recovering contract parameters twice
+        List<AbstractParameter> first = service.getParameters( Locale.FRANCE );
+        List<AbstractParameter> second = service.getParameters( Locale.FRANCE );
+
+        // then: the same labels are returned, in distinct instances
+        Assert.assertNotSame( first.get( 0 ), second.get( 0 ) );
+        Assert.assertEquals( first.get( 0 ).getLabel(), second.get( 0 ).getLabel() );
+    }
+
     @Test
     public void testCheck_ok() throws IOException, URISyntaxException, ExternalCommunicationException {
         // given: valid contract properties (TSI should then respond with a status=1)
@@ -106,6 +127,67 @@ public class ConfigurationServiceImplTest {
         Assert.assertEquals( 3, errors.size() );
     }
 
+    @Test
+    public void testCheck_cached() throws IOException, URISyntaxException, ExternalCommunicationException {
+        // given: contract properties rejected by TSI
+        ContractParametersCheckRequest checkRequest = ConfigurationServiceImplTest.setupCheckRequest( parameters );
+        String responseBody = TsiGoResponseTest.mockJson( 14, "UNKNOWN MERCHANT", null, null, null );
+        StringResponse response = ResponseMocker.mockString( 200, "OK", responseBody );
+        when( httpClient.doPost( anyString(), anyString(), anyString(), anyString() ) )
+                .thenReturn( response );
+
+        // when: checking the same configuration twice
+        Map<String, String> first = service.check( checkRequest );
+        Map<String, String> second = service.check( checkRequest );
+
+        // then: the same error is returned, and the validation request is sent only once
+        Assert.assertEquals( first, second );
+        Assert.assertTrue( second.containsKey( TsiConstants.CONTRACT_MERCHANT_ID ) );
+        verify( httpClient, times( 1 ) ).doPost( anyString(), anyString(), anyString(), anyString() );
+    }
+
+    @Test
+    public void testCheck_transientErrorNotCached() throws IOException, URISyntaxException, ExternalCommunicationException {
+        // given: a server unavailable, then a valid response
+        ContractParametersCheckRequest checkRequest = ConfigurationServiceImplTest.setupCheckRequest( parameters );
+        String responseBody = TsiGoResponseTest.mockJson( 1, "OK", "http://redirect-url.com", null, null );
+        when( httpClient.doPost( anyString(), anyString(), anyString(), anyString() ) )
+                .thenReturn( ResponseMocker.mockString( 503, "Server Unavailable", null ) )
+                .thenReturn( ResponseMocker.mockString( 200, "OK", responseBody ) );
+
+        // when: checking the configuration twice
+        Map<String, String> first = service.check( checkRequest );
+        Map<String, String> second = service.check( checkRequest );
+
+        // then: the failure is not reused
+        Assert.assertEquals( 3, first.size() );
+        Assert.assertEquals( 0, second.size() );
+    }
+
+    @Test
+    public void testCheckAll() throws IOException, URISyntaxException, ExternalCommunicationException {
+        // given: two contracts, one of which has a non-integer key id
+        String responseBody = TsiGoResponseTest.mockJson( 1, "OK", "http://redirect-url.com", null, null );
+        when( httpClient.doPost( anyString(), anyString(), anyString(), anyString() ) )
+                .thenReturn( ResponseMocker.mockString( 200, "OK", responseBody ) );
+        Map<String, String> invalidParameters = new HashMap<>( parameters );
+        invalidParameters.put( TsiConstants.CONTRACT_KEY_ID, "abc" );
+        Map<String, ContractParametersCheckRequest> checkRequests = new HashMap<>();
+        checkRequests.put( "valid", setupCheckRequest( parameters ) );
+        checkRequests.put( "invalid", setupCheckRequest( invalidParameters ) );
+
+        // when: checking both contracts
+        Map<String, BulkContractValidator.Result> results;
+        try( Stream<BulkContractValidator.Result> stream = service.checkAll( checkRequests, null ) ){
+            results = stream.collect( Collectors.toMap( BulkContractValidator.Result::getId, Function.identity() ) );
+        }
+
+        // then: each contract has its result
+        Assert.assertEquals( 2, results.size() );
+        Assert.assertTrue( results.get( "valid" ).isValid() );
+        Assert.assertTrue( results.get( "invalid" ).getErrors().containsKey( TsiConstants.CONTRACT_KEY_ID ) );
+    }
+
     @Test
     public void testCheck_incorrectMerchantId(){
         // given: a non-integer merchant id
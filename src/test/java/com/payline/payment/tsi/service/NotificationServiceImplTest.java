@@ -1,15 +1,34 @@
 package com.payline.payment.tsi.service;
 
+import com.payline.payment.tsi.TsiConstants;
+import com.payline.payment.tsi.response.TsiNotification;
+import com.payline.payment.tsi.response.TsiStatusCheckResponseTest;
+import com.payline.payment.tsi.security.Hmac;
+import com.payline.payment.tsi.security.HmacAlgorithm;
+import com.payline.payment.tsi.utils.config.ConfigEnvironment;
+import com.payline.payment.tsi.utils.status.TransactionStatusStore;
 import com.payline.pmapi.bean.notification.request.NotificationRequest;
 import com.payline.pmapi.bean.notification.response.NotificationResponse;
 import com.payline.pmapi.bean.notification.response.impl.IgnoreNotificationResponse;
+import com.payline.pmapi.bean.notification.response.impl.PaymentResponseByNotificationResponse;
+import com.payline.pmapi.bean.payment.ContractProperty;
+import com.payline.pmapi.bean.payment.response.impl.PaymentResponseFailure;
+import com.payline.pmapi.bean.payment.response.impl.PaymentResponseSuccess;
+import org.junit.After;
 import org.junit.Assert;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.InjectMocks;
+import org.mockito.Mockito;
 import org.mockito.junit.MockitoJUnitRunner;
 
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 @RunWith( MockitoJUnitRunner.class )
 public class NotificationServiceImplTest {
@@ -34,4 +53,80 @@ public class NotificationServiceImplTest {
         Assert.assertEquals("ACC=OK", ((IgnoreNotificationResponse)response).getHttpBody());
     }
 
+    @Test
+    public void testParse_success(){
+        // given: a notification of a successful transaction, sealed with the contract secret key
+        NotificationRequest request = this.mockRequest( "OK", "0", "SUCCESSFUL TRANSACTION FOUND", "secret" );
+
+        // when: parsing the notification
+        NotificationResponse response = service.parse( request );
+
+        // then: it is mapped to a successful payment response and the status is stored
+        Assert.assertTrue( response instanceof PaymentResponseByNotificationResponse );
+        Assert.assertEquals( "ACC=OK", response.getHttpBody() );
+        Assert.assertTrue( ((PaymentResponseByNotificationResponse) response).getPaymentResponse() instanceof PaymentResponseSuccess );
+        Assert.assertNotNull( TransactionStatusStore.getInstance().get( ConfigEnvironment.PROD, TID ) );
+    }
+
+    @Test
+    public void testParse_failure(){
+        // given: a notification of a failed transaction
+        NotificationRequest request = this.mockRequest( "NOK", "1", "TRANSACTION REFUSED", "secret" );
+
+        // when: parsing the notification
+        NotificationResponse response = service.parse( request );
+
+        // then: it is mapped to a failed payment response and the status is not stored
+        Assert.assertTrue( response instanceof PaymentResponseByNotificationResponse );
+        Assert.assertTrue( ((PaymentResponseByNotificationResponse) response).getPaymentResponse() instanceof PaymentResponseFailure );
+        Assert.assertNull( TransactionStatusStore.getInstance().get( ConfigEnvironment.PROD, TID ) );
+    }
+
+    @Test
+    public void testParse_invalidSeal(){
+        // given: a notification sealed with another key
+        NotificationRequest request = this.mockRequest( "OK", "0", "SUCCESSFUL TRANSACTION FOUND", "forged" );
+
+        // when: parsing the notification
+        NotificationResponse response = service.parse( request );
+
+        // then: it is ignored and the status is not stored
+        Assert.assertTrue( response instanceof IgnoreNotificationResponse );
+        Assert.assertNull( TransactionStatusStore.getInstance().get( ConfigEnvironment.PROD, TID ) );
+    }
+
+    @Test
+    public void testParse_invalidBody(){
+        // given: a notification which body is not JSON
+        NotificationRequest request = mock( NotificationRequest.class, Mockito.RETURNS_DEEP_STUBS );
+        when( request.getContent() ).thenReturn( new ByteArrayInputStream( "ERROR!".getBytes( StandardCharsets.UTF_8 ) ) );
+
+        // when: parsing the notification, then: it is ignored
+        Assert.assertTrue( service.parse( request ) instanceof IgnoreNotificationResponse );
+    }
+
+    @After
+    public void clearStore(){
+        TransactionStatusStore.getInstance().clear();
+    }
+
+    private static final String TID = "abcdefghijklmnopqrstuvwxyz123456";
+
+    private NotificationRequest mockRequest( String status, String erCode, String message, String sealKey ){
+        TsiNotification notification = new TsiNotification( "1234567", TID, status, erCode, message,
+                "12,34", "f", "2018-08-02 10:37:22", "FRA", null );
+        String mac = new Hmac( sealKey, HmacAlgorithm.MD5 ).digest( notification::writeSealMessage );
+        String json = TsiStatusCheckResponseTest.mockJson( "1234567", TID, status, erCode, message,
+                "12,34", "f", "2018-08-02 10:37:22", "FRA" );
+        json = json.substring( 0, json.length() - 1 ) + ",\"mac\":\"" + mac + "\"}";
+
+        Map<String, ContractProperty> contractProperties = new HashMap<>();
+        contractProperties.put( TsiConstants.CONTRACT_KEY_VALUE, new ContractProperty( "secret" ) );
+
+        NotificationRequest request = mock( NotificationRequest.class, Mockito.RETURNS_DEEP_STUBS );
+        when( request.getContent() ).thenReturn( new ByteArrayInputStream( json.getBytes( StandardCharsets.UTF_8 ) ) );
+        when( request.getContractConfiguration().getContractProperties() ).thenReturn( contractProperties );
+        return request;
+    }
+
 }
@@ -45,6 +45,18 @@ public class PaymentFormConfigurationServiceImplTest {
         Assert.assertTrue( response instanceof PaymentFormConfigurationResponseSpecific);
     }
 
+    @Test
+    public void testGetPaymentFormConfiguration_memoized(){
+        // when: getPaymentFormConfiguration is called twice with the same locale
+        final PaymentFormConfigurationRequest mock = mock(PaymentFormConfigurationRequest.class);
+        Mockito.when(mock.getLocale()).thenReturn(Locale.FRANCE);
+        PaymentFormConfigurationResponse first = service.getPaymentFormConfiguration(mock);
+        PaymentFormConfigurationResponse second = service.getPaymentFormConfiguration(mock);
+
+        // then: the same response is returned
+        Assert.assertSame( first, second );
+    }
+
     @Test
     public void testGetLogo() {
         // when: getLogo is called
@@ -56,6 +68,22 @@ public class PaymentFormConfigurationServiceImplTest {
         Assert.assertNotNull( paymentFormLogo.getContentType() );
     }
 
+    @Test
+    public void testGetLogo_fileContent() throws IOException {
+        // given: the logo file content
+        byte[] expected = Files.readAllBytes( new File( PaymentFormConfigurationServiceImpl.class.getClassLoader()
+                .getResource( "ticketpremium-logo.png" ).getFile() ).toPath() );
+
+        // when: getLogo is called twice
+        PaymentFormLogo first = service.getLogo( null, Locale.getDefault() );
+        PaymentFormLogo second = service.getLogo( null, Locale.FRANCE );
+
+        // then: the file is served as is, in distinct arrays
+        Assert.assertArrayEquals( expected, first.getFile() );
+        Assert.assertArrayEquals( expected, second.getFile() );
+        Assert.assertNotSame( first.getFile(), second.getFile() );
+    }
+
     @Test
     public void testGetPaymentFormLogo() throws IOException {
         // given: the logo image read from resources
@@ -3,6 +3,7 @@ package com.payline.payment.tsi.service;
 import com.payline.payment.tsi.error.ErrorCodesMap;
 import com.payline.payment.tsi.exception.ExternalCommunicationException;
 import com.payline.payment.tsi.exception.InvalidRequestException;
+import com.payline.payment.tsi.request.ContractProfile;
 import com.payline.payment.tsi.request.TsiGoRequest;
 import com.payline.payment.tsi.request.TsiGoRequestTest;
 import com.payline.payment.tsi.response.TsiGoResponseTest;
@@ -26,11 +27,12 @@ import org.mockito.junit.MockitoJUnitRunner;
 
 import java.io.IOException;
 import java.net.URISyntaxException;
-import java.security.NoSuchAlgorithmException;
 
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.anyString;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith( MockitoJUnitRunner.class )
@@ -43,10 +45,12 @@ public class PaymentServiceImplTest {
     private PaymentServiceImpl service;
 
     @Before
-    public void mockRequestBuilder() throws InvalidRequestException, NoSuchAlgorithmException {
+    public void mockRequestBuilder() throws InvalidRequestException {
         // In most cases, the PaymentRequest-to-TsiGoRequest mapping is not what we want to test. So we mock it for every test.
         when( requestBuilder.fromPaymentRequest( any( PaymentRequest.class ) ) )
                 .thenReturn( TsiGoRequestTest.sample() );
+        // The mocked requests share the same contract properties: forget the rejections of the previous tests
+        ContractProfile.clear();
     }
 
     @Test
@@ -63,7 +67,7 @@ public class PaymentServiceImplTest {
     }
 
     @Test
-    public void testPaymentRequest_invalidRequest() throws InvalidRequestException, NoSuchAlgorithmException {
+    public void testPaymentRequest_invalidRequest() throws InvalidRequestException {
         // when: the PaymentRequest is invalid, i.e. the builder throws an exception
         when( requestBuilder.fromPaymentRequest( any( PaymentRequest.class ) ) )
                 .thenThrow( InvalidRequestException.class );
@@ -88,6 +92,26 @@ public class PaymentServiceImplTest {
         Assert.assertEquals( ErrorCodesMap.getFailureCause( 15 ), ((PaymentResponseFailure) paymentResponse).getFailureCause() );
     }
 
+    @Test
+    public void testPaymentRequest_rejectedContract() throws IOException, URISyntaxException, ExternalCommunicationException {
+        // given: a contract rejected by TSI (unknown merchant id)
+        String content = TsiGoResponseTest.mockJson( 14, "UNKNOWN MID", null, null, null );
+        StringResponse response = ResponseMocker.mockString( 200, "OK", content );
+        when( httpClient.doPost( anyString(), anyString(), anyString(), anyString() ) )
+                .thenReturn( response );
+        PaymentRequest paymentRequest = mock( PaymentRequest.class, Mockito.RETURNS_DEEP_STUBS );
+        service.paymentRequest( paymentRequest );
+
+        // when: another payment is requested on the same contract
+        PaymentResponse paymentResponse = service.paymentRequest( paymentRequest );
+
+        // then: it fails locally, without any HTTP call
+        Assert.assertTrue( paymentResponse instanceof PaymentResponseFailure );
+        Assert.assertEquals( FailureCause.INVALID_DATA, ((PaymentResponseFailure) paymentResponse).getFailureCause() );
+        Assert.assertEquals( "UNKNOWN MID", ((PaymentResponseFailure) paymentResponse).getErrorCode() );
+        verify( httpClient, times( 1 ) ).doPost( anyString(), anyString(), anyString(), anyString() );
+    }
+
     @Test
     public void testPaymentRequest_noResponseBody() throws IOException, URISyntaxException, ExternalCommunicationException {
         // when: the HTTP call returns a response without body
@@ -1,13 +1,18 @@
 package com.payline.payment.tsi.service;
 
+import com.payline.payment.tsi.TsiConstants;
 import com.payline.payment.tsi.exception.ExternalCommunicationException;
 import com.payline.payment.tsi.exception.InvalidRequestException;
+import com.payline.payment.tsi.request.TransactionIdCodec;
 import com.payline.payment.tsi.request.TsiStatusCheckRequest;
 import com.payline.payment.tsi.request.TsiStatusCheckRequestTest;
+import com.payline.payment.tsi.response.TsiStatusCheckResponse;
 import com.payline.payment.tsi.response.TsiStatusCheckResponseTest;
 import com.payline.payment.tsi.utils.http.JsonHttpClient;
 import com.payline.payment.tsi.utils.http.ResponseMocker;
+import com.payline.payment.tsi.utils.config.ConfigEnvironment;
 import com.payline.payment.tsi.utils.http.StringResponse;
+import com.payline.payment.tsi.utils.status.TransactionStatusStore;
 import com.payline.pmapi.bean.common.FailureCause;
 import com.payline.pmapi.bean.payment.request.RedirectionPaymentRequest;
 import com.payline.pmapi.bean.payment.request.TransactionStatusRequest;
@@ -36,6 +41,9 @@ import java.net.URISyntaxException;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.anyString;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith( MockitoJUnitRunner.class )
@@ -54,6 +62,7 @@ public class PaymentWithRedirectionServiceImplTest {
         // In most cases, the RedirectionPaymentRequest-to-TsiStatusCheckRequest mapping is not what we want to test. So we mock it for every test.
         when( requestBuilder.fromRedirectionPaymentRequest( any( RedirectionPaymentRequest.class ) ) )
                 .thenReturn( TsiStatusCheckRequestTest.sample() );
+        TransactionStatusStore.getInstance().clear();
     }
 
     @Test
@@ -145,6 +154,66 @@ public class PaymentWithRedirectionServiceImplTest {
         Assert.assertEquals( FailureCause.COMMUNICATION_ERROR, ((PaymentResponseFailure) paymentResponse).getFailureCause() );
     }
 
+    @Test
+    public void testFinalizeRedirectionPayment_knownFromNotification() throws IOException, URISyntaxException, ExternalCommunicationException {
+        // given: a successful transaction already notified by TSI
+        String tid = "abcdefghijklmnopqrstuvwxyz123456";
+        TransactionStatusStore.getInstance().put( ConfigEnvironment.PROD, tid, new TsiStatusCheckResponse( "1234567", tid, "OK", "0",
+                "SUCCESSFUL TRANSACTION FOUND", "12,34", "f", "2018-08-02 10:37:22", "FRA" ) );
+        RedirectionPaymentRequest request = mock( RedirectionPaymentRequest.class, Mockito.RETURNS_DEEP_STUBS );
+        when( request.getRequestContext().getRequestData().get( TsiConstants.REQUEST_CONTEXT_KEY_TID ) ).thenReturn( tid );
+
+        try {
+            // when: the customer comes back
+            PaymentResponse paymentResponse = service.finalizeRedirectionPayment( request );
+
+            // then: the response is a success, without any call to TSI
+            Assert.assertTrue( paymentResponse instanceof PaymentResponseSuccess );
+            verify( httpClient, never() ).doPost( anyString(), anyString(), anyString(), anyString() );
+        } finally {
+            TransactionStatusStore.getInstance().clear();
+        }
+    }
+
+    @Test
+    public void testFinalizeRedirectionPayment_terminalStatusCached() throws IOException, URISyntaxException, ExternalCommunicationException {
+        // given: a transaction whose checkstatus returns a success
+        String tid = "abcdefghijklmnopqrstuvwxyz123456";
+        StringResponse response = this.mockResponse( 200, "OK", "OK", 0, "SUCCESSFUL TRANSACTION FOUND" );
+        when( httpClient.doPost( anyString(), anyString(), anyString(), anyString() ) )
+                .thenReturn( response );
+        RedirectionPaymentRequest request = mock( RedirectionPaymentRequest.class, Mockito.RETURNS_DEEP_STUBS );
+        when( request.getRequestContext().getRequestData().get( TsiConstants.REQUEST_CONTEXT_KEY_TID ) ).thenReturn( tid );
+        when( request.getEnvironment().isSandbox() ).thenReturn( false );
+
+        // when: the redirection payment is finalized twice
+        PaymentResponse first = service.finalizeRedirectionPayment( request );
+        PaymentResponse second = service.finalizeRedirectionPayment( request );
+
+        // then: both are successes, and TSI is called once
+        Assert.assertTrue( first instanceof PaymentResponseSuccess );
+        Assert.assertTrue( second instanceof PaymentResponseSuccess );
+        verify( httpClient, times( 1 ) ).doPost( anyString(), anyString(), anyString(), anyString() );
+        Assert.assertNotNull( TransactionStatusStore.getInstance().get( ConfigEnvironment.PROD, tid ) );
+        Assert.assertNull( TransactionStatusStore.getInstance().get( ConfigEnvironment.TEST, tid ) );
+    }
+
+    @Test
+    public void testFinalizeRedirectionPayment_nonTerminalStatusNotCached() throws IOException, URISyntaxException, ExternalCommunicationException {
+        // given: a transaction whose checkstatus returns an error
+        String tid = "abcdefghijklmnopqrstuvwxyz123456";
+        StringResponse response = this.mockResponse( 200, "OK", "ER", 106, "MISSING MAC" );
+        when( httpClient.doPost( anyString(), anyString(), anyString(), anyString() ) )
+                .thenReturn( response );
+        RedirectionPaymentRequest request = mock( RedirectionPaymentRequest.class, Mockito.RETURNS_DEEP_STUBS );
+        when( request.getRequestContext().getRequestData().get( TsiConstants.REQUEST_CONTEXT_KEY_TID ) ).thenReturn( tid );
+
+        // when: the redirection payment is finalized twice, then: TSI is called each time
+        service.finalizeRedirectionPayment( request );
+        service.finalizeRedirectionPayment( request );
+        verify( httpClient, times( 2 ) ).doPost( anyString(), anyString(), anyString(), anyString() );
+    }
+
     /*
     Can't really do better than that given that the method doesn't do much...
      */
@@ -157,6 +226,28 @@ public class PaymentWithRedirectionServiceImplTest {
         Assert.assertNotNull( response );
     }
 
+    @Test
+    public void testHandleSessionExpired_knownFromNotification() throws IOException, URISyntaxException, ExternalCommunicationException {
+        // given: a successful transaction already notified by TSI, with the tid of its Payline transaction id
+        String tid = TransactionIdCodec.encode( "PAYLINE-TRANSACTION-1" );
+        TransactionStatusStore.getInstance().put( ConfigEnvironment.PROD, tid, new TsiStatusCheckResponse( "1234567", tid, "OK", "0",
+                "SUCCESSFUL TRANSACTION FOUND", "12,34", "f", "2018-08-02 10:37:22", "FRA" ) );
+        TransactionStatusRequest request = mock( TransactionStatusRequest.class, Mockito.RETURNS_DEEP_STUBS );
+        when( request.getTransactionId() ).thenReturn( "PAYLINE-TRANSACTION-1" );
+        when( request.getEnvironment().isSandbox() ).thenReturn( false );
+
+        try {
+            // when: the session expires
+            PaymentResponse paymentResponse = service.handleSessionExpired( request );
+
+            // then: the response is a success, without any call to TSI
+            Assert.assertTrue( paymentResponse instanceof PaymentResponseSuccess );
+            verify( httpClient, never() ).doPost( anyString(), anyString(), anyString(), anyString() );
+        } finally {
+            TransactionStatusStore.getInstance().clear();
+        }
+    }
+
     private StringResponse mockResponse( int httpCode, String httpMessage, String status, Integer erCode, String message ) throws UnsupportedEncodingException {
         String jsonBody = null;
         String tid = "abcdefghijklmnopqrstuvwxyz123456";
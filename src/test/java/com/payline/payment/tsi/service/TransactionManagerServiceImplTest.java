@@ -1,5 +1,7 @@
 package com.payline.payment.tsi.service;
 
+import com.payline.payment.tsi.response.AdditionalDataCodec;
+import com.payline.payment.tsi.response.TsiStatusCheckResponse;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -14,6 +16,22 @@ public class TransactionManagerServiceImplTest {
         Assert.assertEquals("9289145", addData.get("authId"));
     }
 
+    @Test
+    public void readAdditionalDataCompact() {
+        final TransactionManagerServiceImpl tmsi = new TransactionManagerServiceImpl();
+        final String data = AdditionalDataCodec.encode(new TsiStatusCheckResponse("9289145", "9bc267fba6ccad33fc46a9b74411ad2b",
+                "OK", "0", "SUCCESSFUL TRANSACTION FOUND", "0,01", "f", "2018-09-06 14:24:14", "FRA"));
+        final Map<String, String> addData = tmsi.readAdditionalData(data, AdditionalDataCodec.VERSION_COMPACT);
+        Assert.assertEquals("9289145", addData.get("authId"));
+    }
+
+    @Test
+    public void readAdditionalDataInvalid() {
+        final TransactionManagerServiceImpl tmsi = new TransactionManagerServiceImpl();
+        Assert.assertTrue(tmsi.readAdditionalData("v2:!!!", AdditionalDataCodec.VERSION_COMPACT).isEmpty());
+        Assert.assertTrue(tmsi.readAdditionalData("ERROR!", "1.0").isEmpty());
+    }
+
     @Test
     public void readAdditionalDataNull() {
         final TransactionManagerServiceImpl tmsi = new TransactionManagerServiceImpl();
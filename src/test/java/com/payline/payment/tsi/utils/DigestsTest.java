@@ -0,0 +1,39 @@
+package com.payline.payment.tsi.utils;
+
+import com.payline.payment.tsi.security.Hex;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+public class DigestsTest {
+
+    @Test
+    public void testSha256(){
+        // when: hashing a prefix and a secret, then: the hash is the SHA-256 of their concatenation
+        Assert.assertEquals( "ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad",
+                hex( Digests.sha256( "a".getBytes( StandardCharsets.UTF_8 ), "bc" ) ) );
+        Assert.assertEquals( "ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad",
+                hex( Digests.sha256( new byte[ 0 ], "abc" ) ) );
+    }
+
+    @Test
+    public void testFnv1a(){
+        // then: the hashes match the reference values of the 64-bits FNV-1a
+        Assert.assertEquals( 0xcbf29ce484222325L, Digests.fnv1a( "" ) );
+        Assert.assertEquals( 0xaf63dc4c8601ec8cL, Digests.fnv1a( "a" ) );
+        Assert.assertEquals( 0x85944171f73967e8L, Digests.fnv1a( "foobar" ) );
+
+        // when: the hash is built in several steps, then: it is the same
+        long hash = Digests.fnv1a( Digests.FNV_OFFSET_BASIS, "foo" );
+        hash = Digests.fnv1a( hash, "bar".getBytes( StandardCharsets.US_ASCII ) );
+        Assert.assertEquals( 0x85944171f73967e8L, hash );
+        Assert.assertEquals( Digests.fnv1a( "a" ), Digests.fnv1a( Digests.FNV_OFFSET_BASIS, 'a' ) );
+    }
+
+    private static String hex( byte[] bytes ){
+        char[] chars = new char[ 2 * bytes.length ];
+        return new String( chars, 0, Hex.encode( bytes, bytes.length, chars ) );
+    }
+
+}
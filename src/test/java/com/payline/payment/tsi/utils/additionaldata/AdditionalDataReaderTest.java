@@ -0,0 +1,144 @@
+package com.payline.payment.tsi.utils.additionaldata;
+
+import com.payline.payment.tsi.response.AdditionalDataCodec;
+import com.payline.payment.tsi.response.TsiStatusCheckResponse;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+public class AdditionalDataReaderTest {
+
+    private static final String JSON = "{\"authId\":\"9289145\",\"tid\":\"9bc267fba6ccad33fc46a9b74411ad2b\",\"status\":\"OK\","
+            + "\"ercode\":\"0\",\"message\":\"SUCCESSFUL TRANSACTION FOUND\",\"amount\":\"0,01\",\"multi\":\"f\","
+            + "\"dtime\":\"2018-09-06 14:24:14\",\"country\":\"FRA\"}";
+
+    private AdditionalDataReader reader;
+
+    @Before
+    public void setup(){
+        this.reader = new AdditionalDataReader( 2 );
+    }
+
+    @Test
+    public void testRead_json(){
+        // when: reading legacy JSON data
+        Map<String, String> addData = reader.read( JSON, "1.0" );
+
+        // then: the authorization id is returned
+        Assert.assertEquals( 1, addData.size() );
+        Assert.assertEquals( "9289145", addData.get( AdditionalDataReader.AUTH_ID ) );
+    }
+
+    @Test
+    public void testRead_compact(){
+        // given: compact data
+        String data = AdditionalDataCodec.encode( new TsiStatusCheckResponse( "9289145", "9bc267fba6ccad33fc46a9b74411ad2b",
+                "OK", "0", "SUCCESSFUL TRANSACTION FOUND", "0,01", "f", "2018-09-06 14:24:14", "FRA" ) );
+
+        // when: reading it, then: the authorization id is returned
+        Assert.assertEquals( "9289145", reader.read( data, AdditionalDataCodec.VERSION_COMPACT ).get( AdditionalDataReader.AUTH_ID ) );
+    }
+
+    @Test
+    public void testRead_jsonLabelledCompact(){
+        // when: reading legacy JSON data, labelled with version 2
+        Map<String, String> addData = reader.read( JSON, AdditionalDataCodec.VERSION_COMPACT );
+
+        // then: it is recognized as JSON, and the authorization id is returned
+        Assert.assertEquals( "9289145", addData.get( AdditionalDataReader.AUTH_ID ) );
+    }
+
+    @Test
+    public void testRead_legacyWithPrefix(){
+        // given: data starting with the prefix of the compact form
+        String data = AdditionalDataCodec.encode( new TsiStatusCheckResponse( "9289145", "9bc267fba6ccad33fc46a9b74411ad2b",
+                "OK", "0", "SUCCESSFUL TRANSACTION FOUND", "0,01", "f", "2018-09-06 14:24:14", "FRA" ) );
+
+        // then: it is compact unless it is labelled with a legacy version
+        Assert.assertTrue( AdditionalDataCodec.isCompact( data, AdditionalDataCodec.VERSION_COMPACT ) );
+        Assert.assertTrue( AdditionalDataCodec.isCompact( data, null ) );
+        Assert.assertFalse( AdditionalDataCodec.isCompact( data, "1.0" ) );
+
+        // when: reading it with a legacy version, then: it is read as legacy data, and cached apart
+        Assert.assertEquals( "9289145", reader.read( data, null ).get( AdditionalDataReader.AUTH_ID ) );
+        Assert.assertNull( reader.read( data, "1.0" ).get( AdditionalDataReader.AUTH_ID ) );
+        Assert.assertEquals( 2, reader.size() );
+    }
+
+    @Test
+    public void testRead_invalidOrNull(){
+        // when: reading invalid or null data, then: the result is empty
+        Assert.assertTrue( reader.read( "ERROR!", "1.0" ).isEmpty() );
+        Assert.assertTrue( reader.read( "v2:!!!", AdditionalDataCodec.VERSION_COMPACT ).isEmpty() );
+        Assert.assertTrue( reader.read( null, null ).isEmpty() );
+    }
+
+    @Test
+    public void testView_cached(){
+        // given: data already read
+        AdditionalDataView first = reader.view( JSON, "1.0" );
+
+        // when: reading an equal content again
+        AdditionalDataView second = reader.view( new String( JSON ), "1.0" );
+
+        // then: the cached values are returned
+        Assert.assertSame( first, second );
+        Assert.assertEquals( 1, reader.size() );
+    }
+
+    @Test
+    public void testView_bounded(){
+        // when: reading more distinct contents than the cache size
+        reader.view( JSON, "1.0" );
+        reader.view( JSON.replace( "9289145", "1" ), "1.0" );
+        reader.view( JSON.replace( "9289145", "2" ), "1.0" );
+
+        // then: the cache is bounded
+        Assert.assertEquals( 2, reader.size() );
+    }
+
+    @Test
+    public void testReadAll(){
+        // given: rows holding valid, null and invalid data
+        List<String[]> rows = new ArrayList<>();
+        for( int i = 0; i < 5000; i++ ){
+            rows.add( new String[]{ JSON.replace( "9289145", Integer.toString( i ) ), "1.0" } );
+        }
+        rows.add( new String[]{ null, null } );
+        rows.add( new String[]{ "ERROR!", "1.0" } );
+        String compact = AdditionalDataCodec.encode( new TsiStatusCheckResponse( "9289145", "9bc267fba6ccad33fc46a9b74411ad2b",
+                "OK", "0", "SUCCESSFUL TRANSACTION FOUND", "0,01", "f", "2018-09-06 14:24:14", "FRA" ) );
+        rows.add( new String[]{ compact, AdditionalDataCodec.VERSION_COMPACT } );
+        rows.add( new String[]{ compact, "1.0" } );
+
+        // when: decoding them sequentially and in parallel, from a stream and from an iterator
+        List<AdditionalDataView> sequential = reader.readAll( rows.stream(), row -> row[ 0 ], row -> row[ 1 ] )
+                .collect( Collectors.toList() );
+        List<AdditionalDataView> parallel = reader.readAll( rows.parallelStream(), row -> row[ 0 ], row -> row[ 1 ] )
+                .collect( Collectors.toList() );
+        List<AdditionalDataView> iterated = reader.readAll( rows.iterator(), row -> row[ 0 ], row -> row[ 1 ], true )
+                .collect( Collectors.toList() );
+
+        // then: the views are in the order of the rows, and the cache is not used
+        for( List<AdditionalDataView> views : Arrays.asList( sequential, parallel, iterated ) ){
+            Assert.assertEquals( rows.size(), views.size() );
+            for( int i = 0; i < 5000; i++ ){
+                Assert.assertEquals( Integer.toString( i ), views.get( i ).getAuthId() );
+            }
+            Assert.assertFalse( views.get( 5000 ).isValid() );
+            Assert.assertFalse( views.get( 5001 ).isValid() );
+            Assert.assertTrue( views.get( 5001 ).toMap().isEmpty() );
+            // the version of each row chooses its codec
+            Assert.assertEquals( "9289145", views.get( 5002 ).getAuthId() );
+            Assert.assertNull( views.get( 5003 ).getAuthId() );
+        }
+        Assert.assertEquals( 0, reader.size() );
+    }
+
+}
@@ -0,0 +1,129 @@
+package com.payline.payment.tsi.utils.amount;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Currency;
+import java.util.Random;
+
+public class AmountCodecTest {
+
+    /** Number of random cases checked by each property */
+    private static final int CASES = 100000;
+
+    @Test
+    public void testFormat(){
+        // when: formatting amounts, then: the result has a dot and no useless zero
+        Assert.assertEquals( "1", AmountCodec.format( 100, 2 ) );
+        Assert.assertEquals( "1.02", AmountCodec.format( 102, 2 ) );
+        Assert.assertEquals( "1.1", AmountCodec.format( 110, 2 ) );
+        Assert.assertEquals( "0.01", AmountCodec.format( 1, 2 ) );
+        Assert.assertEquals( "0", AmountCodec.format( 0, 2 ) );
+        Assert.assertEquals( "-12.5", AmountCodec.format( -1250, 2 ) );
+        Assert.assertEquals( "1234567890.12", AmountCodec.format( 123456789012L, 2 ) );
+        Assert.assertEquals( "-92233720368547758.08", AmountCodec.format( Long.MIN_VALUE, 2 ) );
+    }
+
+    @Test
+    public void testFormat_currencyExponent(){
+        // when: formatting amounts in currencies whose exponent is not 2, then: the number of decimals follows the exponent
+        Assert.assertEquals( "150", AmountCodec.format( BigInteger.valueOf( 150 ), AmountCodec.exponent( Currency.getInstance( "JPY" ) ) ) );
+        Assert.assertEquals( "1.5", AmountCodec.format( BigInteger.valueOf( 1500 ), AmountCodec.exponent( Currency.getInstance( "KWD" ) ) ) );
+        Assert.assertEquals( "1.5", AmountCodec.format( BigInteger.valueOf( 150 ), AmountCodec.exponent( Currency.getInstance( "EUR" ) ) ) );
+        // pseudo-currency without exponent, or no currency: 2 decimals
+        Assert.assertEquals( "1.5", AmountCodec.format( BigInteger.valueOf( 150 ), AmountCodec.exponent( Currency.getInstance( "XXX" ) ) ) );
+        Assert.assertEquals( "1.5", AmountCodec.format( BigInteger.valueOf( 150 ), AmountCodec.exponent( null ) ) );
+    }
+
+    @Test
+    public void testFormat_bigInteger(){
+        // when: formatting amounts which don't fit in a long, then: the result is exact
+        BigInteger big = BigInteger.valueOf( Long.MAX_VALUE ).multiply( BigInteger.valueOf( 1000 ) );
+        Assert.assertEquals( "92233720368547758070", AmountCodec.format( big, 2 ) );
+        Assert.assertEquals( "9223372036854775807", AmountCodec.format( big, 3 ) );
+        Assert.assertEquals( "9223372036854775.807", AmountCodec.format( BigInteger.valueOf( Long.MAX_VALUE ), 3 ) );
+        Assert.assertEquals( "-9223372036854775807.001", AmountCodec.format( big.add( BigInteger.ONE ).negate(), 3 ) );
+    }
+
+    @Test
+    public void testFormat_property_sameAsBigDecimal(){
+        // given: random amounts and exponents
+        Random random = new Random( 42 );
+        for( int i = 0; i < CASES; i++ ){
+            long minorUnits = randomAmount( random );
+            int exponent = random.nextInt( 5 );
+
+            // when: formatting them, then: the result is the exact decimal value, without useless zeros
+            BigDecimal expected = BigDecimal.valueOf( minorUnits, exponent ).stripTrailingZeros();
+            if( expected.scale() < 0 ){
+                expected = expected.setScale( 0 );
+            }
+            Assert.assertEquals( expected.toPlainString(), AmountCodec.format( minorUnits, exponent ) );
+            Assert.assertEquals( expected.toPlainString(), AmountCodec.format( BigInteger.valueOf( minorUnits ), exponent ) );
+        }
+    }
+
+    @Test
+    public void testParse(){
+        // when: parsing checkstatus amounts, then: the result is in minor units
+        Assert.assertEquals( 1234L, AmountCodec.parse( "12,34", 2 ) );
+        Assert.assertEquals( 1230L, AmountCodec.parse( "12,3", 2 ) );
+        Assert.assertEquals( 1200L, AmountCodec.parse( "12", 2 ) );
+        Assert.assertEquals( 1L, AmountCodec.parse( "0,01", 2 ) );
+        Assert.assertEquals( 1234L, AmountCodec.parse( "12.34", 2 ) );
+        Assert.assertEquals( -1234L, AmountCodec.parse( "-12,34", 2 ) );
+        Assert.assertEquals( 12L, AmountCodec.parse( "12", 0 ) );
+        Assert.assertEquals( 12340L, AmountCodec.parse( "12,34", 3 ) );
+        Assert.assertEquals( Long.MAX_VALUE, AmountCodec.parse( "92233720368547758,07", 2 ) );
+        Assert.assertEquals( Long.MIN_VALUE, AmountCodec.parse( "-92233720368547758,08", 2 ) );
+    }
+
+    @Test
+    public void testParse_invalid(){
+        // when: parsing invalid amounts, then: a NumberFormatException is thrown
+        String[] invalid = { null, "", "-", ",12", "12,", "1,2,3", "12,345", "1 2", "12,3a", "+12", "1e5",
+                "92233720368547758,08", "-92233720368547758,09" };
+        for( String amount : invalid ){
+            try {
+                AmountCodec.parse( amount, 2 );
+                Assert.fail( "Parsing should have failed: " + amount );
+            } catch( NumberFormatException e ){
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testParse_property_roundTrip(){
+        // given: random amounts and exponents
+        Random random = new Random( 42 );
+        for( int i = 0; i < CASES; i++ ){
+            long minorUnits = randomAmount( random );
+            int exponent = random.nextInt( 5 );
+
+            // when: formatting them with a dot or a comma, then parsing them, then: the amount is restored
+            String formatted = AmountCodec.format( minorUnits, exponent );
+            Assert.assertEquals( minorUnits, AmountCodec.parse( formatted, exponent ) );
+            Assert.assertEquals( minorUnits, AmountCodec.parse( formatted.replace( '.', ',' ), exponent ) );
+        }
+    }
+
+    /**
+     * Random amounts, mostly small, with a few extreme values.
+     */
+    private static long randomAmount( Random random ){
+        switch( random.nextInt( 10 ) ){
+            case 0:
+                return random.nextLong();
+            case 1:
+                return random.nextBoolean() ? Long.MAX_VALUE - random.nextInt( 1000 ) : Long.MIN_VALUE + random.nextInt( 1000 );
+            case 2:
+                return random.nextInt( 100 ) * 100L;
+            default:
+                return random.nextInt( 10000000 ) * ( random.nextInt( 20 ) == 0 ? -1L : 1L );
+        }
+    }
+
+}
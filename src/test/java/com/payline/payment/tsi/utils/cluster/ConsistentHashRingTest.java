@@ -0,0 +1,97 @@
+package com.payline.payment.tsi.utils.cluster;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+public class ConsistentHashRingTest {
+
+    private static final int KEYS = 20000;
+
+    @Test
+    public void testOwnerOf_empty(){
+        // when: the ring has no member, then: no key has an owner
+        Assert.assertNull( new ConsistentHashRing( Collections.emptyList(), 16 ).ownerOf( "tid1" ) );
+    }
+
+    @Test
+    public void testOwnerOf_sameOnEveryNode(){
+        // given: the same members, listed in distinct orders, with a duplicate
+        ConsistentHashRing ring = new ConsistentHashRing( Arrays.asList( "node-a", "node-b", "node-c" ), 64 );
+        ConsistentHashRing other = new ConsistentHashRing( Arrays.asList( "node-c", "node-a", "node-b", "node-a" ), 64 );
+
+        // then: every key has the same owner
+        Assert.assertEquals( Arrays.asList( "node-a", "node-b", "node-c" ), other.getMembers() );
+        for( int i = 0; i < 1000; i++ ){
+            Assert.assertEquals( ring.ownerOf( tid( i ) ), other.ownerOf( tid( i ) ) );
+        }
+    }
+
+    @Test
+    public void testOwnerOf_balanced(){
+        // given: a ring of 4 members
+        ConsistentHashRing ring = new ConsistentHashRing( Arrays.asList( "node-a", "node-b", "node-c", "node-d" ),
+                ConsistentHashRing.DEFAULT_VIRTUAL_NODES );
+
+        // when: assigning many keys
+        Map<String, Integer> shares = new HashMap<>();
+        for( int i = 0; i < KEYS; i++ ){
+            shares.merge( ring.ownerOf( tid( i ) ), 1, Integer::sum );
+        }
+
+        // then: each member gets roughly a quarter of them
+        Assert.assertEquals( 4, shares.size() );
+        for( int share : shares.values() ){
+            Assert.assertTrue( "Unbalanced share: " + shares, share > KEYS / 4 * 0.75 && share < KEYS / 4 * 1.25 );
+        }
+    }
+
+    @Test
+    public void testOwnerOf_memberJoins(){
+        // given: a ring of 4 members, then the same one with a fifth member
+        ConsistentHashRing before = new ConsistentHashRing( Arrays.asList( "node-a", "node-b", "node-c", "node-d" ),
+                ConsistentHashRing.DEFAULT_VIRTUAL_NODES );
+        ConsistentHashRing after = new ConsistentHashRing( Arrays.asList( "node-a", "node-b", "node-c", "node-d", "node-e" ),
+                ConsistentHashRing.DEFAULT_VIRTUAL_NODES );
+
+        // then: the keys which move all go to the new member, and they are about a fifth of them
+        int moved = 0;
+        for( int i = 0; i < KEYS; i++ ){
+            String owner = after.ownerOf( tid( i ) );
+            if( !owner.equals( before.ownerOf( tid( i ) ) ) ){
+                Assert.assertEquals( "node-e", owner );
+                moved++;
+            }
+        }
+        Assert.assertTrue( "Moved: " + moved, moved > KEYS / 5 * 0.75 && moved < KEYS / 5 * 1.25 );
+    }
+
+    @Test
+    public void testOwnerOf_memberLeaves(){
+        // given: a ring of 3 members, then the same one without one of them
+        ConsistentHashRing before = new ConsistentHashRing( Arrays.asList( "node-a", "node-b", "node-c" ), 64 );
+        ConsistentHashRing after = new ConsistentHashRing( Arrays.asList( "node-a", "node-c" ), 64 );
+
+        // then: only the keys of the member which left move
+        for( int i = 0; i < KEYS; i++ ){
+            String owner = before.ownerOf( tid( i ) );
+            if( !owner.equals( "node-b" ) ){
+                Assert.assertEquals( owner, after.ownerOf( tid( i ) ) );
+            }
+        }
+    }
+
+    @Test( expected = IllegalArgumentException.class )
+    public void testInvalidVirtualNodes(){
+        new ConsistentHashRing( Collections.singletonList( "node-a" ), 0 );
+    }
+
+    private static String tid( int i ){
+        return String.format( "%032x", i * 2654435761L );
+    }
+
+}
@@ -0,0 +1,83 @@
+package com.payline.payment.tsi.utils.cluster;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class PollingOwnershipTest {
+
+    @Test
+    public void testIsOwner_alone(){
+        // given: a node without cluster
+        PollingOwnership ownership = new PollingOwnership( null, null, 16 );
+
+        // then: it owns every transaction
+        Assert.assertTrue( ownership.isOwner( "tid1" ) );
+        Assert.assertNull( ownership.ownerOf( "tid1" ) );
+    }
+
+    @Test
+    public void testIsOwner_cluster(){
+        // given: the 3 nodes of a cluster
+        MembershipProvider members = StaticMembershipProvider.parse( "node-a, node-b,,node-c" );
+        PollingOwnership a = new PollingOwnership( "node-a", members, 16 );
+        PollingOwnership b = new PollingOwnership( "node-b", members, 16 );
+        PollingOwnership c = new PollingOwnership( "node-c", members, 16 );
+
+        // then: each transaction is owned by exactly one of them
+        for( int i = 0; i < 100; i++ ){
+            String tid = "tid" + i;
+            int owners = ( a.isOwner( tid ) ? 1 : 0 ) + ( b.isOwner( tid ) ? 1 : 0 ) + ( c.isOwner( tid ) ? 1 : 0 );
+            Assert.assertEquals( 1, owners );
+            Assert.assertEquals( a.ownerOf( tid ), c.ownerOf( tid ) );
+        }
+    }
+
+    @Test
+    public void testIsOwner_notMember(){
+        // given: a node which is not a member of the cluster
+        PollingOwnership ownership = new PollingOwnership( "node-z", StaticMembershipProvider.parse( "node-a,node-b" ), 16 );
+
+        // then: it owns no transaction
+        for( int i = 0; i < 100; i++ ){
+            Assert.assertFalse( ownership.isOwner( "tid" + i ) );
+        }
+    }
+
+    @Test
+    public void testFileMembership() throws IOException {
+        // given: a members file, with a comment
+        Path file = Files.createTempFile( "tsi-members", ".txt" );
+        try {
+            Files.write( file, Arrays.asList( "# cluster", "node-a", "", "node-b" ), StandardCharsets.UTF_8 );
+            AtomicLong nanos = new AtomicLong( 0 );
+            FileMembershipProvider provider = new FileMembershipProvider( file, nanos::get );
+            Assert.assertEquals( Arrays.asList( "node-a", "node-b" ), provider.getMembers() );
+
+            // when: a node is added to the file
+            Files.write( file, Arrays.asList( "node-a", "node-b", "node-c" ), StandardCharsets.UTF_8 );
+            Files.setLastModifiedTime( file, FileTime.fromMillis( System.currentTimeMillis() + 5000 ) );
+
+            // then: it is read once the check interval has elapsed
+            Assert.assertEquals( 2, provider.getMembers().size() );
+            nanos.addAndGet( TimeUnit.SECONDS.toNanos( FileMembershipProvider.CHECK_INTERVAL_SECONDS ) );
+            Assert.assertEquals( Arrays.asList( "node-a", "node-b", "node-c" ), provider.getMembers() );
+
+            // when: the file is deleted, then: the members are kept
+            Files.delete( file );
+            nanos.addAndGet( TimeUnit.SECONDS.toNanos( FileMembershipProvider.CHECK_INTERVAL_SECONDS ) );
+            Assert.assertEquals( 3, provider.getMembers().size() );
+        } finally {
+            Files.deleteIfExists( file );
+        }
+    }
+
+}
@@ -0,0 +1,159 @@
+package com.payline.payment.tsi.utils.config;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ConfigPropertiesTest {
+
+    private Path override;
+    private AtomicLong now;
+
+    @Before
+    public void setup() throws IOException {
+        this.override = Files.createTempFile( "tsi-config", ".properties" );
+        this.now = new AtomicLong( 0 );
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        ConfigProperties.init( null, System::nanoTime );
+        Files.deleteIfExists( override );
+    }
+
+    @Test
+    public void testGetSnapshot_default(){
+        // when: reading the configuration of the classpath
+        ConfigSnapshot snapshot = ConfigProperties.getSnapshot();
+
+        // then: the typed settings match the raw properties
+        EnvironmentConfig test = snapshot.getEnvironment( ConfigEnvironment.TEST );
+        Assert.assertEquals( ConfigProperties.get( "tsi.host", ConfigEnvironment.TEST ), test.getHost() );
+        Assert.assertEquals( ConfigProperties.get( "tsi.go.path", ConfigEnvironment.TEST ), test.getGoPath() );
+        Assert.assertEquals( ConfigProperties.get( "tsi.statusCheck.path", ConfigEnvironment.TEST ), test.getStatusCheckPath() );
+        Assert.assertSame( test, snapshot.forHost( test.getHost() ) );
+        Assert.assertNull( snapshot.forHost( "unknown.host" ) );
+    }
+
+    @Test
+    public void testSnapshot_defaultTimeouts(){
+        // given: properties without HTTP settings
+        Properties properties = validProperties();
+
+        // when: building the snapshot, then: the default values are used
+        EnvironmentConfig config = ConfigSnapshot.of( properties ).getEnvironment( ConfigEnvironment.PROD );
+        Assert.assertEquals( EnvironmentConfig.DEFAULT_CONNECT_TIMEOUT, config.getConnectTimeout() );
+        Assert.assertEquals( EnvironmentConfig.DEFAULT_SOCKET_TIMEOUT, config.getSocketTimeout() );
+        Assert.assertEquals( EnvironmentConfig.DEFAULT_MAX_CONNECTIONS, config.getMaxConnections() );
+    }
+
+    @Test
+    public void testSnapshot_invalid(){
+        // given: properties with a missing endpoint and an invalid timeout
+        Properties properties = validProperties();
+        properties.remove( "prod.tsi.host" );
+        properties.setProperty( "test.tsi.http.socketTimeout", "-1" );
+
+        // when: building the snapshot, then: both errors are reported
+        try {
+            ConfigSnapshot.of( properties );
+            Assert.fail( "An IllegalArgumentException was expected" );
+        } catch( IllegalArgumentException e ){
+            Assert.assertTrue( e.getMessage().contains( "prod.tsi.host" ) );
+            Assert.assertTrue( e.getMessage().contains( "test.tsi.http.socketTimeout" ) );
+        }
+    }
+
+    @Test
+    public void testSnapshot_partial(){
+        // given: properties with a missing endpoint in production
+        Properties properties = validProperties();
+        properties.remove( "prod.tsi.host" );
+
+        // when: building a partial snapshot, then: only the valid environment is configured
+        ConfigSnapshot snapshot = ConfigSnapshot.partial( properties );
+        Assert.assertTrue( snapshot.hasEnvironment( ConfigEnvironment.TEST ) );
+        Assert.assertFalse( snapshot.hasEnvironment( ConfigEnvironment.PROD ) );
+        Assert.assertEquals( properties.getProperty( "test.tsi.host" ), snapshot.getEnvironment( ConfigEnvironment.TEST ).getHost() );
+        try {
+            snapshot.getEnvironment( ConfigEnvironment.PROD );
+            Assert.fail( "An IllegalStateException was expected" );
+        } catch( IllegalStateException e ){
+            Assert.assertTrue( e.getMessage().contains( "PROD" ) );
+        }
+    }
+
+    @Test
+    public void testOverride_reload() throws IOException {
+        // given: an override file
+        write( "test.tsi.http.socketTimeout = 3000", 1000 );
+        ConfigProperties.init( override, now::get );
+        ConfigSnapshot first = ConfigProperties.getSnapshot();
+        Assert.assertEquals( 3000, first.getEnvironment( ConfigEnvironment.TEST ).getSocketTimeout() );
+
+        // when: the file changes, then: the snapshot is kept until the check interval is over
+        write( "test.tsi.http.socketTimeout = 45000", 2000 );
+        Assert.assertSame( first, ConfigProperties.getSnapshot() );
+        now.set( TimeUnit.SECONDS.toNanos( ConfigProperties.CHECK_INTERVAL_SECONDS ) );
+
+        // then: a new snapshot is published
+        ConfigSnapshot second = ConfigProperties.getSnapshot();
+        Assert.assertNotSame( first, second );
+        Assert.assertEquals( 45000, second.getEnvironment( ConfigEnvironment.TEST ).getSocketTimeout() );
+        Assert.assertEquals( 3000, first.getEnvironment( ConfigEnvironment.TEST ).getSocketTimeout() );
+    }
+
+    @Test
+    public void testOverride_invalidKeepsCurrent() throws IOException {
+        // given: a valid override file
+        write( "prod.tsi.http.maxConnections = 5", 1000 );
+        ConfigProperties.init( override, now::get );
+        ConfigSnapshot current = ConfigProperties.getSnapshot();
+
+        // when: the file becomes invalid
+        write( "prod.tsi.http.maxConnections = many", 2000 );
+
+        // then: the current snapshot is kept
+        Assert.assertFalse( ConfigProperties.refresh() );
+        Assert.assertSame( current, ConfigProperties.getSnapshot() );
+        Assert.assertEquals( 5, ConfigProperties.getSnapshot().getEnvironment( ConfigEnvironment.PROD ).getMaxConnections() );
+    }
+
+    @Test
+    public void testOverride_unchanged() throws IOException {
+        // given: an override file
+        write( "prod.tsi.http.maxConnections = 5", 1000 );
+        ConfigProperties.init( override, now::get );
+
+        // when: the file has not changed, then: nothing is reloaded
+        Assert.assertFalse( ConfigProperties.refresh() );
+    }
+
+    private void write( String content, long lastModified ) throws IOException {
+        Files.write( override, content.getBytes( StandardCharsets.UTF_8 ) );
+        Files.setLastModifiedTime( override, FileTime.fromMillis( lastModified ) );
+    }
+
+    private static Properties validProperties(){
+        Properties properties = new Properties();
+        for( ConfigEnvironment environment : ConfigEnvironment.values() ){
+            String prefix = environment.getPrefix() + ".";
+            properties.setProperty( prefix + "tsi.scheme", "https" );
+            properties.setProperty( prefix + "tsi.host", environment.getPrefix() + ".tsi.example.com" );
+            properties.setProperty( prefix + "tsi.go.path", "context" );
+            properties.setProperty( prefix + "tsi.statusCheck.path", "checkstatus" );
+        }
+        return properties;
+    }
+
+}
@@ -39,4 +39,31 @@ public class I18nServiceTest {
         Assert.assertNotNull( message );
     }
 
+    @Test
+    public void testGetMessage_countryFallback(){
+        // when: recovering a message for a country-specific locale which has no specific messages file
+        String frFrMessage = service.getMessage( "contractConfiguration.keyId.error", Locale.FRANCE );
+
+        // then: the message of the language is returned
+        Assert.assertEquals( service.getMessage( "contractConfiguration.keyId.error", new Locale( "fr" ) ), frFrMessage );
+    }
+
+    @Test
+    public void testTable_resolvedOnce(){
+        // when: recovering the messages of the same locale twice, and of an unknown locale
+        // then: the same table is returned, and the unknown locale shares the table of the default one
+        Assert.assertSame( service.table( Locale.FRANCE ), service.table( Locale.FRANCE ) );
+        Assert.assertSame( service.table( Locale.getDefault() ), service.table( new Locale( "co" ) ) );
+    }
+
+    @Test
+    public void testGetMessage_missingKeyRepeated(){
+        // given: a service with a fixed clock
+        I18nService fixedClock = new I18nService( () -> 0L );
+
+        // when: recovering a missing key several times, then: the same placeholder is returned each time
+        Assert.assertEquals( "???fr.missing.key???", fixedClock.getMessage( "missing.key", Locale.FRENCH ) );
+        Assert.assertEquals( "???fr.missing.key???", fixedClock.getMessage( "missing.key", Locale.FRENCH ) );
+    }
+
 }
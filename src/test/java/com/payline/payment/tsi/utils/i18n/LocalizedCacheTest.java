@@ -0,0 +1,52 @@
+package com.payline.payment.tsi.utils.i18n;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class LocalizedCacheTest {
+
+    private AtomicInteger builds;
+    private LocalizedCache<String> cache;
+
+    @Before
+    public void setup(){
+        this.builds = new AtomicInteger();
+        this.cache = new LocalizedCache<>( locale -> {
+            builds.incrementAndGet();
+            return "value-" + locale;
+        } );
+    }
+
+    @Test
+    public void testGet_builtOnce(){
+        // when: recovering the value of the same locale twice
+        String first = cache.get( Locale.FRANCE );
+        String second = cache.get( Locale.FRANCE );
+
+        // then: the value is built once, and the same instance is returned
+        Assert.assertEquals( "value-fr_FR", first );
+        Assert.assertSame( first, second );
+        Assert.assertEquals( 1, builds.get() );
+    }
+
+    @Test
+    public void testGet_perLocale(){
+        // when: recovering the values of two locales, then: each one has its own value
+        Assert.assertEquals( "value-fr", cache.get( Locale.FRENCH ) );
+        Assert.assertEquals( "value-en", cache.get( Locale.ENGLISH ) );
+        Assert.assertEquals( 2, builds.get() );
+    }
+
+    @Test
+    public void testGet_nullLocale(){
+        // when: recovering the value of a null locale, then: it is built each time
+        Assert.assertEquals( "value-null", cache.get( null ) );
+        Assert.assertEquals( "value-null", cache.get( null ) );
+        Assert.assertEquals( 2, builds.get() );
+    }
+
+}
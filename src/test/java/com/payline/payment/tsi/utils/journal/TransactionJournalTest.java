@@ -0,0 +1,216 @@
+package com.payline.payment.tsi.utils.journal;
+
+import com.payline.payment.tsi.response.TsiStatusCheckResponse;
+import com.payline.payment.tsi.utils.config.ConfigEnvironment;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class TransactionJournalTest {
+
+    private static final ConfigEnvironment PROD = ConfigEnvironment.PROD;
+    private static final ConfigEnvironment TEST = ConfigEnvironment.TEST;
+
+    private Path directory;
+    private AtomicLong now;
+    private TransactionJournal journal;
+
+    @Before
+    public void setup() throws IOException {
+        this.directory = Files.createTempDirectory( "tsi-journal" );
+        this.now = new AtomicLong( 1000 );
+        this.journal = open();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        journal.close();
+        try( DirectoryStream<Path> files = Files.newDirectoryStream( directory ) ){
+            for( Path file : files ){
+                Files.delete( file );
+            }
+        }
+        Files.delete( directory );
+    }
+
+    @Test
+    public void testDisabled(){
+        // given: a journal without directory
+        TransactionJournal disabled = new TransactionJournal( null, 1024, 2, 1000, now::get );
+
+        // when: recording a transaction, then: nothing is recorded
+        disabled.created( PROD, "tid1" );
+        Assert.assertFalse( disabled.isEnabled() );
+        Assert.assertNull( disabled.get( PROD, "tid1" ) );
+    }
+
+    @Test
+    public void testCreatedThenStatus(){
+        // when: a transaction is created, then receives a pending status
+        journal.created( PROD, "tid1" );
+        Assert.assertEquals( JournalEntry.State.CREATED, journal.get( PROD, "tid1" ).getState() );
+        now.set( 2000 );
+        journal.statusReceived( PROD, "tid1", pending( "tid1" ) );
+
+        // then: the entry holds the status, and the creation time
+        JournalEntry entry = journal.get( PROD, "tid1" );
+        Assert.assertEquals( JournalEntry.State.PENDING, entry.getState() );
+        Assert.assertEquals( 1000, entry.getCreatedAt() );
+        Assert.assertEquals( 2000, entry.getUpdatedAt() );
+        Assert.assertEquals( pending( "tid1" ).getResume(), entry.getStatus().getResume() );
+        Assert.assertNull( journal.getTerminalStatus( PROD, "tid1" ) );
+
+        // then: the environments are distinct
+        Assert.assertNull( journal.get( TEST, "tid1" ) );
+    }
+
+    @Test
+    public void testTerminalStatusKept(){
+        // given: a successful transaction
+        journal.statusReceived( PROD, "tid1", success( "tid1" ) );
+
+        // when: a later status or creation is received
+        journal.statusReceived( PROD, "tid1", pending( "tid1" ) );
+        journal.statusReceived( PROD, "tid1", expired( "tid1" ) );
+        journal.created( PROD, "tid1" );
+
+        // then: the transaction is still a success
+        Assert.assertEquals( JournalEntry.State.SUCCESS, journal.get( PROD, "tid1" ).getState() );
+        Assert.assertEquals( success( "tid1" ).getResume(), journal.getTerminalStatus( PROD, "tid1" ).getResume() );
+    }
+
+    @Test
+    public void testExpiredThenSuccess(){
+        // given: a transaction reported as expired
+        journal.statusReceived( PROD, "tid1", expired( "tid1" ) );
+        Assert.assertEquals( JournalEntry.State.EXPIRED, journal.get( PROD, "tid1" ).getState() );
+        Assert.assertNull( journal.getTerminalStatus( PROD, "tid1" ) );
+
+        // when: it is paid later, then: the success replaces the expiry
+        journal.statusReceived( PROD, "tid1", success( "tid1" ) );
+        Assert.assertEquals( JournalEntry.State.SUCCESS, journal.get( PROD, "tid1" ).getState() );
+        Assert.assertEquals( success( "tid1" ).getResume(), journal.getTerminalStatus( PROD, "tid1" ).getResume() );
+    }
+
+    @Test
+    public void testLocked(){
+        // when: another journal is opened on the same directory
+        TransactionJournal other = open();
+
+        // then: it is disabled, and the first one still records
+        Assert.assertFalse( other.isEnabled() );
+        other.created( PROD, "tid1" );
+        journal.created( PROD, "tid2" );
+        Assert.assertNull( other.get( PROD, "tid1" ) );
+        Assert.assertNotNull( journal.get( PROD, "tid2" ) );
+
+        // when: the first one is closed, then: the directory can be opened again
+        journal.close();
+        journal = open();
+        Assert.assertTrue( journal.isEnabled() );
+        Assert.assertEquals( 1, journal.size() );
+    }
+
+    @Test
+    public void testRebuild() throws IOException {
+        // given: transactions recorded over several segments
+        for( int i = 0; i < 10; i++ ){
+            journal.created( PROD, "tid" + i );
+        }
+        journal.statusReceived( PROD, "tid3", success( "tid3" ) );
+        journal.statusReceived( TEST, "tid4", expired( "tid4" ) );
+        Assert.assertTrue( journal.segmentCount() > 1 );
+
+        // when: the journal is reopened
+        journal.close();
+        journal = open();
+
+        // then: the index is rebuilt with the last state of each transaction
+        Assert.assertEquals( 11, journal.size() );
+        Assert.assertEquals( JournalEntry.State.CREATED, journal.get( PROD, "tid9" ).getState() );
+        Assert.assertEquals( JournalEntry.State.SUCCESS, journal.get( PROD, "tid3" ).getState() );
+        Assert.assertEquals( JournalEntry.State.EXPIRED, journal.get( TEST, "tid4" ).getState() );
+        Assert.assertEquals( expired( "tid4" ).getResume(), journal.get( TEST, "tid4" ).getStatus().getResume() );
+        Assert.assertNull( journal.getTerminalStatus( TEST, "tid4" ) );
+
+        // then: the records are appended after the existing ones
+        journal.created( PROD, "tid10" );
+        journal.close();
+        journal = open();
+        Assert.assertEquals( 12, journal.size() );
+    }
+
+    @Test
+    public void testRebuild_tornRecord() throws IOException {
+        // given: two records, the last one partially written
+        journal.created( PROD, "tid1" );
+        journal.created( PROD, "tid2" );
+        journal.close();
+        Path segment = directory.resolve( JournalSegment.fileName( 0 ) );
+        int secondRecord = 8 + new JournalEntry( PROD, "tid1", JournalEntry.State.CREATED, 0, 0, null ).toRecord().length;
+        try( RandomAccessFile file = new RandomAccessFile( segment.toFile(), "rw" ) ){
+            file.seek( secondRecord + 12 );
+            file.write( 0x7F );
+        }
+
+        // when: the journal is reopened
+        journal = open();
+
+        // then: the records before the torn one are kept, and the next records overwrite it
+        Assert.assertNotNull( journal.get( PROD, "tid1" ) );
+        Assert.assertNull( journal.get( PROD, "tid2" ) );
+        journal.created( PROD, "tid3" );
+        journal.close();
+        journal = open();
+        Assert.assertEquals( 2, journal.size() );
+        Assert.assertNotNull( journal.get( PROD, "tid3" ) );
+    }
+
+    @Test
+    public void testCompaction() throws IOException {
+        // given: a transaction updated many times, and another one out of the retention period
+        journal.created( PROD, "old" );
+        now.set( 1000 + 60000 );
+        for( int i = 0; i < 100; i++ ){
+            journal.statusReceived( PROD, "tid1", new TsiStatusCheckResponse( null, "tid1", "NOK", "1",
+                    "NO SUCCESSFUL TRANSACTION FOUND " + i, null, null, null, null ) );
+        }
+
+        // then: the segments have been compacted
+        Assert.assertTrue( journal.segmentCount() <= 3 );
+        Assert.assertNull( journal.get( PROD, "old" ) );
+        Assert.assertTrue( journal.get( PROD, "tid1" ).getStatus().getMessage().endsWith( " 99" ) );
+
+        // when: the journal is reopened, then: the last status is found
+        journal.close();
+        journal = open();
+        Assert.assertEquals( 1, journal.size() );
+        Assert.assertTrue( journal.get( PROD, "tid1" ).getStatus().getMessage().endsWith( " 99" ) );
+    }
+
+    private TransactionJournal open(){
+        return new TransactionJournal( directory, 512, 2, 60000, now::get );
+    }
+
+    private static TsiStatusCheckResponse pending( String tid ){
+        return new TsiStatusCheckResponse( null, tid, "NOK", "1", "NO SUCCESSFUL TRANSACTION FOUND", null, null, null, null );
+    }
+
+    private static TsiStatusCheckResponse expired( String tid ){
+        return new TsiStatusCheckResponse( null, tid, "NOK", "1", TsiStatusCheckResponse.EXPIRED_MESSAGE, null, null, null, null );
+    }
+
+    private static TsiStatusCheckResponse success( String tid ){
+        return new TsiStatusCheckResponse( "1234567", tid, "OK", "0", "SUCCESSFUL TRANSACTION FOUND",
+                "12,34", "f", "2018-08-02 10:37:22", "FRA" );
+    }
+
+}
@@ -0,0 +1,137 @@
+package com.payline.payment.tsi.utils.json;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import com.payline.payment.tsi.request.TsiGoRequest;
+import com.payline.payment.tsi.request.TsiStatusCheckRequest;
+import com.payline.payment.tsi.response.TsiGoResponse;
+import com.payline.payment.tsi.response.TsiNotification;
+import com.payline.payment.tsi.response.TsiStatusCheckResponse;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class JsonCodecRegistryTest {
+
+    private static final String SECRET_KEY = "45f3bcf660df19f8364c222e887300fa";
+
+    private final JsonCodecRegistry registry = JsonCodecRegistry.getInstance();
+
+    @Test
+    public void testToJson_goRequest(){
+        // given: a sealed Go request, with custom parameters and characters escaped by Gson
+        Map<String, Object> custom = new HashMap<>();
+        custom.put( "orderRef", "<order & co>" );
+        TsiGoRequest request = new TsiGoRequest( 806, "43b3a1b952dc5c1f2fd2a46162b3aaaa", "10.5", "EUR", 806,
+                "Ticket 'Premium' \u00e9t\u00e9", "https://merchant.com/returnOK?a=1&b=2", "https://merchant.com/returnNOK",
+                "https://merchant.com/notification", "N", null, custom );
+        request.seal( SECRET_KEY );
+
+        // when: serializing it
+        String json = registry.toJson( request );
+
+        // then: the result is the same as the reflective serialization
+        Assert.assertEquals( new Gson().toJson( request ), json );
+    }
+
+    @Test
+    public void testFromJson_goRequest(){
+        // given: the body of a sealed Go request
+        Map<String, Object> custom = new HashMap<>();
+        custom.put( "orderRef", "<order & co>" );
+        TsiGoRequest request = new TsiGoRequest( 806, "43b3a1b952dc5c1f2fd2a46162b3aaaa", "10.5", "EUR", 806,
+                "Ticket", "https://merchant.com/returnOK", "https://merchant.com/returnNOK",
+                "https://merchant.com/notification", "N", "Y", custom );
+        request.seal( SECRET_KEY );
+        String json = registry.toJson( request );
+
+        // when: reading it, then: it is serialized the same way again, seal included
+        TsiGoRequest read = registry.fromJson( json, TsiGoRequest.class );
+        Assert.assertEquals( json, registry.toJson( read ) );
+        Assert.assertEquals( request.buildSealMessage(), read.buildSealMessage() );
+    }
+
+    @Test
+    public void testFromJson_statusCheckRequest(){
+        // given: the body of a checkstatus request, with an unknown field
+        String json = "{\"tid\":\"43b3a1b952dc5c1f2fd2a46162b3aaaa\",\"id\":806,\"mac\":\"abc\"}";
+        String withUnknown = "{\"other\":[1,2],\"tid\":\"43b3a1b952dc5c1f2fd2a46162b3aaaa\",\"id\":806,\"mac\":\"abc\"}";
+
+        // when: reading it, then: the unknown field is skipped
+        TsiStatusCheckRequest read = registry.fromJson( withUnknown, TsiStatusCheckRequest.class );
+        Assert.assertEquals( "43b3a1b952dc5c1f2fd2a46162b3aaaa|806", read.buildSealMessage() );
+        Assert.assertEquals( json, registry.toJson( read ) );
+        Assert.assertNull( registry.fromJson( "null", TsiStatusCheckRequest.class ) );
+    }
+
+    @Test
+    public void testToJson_statusCheckResponse(){
+        // given: a checkstatus response with missing fields
+        TsiStatusCheckResponse response = new TsiStatusCheckResponse( "1234567", "123456789012345678901234567890AB",
+                "OK", "0", null, "12,34", "f", "2018-08-02 10:37:22", "FRA" );
+
+        // when: serializing it
+        String json = registry.toJson( response );
+
+        // then: the result is the same as the reflective serialization
+        Assert.assertEquals( new Gson().toJson( response ), json );
+    }
+
+    @Test
+    public void testToJson_notification(){
+        // given: a notification
+        TsiNotification notification = new TsiNotification( "1234567", "123456789012345678901234567890AB",
+                "OK", "0", "MESSAGE", "12,34", "f", "2018-08-02 10:37:22", "FRA", "0123456789abcdef0123456789abcdef" );
+
+        // when: serializing it
+        String json = registry.toJson( notification );
+
+        // then: the result is the same as the reflective serialization
+        Assert.assertEquals( new Gson().toJson( notification ), json );
+    }
+
+    @Test
+    public void testFromJson_goResponse(){
+        // given: a Go response with an unknown field and a null status
+        String json = "{\"status\":null,\"message\":\"Message\",\"unknown\":{\"a\":[1,2]},\"url\":\"https://tsi.com/go\",\"tid\":\"abc\",\"keyid\":\"806\"}";
+
+        // when: parsing it
+        TsiGoResponse response = registry.fromJson( json, TsiGoResponse.class );
+        TsiGoResponse expected = new Gson().fromJson( json, TsiGoResponse.class );
+
+        // then: the values are the same as the reflective deserialization
+        Assert.assertEquals( expected.getStatus(), response.getStatus() );
+        Assert.assertEquals( expected.getMessage(), response.getMessage() );
+        Assert.assertEquals( expected.getUrl(), response.getUrl() );
+        Assert.assertEquals( expected.getTid(), response.getTid() );
+        Assert.assertEquals( expected.getKeyId(), response.getKeyId() );
+    }
+
+    @Test
+    public void testFromJson_notification(){
+        // given: a notification body
+        String json = "{\"authId\":\"1234567\",\"tid\":\"abc\",\"status\":\"OK\",\"ercode\":\"0\",\"amount\":\"12,34\","
+                + "\"multi\":\"f\",\"dtime\":\"2018-08-02 10:37:22\",\"country\":\"FRA\",\"mac\":\"0123\"}";
+
+        // when: parsing it
+        TsiNotification notification = registry.fromJson( json, TsiNotification.class );
+
+        // then: all the fields are read
+        Assert.assertEquals( "1234567", notification.getAuthId() );
+        Assert.assertEquals( "abc", notification.getTid() );
+        Assert.assertEquals( "OK", notification.getStatus() );
+        Assert.assertEquals( "0", notification.getErCode() );
+        Assert.assertNull( notification.getMessage() );
+        Assert.assertEquals( "FRA", notification.getCountry() );
+        Assert.assertEquals( "0123", notification.getMac() );
+    }
+
+    @Test( expected = JsonSyntaxException.class )
+    public void testFromJson_invalid(){
+        // when: parsing something which is not a JSON object, then: an exception is thrown
+        registry.fromJson( "ERROR!", TsiStatusCheckResponse.class );
+    }
+
+}
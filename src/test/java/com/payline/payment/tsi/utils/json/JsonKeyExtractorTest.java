@@ -0,0 +1,49 @@
+package com.payline.payment.tsi.utils.json;
+
+import com.google.gson.JsonSyntaxException;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class JsonKeyExtractorTest {
+
+    @Test
+    public void testExtract(){
+        // given: a JSON object with nested values and a number
+        String json = "{\"nested\":{\"authId\":\"wrong\"},\"list\":[1,{\"a\":2}],\"authId\":\"9289145\",\"amount\":12}";
+
+        // when: extracting top-level fields
+        String[] values = JsonKeyExtractor.extract( json, "authId", "amount", "missing" );
+
+        // then: the values are the top-level ones, numbers are read as strings
+        Assert.assertArrayEquals( new String[]{ "9289145", "12", null }, values );
+    }
+
+    @Test
+    public void testExtract_stopsEarly(){
+        // given: a JSON object whose end is truncated, after the requested field
+        String json = "{\"authId\":\"9289145\",\"tid\":\"9bc2";
+
+        // when: extracting the field, then: the rest is not read
+        Assert.assertArrayEquals( new String[]{ "9289145" }, JsonKeyExtractor.extract( json, "authId" ) );
+    }
+
+    @Test
+    public void testExtract_nullOrEmpty(){
+        // when: the content is empty or null, then: no value is found
+        Assert.assertArrayEquals( new String[]{ null }, JsonKeyExtractor.extract( "", "authId" ) );
+        Assert.assertArrayEquals( new String[]{ null }, JsonKeyExtractor.extract( "null", "authId" ) );
+    }
+
+    @Test( expected = JsonSyntaxException.class )
+    public void testExtract_notAnObject(){
+        // when: the content is not a JSON object, then: an exception is thrown
+        JsonKeyExtractor.extract( "ERROR!", "authId" );
+    }
+
+    @Test( expected = JsonSyntaxException.class )
+    public void testExtract_notAPrimitive(){
+        // when: the requested value is not a primitive, then: an exception is thrown
+        JsonKeyExtractor.extract( "{\"authId\":{\"a\":1}}", "authId" );
+    }
+
+}
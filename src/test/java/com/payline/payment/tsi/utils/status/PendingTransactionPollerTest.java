@@ -0,0 +1,372 @@
+package com.payline.payment.tsi.utils.status;
+
+import com.payline.payment.tsi.TsiConstants;
+import com.payline.payment.tsi.exception.InvalidRequestException;
+import com.payline.payment.tsi.request.ContractKey;
+import com.payline.payment.tsi.request.ContractProfile;
+import com.payline.payment.tsi.response.TsiStatusCheckResponse;
+import com.payline.payment.tsi.security.MacPool;
+import com.payline.payment.tsi.utils.cluster.PollingOwnership;
+import com.payline.payment.tsi.utils.cluster.StaticMembershipProvider;
+import com.payline.payment.tsi.utils.config.ConfigEnvironment;
+import com.payline.payment.tsi.utils.journal.TransactionJournal;
+import com.payline.payment.tsi.utils.timer.HashedWheelTimer;
+import com.payline.pmapi.bean.payment.ContractConfiguration;
+import com.payline.pmapi.bean.payment.ContractProperty;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class PendingTransactionPollerTest {
+
+    private static final ConfigEnvironment PROD = ConfigEnvironment.PROD;
+
+    private AtomicLong now;
+    private TransactionStatusStore store;
+    private Map<String, TsiStatusCheckResponse> responses;
+    private List<String> polled;
+    private ContractKey contractKey;
+
+    @Before
+    public void setup() throws InvalidRequestException {
+        this.now = new AtomicLong( 0 );
+        this.store = new TransactionStatusStore( 100, Long.MAX_VALUE / 2, now::get );
+        this.responses = new HashMap<>();
+        this.polled = new ArrayList<>();
+        this.contractKey = ContractProfile.of( contract() ).getContractKey();
+    }
+
+    @Test
+    public void testDelay(){
+        // then: the delay doubles from the first one, up to the maximum
+        Assert.assertEquals( PendingTransactionPoller.FIRST_DELAY_MILLIS, PendingTransactionPoller.delay( 0 ) );
+        Assert.assertEquals( 4 * PendingTransactionPoller.FIRST_DELAY_MILLIS, PendingTransactionPoller.delay( 2 ) );
+        Assert.assertEquals( PendingTransactionPoller.MAX_DELAY_MILLIS, PendingTransactionPoller.delay( 11 ) );
+        Assert.assertEquals( PendingTransactionPoller.MAX_DELAY_MILLIS, PendingTransactionPoller.delay( 100 ) );
+    }
+
+    @Test
+    public void testDisabled(){
+        // given: a disabled poller
+        PendingTransactionPoller poller = new PendingTransactionPoller( false, this::check, Runnable::run, 1, 0, 10, now::get,
+                store, TransactionJournal.getInstance() );
+
+        // when: tracking a transaction, then: it is ignored
+        poller.track( PROD, "tid1", contractKey );
+        Assert.assertEquals( 0, poller.size() );
+    }
+
+    @Test
+    public void testPoll_backoffUntilTerminal(){
+        // given: a tracked transaction, not paid yet
+        PendingTransactionPoller poller = poller( Runnable::run, 10, 10 );
+        responses.put( "tid1", pending( "tid1" ) );
+        poller.track( PROD, "tid1", contractKey );
+
+        // when: its first poll is not due yet, then: nothing happens
+        now.set( PendingTransactionPoller.FIRST_DELAY_MILLIS - 1 );
+        Assert.assertEquals( 0, poller.pollDue() );
+
+        // when: it is due, then: it is polled and its next poll is delayed twice as long
+        now.set( PendingTransactionPoller.FIRST_DELAY_MILLIS );
+        Assert.assertEquals( 1, poller.pollDue() );
+        Assert.assertEquals( now.get() + 2 * PendingTransactionPoller.FIRST_DELAY_MILLIS, poller.getNextPoll( PROD, "tid1" ) );
+
+        // when: it is paid, then: the next poll records the status and drops the transaction
+        responses.put( "tid1", success( "tid1" ) );
+        now.addAndGet( 2 * PendingTransactionPoller.FIRST_DELAY_MILLIS );
+        Assert.assertEquals( 1, poller.pollDue() );
+        Assert.assertEquals( 0, poller.size() );
+        Assert.assertEquals( success( "tid1" ).getResume(), store.get( PROD, "tid1" ).getResume() );
+        Assert.assertEquals( 2, polled.size() );
+    }
+
+    @Test
+    public void testPoll_alreadyKnown(){
+        // given: a tracked transaction, whose status has been received by another way
+        PendingTransactionPoller poller = poller( Runnable::run, 10, 10 );
+        poller.track( PROD, "tid1", contractKey );
+        store.put( PROD, "tid1", success( "tid1" ) );
+
+        // when: it is due, then: it is dropped without calling TSI
+        now.set( PendingTransactionPoller.FIRST_DELAY_MILLIS );
+        Assert.assertEquals( 1, poller.pollDue() );
+        Assert.assertEquals( 0, poller.size() );
+        Assert.assertTrue( polled.isEmpty() );
+    }
+
+    @Test
+    public void testPoll_error(){
+        // given: a tracked transaction, whose poll fails
+        PendingTransactionPoller poller = poller( Runnable::run, 10, 10 );
+        poller.track( PROD, "tid1", contractKey );
+
+        // when: it is due, then: it is polled again later
+        now.set( PendingTransactionPoller.FIRST_DELAY_MILLIS );
+        Assert.assertEquals( 1, poller.pollDue() );
+        Assert.assertEquals( 1, poller.size() );
+        Assert.assertEquals( now.get() + 2 * PendingTransactionPoller.FIRST_DELAY_MILLIS, poller.getNextPoll( PROD, "tid1" ) );
+    }
+
+    @Test
+    public void testPoll_keyNotAvailable() throws InvalidRequestException {
+        // given: a tracked transaction, whose contract key has left the pool
+        PendingTransactionPoller poller = poller( Runnable::run, 10, 10 );
+        responses.put( "tid1", pending( "tid1" ) );
+        poller.track( PROD, "tid1", contractKey );
+        MacPool.getInstance().clear();
+
+        // when: it is due, then: TSI is not called and the poll is postponed
+        now.set( PendingTransactionPoller.FIRST_DELAY_MILLIS );
+        Assert.assertEquals( 1, poller.pollDue() );
+        Assert.assertTrue( polled.isEmpty() );
+        Assert.assertEquals( 1, poller.size() );
+
+        // when: the contract is used again, then: the next poll calls TSI
+        ContractProfile.of( contract() );
+        now.addAndGet( 2 * PendingTransactionPoller.FIRST_DELAY_MILLIS );
+        Assert.assertEquals( 1, poller.pollDue() );
+        Assert.assertEquals( 1, polled.size() );
+    }
+
+    @Test
+    public void testCustomerReturned(){
+        // given: a tracked transaction, polled a few times
+        PendingTransactionPoller poller = poller( Runnable::run, 10, 10 );
+        responses.put( "tid1", pending( "tid1" ) );
+        poller.track( PROD, "tid1", contractKey );
+        for( int i = 0; i < 3; i++ ){
+            now.set( poller.getNextPoll( PROD, "tid1" ) );
+            Assert.assertEquals( 1, poller.pollDue() );
+        }
+        Assert.assertEquals( now.get() + 8 * PendingTransactionPoller.FIRST_DELAY_MILLIS, poller.getNextPoll( PROD, "tid1" ) );
+
+        // when: its customer comes back, then: its next poll is brought forward
+        now.addAndGet( 1000 );
+        poller.customerReturned( PROD, "tid1", contractKey );
+        Assert.assertEquals( now.get() + PendingTransactionPoller.FIRST_DELAY_MILLIS, poller.getNextPoll( PROD, "tid1" ) );
+
+        // when: it is polled, then: the delay doubles again from the first one
+        now.addAndGet( PendingTransactionPoller.FIRST_DELAY_MILLIS );
+        Assert.assertEquals( 1, poller.pollDue() );
+        Assert.assertEquals( now.get() + 2 * PendingTransactionPoller.FIRST_DELAY_MILLIS, poller.getNextPoll( PROD, "tid1" ) );
+        Assert.assertEquals( 4, polled.size() );
+
+        // when: the customer of a transaction not tracked comes back, then: it is tracked
+        poller.customerReturned( PROD, "tid2", contractKey );
+        Assert.assertEquals( 2, poller.size() );
+    }
+
+    @Test
+    public void testPoll_horizon(){
+        // given: a tracked transaction which never gets a terminal status
+        PendingTransactionPoller poller = poller( Runnable::run, 10, 10 );
+        responses.put( "tid1", pending( "tid1" ) );
+        poller.track( PROD, "tid1", contractKey );
+
+        // when: it is polled beyond the horizon, then: it is dropped
+        now.set( PendingTransactionPoller.HORIZON_MILLIS );
+        Assert.assertEquals( 1, poller.pollDue() );
+        Assert.assertEquals( 0, poller.size() );
+    }
+
+    @Test
+    public void testPoll_expiredEarly(){
+        // given: a tracked transaction, reported as expired before the horizon
+        PendingTransactionPoller poller = poller( Runnable::run, 10, 10 );
+        responses.put( "tid1", expired( "tid1" ) );
+        poller.track( PROD, "tid1", contractKey );
+
+        // when: it is polled, then: the expiry is not kept as a final status and the polls go on
+        now.set( PendingTransactionPoller.FIRST_DELAY_MILLIS );
+        Assert.assertEquals( 1, poller.pollDue() );
+        Assert.assertEquals( 1, poller.size() );
+        Assert.assertNull( store.get( PROD, "tid1" ) );
+        Assert.assertEquals( now.get() + 2 * PendingTransactionPoller.FIRST_DELAY_MILLIS, poller.getNextPoll( PROD, "tid1" ) );
+
+        // when: it is paid later, then: the success is recorded
+        responses.put( "tid1", success( "tid1" ) );
+        now.addAndGet( 2 * PendingTransactionPoller.FIRST_DELAY_MILLIS );
+        Assert.assertEquals( 1, poller.pollDue() );
+        Assert.assertEquals( 0, poller.size() );
+        Assert.assertEquals( success( "tid1" ).getResume(), store.get( PROD, "tid1" ).getResume() );
+    }
+
+    @Test
+    public void testPoll_expiredBeyondHorizon(){
+        // given: a tracked transaction, still expired at the horizon
+        PendingTransactionPoller poller = poller( Runnable::run, 10, 10 );
+        responses.put( "tid1", expired( "tid1" ) );
+        poller.track( PROD, "tid1", contractKey );
+
+        // when: it is polled beyond the horizon, then: the expiry is final
+        now.set( PendingTransactionPoller.HORIZON_MILLIS );
+        Assert.assertEquals( 1, poller.pollDue() );
+        Assert.assertEquals( 0, poller.size() );
+    }
+
+    @Test
+    public void testShutdown(){
+        // given: a tracked transaction
+        PendingTransactionPoller poller = poller( Runnable::run, 10, 10 );
+        poller.track( PROD, "tid1", contractKey );
+
+        // when: the poller is stopped, then: nothing is tracked nor polled anymore
+        poller.shutdown();
+        Assert.assertEquals( 0, poller.size() );
+        poller.track( PROD, "tid2", contractKey );
+        Assert.assertEquals( 0, poller.size() );
+        now.set( PendingTransactionPoller.FIRST_DELAY_MILLIS );
+        Assert.assertEquals( 0, poller.pollDue() );
+        Assert.assertTrue( polled.isEmpty() );
+    }
+
+    @Test
+    public void testPollDue_limits(){
+        // given: polls which never complete, at most 2 in progress, at most 1 started per second
+        List<Runnable> started = new ArrayList<>();
+        Executor executor = started::add;
+        PendingTransactionPoller poller = poller( executor, 2, 1 );
+        for( int i = 0; i < 5; i++ ){
+            poller.track( PROD, "tid" + i, contractKey );
+        }
+        now.set( PendingTransactionPoller.FIRST_DELAY_MILLIS );
+
+        // then: the rate limit applies, then the limit of polls in progress
+        Assert.assertEquals( 1, poller.pollDue() );
+        Assert.assertEquals( 0, poller.pollDue() );
+        now.addAndGet( 1000 );
+        Assert.assertEquals( 1, poller.pollDue() );
+        now.addAndGet( 1000 );
+        Assert.assertEquals( 0, poller.pollDue() );
+
+        // when: a poll completes, then: another one can start
+        started.get( 0 ).run();
+        Assert.assertEquals( 1, poller.pollDue() );
+        Assert.assertEquals( 3, started.size() );
+    }
+
+    @Test
+    public void testPoll_membershipChanged(){
+        // given: a node of a cluster, which created transactions, and owns some of them only
+        List<String> members = Arrays.asList( "node-a", "node-b" );
+        AtomicReference<List<String>> current = new AtomicReference<>( members );
+        PendingTransactionPoller poller = new PendingTransactionPoller( true, this::check, Runnable::run, 100, 0, 100, now::get,
+                store, TransactionJournal.getInstance(), new HashedWheelTimer( 1000, 64, now::get ),
+                new PollingOwnership( "node-a", current::get, 16 ) );
+        for( int i = 0; i < 20; i++ ){
+            responses.put( "tid" + i, pending( "tid" + i ) );
+            poller.track( PROD, "tid" + i, contractKey );
+        }
+
+        // when: the polls are due, then: only the owned transactions are polled
+        now.set( PendingTransactionPoller.FIRST_DELAY_MILLIS );
+        int owned = poller.pollDue();
+        Assert.assertTrue( owned > 0 && owned < 20 );
+        Assert.assertEquals( 20, poller.size() );
+
+        // when: the other node leaves the cluster, then: the node takes its transactions over
+        current.set( Collections.singletonList( "node-a" ) );
+        now.addAndGet( 2 * PendingTransactionPoller.FIRST_DELAY_MILLIS );
+        Assert.assertEquals( 20, poller.pollDue() );
+        Assert.assertEquals( 20, new HashSet<>( polled ).size() );
+    }
+
+    @Test
+    public void testPoll_notOwner(){
+        // given: the 2 nodes of a cluster, tracking the same transactions
+        List<PendingTransactionPoller> nodes = cluster();
+        for( int i = 0; i < 20; i++ ){
+            responses.put( "tid" + i, pending( "tid" + i ) );
+            for( PendingTransactionPoller poller : nodes ){
+                poller.track( PROD, "tid" + i, contractKey );
+            }
+        }
+
+        // when: the polls are due on both nodes
+        now.set( PendingTransactionPoller.FIRST_DELAY_MILLIS );
+        int started = nodes.get( 0 ).pollDue() + nodes.get( 1 ).pollDue();
+
+        // then: each transaction is polled once, by its owner, and the other node keeps it for later
+        Assert.assertEquals( 20, started );
+        Assert.assertEquals( 20, polled.size() );
+        Assert.assertEquals( 20, new HashSet<>( polled ).size() );
+        Assert.assertEquals( 20, nodes.get( 0 ).size() );
+        Assert.assertEquals( 20, nodes.get( 1 ).size() );
+    }
+
+    @Test
+    public void testTrack_maxTracked(){
+        // given: a poller which tracks 2 transactions at most
+        PendingTransactionPoller poller = new PendingTransactionPoller( true, this::check, Runnable::run, 1, 0, 2, now::get,
+                store, TransactionJournal.getInstance() );
+
+        // when: tracking 3 transactions, one of them twice
+        poller.track( PROD, "tid1", contractKey );
+        poller.track( PROD, "tid1", contractKey );
+        poller.track( PROD, "tid2", contractKey );
+        poller.track( PROD, "tid3", contractKey );
+
+        // then: only the first 2 are tracked
+        Assert.assertEquals( 2, poller.size() );
+        Assert.assertEquals( -1, poller.getNextPoll( PROD, "tid3" ) );
+    }
+
+    private List<PendingTransactionPoller> cluster(){
+        StaticMembershipProvider members = StaticMembershipProvider.parse( "node-a,node-b" );
+        List<PendingTransactionPoller> nodes = new ArrayList<>();
+        for( String node : members.getMembers() ){
+            nodes.add( new PendingTransactionPoller( true, this::check, Runnable::run, 100, 0, 100, now::get, store,
+                    TransactionJournal.getInstance(), new HashedWheelTimer( 1000, 64, now::get ),
+                    new PollingOwnership( node, members, 16 ) ) );
+        }
+        return nodes;
+    }
+
+    private static ContractConfiguration contract(){
+        Map<String, ContractProperty> properties = new HashMap<>();
+        properties.put( TsiConstants.CONTRACT_KEY_ID, new ContractProperty( "806" ) );
+        properties.put( TsiConstants.CONTRACT_KEY_VALUE, new ContractProperty( "45f3bcf660df19f8364c222e887300fa" ) );
+        return new ContractConfiguration( "TSI", properties );
+    }
+
+    private PendingTransactionPoller poller( Executor executor, int maxInFlight, double maxPerSecond ){
+        return new PendingTransactionPoller( true, this::check, executor, maxInFlight, maxPerSecond, 100, now::get,
+                store, TransactionJournal.getInstance() );
+    }
+
+    private TsiStatusCheckResponse check( ConfigEnvironment environment, String tid, ContractKey contractKey ) throws IOException {
+        polled.add( tid );
+        TsiStatusCheckResponse response = responses.get( tid );
+        if( response == null ){
+            throw new IOException( "No response" );
+        }
+        return response;
+    }
+
+    private static TsiStatusCheckResponse pending( String tid ){
+        return new TsiStatusCheckResponse( null, tid, "NOK", "1", "NO SUCCESSFUL TRANSACTION FOUND", null, null, null, null );
+    }
+
+    private static TsiStatusCheckResponse expired( String tid ){
+        return new TsiStatusCheckResponse( null, tid, "NOK", "1", TsiStatusCheckResponse.EXPIRED_MESSAGE, null, null, null, null );
+    }
+
+    private static TsiStatusCheckResponse success( String tid ){
+        return new TsiStatusCheckResponse( "1234567", tid, "OK", "0", "SUCCESSFUL TRANSACTION FOUND",
+                "12,34", "f", "2018-08-02 10:37:22", "FRA" );
+    }
+
+}
@@ -0,0 +1,134 @@
+package com.payline.payment.tsi.utils.status;
+
+import com.payline.payment.tsi.response.TsiStatusCheckResponse;
+import com.payline.payment.tsi.utils.config.ConfigEnvironment;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+public class TransactionStatusStoreTest {
+
+    private static final ConfigEnvironment PROD = ConfigEnvironment.PROD;
+
+    private AtomicLong now;
+    private TransactionStatusStore store;
+
+    @Before
+    public void setup(){
+        this.now = new AtomicLong( 0 );
+        this.store = new TransactionStatusStore( 2, 1000, now::get );
+    }
+
+    @Test
+    public void testGet_known(){
+        // given: a stored status
+        TsiStatusCheckResponse status = sample( "tid1" );
+        store.put( PROD, "tid1", status );
+
+        // when: recovering it, then: the same status is returned
+        Assert.assertEquals( status.getResume(), store.get( PROD, "tid1" ).getResume() );
+    }
+
+    @Test
+    public void testGet_notCompacted(){
+        // given: a stored status which can't be compacted
+        TsiStatusCheckResponse status = new TsiStatusCheckResponse( "1234567", "tid1", "OK", "0", "SUCCESSFUL TRANSACTION FOUND",
+                "12.34", "f", "2018-08-02 10:37:22", "FRA" );
+        store.put( PROD, "tid1", status );
+
+        // when: recovering it, then: the status is returned as it was stored
+        Assert.assertSame( status, store.get( PROD, "tid1" ) );
+    }
+
+    @Test
+    public void testGet_unknown(){
+        // when: recovering an unknown or null tid, then: result is null
+        Assert.assertNull( store.get( PROD, "unknown" ) );
+        Assert.assertNull( store.get( PROD, null ) );
+        Assert.assertNull( store.get( null, "tid1" ) );
+    }
+
+    @Test
+    public void testGet_expired(){
+        // given: a stored status
+        store.put( PROD, "tid1", sample( "tid1" ) );
+
+        // when: the TTL is over, then: the status is not returned anymore
+        now.set( 1000 );
+        Assert.assertNull( store.get( PROD, "tid1" ) );
+        Assert.assertEquals( 0, store.size() );
+    }
+
+    @Test
+    public void testPut_bounded(){
+        // given: a full store in which the first entry has been used recently
+        store.put( PROD, "tid1", sample( "tid1" ) );
+        store.put( PROD, "tid2", sample( "tid2" ) );
+        store.get( PROD, "tid1" );
+
+        // when: storing another status
+        store.put( PROD, "tid3", sample( "tid3" ) );
+
+        // then: the least recently used entry has been evicted
+        Assert.assertEquals( 2, store.size() );
+        Assert.assertNotNull( store.get( PROD, "tid1" ) );
+        Assert.assertNull( store.get( PROD, "tid2" ) );
+        Assert.assertNotNull( store.get( PROD, "tid3" ) );
+    }
+
+    @Test
+    public void testGet_byEnvironment(){
+        // given: a status stored for the production environment
+        store.put( PROD, "tid1", sample( "tid1" ) );
+
+        // when: recovering it for the test environment, then: it is unknown
+        Assert.assertNull( store.get( ConfigEnvironment.TEST, "tid1" ) );
+        Assert.assertNotNull( store.get( PROD, "tid1" ) );
+    }
+
+    @Test
+    public void testPut_terminalOnly(){
+        // given: a paid transaction, an expired one, a transaction not paid yet and an error
+        store.put( PROD, "tid1", sample( "tid1" ) );
+        store.put( PROD, "tid2", new TsiStatusCheckResponse( null, "tid2", "NOK", "1",
+                TsiStatusCheckResponse.EXPIRED_MESSAGE, null, null, null, null ) );
+        store.put( PROD, "tid3", new TsiStatusCheckResponse( null, "tid3", "NOK", "1",
+                "NO SUCCESSFUL TRANSACTION FOUND", null, null, null, null ) );
+        store.put( PROD, "tid4", new TsiStatusCheckResponse( null, "tid4", "ER", "1",
+                "MISSING MAC", null, null, null, null ) );
+
+        // then: only the terminal status, the success, is stored
+        Assert.assertNotNull( store.get( PROD, "tid1" ) );
+        Assert.assertNull( store.get( PROD, "tid2" ) );
+        Assert.assertNull( store.get( PROD, "tid3" ) );
+        Assert.assertNull( store.get( PROD, "tid4" ) );
+    }
+
+    @Test
+    public void testGetStats(){
+        // given: a full store, with a hit, a miss, an eviction and an expiration
+        store.put( PROD, "tid1", sample( "tid1" ) );
+        store.put( PROD, "tid2", sample( "tid2" ) );
+        store.get( PROD, "tid1" );
+        store.get( PROD, "unknown" );
+        store.put( PROD, "tid3", sample( "tid3" ) );
+        now.set( 1000 );
+        store.get( PROD, "tid3" );
+
+        // when: recovering the statistics, then: each event has been counted
+        TransactionStatusStore.Stats stats = store.getStats();
+        Assert.assertEquals( 1, stats.getHits() );
+        Assert.assertEquals( 2, stats.getMisses() );
+        Assert.assertEquals( 1, stats.getEvictions() );
+        Assert.assertEquals( 1, stats.getExpirations() );
+        Assert.assertEquals( 1, stats.getSize() );
+    }
+
+    private static TsiStatusCheckResponse sample( String tid ){
+        return new TsiStatusCheckResponse( "1234567", tid, "OK", "0", "SUCCESSFUL TRANSACTION FOUND",
+                "12,34", "f", "2018-08-02 10:37:22", "FRA" );
+    }
+
+}
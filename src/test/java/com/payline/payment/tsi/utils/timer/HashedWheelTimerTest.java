@@ -0,0 +1,142 @@
+package com.payline.payment.tsi.utils.timer;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class HashedWheelTimerTest {
+
+    private AtomicLong now;
+    private HashedWheelTimer timer;
+    private List<String> fired;
+
+    @Before
+    public void setup(){
+        this.now = new AtomicLong( 1000 );
+        this.timer = new HashedWheelTimer( 100, 8, now::get );
+        this.fired = new ArrayList<>();
+    }
+
+    @Test
+    public void testWheelSize(){
+        // then: the wheel size is rounded up to a power of 2
+        Assert.assertEquals( 8, timer.getWheelSize() );
+        Assert.assertEquals( 16, new HashedWheelTimer( 100, 9, now::get ).getWheelSize() );
+        Assert.assertEquals( 1, new HashedWheelTimer( 100, 1, now::get ).getWheelSize() );
+    }
+
+    @Test( expected = IllegalArgumentException.class )
+    public void testInvalidTick(){
+        new HashedWheelTimer( 0, 8, now::get );
+    }
+
+    @Test
+    public void testAdvance_deadline(){
+        // given: a timer due in 250 ms
+        HashedWheelTimer.Timeout timeout = timer.schedule( () -> fired.add( "a" ), 250 );
+
+        // then: it doesn't expire before its deadline, and expires at the end of its tick
+        now.addAndGet( 249 );
+        Assert.assertEquals( 0, timer.advance() );
+        now.addAndGet( 51 );
+        Assert.assertEquals( 1, timer.advance() );
+        Assert.assertEquals( 1, fired.size() );
+        Assert.assertTrue( timeout.isExpired() );
+        Assert.assertEquals( 0, timer.size() );
+
+        // then: it doesn't expire twice
+        now.addAndGet( 1000 );
+        Assert.assertEquals( 0, timer.advance() );
+    }
+
+    @Test
+    public void testAdvance_severalTurns(){
+        // given: timers in the same bucket, due in distinct turns of the wheel
+        timer.schedule( () -> fired.add( "first" ), 100 );
+        timer.schedule( () -> fired.add( "second" ), 900 );
+        timer.schedule( () -> fired.add( "third" ), 1700 );
+
+        // then: each one expires in its own turn
+        now.addAndGet( 100 );
+        timer.advance();
+        Assert.assertEquals( 1, fired.size() );
+        now.addAndGet( 800 );
+        timer.advance();
+        Assert.assertEquals( 2, fired.size() );
+        now.addAndGet( 800 );
+        timer.advance();
+        Assert.assertEquals( 3, fired.size() );
+        Assert.assertEquals( "third", fired.get( 2 ) );
+    }
+
+    @Test
+    public void testAdvance_longPause(){
+        // given: timers due within a few turns, and later
+        for( int i = 1; i <= 20; i++ ){
+            timer.schedule( () -> fired.add( "t" ), i * 100 );
+        }
+        timer.schedule( () -> fired.add( "late" ), 10000 );
+
+        // when: the wheel is not advanced for several turns
+        now.addAndGet( 2000 );
+        Assert.assertEquals( 20, timer.advance() );
+
+        // then: the later timer still expires on time
+        Assert.assertEquals( 1, timer.size() );
+        now.addAndGet( 7999 );
+        Assert.assertEquals( 0, timer.advance() );
+        now.addAndGet( 1 );
+        Assert.assertEquals( 1, timer.advance() );
+    }
+
+    @Test
+    public void testCancel(){
+        // given: timers in the same bucket
+        HashedWheelTimer.Timeout first = timer.schedule( () -> fired.add( "first" ), 100 );
+        HashedWheelTimer.Timeout second = timer.schedule( () -> fired.add( "second" ), 100 );
+        HashedWheelTimer.Timeout third = timer.schedule( () -> fired.add( "third" ), 100 );
+
+        // when: cancelling one of them
+        Assert.assertTrue( second.cancel() );
+        Assert.assertFalse( second.cancel() );
+
+        // then: the others expire
+        now.addAndGet( 100 );
+        Assert.assertEquals( 2, timer.advance() );
+        Assert.assertFalse( fired.contains( "second" ) );
+        Assert.assertTrue( second.isCancelled() );
+        Assert.assertFalse( first.cancel() );
+        Assert.assertTrue( third.isExpired() );
+    }
+
+    @Test
+    public void testAdvance_reschedule(){
+        // given: a task which schedules another timer
+        timer.schedule( () -> timer.schedule( () -> fired.add( "next" ), 100 ), 100 );
+
+        // when: the first one expires, then: the other one is scheduled from it
+        now.addAndGet( 100 );
+        Assert.assertEquals( 1, timer.advance() );
+        Assert.assertEquals( 1, timer.size() );
+        now.addAndGet( 100 );
+        Assert.assertEquals( 1, timer.advance() );
+        Assert.assertEquals( 1, fired.size() );
+    }
+
+    @Test
+    public void testAdvance_failingTask(){
+        // given: a failing task and another one
+        timer.schedule( () -> { throw new IllegalStateException( "failure" ); }, 100 );
+        timer.schedule( () -> fired.add( "other" ), 100 );
+
+        // when: they expire, then: the failure doesn't prevent the other one from running
+        now.addAndGet( 100 );
+        Assert.assertEquals( 2, timer.advance() );
+        Assert.assertEquals( 1, fired.size() );
+    }
+
+}
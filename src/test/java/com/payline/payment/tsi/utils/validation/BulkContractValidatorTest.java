@@ -0,0 +1,154 @@
+package com.payline.payment.tsi.utils.validation;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class BulkContractValidatorTest {
+
+    @Test
+    public void testValidateAll_allResults(){
+        // given: contracts, one of which is invalid
+        Map<String, String> contracts = contracts( 20 );
+        BulkContractValidator<String> validator = new BulkContractValidator<>( BulkContractValidatorTest::check, 4, 0 );
+
+        // when: validating them all
+        List<BulkContractValidator.Result> results = validator.validateAll( contracts, null ).collect( Collectors.toList() );
+
+        // then: each contract has its result
+        Assert.assertEquals( 20, results.size() );
+        Set<String> ids = results.stream().map( BulkContractValidator.Result::getId ).collect( Collectors.toSet() );
+        Assert.assertEquals( contracts.keySet(), ids );
+        for( BulkContractValidator.Result result : results ){
+            Assert.assertEquals( !"c7".equals( result.getId() ), result.isValid() );
+        }
+    }
+
+    @Test
+    public void testValidateAll_resume(){
+        // given: contracts, some of which have already been validated
+        Map<String, String> contracts = contracts( 10 );
+        Set<String> alreadyValidated = new HashSet<>( contracts.keySet() );
+        alreadyValidated.remove( "c3" );
+        alreadyValidated.remove( "c8" );
+        AtomicInteger calls = new AtomicInteger();
+        BulkContractValidator<String> validator = new BulkContractValidator<>( request -> {
+            calls.incrementAndGet();
+            return check( request );
+        }, 4, 0 );
+
+        // when: resuming the validation
+        Set<String> ids = validator.validateAll( contracts, alreadyValidated )
+                .map( BulkContractValidator.Result::getId ).collect( Collectors.toSet() );
+
+        // then: only the remaining contracts are validated
+        Assert.assertEquals( new HashSet<>( Arrays.asList( "c3", "c8" ) ), ids );
+        Assert.assertEquals( 2, calls.get() );
+    }
+
+    @Test
+    public void testValidateAll_boundedParallelism(){
+        // given: slow validations
+        AtomicInteger inProgress = new AtomicInteger();
+        AtomicInteger maxInProgress = new AtomicInteger();
+        BulkContractValidator<String> validator = new BulkContractValidator<>( request -> {
+            maxInProgress.accumulateAndGet( inProgress.incrementAndGet(), Math::max );
+            sleep( 20 );
+            inProgress.decrementAndGet();
+            return Collections.emptyMap();
+        }, 3, 0 );
+
+        // when: validating contracts
+        long count = validator.validateAll( contracts( 12 ), null ).count();
+
+        // then: no more validations than the parallelism are in progress at the same time
+        Assert.assertEquals( 12, count );
+        Assert.assertTrue( maxInProgress.get() <= 3 );
+    }
+
+    @Test
+    public void testValidateAll_rateLimit(){
+        // given: a rate limit of 50 validations per second
+        BulkContractValidator<String> validator = new BulkContractValidator<>( BulkContractValidatorTest::check, 8, 50 );
+
+        // when: validating 6 contracts
+        long start = System.nanoTime();
+        long count = validator.validateAll( contracts( 6 ), null ).count();
+        long elapsed = TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - start );
+
+        // then: the validation starts are spaced by 20ms at least
+        Assert.assertEquals( 6, count );
+        Assert.assertTrue( "elapsed: " + elapsed, elapsed >= 90 );
+    }
+
+    @Test
+    public void testValidateAll_failure(){
+        // given: a validation which fails
+        BulkContractValidator<String> validator = new BulkContractValidator<>( request -> {
+            throw new IllegalStateException( "boom" );
+        }, 2, 0 );
+
+        // when: validating a contract, then: the result carries the failure
+        BulkContractValidator.Result result = validator.validateAll( contracts( 1 ), null ).findFirst().get();
+        Assert.assertFalse( result.isValid() );
+        Assert.assertNull( result.getErrors() );
+        Assert.assertEquals( "boom", result.getFailure().getMessage() );
+    }
+
+    @Test
+    public void testValidateAll_closed(){
+        // given: slow validations
+        AtomicInteger calls = new AtomicInteger();
+        BulkContractValidator<String> validator = new BulkContractValidator<>( request -> {
+            calls.incrementAndGet();
+            sleep( 20 );
+            return Collections.emptyMap();
+        }, 1, 0 );
+
+        // when: closing the stream after the first result
+        try( Stream<BulkContractValidator.Result> results = validator.validateAll( contracts( 50 ), null ) ){
+            Assert.assertTrue( results.iterator().hasNext() );
+        }
+
+        // then: the pending validations are not run
+        sleep( 100 );
+        Assert.assertTrue( "calls: " + calls.get(), calls.get() < 10 );
+    }
+
+    private static Map<String, String> contracts( int count ){
+        Map<String, String> contracts = new LinkedHashMap<>();
+        for( int i = 0; i < count; i++ ){
+            contracts.put( "c" + i, "request" + i );
+        }
+        return contracts;
+    }
+
+    private static Map<String, String> check( String request ){
+        Map<String, String> errors = new HashMap<>();
+        if( "request7".equals( request ) ){
+            errors.put( "merchantId", "unknown merchant" );
+        }
+        return errors;
+    }
+
+    private static void sleep( long millis ){
+        try {
+            Thread.sleep( millis );
+        } catch( InterruptedException e ){
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
@@ -0,0 +1,80 @@
+package com.payline.payment.tsi.utils.validation;
+
+import com.payline.payment.tsi.TsiConstants;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ContractValidationCacheTest {
+
+    private AtomicLong now;
+    private ContractValidationCache cache;
+
+    @Before
+    public void setup(){
+        this.now = new AtomicLong( 0 );
+        this.cache = new ContractValidationCache( 2, 1000, 100, now::get );
+    }
+
+    @Test
+    public void testGet_success(){
+        // given: a successful validation
+        cache.put( "806", "806", "secret", TsiConstants.GO_STATUS_OK );
+
+        // when: recovering it, then: the status is returned until the success TTL is over
+        now.set( 999 );
+        Assert.assertEquals( Integer.valueOf( 1 ), cache.get( "806", "806", "secret" ) );
+        now.set( 1000 );
+        Assert.assertNull( cache.get( "806", "806", "secret" ) );
+    }
+
+    @Test
+    public void testGet_rejection(){
+        // given: a rejected validation
+        cache.put( "806", "806", "secret", TsiConstants.GO_STATUS_INVALID_KEY_VALUE );
+
+        // when: recovering it, then: the status is returned until the rejection TTL is over
+        now.set( 99 );
+        Assert.assertEquals( Integer.valueOf( 15 ), cache.get( "806", "806", "secret" ) );
+        now.set( 100 );
+        Assert.assertNull( cache.get( "806", "806", "secret" ) );
+    }
+
+    @Test
+    public void testPut_transientIgnored(){
+        // when: recording a status which is neither a success nor a rejection of the parameters
+        cache.put( "806", "806", "secret", 201 );
+
+        // then: it is not cached
+        Assert.assertNull( cache.get( "806", "806", "secret" ) );
+        Assert.assertEquals( 0, cache.size() );
+    }
+
+    @Test
+    public void testGet_otherParameters(){
+        // given: a successful validation
+        cache.put( "806", "806", "secret", TsiConstants.GO_STATUS_OK );
+
+        // when: recovering the outcome of other parameters, then: nothing is returned
+        Assert.assertNull( cache.get( "806", "806", "other secret" ) );
+        Assert.assertNull( cache.get( "806", "807", "secret" ) );
+        Assert.assertNull( cache.get( "807", "806", "secret" ) );
+    }
+
+    @Test
+    public void testPut_evictsLeastRecentlyUsed(){
+        // given: a full cache, whose first entry has just been used
+        cache.put( "1", "1", "secret", TsiConstants.GO_STATUS_OK );
+        cache.put( "2", "2", "secret", TsiConstants.GO_STATUS_OK );
+        cache.get( "1", "1", "secret" );
+
+        // when: adding an entry, then: the least recently used one is evicted
+        cache.put( "3", "3", "secret", TsiConstants.GO_STATUS_OK );
+        Assert.assertNotNull( cache.get( "1", "1", "secret" ) );
+        Assert.assertNull( cache.get( "2", "2", "secret" ) );
+    }
+
+}